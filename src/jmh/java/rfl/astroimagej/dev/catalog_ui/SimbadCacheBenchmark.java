@@ -0,0 +1,47 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * SIMBAD cache hit, id normalisation and LRU update, cache file in a temporary folder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SimbadCacheBenchmark {
+
+	private Path dir;
+	private SimbadCache cache;
+
+	@Setup
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("simbad_cache");
+		cache = new SimbadCache(dir.resolve("simbad_cache.properties").toString(), SimbadCache.DEFAULT_TTL_MS,
+				SimbadCache.DEFAULT_TTL_MS, 100);
+		cache.put(new SimbadResult("vega"));
+		cache.put(new SimbadResult("wasp 12"));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(dir.resolve("simbad_cache.properties"));
+		Files.deleteIfExists(dir);
+	}
+
+	@Benchmark
+	public SimbadResult cacheHit() throws Exception {
+		return cache.get("  VEGA ");
+	}
+}
@@ -0,0 +1,62 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.utils.VoTableReader;
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+/**
+ * SIMBAD VOTable decoding of the test fixtures: the streaming reader alone on an in-memory
+ * response, and the single request query on the fixture file url, which HttpTransport reads
+ * without a network request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SimbadCatalogBenchmark {
+
+	@Param({ "simbad_wasp12_votable.xml", "simbad_vega_votable.xml" })
+	public String fixture;
+
+	private byte[] response;
+	private String url;
+	private CatalogQuery query;
+	private SimbadCatalog catalog;
+
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		url = getClass().getResource("/" + fixture).toString();
+		response = Files.readAllBytes(Paths.get(getClass().getResource("/" + fixture).toURI()));
+		query = new CatalogQuery();
+		catalog = new SimbadCatalog();
+	}
+
+	@Benchmark
+	public int readVoTable() throws XMLStreamException {
+		int[] nCells = { 0 };
+		new VoTableReader().read(new ByteArrayInputStream(response), row -> nCells[0] += row.getFieldCount());
+		return nCells[0];
+	}
+
+	@Benchmark
+	public SimbadResult runSingleQuery() throws SimbadNotFoundException {
+		return catalog.runSingleQuery(query, url);
+	}
+}
@@ -0,0 +1,59 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cross-match of nStars x nStars sources with a 2" radius: a uniform random 2 deg field centred
+ * on WASP-12, matched against a copy with up to 0.5" random offsets per axis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CrossMatcherBenchmark {
+
+	@Param({ "10000", "100000" })
+	public int nStars;
+
+	private double[] raA;
+	private double[] decA;
+	private double[] raB;
+	private double[] decB;
+	private CrossMatcher matcher;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(3L);
+		raA = new double[nStars];
+		decA = new double[nStars];
+		double cosDec = Math.cos(Math.toRadians(29.6723));
+		for (int i = 0; i < nStars; i++) {
+			decA[i] = 29.6723 + (random.nextDouble() - 0.5) * 2.0;
+			raA[i] = 6.50911 + (random.nextDouble() - 0.5) * 2.0 / cosDec / 15.0;
+		}
+
+		random = new Random(4L);
+		double maxDeg = 0.5 / 3600.0;
+		raB = new double[nStars];
+		decB = new double[nStars];
+		for (int i = 0; i < nStars; i++) {
+			decB[i] = decA[i] + (random.nextDouble() - 0.5) * 2.0 * maxDeg;
+			raB[i] = raA[i] + (random.nextDouble() - 0.5) * 2.0 * maxDeg / Math.cos(Math.toRadians(decB[i])) / 15.0;
+		}
+		matcher = new CrossMatcher(2.0);
+	}
+
+	@Benchmark
+	public int[] match() {
+		return matcher.match(raA, decA, nStars, raB, decB, nStars);
+	}
+}
@@ -0,0 +1,81 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import rfl.astroimagej.dev.fileio.LocalCatalogWriter;
+
+/**
+ * LocalCatalog 120 amin, 16 mag query of a 500000 star random catalog file in a temporary
+ * folder. Query centres cycle through WASP-12, either side of ra = 0, near the pole and a high
+ * dec field.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class LocalCatalogBenchmark {
+
+	private static final int N_STARS = 500000;
+
+	private static final double[][] CENTRES = { { 6.5, 29.7 }, { 0.01, 10.0 }, { 23.99, -20.0 }, { 3.0, 89.8 },
+			{ 12.0, 60.0 } };
+
+	private Path dir;
+	private Path file;
+	private LocalCatalog catalog;
+	private CatalogQuery[] queries;
+	private int next = 0;
+
+	@Setup
+	public void setUp() throws IOException {
+		Random random = new Random(11);
+		ColumnarResult stars = new ColumnarResult("random", N_STARS);
+		for (int i = 0; i < N_STARS; i++) {
+			// uniform on sphere above dec -30
+			double dec = Math.toDegrees(Math.asin(-0.5 + 1.5 * random.nextDouble()));
+			stars.add("R" + i, random.nextDouble() * 24.0, dec, 8.0 + 10.0 * random.nextDouble(), 0.01);
+		}
+		dir = Files.createTempDirectory("local_catalog");
+		file = dir.resolve("random.cat");
+		LocalCatalogWriter.write(stars, "V", file, LocalCatalog.DEFAULT_ZONE_HEIGHT_DEG);
+		catalog = new LocalCatalog(file);
+
+		queries = new CatalogQuery[CENTRES.length];
+		for (int i = 0; i < CENTRES.length; i++) {
+			CatalogQuery query = new CatalogQuery();
+			query.setObjectId("local");
+			query.setRaHr(CENTRES[i][0]);
+			query.setDecDeg(CENTRES[i][1]);
+			query.setFovAmin(120.0);
+			query.setMagLimit(16.0);
+			query.setMagBand("V");
+			queries[i] = query;
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		catalog.close();
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(dir);
+	}
+
+	@Benchmark
+	public ColumnarResult query() {
+		CatalogQuery query = queries[next];
+		next = (next + 1) % queries.length;
+		return catalog.runColumnarQuery(query);
+	}
+}
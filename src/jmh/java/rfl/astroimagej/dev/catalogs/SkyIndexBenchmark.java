@@ -0,0 +1,74 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * SkyIndex build, 30" cone search and 5 nearest neighbours, uniform random field of nStars in a
+ * 1 deg square centred on WASP-12. Query centres step through a fixed random sequence.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SkyIndexBenchmark {
+
+	private static final int N_CENTRES = 1024;
+
+	@Param({ "10000", "100000", "1000000" })
+	public int nStars;
+
+	private double[] raHr;
+	private double[] decDeg;
+	private SkyIndex index;
+	private double[] raCentres;
+	private double[] decCentres;
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(nStars);
+		raHr = new double[nStars];
+		decDeg = new double[nStars];
+		double cosDec = Math.cos(Math.toRadians(29.7));
+		for (int i = 0; i < nStars; i++) {
+			decDeg[i] = 29.7 + (random.nextDouble() - 0.5);
+			raHr[i] = 6.5 + (random.nextDouble() - 0.5) / cosDec / 15.0;
+		}
+		index = new SkyIndex(raHr, decDeg, nStars);
+
+		random = new Random(3L);
+		raCentres = new double[N_CENTRES];
+		decCentres = new double[N_CENTRES];
+		for (int q = 0; q < N_CENTRES; q++) {
+			raCentres[q] = 6.5 + (random.nextDouble() - 0.5) * 0.03;
+			decCentres[q] = 29.7 + (random.nextDouble() - 0.5) * 0.8;
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public SkyIndex build() {
+		return new SkyIndex(raHr, decDeg, nStars);
+	}
+
+	@Benchmark
+	public int[] coneSearch() {
+		int q = next++ & (N_CENTRES - 1);
+		return index.coneSearch(raCentres[q], decCentres[q], 30.0);
+	}
+
+	@Benchmark
+	public int[] nearest() {
+		int q = next++ & (N_CENTRES - 1);
+		return index.nearest(raCentres[q], decCentres[q], 5);
+	}
+}
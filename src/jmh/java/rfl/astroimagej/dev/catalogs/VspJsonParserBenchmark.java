@@ -0,0 +1,84 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import rfl.astroimagej.dev.enums.CatalogType;
+import rfl.astroimagej.dev.utils.AstroCoords;
+
+/**
+ * VSP chart JSON decoding of the test fixtures, held in memory so that only the parser is
+ * timed. The readTree + findPath decode, as previously used in VspCatalog, is the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class VspJsonParserBenchmark {
+
+	@Param({ "vsp_vega_60amin_16.0mag.json", "vsp_wasp12_30amin_14.5mag.json" })
+	public String fixture;
+
+	private byte[] response;
+	private CatalogQuery query;
+	private VspJsonParser parser;
+	private ObjectMapper mapper;
+
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		response = Files.readAllBytes(Paths.get(getClass().getResource("/" + fixture).toURI()));
+		query = new CatalogQuery();
+		query.setCatalogType(CatalogType.VSP);
+		query.setMagBand("V");
+		parser = new VspJsonParser();
+		mapper = new ObjectMapper();
+	}
+
+	@Benchmark
+	public QueryResult parse() throws IOException {
+		return parser.parse(new ByteArrayInputStream(response), query);
+	}
+
+	@Benchmark
+	public ColumnarResult parseColumns() throws IOException {
+		return parser.parseColumns(new ByteArrayInputStream(response), query);
+	}
+
+	@Benchmark
+	public List<FieldObject> treeWalk() throws IOException {
+		List<FieldObject> fos = new ArrayList<>();
+		JsonNode root = mapper.readTree(new ByteArrayInputStream(response));
+		for (JsonNode foNode : root.findPath("photometry")) {
+			for (JsonNode bandNode : foNode.findPath("bands")) {
+				if (bandNode.path("band").asText().equalsIgnoreCase(query.getMagBand())) {
+					FieldObject fo = new FieldObject();
+					fo.setObjectId(foNode.findPath("auid").asText());
+					fo.setRaHr(AstroCoords.raHms_To_raHr(foNode.path("ra").asText()));
+					fo.setDecDeg(AstroCoords.decDms_To_decDeg(foNode.path("dec").asText()));
+					fo.setMag(bandNode.path("mag").asDouble());
+					fo.setMagErr(bandNode.path("error").asDouble());
+					fos.add(fo);
+					break;
+				}
+			}
+		}
+		return fos;
+	}
+}
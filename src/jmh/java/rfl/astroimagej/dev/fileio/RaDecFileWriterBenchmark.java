@@ -0,0 +1,91 @@
+package rfl.astroimagej.dev.fileio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.catalogs.ColumnarResult;
+import rfl.astroimagej.dev.catalogs.VspJsonParser;
+import rfl.astroimagej.dev.enums.CatalogType;
+
+/**
+ * Radec file compilation and writing for the vega 60 arcmin VSP fixture.
+ * <p>
+ * The writer saves to [user.dir]/radec, so user.dir is pointed at a temporary folder for the
+ * benchmark run and the radec file deleted before each write.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RaDecFileWriterBenchmark {
+
+	private CatalogQuery query;
+	private ColumnarResult result;
+	private RaDecFileWriter writer;
+
+	private String userDir;
+	private Path tempDir;
+	private File file;
+
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		query = new CatalogQuery();
+		query.setObjectId("vega");
+		query.setRaHr(18.61565);
+		query.setDecDeg(38.78369);
+		query.setFovAmin(60.0);
+		query.setMagLimit(16.0);
+		query.setCatalogType(CatalogType.VSP);
+		query.setMagBand("V");
+		byte[] response = Files
+				.readAllBytes(Paths.get(getClass().getResource("/vsp_vega_60amin_16.0mag.json").toURI()));
+		result = new VspJsonParser().parseColumns(new ByteArrayInputStream(response), query);
+		writer = new RaDecFileWriter();
+
+		userDir = System.getProperty("user.dir");
+		tempDir = Files.createTempDirectory("radec-benchmark");
+		System.setProperty("user.dir", tempDir.toString());
+		file = RaDecFileWriter.getFile(query, "radec.txt");
+	}
+
+	@Setup(Level.Invocation)
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+		file.getParentFile().delete();
+		tempDir.toFile().delete();
+		System.setProperty("user.dir", userDir);
+	}
+
+	@Benchmark
+	public List<String> compileRaDecList() {
+		return writer.compileRaDecList(query, result);
+	}
+
+	@Benchmark
+	public String writeRaDecFile() {
+		return writer.writeRaDecFile(query, result);
+	}
+}
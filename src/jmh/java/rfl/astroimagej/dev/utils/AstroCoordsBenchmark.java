@@ -0,0 +1,88 @@
+package rfl.astroimagej.dev.utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Sexagesimal formatting and parsing, refer AstroCoords. Each operation converts a batch of
+ * nCoords coordinates, one at a time or with the array conversions, which run on the fork/join
+ * pool above AstroCoords.PARALLEL_THRESHOLD.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AstroCoordsBenchmark {
+
+	// wide VSP field, large local catalog field
+	@Param({ "1000", "20000" })
+	public int nCoords;
+
+	private double[] raHr;
+	private double[] decDeg;
+	private String[] raHms;
+	private String[] decDms;
+
+	@Setup
+	public void setUp() {
+		// fixed seed, same coordinates in every run
+		Random random = new Random(1234);
+		raHr = new double[nCoords];
+		decDeg = new double[nCoords];
+		raHms = new String[nCoords];
+		decDms = new String[nCoords];
+		for (int i = 0; i < nCoords; i++) {
+			raHr[i] = 24.0 * random.nextDouble();
+			decDeg[i] = 180.0 * random.nextDouble() - 90.0;
+			raHms[i] = AstroCoords.raHr_To_raHms(raHr[i]);
+			decDms[i] = AstroCoords.decDeg_To_decDms(decDeg[i]);
+		}
+	}
+
+	@Benchmark
+	public void raHr_To_raHms(Blackhole bh) {
+		for (double ra : raHr) {
+			bh.consume(AstroCoords.raHr_To_raHms(ra));
+		}
+	}
+
+	@Benchmark
+	public void decDeg_To_decDms(Blackhole bh) {
+		for (double dec : decDeg) {
+			bh.consume(AstroCoords.decDeg_To_decDms(dec));
+		}
+	}
+
+	@Benchmark
+	public void raHms_To_raHr(Blackhole bh) {
+		for (String ra : raHms) {
+			bh.consume(AstroCoords.raHms_To_raHr(ra));
+		}
+	}
+
+	@Benchmark
+	public void decDms_To_decDeg(Blackhole bh) {
+		for (String dec : decDms) {
+			bh.consume(AstroCoords.decDms_To_decDeg(dec));
+		}
+	}
+
+	@Benchmark
+	public String[] raHr_To_raHms_Array() {
+		return AstroCoords.raHr_To_raHms(raHr);
+	}
+
+	@Benchmark
+	public double[] raHms_To_raHr_Array() {
+		return AstroCoords.raHms_To_raHr(raHms);
+	}
+}
@@ -0,0 +1,82 @@
+package rfl.astroimagej.dev.utils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+/**
+ * VOTable cone search decoding, streaming StAX reader against DOM + XPath as previously used in
+ * SimbadCatalog. Each operation sums the ra column of a synthetic nRows response. Run with
+ * -prof gc for allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class VoTableReaderBenchmark {
+
+	@Param({ "1000", "20000" })
+	public int nRows;
+
+	private byte[] coneTable;
+	private DocumentBuilder builder;
+	private XPathExpression raCells;
+
+	@Setup
+	public void setUp() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		sb.append("<VOTABLE version=\"1.2\" xmlns=\"http://www.ivoa.net/xml/VOTable/v1.2\"><RESOURCE><TABLE>\n");
+		sb.append("<FIELD name=\"MAIN_ID\" datatype=\"char\" arraysize=\"*\"/>\n");
+		sb.append("<FIELD name=\"RA\" datatype=\"double\"/>\n");
+		sb.append("<FIELD name=\"DEC\" datatype=\"double\"/>\n");
+		sb.append("<FIELD name=\"FLUX_V\" datatype=\"double\"/>\n");
+		sb.append("<DATA><TABLEDATA>\n");
+		for (int i = 0; i < nRows; i++) {
+			String mag = (i % 3 == 0) ? "" : String.format("%.3f", 10.0 + (i % 700) / 100.0);
+			sb.append(String.format("<TR><TD>star %d</TD><TD>%.8f</TD><TD>%+.8f</TD><TD>%s</TD></TR>\n",
+					i, 97.0 + i * 1.0e-5, 29.0 + i * 1.0e-5, mag));
+		}
+		sb.append("</TABLEDATA></DATA></TABLE></RESOURCE></VOTABLE>\n");
+		coneTable = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(false);
+		builder = factory.newDocumentBuilder();
+		raCells = XPathFactory.newInstance().newXPath().compile("//TR/TD[2]/text()");
+	}
+
+	@Benchmark
+	public double staxReader() throws Exception {
+		double[] total = { 0.0 };
+		new VoTableReader().read(new ByteArrayInputStream(coneTable), row -> total[0] += row.getDouble(1));
+		return total[0];
+	}
+
+	@Benchmark
+	public double domXPath() throws Exception {
+		Document doc = builder.parse(new ByteArrayInputStream(coneTable));
+		NodeList nodes = (NodeList) raCells.evaluate(doc, XPathConstants.NODESET);
+		double sum = 0.0;
+		for (int j = 0; j < nodes.getLength(); j++) {
+			sum += Double.parseDouble(nodes.item(j).getNodeValue());
+		}
+		return sum;
+	}
+}
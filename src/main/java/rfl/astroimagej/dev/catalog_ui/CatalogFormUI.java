@@ -87,7 +87,8 @@ public class CatalogFormUI extends JDialog {
 		inputVerifier = new TextInputVerifier();
 
 		// lookup user object_id against Smbad on-line database
-		simbad = new SimbadCatalog();
+		// previous results are cached in user.home/.astroimagej
+		simbad = new SimbadCatalog(new SimbadCache());
 
 		// display form with title version number & input query data
 		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
@@ -485,7 +486,8 @@ public class CatalogFormUI extends JDialog {
 					//---- catalogCombo ----
 					catalogCombo.setModel(new DefaultComboBoxModel<>(new String[] {
 						"VSP",
-						"APASS"
+						"APASS",
+						"MERGED"
 					}));
 
 					//---- label11 ----
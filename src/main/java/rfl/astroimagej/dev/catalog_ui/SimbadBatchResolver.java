@@ -0,0 +1,196 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+/**
+ * Resolves a list of object ids against the SIMBAD database with a bounded number of
+ * concurrent queries.
+ * <p>
+ * Queries run on a fixed size thread pool and are paced by the SIMBAD host rate limiter, so
+ * requests are pipelined up to the allowed rate. Outcomes are reported to a BatchListener as
+ * each query finishes, in completion order, on the thread that called resolveAll. A SIMBAD
+ * result cache is saved once at the end of the batch.
+ * </p>
+ * <p>
+ * Worker threads never show dialogs: query errors are reported to the listener and counted
+ * in the summary message, for the caller to show once on the event dispatch thread.
+ * </p>
+ */
+public class SimbadBatchResolver {
+
+	public static final int DEFAULT_THREADS = 4;
+
+	/**
+	 * Receives the outcome of each object id query
+	 */
+	public interface BatchListener {
+		/**
+		 * @param objectId user object id
+		 * @param result SIMBAD coordinate and magnitude data
+		 */
+		public void resolved(String objectId, SimbadResult result);
+
+		/**
+		 * @param objectId user object id
+		 * @param message reason, object not in SIMBAD database or query error
+		 */
+		public void notFound(String objectId, String message);
+
+		/**
+		 * Query failed to run, e.g. no network connection. Default reports as not found
+		 *
+		 * @param objectId user object id
+		 * @param message query error message
+		 */
+		public default void queryError(String objectId, String message) {
+			notFound(objectId, message);
+		}
+	}
+
+	private final SimbadCatalog simbad;
+	private final int nThreads;
+
+	// last batch counters
+	private int nResolved = 0;
+	private int nNotFound = 0;
+	private int nErrors = 0;
+	private double elapsedSec = 0.0;
+
+	/**
+	 * @param simbad SIMBAD catalog, with or without cache
+	 * @param nThreads maximum number of concurrent queries
+	 */
+	public SimbadBatchResolver(SimbadCatalog simbad, int nThreads) {
+		this.simbad = simbad;
+		this.nThreads = nThreads;
+	}
+
+	public SimbadBatchResolver(SimbadCatalog simbad) {
+		this(simbad, DEFAULT_THREADS);
+	}
+
+	/**
+	 * Runs SIMBAD queries for all object ids, blocks until all queries have finished
+	 *
+	 * @param objectIds list of target names
+	 *
+	 * @param listener called for each outcome as queries finish
+	 *
+	 * @return message summarising outcomes and throughput in targets/second
+	 */
+	public String resolveAll(List<String> objectIds, BatchListener listener) {
+		nResolved = 0;
+		nNotFound = 0;
+		nErrors = 0;
+		long t0 = System.nanoTime();
+
+		// cache file saved once for the batch
+		SimbadCache cache = simbad.getCache();
+		if (cache != null) {
+			cache.beginBatch();
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+		try {
+			CompletionService<Outcome> service = new ExecutorCompletionService<>(executor);
+			for (String objectId : objectIds) {
+				service.submit(() -> resolve(objectId));
+			}
+
+			// report outcomes in completion order
+			for (int i = 0; i < objectIds.size(); i++) {
+				Outcome outcome = takeOutcome(service);
+				if (outcome.result != null) {
+					nResolved++;
+					listener.resolved(outcome.objectId, outcome.result);
+				} else if (outcome.isQueryError) {
+					nErrors++;
+					listener.queryError(outcome.objectId, outcome.message);
+				} else {
+					nNotFound++;
+					listener.notFound(outcome.objectId, outcome.message);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			if (cache != null) {
+				cache.endBatch();
+			}
+		}
+
+		elapsedSec = (System.nanoTime() - t0) / 1.0e9;
+		return String.format("Resolved %d of %d targets (%d not found, %d query errors) in %.1f s, %.1f targets/s",
+				nResolved, objectIds.size(), nNotFound, nErrors, elapsedSec, getThroughput());
+	}
+
+	/*
+	 * Single object id query, run on executor thread
+	 */
+	private Outcome resolve(String objectId) {
+		CatalogQuery query = new CatalogQuery();
+		query.setObjectId(objectId);
+		Outcome outcome = new Outcome(objectId);
+		try {
+			outcome.result = simbad.runQuery(query);
+		} catch (SimbadNotFoundException se) {
+			outcome.message = se.getMessage();
+			outcome.isQueryError = se.isQueryError();
+		} catch (RuntimeException re) {
+			outcome.message = String.format("Error running SIMBAD query: %s %s", objectId, re.getMessage());
+			outcome.isQueryError = true;
+		}
+		return outcome;
+	}
+
+	// waits for next completed query
+	private Outcome takeOutcome(CompletionService<Outcome> service) {
+		try {
+			Future<Outcome> future = service.take();
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("SIMBAD batch query interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("SIMBAD batch query failed", e.getCause());
+		}
+	}
+
+	/*
+	 * Result or not found message for one object id
+	 */
+	private static class Outcome {
+		private final String objectId;
+		private SimbadResult result = null;
+		private String message = null;
+		private boolean isQueryError = false;
+
+		private Outcome(String objectId) {
+			this.objectId = objectId;
+		}
+	}
+
+	public int getResolvedCount() {
+		return nResolved;
+	}
+
+	public int getNotFoundCount() {
+		return nNotFound;
+	}
+
+	public int getQueryErrorCount() {
+		return nErrors;
+	}
+
+	// last batch throughput, targets per second
+	public double getThroughput() {
+		return (elapsedSec > 0) ? (nResolved + nNotFound + nErrors) / elapsedSec : 0.0;
+	}
+}
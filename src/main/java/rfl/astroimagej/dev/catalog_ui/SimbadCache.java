@@ -0,0 +1,415 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+/**
+ * Persistent cache of SIMBAD query results, keyed by normalised object id.
+ * <p>
+ * Entries are held in an access-ordered (LRU) map, bounded to a maximum number of entries,
+ * and saved to simbad_cache.properties in user.home/.astroimagej so that the cache survives
+ * plugin restarts.
+ * </p>
+ * <p>
+ * Resolved objects expire after a configurable time-to-live. Object ids not found in
+ * SIMBAD are cached as negative entries with a shorter time-to-live.
+ * </p>
+ * <p>
+ * The cache file is replaced atomically from a temporary file, so an interrupted save leaves
+ * the previous file intact. Each put saves the file, except between beginBatch and endBatch,
+ * when changes are saved once at the end of the batch.
+ * </p>
+ */
+public class SimbadCache {
+
+	// defaults 30 days, 1 day & 2000 entries
+	public static final long DEFAULT_TTL_MS = 30L * 24 * 3600 * 1000;
+	public static final long DEFAULT_NOT_FOUND_TTL_MS = 24L * 3600 * 1000;
+	public static final int DEFAULT_MAX_ENTRIES = 2000;
+
+	// properties value delimiter and negative entry marker
+	private static final String DELIM = "\t";
+	private static final String NOT_FOUND = "!";
+
+	private final String cachePath;
+	private final long ttlMs;
+	private final long notFoundTtlMs;
+	private final int maxEntries;
+
+	// LRU map, guarded by this
+	private final LinkedHashMap<String, CacheEntry> entries;
+
+	// cache counters
+	private long nHits = 0;
+	private long nMisses = 0;
+
+	// open batches and unsaved changes, guarded by this
+	private int nBatches = 0;
+	private boolean isDirty = false;
+
+	// version of entries snapshot, guarded by this, and last version saved, guarded by saveLock
+	private long version = 0;
+	private long savedVersion = 0;
+	private final Object saveLock = new Object();
+
+	/*
+	 * Cached SIMBAD data or not-found message
+	 */
+	private static class CacheEntry {
+		private long createdMs;
+		private long accessMs;
+		private String simbadId;
+		private Double raHr;
+		private Double decDeg;
+		private Double[] mags;
+		private String notFoundMessage;
+	}
+
+	/**
+	 * Opens the default cache file with default time-to-live and size limits
+	 */
+	public SimbadCache() {
+		this(getCachePath(), DEFAULT_TTL_MS, DEFAULT_NOT_FOUND_TTL_MS, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Opens a cache file, loading any saved entries
+	 *
+	 * @param cachePath path to cache properties file
+	 *
+	 * @param ttlMs time-to-live for resolved objects (ms)
+	 *
+	 * @param notFoundTtlMs time-to-live for object ids not found in SIMBAD (ms)
+	 *
+	 * @param maxEntries maximum number of entries, least recently used entries are evicted
+	 */
+	public SimbadCache(String cachePath, long ttlMs, long notFoundTtlMs, int maxEntries) {
+		this.cachePath = cachePath;
+		this.ttlMs = ttlMs;
+		this.notFoundTtlMs = notFoundTtlMs;
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				return size() > SimbadCache.this.maxEntries;
+			}
+		};
+		loadCache();
+	}
+
+	/**
+	 * Looks up a cached SIMBAD result
+	 *
+	 * @param objectId user input object id
+	 *
+	 * @return cached result, or null if no current entry
+	 *
+	 * @throws SimbadNotFoundException if object id is cached as not found in SIMBAD
+	 */
+	public synchronized SimbadResult get(String objectId) throws SimbadNotFoundException {
+		String key = normalise(objectId);
+		CacheEntry entry = entries.get(key);
+		long now = System.currentTimeMillis();
+
+		// miss or expired entry
+		if (entry == null || isExpired(entry, now)) {
+			if (entry != null) {
+				entries.remove(key);
+			}
+			nMisses++;
+			return null;
+		}
+		nHits++;
+		entry.accessMs = now;
+		if (entry.notFoundMessage != null) {
+			throw new SimbadNotFoundException(entry.notFoundMessage);
+		}
+
+		// copy to a new result indexed by current user object id
+		SimbadResult result = new SimbadResult(objectId);
+		result.setSimbadId(entry.simbadId);
+		result.setSimbadRaHr(entry.raHr);
+		result.setSimbadDecDeg(entry.decDeg);
+		result.setMagB(entry.mags[0]);
+		result.setMagV(entry.mags[1]);
+		result.setMagR(entry.mags[2]);
+		result.setMagI(entry.mags[3]);
+		return result;
+	}
+
+	/**
+	 * Adds a SIMBAD result and saves the cache file, or marks it for saving at the end of the
+	 * current batch
+	 *
+	 * @param result SIMBAD query result
+	 */
+	public void put(SimbadResult result) {
+		addEntry(result);
+		saveIfUnbatched();
+	}
+
+	private synchronized void addEntry(SimbadResult result) {
+		CacheEntry entry = new CacheEntry();
+		entry.createdMs = System.currentTimeMillis();
+		entry.accessMs = entry.createdMs;
+		entry.simbadId = result.getSimbadId();
+		entry.raHr = result.getSimbadRaHr();
+		entry.decDeg = result.getSimbadDecDeg();
+		entry.mags = new Double[] { result.getMagB(), result.getMagV(), result.getMagR(), result.getMagI() };
+		entries.put(normalise(result.getObjectId()), entry);
+		isDirty = true;
+	}
+
+	/**
+	 * Adds a negative entry for an object id not found in SIMBAD and saves the cache file, or
+	 * marks it for saving at the end of the current batch
+	 *
+	 * @param objectId user input object id
+	 *
+	 * @param message SimbadNotFoundException message
+	 */
+	public void putNotFound(String objectId, String message) {
+		addNotFoundEntry(objectId, message);
+		saveIfUnbatched();
+	}
+
+	private synchronized void addNotFoundEntry(String objectId, String message) {
+		CacheEntry entry = new CacheEntry();
+		entry.createdMs = System.currentTimeMillis();
+		entry.accessMs = entry.createdMs;
+		entry.notFoundMessage = message;
+		entries.put(normalise(objectId), entry);
+		isDirty = true;
+	}
+
+	/**
+	 * Defers cache file saves until the matching endBatch, e.g. while resolving a target list.
+	 * Batches may be nested.
+	 */
+	public synchronized void beginBatch() {
+		nBatches++;
+	}
+
+	/**
+	 * Ends a batch, saving the cache file once if entries were added during the outermost batch
+	 */
+	public void endBatch() {
+		synchronized (this) {
+			nBatches = Math.max(0, nBatches - 1);
+		}
+		saveIfUnbatched();
+	}
+
+	/**
+	 * Saves unsaved entries to the cache file, also inside a batch
+	 */
+	public void flush() {
+		Snapshot snapshot = snapshot();
+		if (snapshot != null) {
+			saveCache(snapshot);
+		}
+	}
+
+	// saves unsaved entries unless a batch is open
+	private void saveIfUnbatched() {
+		Snapshot snapshot;
+		synchronized (this) {
+			snapshot = (nBatches == 0) ? snapshot() : null;
+		}
+		if (snapshot != null) {
+			saveCache(snapshot);
+		}
+	}
+
+	/*
+	 * Encoded entries and version, written outside the cache lock
+	 */
+	private static class Snapshot {
+		private final Properties prop = new Properties();
+		private long version;
+	}
+
+	// copy of entries for saving, null if there are no unsaved changes
+	private synchronized Snapshot snapshot() {
+		if (!isDirty) {
+			return null;
+		}
+		isDirty = false;
+		Snapshot snapshot = new Snapshot();
+		for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+			snapshot.prop.setProperty(e.getKey(), encodeEntry(e.getValue()));
+		}
+		snapshot.version = ++version;
+		return snapshot;
+	}
+
+	/**
+	 * Deletes all entries and the cache file
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		new File(cachePath).delete();
+	}
+
+	/**
+	 * Normalises object id to cache key: lower case, trimmed, with runs of
+	 * white space and '_' characters replaced by a single space
+	 *
+	 * @param objectId user input object id
+	 *
+	 * @return cache key, e.g. "WASP_12" => "wasp 12"
+	 */
+	public static String normalise(String objectId) {
+		return objectId.trim().toLowerCase().replaceAll("[\\s_]+", " ");
+	}
+
+	private boolean isExpired(CacheEntry entry, long now) {
+		long ttl = (entry.notFoundMessage == null) ? ttlMs : notFoundTtlMs;
+		return now - entry.createdMs > ttl;
+	}
+
+	/*
+	 * Imports saved entries, in least to most recently used order
+	 * Value format: accessMs, createdMs, then simbadId, ra, dec, B, V, R, I or "!", message
+	 */
+	private void loadCache() {
+		File file = new File(cachePath);
+		if (!file.exists()) {
+			return;
+		}
+		Properties prop = new Properties();
+		try (InputStream input = new FileInputStream(file)) {
+			prop.load(input);
+		} catch (IOException ex) {
+			// start with empty cache
+			return;
+		}
+
+		List<Map.Entry<String, CacheEntry>> loaded = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		for (String key : prop.stringPropertyNames()) {
+			try {
+				CacheEntry entry = decodeEntry(prop.getProperty(key));
+				if (!isExpired(entry, now)) {
+					loaded.add(new AbstractMap.SimpleEntry<>(key, entry));
+				}
+			} catch (RuntimeException re) {
+				// skip corrupt entry
+			}
+		}
+		loaded.sort((e1, e2) -> Long.compare(e1.getValue().accessMs, e2.getValue().accessMs));
+		for (Map.Entry<String, CacheEntry> e : loaded) {
+			entries.put(e.getKey(), e.getValue());
+		}
+	}
+
+	/*
+	 * Saves an entries snapshot to a temporary file, then replaces the cache properties file.
+	 * Runs outside the cache lock; a snapshot older than the last one saved is discarded.
+	 * Failure leaves cache in memory only.
+	 */
+	private void saveCache(Snapshot snapshot) {
+		synchronized (saveLock) {
+			if (snapshot.version <= savedVersion) {
+				return;
+			}
+			Path file = Paths.get(cachePath);
+			Path temp = null;
+			try {
+				Files.createDirectories(file.toAbsolutePath().getParent());
+				temp = Files.createTempFile(file.toAbsolutePath().getParent(), "simbad_cache", ".tmp");
+				try (OutputStream output = Files.newOutputStream(temp)) {
+					snapshot.prop.store(output, "SIMBAD query cache");
+				}
+				try {
+					Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+				savedVersion = snapshot.version;
+			} catch (IOException io) {
+				// not persisted
+				if (temp != null) {
+					temp.toFile().delete();
+				}
+			}
+		}
+	}
+
+	private static String encodeEntry(CacheEntry entry) {
+		List<String> terms = new ArrayList<>();
+		terms.add(String.valueOf(entry.accessMs));
+		terms.add(String.valueOf(entry.createdMs));
+		if (entry.notFoundMessage != null) {
+			terms.add(NOT_FOUND);
+			terms.add(entry.notFoundMessage);
+		} else {
+			terms.add(entry.simbadId);
+			terms.add(String.valueOf(entry.raHr));
+			terms.add(String.valueOf(entry.decDeg));
+			for (Double mag : entry.mags) {
+				terms.add((mag == null) ? "" : String.valueOf(mag));
+			}
+		}
+		return String.join(DELIM, terms);
+	}
+
+	private static CacheEntry decodeEntry(String value) {
+		String[] el = value.split(DELIM, -1);
+		CacheEntry entry = new CacheEntry();
+		entry.accessMs = Long.parseLong(el[0]);
+		entry.createdMs = Long.parseLong(el[1]);
+		if (el[2].equals(NOT_FOUND)) {
+			entry.notFoundMessage = el[3];
+		} else {
+			entry.simbadId = el[2];
+			entry.raHr = Double.valueOf(el[3]);
+			entry.decDeg = Double.valueOf(el[4]);
+			entry.mags = new Double[4];
+			for (int i = 0; i < 4; i++) {
+				entry.mags[i] = el[5 + i].isEmpty() ? null : Double.valueOf(el[5 + i]);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns path to cache file user.home/.astroimagej/simbad_cache.properties
+	 *
+	 * @return full path to cache file
+	 */
+	public static String getCachePath() {
+		String homePath = Paths.get(System.getProperty("user.home")).toAbsolutePath().toString();
+		return Paths.get(homePath, ".astroimagej", "simbad_cache.properties").toString();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return nHits;
+	}
+
+	public synchronized long getMissCount() {
+		return nMisses;
+	}
+}
@@ -1,172 +1,294 @@
 package rfl.astroimagej.dev.catalog_ui;
 
 import java.io.IOException;
+import java.io.InputStream;
 
-import javax.swing.JOptionPane;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamException;
 
 import rfl.astroimagej.dev.catalogs.CatalogQuery;
 import rfl.astroimagej.dev.enums.SimbadUrlType;
 import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.HttpTransport;
+import rfl.astroimagej.dev.utils.VoTableReader;
 import rfl.astroimagej.exceptions.SimbadNotFoundException;
 
 /**
- * Queries the SIMBAD on-line database with user input object id. If a match is found, 
+ * Queries the SIMBAD on-line database with user input object id. If a match is found,
  * updates catlog form with simbad ra and dec coordinates plus B, V, Rc and Ic magnitudes, as available.
  * <p>
- * SIMBAD data is XML-based VOTable format (text and HTML formats are other options). 
- * To simplify decoding XML data, individual  requests are made for each  parameter.
+ * SIMBAD data is XML-based VOTable format (text and HTML formats are other options).
+ * By default a single request returns all parameters in one VOTable row, decoded in one pass.
+ * The original mode, an individual request for each parameter, is kept as a fallback.
  * </p>
  * <p>
  *  Target and coordinate data should always be imported, but some magnitude data may be
  * missing, e.g. for the R and/or I bands.
  * </p>
  * <p>
- * Parsing XML formatted data is implemented with XPath.
- * XPath references: e.g. https://howtodoinjava.com/java/xml/java-xpath-tutorial-example/
+ * Parsing XML formatted data is implemented with a streaming StAX reader, refer VoTableReader.
  * </p>
  * <p>
  * SIMBAD reference: http://simbad.u-strasbg.fr/guide/sim-url.htx.
  * </p>
  */
 public class SimbadCatalog {
-	private DocumentBuilder builder;
 	private final String NO_DATA = "*****";
 
+	// true => single request for all parameters, false => one request per parameter
+	private boolean singleRequest = true;
+
+	// optional cache of previous query results
+	private SimbadCache cache = null;
+
 	/**
-	 * Configure XPath to parse xml.  Note: Ignores xml namespace.
+	 * SIMBAD catalog without result cache, every query runs on-line
 	 */
 	public SimbadCatalog() {
-		// Assemble XPath objects ..
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		try {
-			// ignore xml/VOTable namespaces
-			factory.setNamespaceAware(false);
-			this.builder = factory.newDocumentBuilder();
-		} catch (ParserConfigurationException e1) {
-			String message = "Error compiling SIMBAD query\n";
-			message += e1.getMessage();
-			JOptionPane.showMessageDialog(null, message, "Simbad", JOptionPane.INFORMATION_MESSAGE);
-		}
 	}
-	
+
 	/**
-	 * Runs a sequence of SIMBAD queries to download coordinate and magnitude data
-	 * for the user specified target name
+	 * SIMBAD catalog with result cache, cached object ids resolve without a network query
+	 *
+	 * @param cache SIMBAD result cache
+	 */
+	public SimbadCatalog(SimbadCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Runs SIMBAD query to download coordinate and magnitude data for the user specified target name
+	 * <p>
+	 * Single request mode downloads all parameters in one query. If the response
+	 * cannot be decoded, the query falls back to the per-parameter sequence.
+	 * </p>
 	 * <p>
-	 * Each parameter is an individual query with a 250 ms buffer delay between
-	 * successive queries.
+	 * If a cache is configured, cached results and not-found entries are returned
+	 * without a query and new results are added to the cache.
 	 * </p>
-	 * 
+	 *
 	 * @param query catalog query object containing  user input name index to SIMBAD database
 	 * @return result encapsulates SimbadID, coordinates and available magnitudes
-	 *         
-	 * @throws SimbadNotFoundException throws exception if user input name is not 
+	 *
+	 * @throws SimbadNotFoundException throws exception if user input name is not
 	 *  		identified in the Simbad database
 	 */
 	public SimbadResult runQuery(CatalogQuery query) throws SimbadNotFoundException {
-		
+		if (cache == null) {
+			return runOnlineQuery(query);
+		}
+
+		// cache hit, or throws SimbadNotFoundException for cached not-found entry
+		SimbadResult result = cache.get(query.getObjectId());
+		if (result != null) {
+			return result;
+		}
+
+		// cache miss: run query and cache result, don't cache query errors
+		try {
+			result = runOnlineQuery(query);
+			cache.put(result);
+		} catch (SimbadNotFoundException se) {
+			if (!se.isQueryError()) {
+				cache.putNotFound(query.getObjectId(), se.getMessage());
+			}
+			throw se;
+		}
+		return result;
+	}
+
+	// runs SIMBAD on-line query, single request or per-parameter mode
+	private SimbadResult runOnlineQuery(CatalogQuery query) throws SimbadNotFoundException {
+		SimbadResult result = null;
+		if (singleRequest) {
+			result = runSingleQuery(query, CatalogUrls.getSimbadUrl(query));
+		}
+
+		// per-parameter query, either selected or fallback
+		if (result == null) {
+			result = runItemQuery(query);
+		}
+		return result;
+	}
+
+	/**
+	 * Selects SIMBAD query mode
+	 *
+	 * @param singleRequest true to download all parameters in one query (default),
+	 * 			false to run individual queries for each parameter
+	 */
+	public void setSingleRequest(boolean singleRequest) {
+		this.singleRequest = singleRequest;
+	}
+
+	/**
+	 * @return result cache, null if none
+	 */
+	public SimbadCache getCache() {
+		return cache;
+	}
+
+	/*
+	 * Runs a single SIMBAD query and decodes every field in the first VOTable row.
+	 * Row columns are in SimbadUrlType order: main_id, ra, dec, B, V, R, I
+	 *
+	 * @param query catalog query object containing user input name
+	 *
+	 * @param url compiled SIMBAD url for all parameters
+	 *
+	 * @return result decoded SIMBAD data, or null if response could not be decoded
+	 *
+	 * @throws SimbadNotFoundException thrown if specified object name is not found
+	 * in SIMBAD database
+	 */
+	protected SimbadResult runSingleQuery(CatalogQuery query, String url) throws SimbadNotFoundException {
+		SimbadResult result = new SimbadResult(query.getObjectId());
+		VoTableReader reader = new VoTableReader();
+
+		// decode first row straight into result, flag rows that fail to decode
+		boolean[] isDecoded = { false };
+		int nRows = 0;
+		try (InputStream in = HttpTransport.getDefault().openStream(url)) {
+			nRows = reader.read(in, row -> {
+				if (row.getRowCount() == 1 && row.getFieldCount() == SimbadUrlType.values().length) {
+					isDecoded[0] = decodeRow(row, result);
+				}
+			});
+		} catch (IOException | XMLStreamException e1) {
+			// fall back to per-parameter query
+			return null;
+		}
+
+		// empty table: input does not match SIMBAD records
+		if (nRows == 0) {
+			String message =
+					String.format("Identifier not found in the SIMBAD database: %s ", query.getObjectId());
+			throw new SimbadNotFoundException(message);
+		}
+
+		// unexpected row layout, fall back to per-parameter query
+		return isDecoded[0] ? result : null;
+	}
+
+	/*
+	 * Copies VOTable row cells to SimbadResult, columns in SimbadUrlType order
+	 *
+	 * @return true if id and coordinate cells have data, false otherwise
+	 */
+	private boolean decodeRow(VoTableReader row, SimbadResult result) {
+		double raDeg = row.getDouble(SimbadUrlType.RA_HR.ordinal());
+		double decDeg = row.getDouble(SimbadUrlType.DEC_DEG.ordinal());
+		if (row.isEmpty(SimbadUrlType.USER_TARGET_NAME.ordinal()) || Double.isNaN(raDeg) || Double.isNaN(decDeg)) {
+			return false;
+		}
+		result.setSimbadId(row.getString(SimbadUrlType.USER_TARGET_NAME.ordinal()));
+
+		// object J2000 RA converted deg -> hrs, Dec in deg
+		result.setSimbadRaHr(raDeg / 15.0);
+		result.setSimbadDecDeg(decDeg);
+
+		// empty cell => no magnitude data for this filter
+		result.setMagB(row.getDoubleOrNull(SimbadUrlType.MAG_B.ordinal()));
+		result.setMagV(row.getDoubleOrNull(SimbadUrlType.MAG_V.ordinal()));
+		result.setMagR(row.getDoubleOrNull(SimbadUrlType.MAG_R.ordinal()));
+		result.setMagI(row.getDoubleOrNull(SimbadUrlType.MAG_I.ordinal()));
+		return true;
+	}
+
+	/*
+	 * Runs a sequence of SIMBAD queries to download coordinate and magnitude data
+	 * for the user specified target name
+	 * <p>
+	 * Each parameter is an individual query, successive queries are throttled
+	 * by the SIMBAD host rate limiter.
+	 * </p>
+	 */
+	private SimbadResult runItemQuery(CatalogQuery query) throws SimbadNotFoundException {
+
 		// run Simbad query
 		SimbadResult result = new SimbadResult(query.getObjectId());
-		
+
 		// search database for user input object name
 		// throws SimbadNotFoundException if no match found
 		String data = downloadSimbadItem(query, SimbadUrlType.USER_TARGET_NAME);
 		result.setSimbadId(data);
-		
+
 		// no checks on coordinate data, assumed good
 		// object J2000 RA converted deg -> hrs
 		data = downloadSimbadItem(query, SimbadUrlType.RA_HR);
 		result.setSimbadRaHr(Double.parseDouble(data) / 15.0);
-		
+
 		// object J2000 Dec in deg
 		data = downloadSimbadItem(query, SimbadUrlType.DEC_DEG);
 		result.setSimbadDecDeg(Double.parseDouble(data));
-		
+
 		// object magnitude for filters B, V, Rc and Ic.
 		// return null if no magnitude data for this filter
 		data = downloadSimbadItem(query, SimbadUrlType.MAG_B);
 		Double num = (data.equals(NO_DATA)) ? null : Double.parseDouble(data);
 		result.setMagB(num);
-		
+
 		data = downloadSimbadItem(query, SimbadUrlType.MAG_V);
 		num = (data.equals(NO_DATA)) ? null : Double.parseDouble(data);
 		result.setMagV(num);
-		
+
 		data = downloadSimbadItem(query, SimbadUrlType.MAG_R);
 		num = (data.equals(NO_DATA)) ? null : Double.parseDouble(data);
 		result.setMagR(num);
-		
+
 		data = downloadSimbadItem(query, SimbadUrlType.MAG_I);
 		num = (data.equals(NO_DATA)) ? null : Double.parseDouble(data);
 		result.setMagI(num);
-		
+
 		return result;
 	}
 
 	/*
-	 * Queries the SIMBAD database for single SimbadDataType data item. Applies 250
-	 * ms delay after query returns to buffer successive queries
-	 * 
-	 * Refer reference above for details Xpath xml parser
-	 * 
-	 * @param dataType query data type, SimbadId, coordinates or filter magnitudes	 
-	 * 
-	 * @return text data value 
-	 * 
+	 * Queries the SIMBAD database for single SimbadDataType data item. Waits for
+	 * the SIMBAD host rate limiter before running the query
+	 *
+	 * @param dataType query data type, SimbadId, coordinates or filter magnitudes
+	 *
+	 * @return text data value
+	 *
 	 * @throws SimbadNotFoundException thrown if specified object name is not found
-	 * in SIMBAD database
+	 * in SIMBAD database, or flagged as a query error if the query fails to run
 	 */
-	private String downloadSimbadItem(CatalogQuery query, SimbadUrlType paramType) 
+	private String downloadSimbadItem(CatalogQuery query, SimbadUrlType paramType)
 			throws SimbadNotFoundException {
-		NodeList nodes = null;
-		String result = null;
-		
+		String[] cells = null;
+
 		// compile SIMBAD url for current SinbadDataType
 		String url = CatalogUrls.getUrl(query, paramType);
-		
-		// Create Xpath and run xml query for dataType-specified item
-		try {
-			Document doc = builder.parse(url);
-			XPath xpath = XPathFactory.newInstance().newXPath();
-			XPathExpression expr = xpath.compile("//TD/text()");
-			nodes = (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
-			
-			// buffer successive queries
-			Thread.sleep(250);
-		} catch (SAXException | IOException | XPathExpressionException | InterruptedException e1) {
-			String message = "Error running SIMBAD query\n";
-			message += e1.getMessage();
-			JOptionPane.showMessageDialog(null, message, "Simbad", JOptionPane.INFORMATION_MESSAGE);
+
+		// run xml query for dataType-specified item, copy first row cells
+		VoTableReader reader = new VoTableReader();
+		try (InputStream in = HttpTransport.getDefault().openStream(url)) {
+			String[] rowCells = new String[2];
+			reader.read(in, row -> {
+				if (row.getRowCount() == 1) {
+					for (int i = 0; i < Math.min(rowCells.length, row.getFieldCount()); i++) {
+						rowCells[i] = row.isEmpty(i) ? NO_DATA : row.getString(i);
+					}
+				}
+			});
+			cells = (reader.getRowCount() == 0) ? null : rowCells;
+		} catch (IOException | XMLStreamException e1) {
+			// query error, message shown by caller
+			String message = String.format("Error running SIMBAD query: %s\n%s", query.getObjectId(),
+					e1.getMessage());
+			throw new SimbadNotFoundException(message, true);
 		}
-		
-		// node item 0 is SimbadId name. 
+
+		// cell 0 is SimbadId name.
 		// Query objectId: throw SimbadNotFoundException if input does not match SIMBAD records
-		if (paramType == SimbadUrlType.USER_TARGET_NAME) {
-			try {
-				result = nodes.item(0).getNodeValue();
-			} catch (NullPointerException npe) {
-				String message = 
-						String.format("Identifier not found in the SIMBAD database: %s ", query.getObjectId());
-				throw new SimbadNotFoundException(message);
-			}
-			// other data is node item 1. Null check manages missing magnitude data  
-		} else {
-			result = (nodes.getLength() == 1) ? NO_DATA : nodes.item(1).getNodeValue();
+		if (cells == null) {
+			String message =
+					String.format("Identifier not found in the SIMBAD database: %s ", query.getObjectId());
+			throw new SimbadNotFoundException(message);
 		}
-		return result;
-	}	
-}
-
 
+		// other data is cell 1, NO_DATA marks missing magnitude data
+		String result = (paramType == SimbadUrlType.USER_TARGET_NAME) ? cells[0] : cells[1];
+		return (result == null) ? NO_DATA : result;
+	}
+}
@@ -0,0 +1,220 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.HttpTransport;
+import rfl.astroimagej.dev.utils.VoTableReader;
+
+/**
+ * Resolves a list of object ids with SIMBAD TAP (Table Access Protocol) queries, as an
+ * alternative to the per-object sim-id queries in SimbadCatalog.
+ * <p>
+ * One ADQL query joins the ident, basic and allfluxes tables for the whole list of identifiers,
+ * replacing N separate sim-id requests with one round trip. Long lists are split into
+ * blocks of up to MAX_IDS identifiers per query. The VOTable response is decoded in a single
+ * streaming pass.
+ * </p>
+ * <p>
+ * Note: ident.id is matched exactly, so identifiers must be in SIMBAD format, e.g. "WASP-12",
+ * "HD 172167". Each identifier is also matched as a SIMBAD common name, e.g. "Vega" matches
+ * "NAME Vega". Unmatched identifiers are reported as not found and can be resolved with
+ * SimbadCatalog, which accepts looser name formats.
+ * </p>
+ * <p>
+ * SIMBAD TAP reference: http://simbad.u-strasbg.fr/simbad/sim-tap
+ * </p>
+ */
+public class SimbadTapCatalog {
+
+	// maximum identifiers per ADQL query
+	public static final int MAX_IDS = 500;
+
+	// SIMBAD ident.id prefix for common names
+	private static final String NAME_PREFIX = "NAME ";
+
+	// TAP response column names, in SimbadResult order
+	private static final String[] COLUMNS = { "id", "main_id", "ra", "dec", "B", "V", "R", "I" };
+
+	// required columns: id, main_id, ra, dec
+	private static final int N_REQUIRED = 4;
+
+	private final String tapUrl;
+
+	// number of TAP requests in last batch
+	private int nRequests = 0;
+
+	public SimbadTapCatalog() {
+		this(CatalogUrls.getSimbadTapUrl());
+	}
+
+	/**
+	 * @param tapUrl TAP sync endpoint, e.g. a local stand-in server for tests
+	 */
+	public SimbadTapCatalog(String tapUrl) {
+		this.tapUrl = tapUrl;
+	}
+
+	/**
+	 * Resolves all object ids with one TAP query per block of MAX_IDS identifiers
+	 *
+	 * @param objectIds SIMBAD identifiers
+	 *
+	 * @param listener called with the result or not found message for each object id
+	 *
+	 * @return message summarising outcomes and number of TAP requests
+	 */
+	public String resolveAll(List<String> objectIds, SimbadBatchResolver.BatchListener listener) {
+		nRequests = 0;
+		int nResolved = 0;
+		for (int i = 0; i < objectIds.size(); i += MAX_IDS) {
+			List<String> block = objectIds.subList(i, Math.min(i + MAX_IDS, objectIds.size()));
+
+			// decode block results keyed by normalised id, then report each id in input order
+			Map<String, SimbadResult> results = new HashMap<>();
+			String error = null;
+			try {
+				results = runTapQuery(block);
+			} catch (IOException | XMLStreamException e) {
+				error = "Error running SIMBAD TAP query\n" + e.getMessage();
+			}
+
+			for (String objectId : block) {
+				SimbadResult result = results.get(SimbadCache.normalise(objectId));
+				if (error != null) {
+					listener.queryError(objectId, error);
+				} else if (result != null) {
+					nResolved++;
+					listener.resolved(objectId, copyResult(objectId, result));
+				} else {
+					String message = String.format("Identifier not found in the SIMBAD database: %s ", objectId);
+					listener.notFound(objectId, message);
+				}
+			}
+		}
+		return String.format("Resolved %d of %d targets in %d SIMBAD TAP request(s)",
+				nResolved, objectIds.size(), nRequests);
+	}
+
+	/*
+	 * Posts one ADQL query and decodes the VOTable response
+	 *
+	 * @return map of normalised identifier to SIMBAD data, unmatched identifiers absent
+	 *
+	 * @throws IOException if the request fails or the response reports a query error
+	 */
+	private Map<String, SimbadResult> runTapQuery(List<String> objectIds) throws IOException, XMLStreamException {
+		String body = "REQUEST=doQuery&LANG=ADQL&FORMAT=votable&QUERY=" + CatalogUrls.encode(compileAdql(objectIds));
+
+		nRequests++;
+		Map<String, SimbadResult> results = new HashMap<>();
+		try (HttpTransport.Response response = HttpTransport.checkStatus(HttpTransport.getDefault().post(tapUrl,
+				"application/x-www-form-urlencoded", body.getBytes(StandardCharsets.UTF_8)))) {
+			decodeVoTable(response.getBody(), results);
+		}
+		return results;
+	}
+
+	/**
+	 * Compiles ADQL query for a list of identifiers, joining identifier, basic data and
+	 * flux tables. Each identifier is matched as given and as a "NAME" common name.
+	 *
+	 * @param objectIds SIMBAD identifiers
+	 *
+	 * @return ADQL query text
+	 */
+	protected static String compileAdql(List<String> objectIds) {
+		List<String> terms = new ArrayList<>();
+		for (String objectId : objectIds) {
+			// ADQL string literal, quotes escaped by doubling
+			String id = objectId.trim().replace("'", "''");
+			terms.add("'" + id + "'");
+			if (!id.startsWith(NAME_PREFIX)) {
+				terms.add("'" + NAME_PREFIX + id + "'");
+			}
+		}
+		return "SELECT i.id, b.main_id, b.ra, b.dec, f.B, f.V, f.R, f.I "
+				+ "FROM ident AS i JOIN basic AS b ON b.oid = i.oidref "
+				+ "LEFT JOIN allfluxes AS f ON f.oidref = b.oid "
+				+ "WHERE i.id IN (" + String.join(", ", terms) + ")";
+	}
+
+	/*
+	 * Single pass decode of TAP VOTable, columns located by FIELD name. Results are keyed by
+	 * normalised ident.id, less any "NAME" prefix
+	 *
+	 * @throws IOException if the response reports a query error or a required column is missing
+	 */
+	protected void decodeVoTable(InputStream in, Map<String, SimbadResult> results)
+			throws IOException, XMLStreamException {
+		VoTableReader reader = new VoTableReader();
+		int[] cols = new int[COLUMNS.length];
+		String[] missing = { null };
+		reader.read(in, row -> {
+			// column indices from FIELD list, on first row
+			if (row.getRowCount() == 1) {
+				for (int i = 0; i < COLUMNS.length; i++) {
+					cols[i] = row.getFieldIndex(COLUMNS[i]);
+					if (i < N_REQUIRED && cols[i] < 0 && missing[0] == null) {
+						missing[0] = COLUMNS[i];
+					}
+				}
+			}
+			if (missing[0] != null) {
+				return;
+			}
+			String id = row.getString(cols[0]);
+			if (id.startsWith(NAME_PREFIX)) {
+				id = id.substring(NAME_PREFIX.length());
+			}
+			SimbadResult result = new SimbadResult(id);
+			result.setSimbadId(row.getString(cols[1]));
+			result.setSimbadRaHr(row.getDouble(cols[2]) / 15.0);
+			result.setSimbadDecDeg(row.getDouble(cols[3]));
+			result.setMagB(getMag(row, cols[4]));
+			result.setMagV(getMag(row, cols[5]));
+			result.setMagR(getMag(row, cols[6]));
+			result.setMagI(getMag(row, cols[7]));
+			results.put(SimbadCache.normalise(id), result);
+		});
+
+		if ("ERROR".equalsIgnoreCase(reader.getQueryStatus())) {
+			results.clear();
+			throw new IOException("SIMBAD TAP query status: ERROR");
+		}
+		if (missing[0] != null) {
+			results.clear();
+			throw new IOException("SIMBAD TAP response has no column: " + missing[0]);
+		}
+	}
+
+	// result reported under the requested object id
+	private static SimbadResult copyResult(String objectId, SimbadResult source) {
+		SimbadResult result = new SimbadResult(objectId);
+		result.setSimbadId(source.getSimbadId());
+		result.setSimbadRaHr(source.getSimbadRaHr());
+		result.setSimbadDecDeg(source.getSimbadDecDeg());
+		result.setMagB(source.getMagB());
+		result.setMagV(source.getMagV());
+		result.setMagR(source.getMagR());
+		result.setMagI(source.getMagI());
+		return result;
+	}
+
+	// null if flux column missing or no data
+	private static Double getMag(VoTableReader row, int col) {
+		return (col < 0) ? null : row.getDoubleOrNull(col);
+	}
+
+	public int getRequestCount() {
+		return nRequests;
+	}
+}
@@ -0,0 +1,155 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.HttpTransport;
+
+/**
+ * Queries the AAVSO Photometric All-Sky Survey (APASS DR9) for field stars, through the VizieR
+ * copy of the catalog (II/336/apass9).
+ * <p>
+ * The search region is centred on RA and DEC coordinates and covers a square fov. Records are
+ * requested in pages of pageSize rows, ordered by VizieR record number, and each tab-separated
+ * page is parsed line by line into a ColumnarResult. Only stars with photometry data in the
+ * selected band (B, V, SR or SG) at or brighter than magLimit are kept, so memory use is bounded
+ * by the result, not by the size of the response.
+ * </p>
+ * <p>
+ * APASS has no object identifiers, field objects are named APASS-[recno].
+ * </p>
+ */
+public class ApassCatalog implements AstroCatalog {
+
+	// guard against a server that ignores the record constraint
+	private static final int MAX_PAGES = 1000;
+
+	private final String baseUrl;
+	private final int pageSize;
+
+	// number of pages requested in last query
+	private int nPages = 0;
+
+	public ApassCatalog() {
+		this(CatalogUrls.APASS_URL, CatalogUrls.APASS_PAGE_SIZE);
+	}
+
+	/**
+	 * @param baseUrl VizieR asu-tsv endpoint, e.g. a local stand-in server for tests
+	 * @param pageSize maximum records per request
+	 */
+	public ApassCatalog(String baseUrl, int pageSize) {
+		this.baseUrl = baseUrl;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Runs the APASS query and returns field objects for the query mag band
+	 *
+	 * @param query CatalogQuery object encapsulating APASS query parameters
+	 *
+	 * @return result QueryResult comprising an array of FieldObjects matching query parameters
+	 */
+	@Override
+	public QueryResult runQuery(CatalogQuery query) {
+		return runColumnarQuery(query).toQueryResult();
+	}
+
+	/**
+	 * Runs the APASS query, requesting pages until a page returns fewer than pageSize records
+	 *
+	 * @param query CatalogQuery object encapsulating APASS query parameters
+	 *
+	 * @return columnar result, with records parsed before any query error
+	 */
+	@Override
+	public ColumnarResult runColumnarQuery(CatalogQuery query) {
+		ColumnarResult result = new ColumnarResult(query.getObjectId());
+		long lastRecno = 0;
+		nPages = 0;
+		try {
+			while (nPages < MAX_PAGES) {
+				String url = CatalogUrls.getApassUrl(baseUrl, query, lastRecno, pageSize);
+				nPages++;
+				PageInfo page;
+				try (InputStream in = HttpTransport.getDefault().openStream(url)) {
+					page = parsePage(in, query.getMagLimit(), result);
+				}
+				if (page.nRows < pageSize || page.lastRecno <= lastRecno) {
+					break;
+				}
+				lastRecno = page.lastRecno;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return result;
+	}
+
+	/*
+	 * Rows read from one page and highest record number
+	 */
+	protected static class PageInfo {
+		protected int nRows = 0;
+		protected long lastRecno = 0;
+	}
+
+	/**
+	 * Parses one VizieR asu-tsv page, appending rows with mag data at or brighter than magLimit
+	 * <p>
+	 * Page format: '#' comment lines, a column name line, a units line, a dashes line, then one
+	 * tab-separated row per record. Columns: recno, RAJ2000, DEJ2000 (deg), mag, mag error.
+	 * </p>
+	 *
+	 * @param in page response stream
+	 *
+	 * @param magLimit faintest magnitude to keep
+	 *
+	 * @param result columns to append rows to
+	 *
+	 * @return number of data rows and highest record number in page
+	 *
+	 * @throws IOException if the page could not be read or a row is malformed
+	 */
+	protected static PageInfo parsePage(InputStream in, double magLimit, ColumnarResult result) throws IOException {
+		PageInfo page = new PageInfo();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		boolean inData = false;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			// column name and unit lines precede dashes line
+			if (!inData) {
+				inData = line.startsWith("-");
+				continue;
+			}
+			String[] el = line.split("\t", -1);
+			try {
+				long recno = Long.parseLong(el[0].trim());
+				page.nRows++;
+				page.lastRecno = Math.max(page.lastRecno, recno);
+
+				String mag = el[3].trim();
+				if (mag.isEmpty() || Double.parseDouble(mag) > magLimit) {
+					continue;
+				}
+				String magErr = el[4].trim();
+				result.add("APASS-" + recno, Double.parseDouble(el[1].trim()) / 15.0, Double.parseDouble(el[2].trim()),
+						Double.parseDouble(mag), magErr.isEmpty() ? Double.NaN : Double.parseDouble(magErr));
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Malformed APASS record: " + line, e);
+			}
+		}
+		return page;
+	}
+
+	public int getPageCount() {
+		return nPages;
+	}
+}
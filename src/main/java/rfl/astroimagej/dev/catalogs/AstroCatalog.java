@@ -1,5 +1,8 @@
 package rfl.astroimagej.dev.catalogs;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Interface implemented by Variable Star Plotter and other catalogs 
  */
@@ -11,4 +14,54 @@ public interface AstroCatalog {
 	 * @return QueryResult object encapsulating results of catalog query
 	 */
 	public QueryResult runQuery(CatalogQuery query);
+	
+	/**
+	 * Runs a query returning primitive columns for the query mag band, e.g. to write a radec file.
+	 * <p>
+	 * Default implementation converts the runQuery result; catalogs that decode directly into
+	 * columns override this method.
+	 * </p>
+	 * 
+	 * @param query catalog query request parameters
+	 * 
+	 * @return ColumnarResult object encapsulating results of catalog query
+	 */
+	public default ColumnarResult runColumnarQuery(CatalogQuery query) {
+		return ColumnarResult.fromQueryResult(runQuery(query));
+	}
+	
+	/**
+	 * Runs a query returning photometry data in all catalog mag bands, refer FieldObject.getBandMag.
+	 * <p>
+	 * Default implementation runs one single band query per catalog mag band and merges results by
+	 * object id; catalogs that return all bands in one response override this method.
+	 * </p>
+	 * 
+	 * @param query catalog query request parameters, mag band is not used
+	 * 
+	 * @return QueryResult object with per-band photometry data in each FieldObject
+	 */
+	public default QueryResult runMultiBandQuery(CatalogQuery query) {
+		Map<String, FieldObject> merged = new LinkedHashMap<>();
+		for (String magBand : query.getCatalogType().getMagBands()) {
+			CatalogQuery bandQuery = new CatalogQuery(query);
+			bandQuery.setMagBand(magBand);
+			for (FieldObject fo : runQuery(bandQuery).getFieldObjects()) {
+				FieldObject mo = merged.get(fo.getObjectId());
+				if (mo == null) {
+					mo = new FieldObject();
+					mo.setObjectId(fo.getObjectId());
+					mo.setRaHr(fo.getRaHr());
+					mo.setDecDeg(fo.getDecDeg());
+					mo.setMag(null);
+					mo.setMagErr(null);
+					merged.put(fo.getObjectId(), mo);
+				}
+				mo.setBandMag(magBand, fo.getMag(), fo.getMagErr());
+			}
+		}
+		QueryResult result = new QueryResult(query.getObjectId());
+		merged.values().forEach(result::setFieldObject);
+		return result;
+	}
 }
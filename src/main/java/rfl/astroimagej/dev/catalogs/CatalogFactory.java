@@ -7,10 +7,17 @@ import rfl.astroimagej.dev.enums.CatalogType;
 /**
  * Creates an instance of catalog type selected in the catalog ui dialog.
  * <p>
- * currently only VSP catalog is the only implementation
+ * currently VSP and APASS catalogs are implemented, and MERGED which queries VSP, APASS and
+ * SIMBAD concurrently
  * <p/> 
  */
 public class CatalogFactory {
+	
+	// VSP results shared by all VSP catalog instances
+	private static final VspCache vspCache = new VspCache();
+	
+	// MERGED catalog wait for each catalog, below the HttpTransport read timeout
+	public static final long FAN_OUT_DEADLINE_MS = 30000;
 
 	/**
 	 * Manages selection of on-line astronomical database
@@ -21,11 +28,35 @@ public class CatalogFactory {
 	public static AstroCatalog createCatalog(CatalogType catalogType) {
 		AstroCatalog catalog = null;
 		if (catalogType == CatalogType.VSP) {
-			catalog = new VspCatalog();
+			catalog = new VspCatalog(vspCache);
+		} else if (catalogType == CatalogType.APASS) {
+			catalog = new ApassCatalog();
+		} else if (catalogType == CatalogType.MERGED) {
+			catalog = createFanOut(FAN_OUT_DEADLINE_MS);
 		} else {
 			String message = String.format("Program error %s catalog", catalogType.toString());
 			JOptionPane.showMessageDialog(null, message, "Catalog Query Error", JOptionPane.INFORMATION_MESSAGE);
 		}
 		return catalog;
 	}
+	
+	/**
+	 * Creates a catalog that queries VSP, APASS and SIMBAD concurrently and merges results
+	 * returned by each catalog deadline, in that priority order.
+	 * 
+	 * @param deadlineMs maximum wait for each catalog (ms)
+	 * @return fan-out catalog
+	 */
+	public static CatalogFanOut createFanOut(long deadlineMs) {
+		CatalogFanOut fanOut = new CatalogFanOut();
+		fanOut.addCatalog(CatalogType.VSP.toString(), new VspCatalog(vspCache), CatalogType.VSP.getMagBands(), deadlineMs);
+		fanOut.addCatalog(CatalogType.APASS.toString(), new ApassCatalog(), CatalogType.APASS.getMagBands(), deadlineMs);
+		fanOut.addCatalog(CatalogType.SIMBAD.toString(), new SimbadConeCatalog(), CatalogType.SIMBAD.getMagBands(), deadlineMs);
+		return fanOut;
+	}
+	
+	// shared VSP result cache, e.g. to report cache metrics
+	public static VspCache getVspCache() {
+		return vspCache;
+	}
 }
@@ -0,0 +1,162 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import rfl.astroimagej.dev.utils.HttpTransport;
+
+/**
+ * Runs one catalog query on several catalogs concurrently and merges the results.
+ * <p>
+ * Each catalog has a deadline measured from the start of the query; a catalog that has not
+ * returned by its deadline is cancelled and left out of the result. Its HTTP requests run in an
+ * HttpTransport.RequestGroup that is aborted at the deadline, so a blocked read fails at once and
+ * releases the pool thread and connection. Catalogs are merged in the
+ * order they were added by CrossMatcher: an object within MATCH_RADIUS_ARCSEC of an object from
+ * an earlier catalog is treated as the same star, and only its catalog name is appended to the
+ * source of the earlier object, e.g. "VSP+APASS".
+ * </p>
+ * <p>
+ * Catalogs that do not list the query mag band are skipped. Band Rc matches R and Ic matches I.
+ * </p>
+ */
+public class CatalogFanOut implements AstroCatalog {
+
+	public static final double MATCH_RADIUS_ARCSEC = 2.0;
+
+	// daemon threads, a late catalog query does not block plugin exit
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "catalog-fan-out");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/*
+	 * Catalog, its mag bands and deadline
+	 */
+	private static class Source {
+		private final String name;
+		private final AstroCatalog catalog;
+		private final List<String> magBands;
+		private final long deadlineMs;
+
+		private Source(String name, AstroCatalog catalog, List<String> magBands, long deadlineMs) {
+			this.name = name;
+			this.catalog = catalog;
+			this.magBands = magBands;
+			this.deadlineMs = deadlineMs;
+		}
+	}
+
+	private final List<Source> sources = new ArrayList<>();
+
+	private final CrossMatcher matcher = new CrossMatcher(MATCH_RADIUS_ARCSEC);
+
+	// last query outcome per catalog
+	private final List<String> report = new ArrayList<>();
+
+	/**
+	 * Adds a catalog, in merge priority order
+	 *
+	 * @param name catalog name, recorded as field object source
+	 * @param catalog catalog implementation
+	 * @param magBands catalog mag bands, refer CatalogType.getMagBands
+	 * @param deadlineMs maximum wait for this catalog from start of query (ms)
+	 */
+	public void addCatalog(String name, AstroCatalog catalog, List<String> magBands, long deadlineMs) {
+		sources.add(new Source(name, catalog, magBands, deadlineMs));
+	}
+
+	/**
+	 * Queries all catalogs that support the query mag band concurrently
+	 *
+	 * @param query catalog query request parameters
+	 *
+	 * @return merged result of catalogs that returned by their deadline
+	 */
+	@Override
+	public QueryResult runQuery(CatalogQuery query) {
+		report.clear();
+		long t0 = System.nanoTime();
+
+		List<Source> selected = new ArrayList<>();
+		List<Future<QueryResult>> futures = new ArrayList<>();
+		List<HttpTransport.RequestGroup> groups = new ArrayList<>();
+		for (Source source : sources) {
+			if (supportsBand(source.magBands, query.getMagBand())) {
+				HttpTransport.RequestGroup group = new HttpTransport.RequestGroup();
+				selected.add(source);
+				groups.add(group);
+				futures.add(EXECUTOR.submit(() -> runQuery(source.catalog, new CatalogQuery(query), group)));
+			} else {
+				report.add(String.format("%s: no %s band", source.name, query.getMagBand()));
+			}
+		}
+
+		CrossMatcher.Merger merger = matcher.newMerger(query.getObjectId());
+		for (int i = 0; i < selected.size(); i++) {
+			Source source = selected.get(i);
+			Future<QueryResult> future = futures.get(i);
+			long remainingMs = source.deadlineMs - (System.nanoTime() - t0) / 1000000;
+			try {
+				QueryResult result = future.get(Math.max(0, remainingMs), TimeUnit.MILLISECONDS);
+				int nAdded = merger.add(result, source.name);
+				report.add(String.format("%s: %d stars (%d new) in %d ms", source.name,
+						result.getFieldObjects().size(), nAdded, (System.nanoTime() - t0) / 1000000));
+			} catch (TimeoutException te) {
+				future.cancel(true);
+				groups.get(i).abort();
+				report.add(String.format("%s: no response in %d ms", source.name, source.deadlineMs));
+			} catch (ExecutionException ee) {
+				report.add(String.format("%s: query failed %s", source.name, ee.getCause()));
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				futures.forEach(f -> f.cancel(true));
+				groups.forEach(HttpTransport.RequestGroup::abort);
+				report.add(String.format("%s: interrupted", source.name));
+				break;
+			}
+		}
+		return merger.getResult();
+	}
+
+	// runs catalog query on pool thread, with its HTTP requests in group
+	private static QueryResult runQuery(AstroCatalog catalog, CatalogQuery query, HttpTransport.RequestGroup group) {
+		HttpTransport.setRequestGroup(group);
+		try {
+			return catalog.runQuery(query);
+		} finally {
+			HttpTransport.setRequestGroup(null);
+		}
+	}
+
+	/**
+	 * Tests whether a catalog lists a mag band, Rc and Ic also match R and I
+	 *
+	 * @param magBands catalog mag bands
+	 * @param magBand query mag band
+	 * @return true if catalog provides magBand data
+	 */
+	public static boolean supportsBand(List<String> magBands, String magBand) {
+		String base = magBand.replaceAll("(?i)^([RI])c$", "$1");
+		for (String band : magBands) {
+			if (band.equalsIgnoreCase(magBand) || band.equalsIgnoreCase(base)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return last query outcome for each catalog, one line per catalog
+	 */
+	public String getReport() {
+		return String.join("\n", report);
+	}
+}
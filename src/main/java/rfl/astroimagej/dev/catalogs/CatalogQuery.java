@@ -29,6 +29,21 @@ public class CatalogQuery {
 		this.magBand = "V";
 	}
 	
+	/**
+	 * Copies query parameters, e.g. to vary mag band for a multi-band query
+	 * 
+	 * @param query parameters to copy
+	 */
+	public CatalogQuery(CatalogQuery query) {
+		this.objectId = query.objectId;
+		this.raHr = query.raHr;
+		this.decDeg = query.decDeg;
+		this.fovAmin = query.fovAmin;
+		this.magLimit = query.magLimit;
+		this.catalogType = query.catalogType;
+		this.magBand = query.magBand;
+	}
+	
 	// autogenerated getters, setters and toString methods
 
 	public String getObjectId() {
@@ -0,0 +1,211 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.util.Arrays;
+
+/**
+ * Single band query result stored as primitive columns, one array element per field object.
+ * <p>
+ * Compared with QueryResult, which holds a FieldObject with four boxed Double values per star,
+ * coordinate and magnitude data are held in double arrays alongside a String array of object ids.
+ * Missing magnitude data is stored as NaN.
+ * </p>
+ * <p>
+ * Catalogs return columns directly through AstroCatalog.runColumnarQuery. Converts to and
+ * from QueryResult for code written against the FieldObject api.
+ * </p>
+ */
+public class ColumnarResult {
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private final String objectId;
+	private int size = 0;
+
+	// data columns, capacity >= size
+	private String[] ids;
+	private double[] raHr;
+	private double[] decDeg;
+	private double[] mag;
+	private double[] magErr;
+
+	public ColumnarResult(String objectId) {
+		this(objectId, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param objectId target object id
+	 * @param capacity initial column capacity, columns grow as needed
+	 */
+	public ColumnarResult(String objectId, int capacity) {
+		this.objectId = objectId;
+		int n = Math.max(1, capacity);
+		ids = new String[n];
+		raHr = new double[n];
+		decDeg = new double[n];
+		mag = new double[n];
+		magErr = new double[n];
+	}
+
+	/**
+	 * Appends one field object
+	 *
+	 * @param id object id
+	 * @param raHr ra (hr)
+	 * @param decDeg dec (deg)
+	 * @param mag catalog magnitude, NaN if no data
+	 * @param magErr magnitude uncertainty, NaN if no data
+	 */
+	public void add(String id, double raHr, double decDeg, double mag, double magErr) {
+		if (size == ids.length) {
+			grow(Math.max(DEFAULT_CAPACITY, size * 2));
+		}
+		this.ids[size] = id;
+		this.raHr[size] = raHr;
+		this.decDeg[size] = decDeg;
+		this.mag[size] = mag;
+		this.magErr[size] = magErr;
+		size++;
+	}
+
+	/*
+	 * Sets coordinates of an added field object, for parsers that add photometry first and
+	 * convert coordinates in one bulk call
+	 */
+	void setCoordinates(int i, double raHr, double decDeg) {
+		if (i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		}
+		this.raHr[i] = raHr;
+		this.decDeg[i] = decDeg;
+	}
+
+	/**
+	 * Releases unused column capacity
+	 */
+	public void trimToSize() {
+		if (size < ids.length) {
+			grow(size);
+		}
+	}
+
+	private void grow(int capacity) {
+		ids = Arrays.copyOf(ids, capacity);
+		raHr = Arrays.copyOf(raHr, capacity);
+		decDeg = Arrays.copyOf(decDeg, capacity);
+		mag = Arrays.copyOf(mag, capacity);
+		magErr = Arrays.copyOf(magErr, capacity);
+	}
+
+	/**
+	 * Converts a FieldObject list result, null values are stored as NaN
+	 *
+	 * @param result QueryResult with single band mag data
+	 *
+	 * @return columnar copy of result
+	 */
+	public static ColumnarResult fromQueryResult(QueryResult result) {
+		ColumnarResult columns = new ColumnarResult(result.getObjectId(), result.getFieldObjects().size());
+		for (FieldObject fo : result.getFieldObjects()) {
+			columns.add(fo.getObjectId(), toDouble(fo.getRaHr()), toDouble(fo.getDecDeg()),
+					toDouble(fo.getMag()), toDouble(fo.getMagErr()));
+		}
+		return columns;
+	}
+
+	/**
+	 * Selects single band columns from a multi-band query result, without creating single band
+	 * FieldObjects, refer QueryResult.forBand
+	 *
+	 * @param result multi-band query result, refer AstroCatalog.runMultiBandQuery
+	 *
+	 * @param magBand selected mag band
+	 *
+	 * @return columns for field objects that have magBand photometry data
+	 */
+	public static ColumnarResult fromMultiBand(QueryResult result, String magBand) {
+		ColumnarResult columns = new ColumnarResult(result.getObjectId(), result.getFieldObjects().size());
+		for (FieldObject fo : result.getFieldObjects()) {
+			if (fo.hasBand(magBand)) {
+				columns.add(fo.getObjectId(), toDouble(fo.getRaHr()), toDouble(fo.getDecDeg()),
+						toDouble(fo.getBandMag(magBand)), toDouble(fo.getBandMagErr(magBand)));
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Converts to a FieldObject list result, NaN values are set to null
+	 *
+	 * @return QueryResult copy of columns
+	 */
+	public QueryResult toQueryResult() {
+		QueryResult result = new QueryResult(objectId);
+		for (int i = 0; i < size; i++) {
+			FieldObject fo = new FieldObject();
+			fo.setObjectId(ids[i]);
+			fo.setRaHr(toBoxed(raHr[i]));
+			fo.setDecDeg(toBoxed(decDeg[i]));
+			fo.setMag(toBoxed(mag[i]));
+			fo.setMagErr(toBoxed(magErr[i]));
+			result.setFieldObject(fo);
+		}
+		return result;
+	}
+
+	private static double toDouble(Double value) {
+		return (value == null) ? Double.NaN : value;
+	}
+
+	private static Double toBoxed(double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+
+	// column getters, index 0 .. size-1
+
+	public String getObjectId() {
+		return objectId;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String getId(int i) {
+		return ids[i];
+	}
+
+	public double getRaHr(int i) {
+		return raHr[i];
+	}
+
+	public double getDecDeg(int i) {
+		return decDeg[i];
+	}
+
+	public double getMag(int i) {
+		return mag[i];
+	}
+
+	public double getMagErr(int i) {
+		return magErr[i];
+	}
+
+	/**
+	 * @return copy of ra column (hr), length size()
+	 */
+	public double[] getRaHrColumn() {
+		return Arrays.copyOf(raHr, size);
+	}
+
+	/**
+	 * @return copy of dec column (deg), length size()
+	 */
+	public double[] getDecDegColumn() {
+		return Arrays.copyOf(decDeg, size);
+	}
+
+	@Override
+	public String toString() {
+		return "ColumnarResult [objectId=" + objectId + ", size=" + size + "]";
+	}
+}
@@ -0,0 +1,342 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rfl.astroimagej.dev.utils.IndexSort;
+
+/**
+ * Pairs objects from two or more catalogs that lie within a match radius, i.e. the same star
+ * reported with slightly different coordinates and ids.
+ * <p>
+ * Both object sets are sorted by dec and swept together: for each object in the second set only
+ * objects of the first set in the dec band +/- radius are tested, by unit vector dot product.
+ * Candidate pairs are then accepted in order of increasing separation, so an object is paired
+ * with its nearest unpaired neighbour and never with more than one object. Cost is two sorts,
+ * O(n log n), plus the sweep and the sort of candidate pairs.
+ * </p>
+ */
+public class CrossMatcher {
+
+	public static final double DEFAULT_RADIUS_ARCSEC = 2.0;
+
+	private static final double ARCSEC_PER_RAD = Math.toDegrees(1.0) * 3600.0;
+
+	private final double radiusArcsec;
+
+	// candidate pairs in last match
+	private int nCandidates = 0;
+
+	public CrossMatcher() {
+		this(DEFAULT_RADIUS_ARCSEC);
+	}
+
+	/**
+	 * @param radiusArcsec maximum separation of a matched pair (arcsec)
+	 */
+	public CrossMatcher(double radiusArcsec) {
+		this.radiusArcsec = radiusArcsec;
+	}
+
+	/**
+	 * Matches two coordinate sets
+	 *
+	 * @param raA first set ra (hr)
+	 * @param decA first set dec (deg)
+	 * @param nA number of objects in first set
+	 * @param raB second set ra (hr)
+	 * @param decB second set dec (deg)
+	 * @param nB number of objects in second set
+	 *
+	 * @return for each object in second set, index of matched object in first set or -1
+	 */
+	public int[] match(double[] raA, double[] decA, int nA, double[] raB, double[] decB, int nB) {
+		int[] sortA = IndexSort.sortedIndex(decA, nA);
+		int[] sortB = IndexSort.sortedIndex(decB, nB);
+		int[] sorted = matchSorted(sortedColumn(decA, sortA), unitVectors(raA, decA, sortA), nA,
+				sortedColumn(decB, sortB), unitVectors(raB, decB, sortB), nB);
+
+		int[] matched = new int[nB];
+		for (int j = 0; j < nB; j++) {
+			matched[sortB[j]] = (sorted[j] < 0) ? -1 : sortA[sorted[j]];
+		}
+		return matched;
+	}
+
+	/*
+	 * Matches two sets given in dec order, as dec values and unit vectors by sorted position
+	 *
+	 * @return for each sorted position in B, sorted position of matched object in A or -1
+	 */
+	private int[] matchSorted(double[] decA, double[][] vA, int nA, double[] decB, double[][] vB, int nB) {
+		double radiusDeg = radiusArcsec / 3600.0;
+		double cosRadius = Math.cos(Math.min(Math.PI, radiusArcsec / ARCSEC_PER_RAD));
+
+		// sweep, candidate pairs as sorted positions in A and B
+		int[] pairA = new int[Math.max(16, nB)];
+		int[] pairB = new int[pairA.length];
+		double[] pairKey = new double[pairA.length];
+		int count = 0;
+		int lo = 0;
+		for (int j = 0; j < nB; j++) {
+			double dec = decB[j];
+			while (lo < nA && decA[lo] < dec - radiusDeg) {
+				lo++;
+			}
+			for (int i = lo; i < nA && decA[i] <= dec + radiusDeg; i++) {
+				double dot = vA[0][i] * vB[0][j] + vA[1][i] * vB[1][j] + vA[2][i] * vB[2][j];
+				if (dot >= cosRadius) {
+					if (count == pairA.length) {
+						pairA = Arrays.copyOf(pairA, count * 2);
+						pairB = Arrays.copyOf(pairB, count * 2);
+						pairKey = Arrays.copyOf(pairKey, count * 2);
+					}
+					pairA[count] = i;
+					pairB[count] = j;
+					// negate => ascending separation
+					pairKey[count++] = -dot;
+				}
+			}
+		}
+		nCandidates = count;
+
+		// best separation first, each object paired once
+		int[] matched = new int[nB];
+		Arrays.fill(matched, -1);
+		boolean[] usedA = new boolean[nA];
+		for (int k : IndexSort.sortedIndex(pairKey, count)) {
+			int i = pairA[k];
+			int j = pairB[k];
+			if (!usedA[i] && matched[j] < 0) {
+				usedA[i] = true;
+				matched[j] = i;
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * Matches two columnar results
+	 *
+	 * @return for each object in b, index of matched object in a or -1
+	 */
+	public int[] match(ColumnarResult a, ColumnarResult b) {
+		double[][] ca = coordinates(a);
+		double[][] cb = coordinates(b);
+		return match(ca[0], ca[1], a.size(), cb[0], cb[1], b.size());
+	}
+
+	/**
+	 * Merges results from several catalogs into one set of distinct stars, refer Merger
+	 *
+	 * @param objectId merged result object id
+	 * @param results catalog results, in priority order
+	 * @param names catalog names, one per result
+	 *
+	 * @return merged result
+	 */
+	public QueryResult merge(String objectId, List<QueryResult> results, List<String> names) {
+		Merger merger = newMerger(objectId);
+		for (int r = 0; r < results.size(); r++) {
+			merger.add(results.get(r), names.get(r));
+		}
+		return merger.getResult();
+	}
+
+	/**
+	 * @param objectId merged result object id
+	 *
+	 * @return empty merger using this match radius
+	 */
+	public Merger newMerger(String objectId) {
+		return new Merger(objectId);
+	}
+
+	/**
+	 * Merges catalog results, one at a time in priority order, into a set of distinct stars.
+	 * <p>
+	 * A star matched to a star already merged keeps the earlier id and coordinates; its catalog
+	 * name is appended to the merged star source, e.g. "VSP+APASS", and mag bands and mag
+	 * missing from the merged star are copied. Unmatched stars are appended with source set to
+	 * their catalog name, or kept if already set. Merged stars are new objects, input results are
+	 * not changed.
+	 * </p>
+	 * <p>
+	 * Merged coordinates are kept in dec order and new stars are merged into that order, so each
+	 * result costs a sort of that result only.
+	 * </p>
+	 */
+	public class Merger {
+		private final QueryResult merged;
+
+		// merged stars by sorted position: dec, unit vector and index in merged result
+		private double[] dec = new double[0];
+		private double[][] v = new double[3][0];
+		private int[] index = new int[0];
+		private int n = 0;
+
+		private Merger(String objectId) {
+			this.merged = new QueryResult(objectId);
+		}
+
+		/**
+		 * Merges one catalog result
+		 *
+		 * @param result catalog result
+		 * @param name catalog name
+		 *
+		 * @return number of stars appended to merged result
+		 */
+		public int add(QueryResult result, String name) {
+			List<FieldObject> existing = merged.getFieldObjects();
+			List<FieldObject> objects = result.getFieldObjects();
+			int nB = objects.size();
+			double[] raB = new double[nB];
+			double[] decB = new double[nB];
+			for (int j = 0; j < nB; j++) {
+				raB[j] = toDouble(objects.get(j).getRaHr());
+				decB[j] = toDouble(objects.get(j).getDecDeg());
+			}
+			int[] sortB = IndexSort.sortedIndex(decB, nB);
+			double[][] vB = unitVectors(raB, decB, sortB);
+			int[] matched = matchSorted(dec, v, n, sortedColumn(decB, sortB), vB, nB);
+
+			// matched stars replaced by combined copies, unmatched stars appended
+			int nAdded = 0;
+			int[] added = new int[nB];
+			for (int jj = 0; jj < nB; jj++) {
+				int j = sortB[jj];
+				FieldObject fo = objects.get(j);
+				if (matched[jj] >= 0) {
+					int i = index[matched[jj]];
+					existing.set(i, combine(existing.get(i), fo, name));
+					added[jj] = -1;
+				} else {
+					FieldObject copy = new FieldObject(fo);
+					copy.setSource(sourceOf(fo, name));
+					added[jj] = existing.size();
+					existing.add(copy);
+					nAdded++;
+				}
+			}
+			insert(sortB, decB, vB, added, nAdded);
+			return nAdded;
+		}
+
+		// merges appended stars, in dec order, into merged dec order
+		private void insert(int[] sortB, double[] decB, double[][] vB, int[] added, int nAdded) {
+			int m = n + nAdded;
+			double[] dec2 = new double[m];
+			double[][] v2 = new double[3][m];
+			int[] index2 = new int[m];
+			int a = 0;
+			int k = 0;
+			for (int jj = 0; jj < sortB.length; jj++) {
+				if (added[jj] < 0) {
+					continue;
+				}
+				double d = decB[sortB[jj]];
+				for (; a < n && Double.compare(dec[a], d) <= 0; a++, k++) {
+					copyTo(dec2, v2, index2, k, dec[a], v, a, index[a]);
+				}
+				copyTo(dec2, v2, index2, k++, d, vB, jj, added[jj]);
+			}
+			for (; a < n; a++, k++) {
+				copyTo(dec2, v2, index2, k, dec[a], v, a, index[a]);
+			}
+			dec = dec2;
+			v = v2;
+			index = index2;
+			n = m;
+		}
+
+		public QueryResult getResult() {
+			return merged;
+		}
+	}
+
+	private static void copyTo(double[] dec, double[][] v, int[] index, int k, double d, double[][] vFrom, int from,
+			int i) {
+		dec[k] = d;
+		v[0][k] = vFrom[0][from];
+		v[1][k] = vFrom[1][from];
+		v[2][k] = vFrom[2][from];
+		index[k] = i;
+	}
+
+	/*
+	 * Copy of merged star mo with catalog source of fo appended and bands, or single band mag,
+	 * missing from mo copied from fo
+	 */
+	private static FieldObject combine(FieldObject mo, FieldObject fo, String name) {
+		FieldObject combined = new FieldObject(mo);
+		List<String> sources = new ArrayList<>(Arrays.asList(sourceOf(mo, name).split("\\+")));
+		for (String source : sourceOf(fo, name).split("\\+")) {
+			if (!sources.contains(source)) {
+				sources.add(source);
+			}
+		}
+		combined.setSource(String.join("+", sources));
+		for (String band : fo.getBands()) {
+			if (!combined.hasBand(band)) {
+				combined.setBandMag(band, fo.getBandMag(band), fo.getBandMagErr(band));
+			}
+		}
+		if (combined.getMag() == null && fo.getMag() != null) {
+			combined.setMag(fo.getMag());
+			combined.setMagErr(fo.getMagErr());
+		}
+		return combined;
+	}
+
+	// null source => catalog name
+	private static String sourceOf(FieldObject fo, String name) {
+		return (fo.getSource() == null) ? name : fo.getSource();
+	}
+
+	private static double toDouble(Double value) {
+		return (value == null) ? Double.NaN : value;
+	}
+
+	// column values in sorted order
+	private static double[] sortedColumn(double[] column, int[] sorted) {
+		double[] values = new double[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			values[i] = column[sorted[i]];
+		}
+		return values;
+	}
+
+	// ra, dec columns
+	private static double[][] coordinates(ColumnarResult result) {
+		int n = result.size();
+		double[][] c = new double[2][n];
+		for (int i = 0; i < n; i++) {
+			c[0][i] = result.getRaHr(i);
+			c[1][i] = result.getDecDeg(i);
+		}
+		return c;
+	}
+
+	// x, y, z columns in sorted order
+	private static double[][] unitVectors(double[] raHr, double[] decDeg, int[] sorted) {
+		double[][] v = new double[3][sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			double ra = Math.toRadians(raHr[sorted[i]] * 15.0);
+			double dec = Math.toRadians(decDeg[sorted[i]]);
+			v[0][i] = Math.cos(dec) * Math.cos(ra);
+			v[1][i] = Math.cos(dec) * Math.sin(ra);
+			v[2][i] = Math.sin(dec);
+		}
+		return v;
+	}
+
+	public double getRadiusArcsec() {
+		return radiusArcsec;
+	}
+
+	public int getCandidateCount() {
+		return nCandidates;
+	}
+}
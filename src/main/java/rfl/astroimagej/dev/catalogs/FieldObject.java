@@ -1,5 +1,10 @@
 package rfl.astroimagej.dev.catalogs;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
 /**
  * Query result from on-line catalog database, instances of this class encapsulate coordinate and magnitude data for 
  * a single Comparison or Reference star.
@@ -11,6 +16,12 @@ public class FieldObject  {
 	private Double mag = null;
 	private Double magErr = null;
 	
+	// catalog(s) reporting this object, e.g. "VSP" or "VSP+APASS" for merged results
+	private String source = null;
+	
+	// multi-band queries, band name (case-insensitive) => {mag, magErr}
+	private Map<String, Double[]> bandData = null;
+	
 	/**
 	 * Default parameters for Sirius, eg.g for unit test
 	 */
@@ -22,6 +33,26 @@ public class FieldObject  {
 		magErr = 0.02;		
 	}
 	
+	/**
+	 * Copy constructor, copies per-band photometry data
+	 * 
+	 * @param fo field object to copy
+	 */
+	public FieldObject(FieldObject fo) {
+		objectId = fo.objectId;
+		raHr = fo.raHr;
+		decDeg = fo.decDeg;
+		mag = fo.mag;
+		magErr = fo.magErr;
+		source = fo.source;
+		if (fo.bandData != null) {
+			bandData = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (Map.Entry<String, Double[]> entry : fo.bandData.entrySet()) {
+				bandData.put(entry.getKey(), entry.getValue().clone());
+			}
+		}
+	}
+	
 	// autogenerated getters, setters and toString methods
 	
 	public String getObjectId() {
@@ -64,10 +95,71 @@ public class FieldObject  {
 		this.magErr = magErr;
 	}
 
+	public String getSource() {
+		return source;
+	}
+
+	public void setSource(String source) {
+		this.source = source;
+	}
+
+	// ** per-band photometry, populated by multi-band queries
+	
+	/**
+	 * Adds photometry data for one mag band
+	 * 
+	 * @param band mag band name, e.g. B, V, Rc, Ic
+	 * @param mag catalog magnitude
+	 * @param magErr magnitude uncertainty
+	 */
+	public void setBandMag(String band, Double mag, Double magErr) {
+		if (bandData == null) {
+			bandData = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		}
+		bandData.put(band, new Double[] { mag, magErr });
+	}
+
+	public boolean hasBand(String band) {
+		return bandData != null && bandData.containsKey(band);
+	}
+
+	public Double getBandMag(String band) {
+		return hasBand(band) ? bandData.get(band)[0] : null;
+	}
+
+	public Double getBandMagErr(String band) {
+		return hasBand(band) ? bandData.get(band)[1] : null;
+	}
+
+	// read-only set of mag bands with photometry data
+	public Set<String> getBands() {
+		return (bandData == null) ? Collections.<String>emptySet() : Collections.unmodifiableSet(bandData.keySet());
+	}
+
+	/**
+	 * Copies coordinate data with mag and magErr set from selected band photometry
+	 * 
+	 * @param band selected mag band
+	 * @return single band copy of this object, or null if no data for band
+	 */
+	public FieldObject forBand(String band) {
+		if (!hasBand(band)) {
+			return null;
+		}
+		FieldObject fo = new FieldObject();
+		fo.setObjectId(objectId);
+		fo.setRaHr(raHr);
+		fo.setDecDeg(decDeg);
+		fo.setMag(getBandMag(band));
+		fo.setMagErr(getBandMagErr(band));
+		fo.setSource(source);
+		return fo;
+	}
+
 	@Override
 	public String toString() {
 		return "FieldObject [objectId=" + objectId + ", raHr=" + raHr + ", decDeg=" + decDeg + ", mag=" + mag
-				+ ", magErr=" + magErr + "]";
+				+ ", magErr=" + magErr + ", source=" + source + "]";
 	}
 	
 }
@@ -0,0 +1,217 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import rfl.astroimagej.dev.utils.AstroCoords;
+
+/**
+ * Answers catalog queries offline from a binary catalog file written by LocalCatalogWriter.
+ * <p>
+ * The file is memory-mapped read only, so only the header and zone table are held on the heap
+ * and pages of star records are loaded by the operating system as queries touch them. Records
+ * are fixed width, grouped in dec zones of zoneHeightDeg and sorted by ra in each zone. A query
+ * selects the zones covering the cone that circumscribes the square fov, finds the ra range in
+ * each zone by binary search, and keeps stars inside the fov at or brighter than magLimit.
+ * </p>
+ * <p>
+ * File layout, big-endian:
+ * <br>header: magic, version (int), zoneHeightDeg (double), nZones, nRecords (int), mag band
+ * (8 ascii bytes), zone start record (int x nZones + 1)
+ * <br>record: raHr, decDeg (double), mag, magErr (float, NaN = no data), id (24 ascii bytes)
+ * <br>Mags are returned rounded to 0.001 mag, the precision of VSP and APASS data.
+ * </p>
+ */
+public class LocalCatalog implements AstroCatalog, Closeable {
+
+	public static final int MAGIC = 0x41494A43;
+	public static final int VERSION = 1;
+	public static final double DEFAULT_ZONE_HEIGHT_DEG = 0.1;
+
+	public static final int BAND_BYTES = 8;
+	public static final int ID_BYTES = 24;
+	public static final int RECORD_BYTES = 8 + 8 + 4 + 4 + ID_BYTES;
+	public static final int FIXED_HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + BAND_BYTES;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	private final double zoneHeightDeg;
+	private final int nRecords;
+	private final String magBand;
+	private final int[] zoneStart;
+	private final int recordOffset;
+
+	/**
+	 * Maps a local catalog file
+	 *
+	 * @param path catalog file
+	 *
+	 * @throws IOException if the file could not be read or is not a local catalog file
+	 */
+	public LocalCatalog(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Local catalog file exceeds 2 GB: " + path);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < FIXED_HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a local catalog file: " + path);
+			}
+			zoneHeightDeg = buffer.getDouble(8);
+			int nZones = buffer.getInt(16);
+			nRecords = buffer.getInt(20);
+			magBand = readAscii(24, BAND_BYTES);
+
+			zoneStart = new int[nZones + 1];
+			for (int z = 0; z <= nZones; z++) {
+				zoneStart[z] = buffer.getInt(FIXED_HEADER_BYTES + 4 * z);
+			}
+			recordOffset = FIXED_HEADER_BYTES + 4 * (nZones + 1);
+			if ((long) recordOffset + (long) nRecords * RECORD_BYTES > buffer.limit()) {
+				throw new IOException("Truncated local catalog file: " + path);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs the query on the mapped catalog
+	 *
+	 * @param query CatalogQuery object encapsulating query parameters
+	 *
+	 * @return result QueryResult comprising FieldObjects matching query parameters, empty if
+	 * 			query mag band is not the catalog mag band
+	 */
+	@Override
+	public QueryResult runQuery(CatalogQuery query) {
+		return runColumnarQuery(query).toQueryResult();
+	}
+
+	/**
+	 * Runs the query on the mapped catalog, returning primitive columns
+	 *
+	 * @param query CatalogQuery object encapsulating query parameters
+	 *
+	 * @return columnar result, in dec zone and ra order
+	 */
+	@Override
+	public ColumnarResult runColumnarQuery(CatalogQuery query) {
+		ColumnarResult result = new ColumnarResult(query.getObjectId());
+		if (!magBand.equalsIgnoreCase(query.getMagBand())) {
+			return result;
+		}
+		double raHr = query.getRaHr();
+		double decDeg = query.getDecDeg();
+		double halfFov = query.getFovAmin() / 2.0;
+		double radiusDeg = query.getFovAmin() / 60.0 / Math.sqrt(2.0);
+		double decMin = Math.max(-90.0, decDeg - radiusDeg);
+		double decMax = Math.min(90.0, decDeg + radiusDeg);
+
+		// ra half width of cone, whole zone if cone includes a pole
+		double raHalfHr = 12.0;
+		double sinRatio = Math.sin(Math.toRadians(radiusDeg)) / Math.cos(Math.toRadians(decDeg));
+		if (decDeg + radiusDeg < 90.0 && decDeg - radiusDeg > -90.0 && sinRatio < 1.0) {
+			raHalfHr = Math.toDegrees(Math.asin(sinRatio)) / 15.0;
+		}
+		double[][] raRanges;
+		if (raHalfHr >= 12.0) {
+			raRanges = new double[][] { { 0.0, 24.0 } };
+		} else if (raHr - raHalfHr < 0.0) {
+			raRanges = new double[][] { { 0.0, raHr + raHalfHr }, { raHr - raHalfHr + 24.0, 24.0 } };
+		} else if (raHr + raHalfHr >= 24.0) {
+			raRanges = new double[][] { { 0.0, raHr + raHalfHr - 24.0 }, { raHr - raHalfHr, 24.0 } };
+		} else {
+			raRanges = new double[][] { { raHr - raHalfHr, raHr + raHalfHr } };
+		}
+
+		for (int z = zoneOf(decMin); z <= zoneOf(decMax); z++) {
+			for (double[] range : raRanges) {
+				int end = zoneStart[z + 1];
+				for (int i = lowerBound(zoneStart[z], end, range[0]); i < end; i++) {
+					int offset = recordOffset + i * RECORD_BYTES;
+					double ra = buffer.getDouble(offset);
+					if (ra > range[1]) {
+						break;
+					}
+					double dec = buffer.getDouble(offset + 8);
+					double mag = toMag(buffer.getFloat(offset + 16));
+					if (dec < decMin || dec > decMax || !(mag <= query.getMagLimit())) {
+						continue;
+					}
+					double[] tangent = AstroCoords.tangentOffset(raHr, decDeg, ra, dec);
+					if (tangent == null || Math.abs(tangent[0]) > halfFov || Math.abs(tangent[1]) > halfFov) {
+						continue;
+					}
+					result.add(readAscii(offset + 24, ID_BYTES), ra, dec, mag, toMag(buffer.getFloat(offset + 20)));
+				}
+			}
+		}
+		return result;
+	}
+
+	// zone index of dec, zone nZones - 1 includes dec = +90
+	private int zoneOf(double decDeg) {
+		int z = (int) Math.floor((decDeg + 90.0) / zoneHeightDeg);
+		return Math.max(0, Math.min(zoneStart.length - 2, z));
+	}
+
+	// first record in [start, end) with ra >= raHr
+	private int lowerBound(int start, int end, double raHr) {
+		int lo = start;
+		int hi = end;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (buffer.getDouble(recordOffset + mid * RECORD_BYTES) < raHr) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	// float mags restored to catalog precision of 0.001 mag
+	private static double toMag(float value) {
+		return Float.isNaN(value) ? Double.NaN : Math.round(value * 1000.0) / 1000.0;
+	}
+
+	// null-padded ascii field
+	private String readAscii(int offset, int length) {
+		byte[] bytes = new byte[length];
+		int n = 0;
+		while (n < length && buffer.get(offset + n) != 0) {
+			bytes[n] = buffer.get(offset + n);
+			n++;
+		}
+		return new String(bytes, 0, n, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Closes the file channel, the mapping is released when the catalog is garbage collected
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	public String getMagBand() {
+		return magBand;
+	}
+
+	public int size() {
+		return nRecords;
+	}
+
+	public double getZoneHeightDeg() {
+		return zoneHeightDeg;
+	}
+}
@@ -30,6 +30,24 @@ public class QueryResult {
 		fieldObjects.add(fieldObject);
 	}	
 	
+	/**
+	 * Selects single band results from a multi-band query result
+	 * 
+	 * @param magBand selected mag band
+	 * @return new result with field objects that have magBand photometry data, 
+	 * 			mag and magErr set from magBand data
+	 */
+	public QueryResult forBand(String magBand) {
+		QueryResult result = new QueryResult(objectId);
+		for (FieldObject fo : fieldObjects) {
+			FieldObject bandObject = fo.forBand(magBand);
+			if (bandObject != null) {
+				result.setFieldObject(bandObject);
+			}
+		}
+		return result;
+	}
+	
 	// read-only objectId
 	public String getObjectId() {
 		return objectId;
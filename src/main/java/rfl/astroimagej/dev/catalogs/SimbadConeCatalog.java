@@ -0,0 +1,117 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+import rfl.astroimagej.dev.utils.AstroCoords;
+import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.HttpTransport;
+import rfl.astroimagej.dev.utils.VoTableReader;
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+/**
+ * Queries SIMBAD for field stars with a coordinate (cone) search.
+ * <p>
+ * The cone circumscribes the square query fov; objects outside the fov, without flux data in the
+ * query band, or fainter than magLimit are dropped. Mag bands Rc and Ic map to SIMBAD fluxes R
+ * and I. SIMBAD fluxes have no uncertainty in this query, magErr is set to null.
+ * </p>
+ * <p>
+ * A response without id or coordinate columns is a query error, and no objects are returned.
+ * </p>
+ */
+public class SimbadConeCatalog implements AstroCatalog {
+
+	/**
+	 * Runs the SIMBAD cone search and decodes the VOTable response
+	 *
+	 * @param query CatalogQuery object encapsulating query parameters
+	 *
+	 * @return result QueryResult comprising FieldObjects matching query parameters, empty if
+	 * 			the query failed
+	 */
+	@Override
+	public QueryResult runQuery(CatalogQuery query) {
+		double radiusAmin = query.getFovAmin() / Math.sqrt(2.0);
+		String url = CatalogUrls.getSimbadConeUrl(query, radiusAmin);
+		QueryResult result = new QueryResult(query.getObjectId());
+		try (InputStream in = HttpTransport.getDefault().openStream(url)) {
+			decodeVoTable(in, query, result);
+		} catch (IOException | XMLStreamException | SimbadNotFoundException e) {
+			e.printStackTrace();
+		}
+		return result;
+	}
+
+	/**
+	 * Decodes sim-coo VOTable rows, appending objects in the query fov and mag range
+	 *
+	 * @param in VOTable response stream
+	 *
+	 * @param query query parameters, fov centre, size and magLimit
+	 *
+	 * @param result result to append objects to
+	 *
+	 * @throws XMLStreamException if response is not a valid VOTable
+	 *
+	 * @throws SimbadNotFoundException query error if the response has no id or coordinate column
+	 */
+	protected void decodeVoTable(InputStream in, CatalogQuery query, QueryResult result)
+			throws XMLStreamException, SimbadNotFoundException {
+		String fluxColumn = "FLUX_" + getSimbadBand(query.getMagBand());
+		double halfFov = query.getFovAmin() / 2.0;
+		String[] names = { "MAIN_ID", "RA_d_ICRS_2000_2000", "DEC_d_ICRS_2000_2000", fluxColumn };
+		int[] cols = new int[names.length];
+		String[] missing = { null };
+
+		new VoTableReader().read(in, row -> {
+			// column indices from FIELD list, on first row; flux column is optional
+			if (row.getRowCount() == 1) {
+				for (int i = 0; i < names.length; i++) {
+					cols[i] = row.getFieldIndex(names[i]);
+					if (cols[i] < 0 && i < 3 && missing[0] == null) {
+						missing[0] = names[i];
+					}
+				}
+			}
+			if (missing[0] != null) {
+				return;
+			}
+			Double mag = (cols[3] < 0) ? null : row.getDoubleOrNull(cols[3]);
+			if (mag == null || mag > query.getMagLimit()) {
+				return;
+			}
+			double raHr = row.getDouble(cols[1]) / 15.0;
+			double decDeg = row.getDouble(cols[2]);
+			double[] offset = AstroCoords.tangentOffset(query.getRaHr(), query.getDecDeg(), raHr, decDeg);
+			if (offset == null || Math.abs(offset[0]) > halfFov || Math.abs(offset[1]) > halfFov) {
+				return;
+			}
+			FieldObject fo = new FieldObject();
+			fo.setObjectId(row.getString(cols[0]));
+			fo.setRaHr(raHr);
+			fo.setDecDeg(decDeg);
+			fo.setMag(mag);
+			fo.setMagErr(null);
+			result.setFieldObject(fo);
+		});
+
+		if (missing[0] != null) {
+			String message = String.format("SIMBAD cone search response has no %s column", missing[0]);
+			throw new SimbadNotFoundException(message, true);
+		}
+	}
+
+	/**
+	 * Maps a catalog mag band to a SIMBAD flux band, e.g. Rc => R
+	 *
+	 * @param magBand mag band, B, V, R, Rc, I or Ic
+	 *
+	 * @return SIMBAD flux band name
+	 */
+	public static String getSimbadBand(String magBand) {
+		return magBand.substring(0, 1).toUpperCase();
+	}
+}
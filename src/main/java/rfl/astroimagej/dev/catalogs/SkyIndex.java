@@ -0,0 +1,220 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.util.Arrays;
+
+import rfl.astroimagej.dev.utils.IndexSort;
+
+/**
+ * Spatial index over field object coordinates, for cone search, k nearest neighbour and
+ * ra / dec rectangle queries.
+ * <p>
+ * Objects are held in arrays sorted by dec, with a unit vector per object. A query selects the
+ * dec zone covering the search region by binary search, then tests each object in the zone by
+ * unit vector dot product (cone) or coordinate range (rectangle). Build cost is one sort,
+ * O(n log n); query cost is O(log n) plus the number of objects in the dec zone.
+ * </p>
+ * <p>
+ * Query methods return indices into the source result, i.e. QueryResult.getFieldObjects() or
+ * ColumnarResult columns.
+ * </p>
+ */
+public class SkyIndex {
+
+	private static final double ARCSEC_PER_RAD = Math.toDegrees(1.0) * 3600.0;
+
+	private final int n;
+
+	// dec sorted columns, sourceIndex maps to source result
+	private final int[] sourceIndex;
+	private final double[] decDeg;
+	private final double[] raHr;
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+
+	/**
+	 * Builds index from coordinate columns
+	 *
+	 * @param raHr ra (hr) column
+	 * @param decDeg dec (deg) column
+	 * @param n number of objects
+	 */
+	public SkyIndex(double[] raHr, double[] decDeg, int n) {
+		this.n = n;
+		this.sourceIndex = IndexSort.sortedIndex(decDeg, n);
+		this.decDeg = new double[n];
+		this.raHr = new double[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.z = new double[n];
+		for (int i = 0; i < n; i++) {
+			int j = sourceIndex[i];
+			this.decDeg[i] = decDeg[j];
+			this.raHr[i] = raHr[j];
+			double ra = Math.toRadians(raHr[j] * 15.0);
+			double dec = Math.toRadians(decDeg[j]);
+			x[i] = Math.cos(dec) * Math.cos(ra);
+			y[i] = Math.cos(dec) * Math.sin(ra);
+			z[i] = Math.sin(dec);
+		}
+	}
+
+	public static SkyIndex build(ColumnarResult result) {
+		int n = result.size();
+		double[] ra = new double[n];
+		double[] dec = new double[n];
+		for (int i = 0; i < n; i++) {
+			ra[i] = result.getRaHr(i);
+			dec[i] = result.getDecDeg(i);
+		}
+		return new SkyIndex(ra, dec, n);
+	}
+
+	public static SkyIndex build(QueryResult result) {
+		return build(ColumnarResult.fromQueryResult(result));
+	}
+
+	/**
+	 * Finds all objects within radius of a position
+	 *
+	 * @param raHr search centre ra (hr)
+	 * @param decDeg search centre dec (deg)
+	 * @param radiusArcsec search radius (arcsec)
+	 *
+	 * @return source indices of matching objects, in ascending separation order
+	 */
+	public int[] coneSearch(double raHr, double decDeg, double radiusArcsec) {
+		double radiusDeg = radiusArcsec / 3600.0;
+		int lo = lowerBound(decDeg - radiusDeg);
+		int hi = upperBound(decDeg + radiusDeg);
+
+		double[] v = unitVector(raHr, decDeg);
+		double cosRadius = Math.cos(Math.min(Math.PI, radiusArcsec / ARCSEC_PER_RAD));
+
+		int[] found = new int[Math.max(0, hi - lo)];
+		double[] dots = new double[found.length];
+		int count = 0;
+		for (int i = lo; i < hi; i++) {
+			double dot = x[i] * v[0] + y[i] * v[1] + z[i] * v[2];
+			if (dot >= cosRadius) {
+				found[count] = i;
+				// negate => ascending separation
+				dots[count++] = -dot;
+			}
+		}
+		int[] order = IndexSort.sortedIndex(dots, count);
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = sourceIndex[found[order[i]]];
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the k nearest objects to a position, by cone searches of increasing radius
+	 *
+	 * @param raHr search centre ra (hr)
+	 * @param decDeg search centre dec (deg)
+	 * @param k number of neighbours
+	 *
+	 * @return source indices of up to k nearest objects, in ascending separation order
+	 */
+	public int[] nearest(double raHr, double decDeg, int k) {
+		if (k <= 0 || n == 0) {
+			return new int[0];
+		}
+		// initial radius for ~k objects at mean density, assuming a square field, i.e. ra extent
+		// equal to dec extent; radius doubles until k objects are found
+		double decSpan = this.decDeg[n - 1] - this.decDeg[0];
+		double zoneSqDeg = Math.max(1.0e-6, decSpan * Math.min(decSpan, 360.0 * Math.cos(Math.toRadians(decDeg))));
+		double radiusArcsec = Math.max(1.0, Math.sqrt(k * zoneSqDeg / n / Math.PI) * 3600.0);
+
+		int[] found = coneSearch(raHr, decDeg, radiusArcsec);
+		while (found.length < k && radiusArcsec < 180.0 * 3600.0) {
+			radiusArcsec *= 2.0;
+			found = coneSearch(raHr, decDeg, radiusArcsec);
+		}
+		return (found.length > k) ? Arrays.copyOf(found, k) : found;
+	}
+
+	/**
+	 * Finds objects in an ra / dec rectangle
+	 *
+	 * @param raMinHr minimum ra (hr), rectangle wraps through ra = 0 if raMinHr > raMaxHr
+	 * @param raMaxHr maximum ra (hr)
+	 * @param decMinDeg minimum dec (deg)
+	 * @param decMaxDeg maximum dec (deg)
+	 *
+	 * @return source indices of matching objects, in ascending dec order
+	 */
+	public int[] rectangle(double raMinHr, double raMaxHr, double decMinDeg, double decMaxDeg) {
+		int lo = lowerBound(decMinDeg);
+		int hi = upperBound(decMaxDeg);
+		boolean wraps = raMinHr > raMaxHr;
+
+		int[] found = new int[Math.max(0, hi - lo)];
+		int count = 0;
+		for (int i = lo; i < hi; i++) {
+			double ra = raHr[i];
+			boolean inRa = wraps ? (ra >= raMinHr || ra <= raMaxHr) : (ra >= raMinHr && ra <= raMaxHr);
+			if (inRa) {
+				found[count++] = sourceIndex[i];
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Angular separation of two positions, haversine formula
+	 *
+	 * @return separation (arcsec)
+	 */
+	public static double separationArcsec(double raHr1, double decDeg1, double raHr2, double decDeg2) {
+		double dec1 = Math.toRadians(decDeg1);
+		double dec2 = Math.toRadians(decDeg2);
+		double sinDDec = Math.sin((dec2 - dec1) / 2.0);
+		double sinDRa = Math.sin(Math.toRadians((raHr2 - raHr1) * 15.0) / 2.0);
+		double h = sinDDec * sinDDec + Math.cos(dec1) * Math.cos(dec2) * sinDRa * sinDRa;
+		return 2.0 * Math.asin(Math.min(1.0, Math.sqrt(h))) * ARCSEC_PER_RAD;
+	}
+
+	// first sorted index with dec >= value
+	private int lowerBound(double value) {
+		int lo = 0;
+		int hi = n;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (decDeg[mid] < value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	// first sorted index with dec > value
+	private int upperBound(double value) {
+		int lo = 0;
+		int hi = n;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (decDeg[mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static double[] unitVector(double raHr, double decDeg) {
+		double ra = Math.toRadians(raHr * 15.0);
+		double dec = Math.toRadians(decDeg);
+		return new double[] { Math.cos(dec) * Math.cos(ra), Math.cos(dec) * Math.sin(ra), Math.sin(dec) };
+	}
+
+	public int size() {
+		return n;
+	}
+}
@@ -0,0 +1,206 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import rfl.astroimagej.dev.utils.AstroCoords;
+
+/**
+ * In-memory cache of multi-band VSP query results, keyed by query ra, dec, fov and magLimit.
+ * <p>
+ * A query is answered without a VSP request if an entry has the same key (hit), or if an entry
+ * covers a superset of the query, i.e. its square fov contains the query fov and its magLimit is
+ * no brighter than the query magLimit (partial hit). Partial hits are filtered from the cached
+ * result by tangent plane offset from the query centre and by magnitude.
+ * </p>
+ * <p>
+ * Entries are held in an access-ordered (LRU) map, bounded to a maximum number of entries.
+ * </p>
+ * <p>
+ * Note: magLimit is applied to V band magnitudes, or to the brightest band for field objects
+ * without V band data.
+ * </p>
+ */
+public class VspCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 50;
+
+	// mag band for magLimit filter
+	private static final String LIMIT_BAND = "V";
+
+	// containment tolerance, arcmin
+	private static final double TOLERANCE_AMIN = 1.0e-6;
+
+	private final int maxEntries;
+
+	// LRU map, guarded by this
+	private final LinkedHashMap<String, CacheEntry> entries;
+
+	// cache counters
+	private long nHits = 0;
+	private long nPartialHits = 0;
+	private long nMisses = 0;
+
+	/*
+	 * Query parameters and multi-band result
+	 */
+	private static class CacheEntry {
+		private final CatalogQuery query;
+		private final QueryResult result;
+
+		private CacheEntry(CatalogQuery query, QueryResult result) {
+			this.query = query;
+			this.result = result;
+		}
+	}
+
+	public VspCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries maximum number of entries, least recently used entries are evicted
+	 */
+	public VspCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				return size() > VspCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Looks up a query, exact match or filtered from a cached superset
+	 *
+	 * @param query VSP query parameters
+	 *
+	 * @return multi-band result indexed to query object id, or null if no entry covers the query
+	 */
+	public synchronized QueryResult get(CatalogQuery query) {
+		CacheEntry entry = entries.get(getKey(query));
+		if (entry != null) {
+			nHits++;
+			return filter(entry.result, query, false);
+		}
+
+		// search for smallest cached superset
+		String supersetKey = null;
+		CacheEntry superset = null;
+		for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+			CacheEntry candidate = e.getValue();
+			if (contains(candidate.query, query)
+					&& (superset == null || candidate.query.getFovAmin() < superset.query.getFovAmin())) {
+				supersetKey = e.getKey();
+				superset = candidate;
+			}
+		}
+		if (superset == null) {
+			nMisses++;
+			return null;
+		}
+		// refresh LRU order
+		entries.get(supersetKey);
+		nPartialHits++;
+		return filter(superset.result, query, true);
+	}
+
+	/**
+	 * Adds a copy of a multi-band query result
+	 *
+	 * @param query VSP query parameters
+	 *
+	 * @param result multi-band result, refer VspCatalog.runMultiBandQuery
+	 */
+	public synchronized void put(CatalogQuery query, QueryResult result) {
+		entries.put(getKey(query), new CacheEntry(new CatalogQuery(query), filter(result, query, false)));
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Tests whether the outer query covers the inner query field and magnitude range
+	 *
+	 * @param outer cached query
+	 *
+	 * @param inner new query
+	 *
+	 * @return true if inner fov lies within outer fov and inner magLimit is no fainter than outer
+	 */
+	public static boolean contains(CatalogQuery outer, CatalogQuery inner) {
+		if (inner.getMagLimit() > outer.getMagLimit()) {
+			return false;
+		}
+		double[] offset = AstroCoords.tangentOffset(outer.getRaHr(), outer.getDecDeg(), inner.getRaHr(), inner.getDecDeg());
+		if (offset == null) {
+			return false;
+		}
+		double margin = (outer.getFovAmin() - inner.getFovAmin()) / 2.0 + TOLERANCE_AMIN;
+		return Math.abs(offset[0]) <= margin && Math.abs(offset[1]) <= margin;
+	}
+
+	/*
+	 * Copies result to a new result indexed to query object id, optionally filtered to query fov
+	 * and magLimit. Field objects are copied, so callers cannot change cached data
+	 */
+	private static QueryResult filter(QueryResult cached, CatalogQuery query, boolean isSubset) {
+		QueryResult result = new QueryResult(query.getObjectId());
+		double halfFov = query.getFovAmin() / 2.0 + TOLERANCE_AMIN;
+		for (FieldObject fo : cached.getFieldObjects()) {
+			if (isSubset) {
+				double[] offset = AstroCoords.tangentOffset(query.getRaHr(), query.getDecDeg(), fo.getRaHr(), fo.getDecDeg());
+				if (offset == null || Math.abs(offset[0]) > halfFov || Math.abs(offset[1]) > halfFov
+						|| getLimitMag(fo) > query.getMagLimit()) {
+					continue;
+				}
+			}
+			result.setFieldObject(new FieldObject(fo));
+		}
+		return result;
+	}
+
+	// V band mag, or brightest band if no V data
+	private static double getLimitMag(FieldObject fo) {
+		if (fo.hasBand(LIMIT_BAND)) {
+			return fo.getBandMag(LIMIT_BAND);
+		}
+		double mag = Double.MAX_VALUE;
+		for (String band : fo.getBands()) {
+			mag = Math.min(mag, fo.getBandMag(band));
+		}
+		return mag;
+	}
+
+	// key matches VSP url precision
+	private static String getKey(CatalogQuery query) {
+		return String.format("%.5f,%.5f,%.1f,%.1f", query.getRaHr() * 15.0, query.getDecDeg(),
+				query.getFovAmin(), query.getMagLimit());
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return nHits;
+	}
+
+	public synchronized long getPartialHitCount() {
+		return nPartialHits;
+	}
+
+	public synchronized long getMissCount() {
+		return nMisses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("VspCache [entries=%d, hits=%d, partialHits=%d, misses=%d]",
+				entries.size(), nHits, nPartialHits, nMisses);
+	}
+}
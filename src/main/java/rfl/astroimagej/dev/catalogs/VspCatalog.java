@@ -1,14 +1,11 @@
 package rfl.astroimagej.dev.catalogs;
 
 import java.io.IOException;
-import java.net.URL;
-
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.InputStream;
 
 import rfl.astroimagej.dev.enums.CatalogType;
-import rfl.astroimagej.dev.utils.AstroCoords;
 import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.HttpTransport;
 
 /**
  * Queries the AAVSO Variable Star Plotter (VSP) database for field star based on photometry data user-specified parameters.
@@ -26,18 +23,30 @@ import rfl.astroimagej.dev.utils.CatalogUrls;
  * </p>
  */
 public class VspCatalog implements AstroCatalog {
-	private ObjectMapper objectMapper = null;
+	private VspJsonParser parser = null;
+	
+	// optional multi-band result cache, null => every query runs on-line
+	private VspCache cache = null;
 
-	// create Jackson object mapper to decode json response to vsp query
+	// create streaming parser to decode json response to vsp query
 	public VspCatalog() {
-		objectMapper = new ObjectMapper();
+		parser = new VspJsonParser();
+	}
+	
+	/**
+	 * @param cache cache of multi-band results, queries covered by a cached result run off-line
+	 */
+	public VspCatalog(VspCache cache) {
+		this();
+		this.cache = cache;
 	}
 
 	/**
 	 *  Runs the VSP database query with url compiled from user-input parameters and decodes
 	 *  json response to extract photometry data.
 	 *  <p>
-	 *  Utilises Jackson api to 'tree-walk' json node structure.
+	 *  Utilises VspJsonParser to decode field objects in a single pass over the response stream.
+	 *  With a VspCache, the query is answered from a cached multi-band result where possible.
 	 *  </p>
 	 * 
 	 * @param query CatalogQuery object encapsulating VSP database query parameters
@@ -47,63 +56,86 @@ public class VspCatalog implements AstroCatalog {
 	 */
 	@Override
 	public QueryResult runQuery(CatalogQuery query) {		
-		// vsp database query object, configured from user inputs to Catalog dialog
-		// filter json response for selected magband / photometry filter type
-		// this.query = query;	
-		String magBand = query.getMagBand();
-		
-		// vsp query response, index to object id
-		QueryResult result = new QueryResult(query.getObjectId());
+		// filter multi-band result for selected magband / photometry filter type
+		if (cache != null) {
+			return runMultiBandQuery(query).forBand(query.getMagBand());
+		}
 		
-		// reference to json root node
-		JsonNode root = null;
-		try {
-			root = objectMapper.readTree(new URL(CatalogUrls.getUrl(query, CatalogType.VSP)));
+		String url = CatalogUrls.getUrl(query, CatalogType.VSP);
+		try (InputStream in = openStream(url)) {
+			return parser.parse(in, query);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		// query failed, no field objects
+		return new QueryResult(query.getObjectId());
+	}
+
+	/**
+	 *  Runs one VSP database query and decodes photometry data for all mag bands
+	 *  (B, V, Rc and Ic) in the response.
+	 *  <p>
+	 *  With a VspCache, queries covered by a cached result are filtered from the cache, and 
+	 *  successful on-line results are added to the cache.
+	 *  </p>
+	 * 
+	 * @param query CatalogQuery object encapsulating VSP database query parameters, mag band is not used
+	 * 
+	 * @return result QueryResult with per-band photometry data in each FieldObject, 
+	 * 			refer QueryResult.forBand
+	 */
+	@Override
+	public QueryResult runMultiBandQuery(CatalogQuery query) {
+		QueryResult result = (cache != null) ? cache.get(query) : null;
+		if (result != null) {
+			return result;
+		}
 		
-		// photometry node: parent node for field object nodes
-		JsonNode foNodes = root.findPath("photometry");
-		for (JsonNode foNode : foNodes) {
-			// create a new FieldObject, and add object coordinates + auid
-			FieldObject fo = new FieldObject();			
-			fo.setObjectId(foNode.findPath("auid").asText());
-			fo.setRaHr(AstroCoords.raHms_To_raHr(foNode.path("ra").asText()));
-			fo.setDecDeg(AstroCoords.decDms_To_decDeg(foNode.path("dec").asText()));
-			
-			// if node matching magBand is found then add mag & magErr
-			// to fieldObject (fo) and append to result list
-			JsonNode bNode = importMagData(foNode, magBand);
-			if (bNode != null) {
-				fo.setMag(bNode.path("mag").asDouble());
-				fo.setMagErr(bNode.path("error").asDouble());
-				result.setFieldObject(fo);		// append to List<FieldObject>
+		result = new QueryResult(query.getObjectId());
+		String url = CatalogUrls.getUrl(query, CatalogType.VSP);
+		try (InputStream in = openStream(url)) {
+			parser.parse(in, null, result::setFieldObject);
+			if (cache != null) {
+				cache.put(query, result);
 			}
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 		return result;
 	}
 	
-	/*
-	 * Searches current field object for magBand photometry data 
+	/**
+	 *  Runs the VSP database query and decodes the json response directly into primitive columns
+	 *  for the query mag band.
+	 * 
+	 * @param query CatalogQuery object encapsulating VSP database query parameters
 	 * 
-	 * @param foNode field object node
-	 * @param magBand selected mag band (B, V, Rc, Ic)
-	 * @return node JsonNode pointing to selected magnitude data (if found), null otherwise
+	 * @return result columnar result, empty if query failed
 	 */
-	private JsonNode importMagData(JsonNode foNode, String magBand) {
-		// loop through bands nodes, return node matching magBand otherwise null
-		JsonNode node = null;
-		JsonNode bandNodes = foNode.findPath("bands");
-		for (JsonNode bandNode : bandNodes) {
-			String currentBand = bandNode.path("band").asText();
-			if (currentBand.equalsIgnoreCase(magBand)) {
-				node = bandNode;
-				break;
-			}
+	@Override
+	public ColumnarResult runColumnarQuery(CatalogQuery query) {
+		// select mag band columns from cached or on-line multi-band result
+		if (cache != null) {
+			return ColumnarResult.fromMultiBand(runMultiBandQuery(query), query.getMagBand());
 		}
-		return node;
+		
+		String url = CatalogUrls.getUrl(query, CatalogType.VSP);
+		try (InputStream in = openStream(url)) {
+			return parser.parseColumns(in, query);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return new ColumnarResult(query.getObjectId());
+	}
+	
+	/**
+	 * Opens VSP response stream through the shared transport, paced by VSP host rate limit
+	 * 
+	 * @param url VSP query url
+	 * @return json response stream
+	 * @throws IOException if VSP request fails
+	 */
+	protected InputStream openStream(String url) throws IOException {
+		return HttpTransport.getDefault().openStream(url);
 	}
 }
-
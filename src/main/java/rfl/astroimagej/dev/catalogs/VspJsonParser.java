@@ -0,0 +1,263 @@
+package rfl.astroimagej.dev.catalogs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import rfl.astroimagej.dev.utils.AstroCoords;
+
+/**
+ * Single pass decoder for VSP json query responses, built on the Jackson streaming api.
+ * <p>
+ * Field objects are decoded as parser tokens arrive and passed to a FieldObjectHandler, without
+ * building a JsonNode tree of the response. Fields other than auid, ra, dec and the bands array
+ * are skipped, including their nested content.
+ * </p>
+ * <p>
+ * Json format response, [root]/[photometry]/[fieldstar[1] ...fieldstar[n], where each field star
+ * comprises auid, sexagesimal ra and dec strings and an array of band objects [band, mag, error].
+ * </p>
+ * <p>
+ * Multi-band decodes retain photometry data for every band in the response in each FieldObject,
+ * so one VSP download provides results for B, V, Rc and Ic (refer QueryResult.forBand).
+ * Single band decodes set only the selected band mag and error.
+ * </p>
+ */
+public class VspJsonParser {
+
+	/**
+	 * Receives each field object with photometry data for the selected mag band,
+	 * or with photometry data in any band for multi-band decodes
+	 */
+	@FunctionalInterface
+	public interface FieldObjectHandler {
+		public void fieldObject(FieldObject fo);
+	}
+
+	// thread-safe and reusable, creates one parser per response
+	private final JsonFactory factory = new JsonFactory();
+
+	/**
+	 * Decodes a VSP json response into a QueryResult
+	 *
+	 * @param in VSP json response stream
+	 *
+	 * @param query VSP query parameters, selects object id and mag band
+	 *
+	 * @return QueryResult with field objects that have photometry data in the selected band
+	 *
+	 * @throws IOException if response could not be read or is not valid json
+	 */
+	public QueryResult parse(InputStream in, CatalogQuery query) throws IOException {
+		QueryResult result = new QueryResult(query.getObjectId());
+		parse(in, query.getMagBand(), result::setFieldObject);
+		return result;
+	}
+
+	/**
+	 * Decodes a VSP json response, passing field objects to handler in response order
+	 *
+	 * @param in VSP json response stream
+	 *
+	 * @param magBand selected mag band (B, V, Rc, Ic), or null to decode all bands
+	 *
+	 * @param handler called for each field object with magBand photometry data, or with all bands
+	 * 			available through FieldObject.getBandMag if magBand is null
+	 *
+	 * @return number of field objects passed to handler
+	 *
+	 * @throws IOException if response could not be read or is not valid json
+	 */
+	public int parse(InputStream in, String magBand, FieldObjectHandler handler) throws IOException {
+		int[] count = { 0 };
+		parseStars(in, star -> {
+			int index = (magBand == null) ? -1 : star.findBand(magBand);
+			if (star.nBands == 0 || (magBand != null && index < 0)) {
+				return;
+			}
+			FieldObject fo = new FieldObject();
+			fo.setObjectId(star.auid);
+			fo.setRaHr(AstroCoords.raHms_To_raHr(star.ra));
+			fo.setDecDeg(AstroCoords.decDms_To_decDeg(star.dec));
+			if (magBand != null) {
+				// single band, no per-band map
+				fo.setMag(star.mags[index]);
+				fo.setMagErr(star.errors[index]);
+			} else {
+				for (int i = 0; i < star.nBands; i++) {
+					if (!fo.hasBand(star.bands[i])) {
+						fo.setBandMag(star.bands[i], star.mags[i], star.errors[i]);
+					}
+				}
+				fo.setMag(null);
+				fo.setMagErr(null);
+			}
+			handler.fieldObject(fo);
+			count[0]++;
+		});
+		return count[0];
+	}
+
+	/**
+	 * Decodes a VSP json response directly into primitive columns, without creating FieldObjects
+	 *
+	 * @param in VSP json response stream
+	 *
+	 * @param query VSP query parameters, selects object id and mag band
+	 *
+	 * @return columns for field objects that have photometry data in the selected band
+	 *
+	 * @throws IOException if response could not be read or is not valid json
+	 */
+	public ColumnarResult parseColumns(InputStream in, CatalogQuery query) throws IOException {
+		// photometry added as read, sexagesimal coordinates converted in one bulk call after the
+		// response is read and set in place
+		ColumnarResult result = new ColumnarResult(query.getObjectId());
+		List<String> raHms = new ArrayList<>();
+		List<String> decDms = new ArrayList<>();
+		String magBand = query.getMagBand();
+		parseStars(in, star -> {
+			int index = star.findBand(magBand);
+			if (index >= 0) {
+				result.add(star.auid, Double.NaN, Double.NaN, star.mags[index], star.errors[index]);
+				raHms.add(star.ra);
+				decDms.add(star.dec);
+			}
+		});
+
+		double[] raHr = AstroCoords.raHms_To_raHr(raHms.toArray(new String[0]));
+		double[] decDeg = AstroCoords.decDms_To_decDeg(decDms.toArray(new String[0]));
+		for (int i = 0; i < result.size(); i++) {
+			result.setCoordinates(i, raHr[i], decDeg[i]);
+		}
+		result.trimToSize();
+		return result;
+	}
+
+	/*
+	 * Field star data, reused for each star in the response
+	 */
+	private static class StarRow {
+		private String auid;
+		private String ra;
+		private String dec;
+		private int nBands;
+		private String[] bands = new String[8];
+		private double[] mags = new double[8];
+		private double[] errors = new double[8];
+
+		private void clear() {
+			auid = null;
+			ra = null;
+			dec = null;
+			nBands = 0;
+		}
+
+		private void addBand(String band, double mag, double error) {
+			if (nBands == bands.length) {
+				bands = Arrays.copyOf(bands, 2 * nBands);
+				mags = Arrays.copyOf(mags, 2 * nBands);
+				errors = Arrays.copyOf(errors, 2 * nBands);
+			}
+			bands[nBands] = band;
+			mags[nBands] = mag;
+			errors[nBands] = error;
+			nBands++;
+		}
+
+		// index of first entry for band, -1 if not found
+		private int findBand(String band) {
+			for (int i = 0; i < nBands; i++) {
+				if (bands[i].equalsIgnoreCase(band)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	@FunctionalInterface
+	private interface StarHandler {
+		public void star(StarRow star);
+	}
+
+	/*
+	 * Streams photometry array, passing each decoded field star to handler
+	 */
+	private void parseStars(InputStream in, StarHandler handler) throws IOException {
+		StarRow star = new StarRow();
+		try (JsonParser parser = factory.createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("VSP response is not a json object");
+			}
+			// root fields, skip all except photometry array
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if (!"photometry".equals(name) || token != JsonToken.START_ARRAY) {
+					parser.skipChildren();
+					continue;
+				}
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					star.clear();
+					parseStar(parser, star);
+					handler.star(star);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Decodes one field star object, parser positioned at START_OBJECT
+	 */
+	private void parseStar(JsonParser parser, StarRow star) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if ("auid".equals(name)) {
+				star.auid = parser.getValueAsString();
+			} else if ("ra".equals(name)) {
+				star.ra = parser.getValueAsString();
+			} else if ("dec".equals(name)) {
+				star.dec = parser.getValueAsString();
+			} else if ("bands".equals(name) && token == JsonToken.START_ARRAY) {
+				parseBands(parser, star);
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/*
+	 * Adds photometry data from bands array, parser positioned at START_ARRAY
+	 */
+	private void parseBands(JsonParser parser, StarRow star) throws IOException {
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			String band = null;
+			double mag = 0.0;
+			double error = 0.0;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				parser.nextToken();
+				if ("band".equals(name)) {
+					band = parser.getValueAsString();
+				} else if ("mag".equals(name)) {
+					mag = parser.getValueAsDouble();
+				} else if ("error".equals(name)) {
+					error = parser.getValueAsDouble();
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if (band != null) {
+				star.addBand(band, mag, error);
+			}
+		}
+	}
+}
@@ -8,11 +8,15 @@ import java.util.List;
  * <p> Internally encodes catalog magnitude bands as a '.' delimited string.
  * Method magBands decodes string and returns string array of filter / magnitude names for selected catalog
  * </p>
+ * <p> MERGED queries VSP, APASS and SIMBAD together, refer CatalogFactory.createFanOut; its mag bands
+ * are the union of the three catalogs, with SIMBAD R and I matching Rc and Ic
+ * </p>
  */
 public enum CatalogType {
 	SIMBAD("B.V.R.I"), 
 	VSP("B.V.Rc.Ic"), 
 	APASS("B.V.SR.SG"), 
+	MERGED("B.V.Rc.Ic.SR.SG"),
 	DSS("");
 	
 	private String magBand;	
@@ -0,0 +1,314 @@
+package rfl.astroimagej.dev.fileio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import rfl.astroimagej.dev.utils.CatalogUrls;
+
+/**
+ * Downloads a wide DSS field as a mosaic of SkyView tiles and stitches them into one fits file.
+ * <p>
+ * A single SkyView request returns DSS_PIXELS pixels whatever the field size, so fields wider
+ * than TILE_AMIN are split into n x n tiles of DSS_PIXELS each, up to MAX_TILES_PER_SIDE.
+ * Every tile is requested with the mosaic centre as its projection reference point, so all
+ * tiles are parts of one gnomonic image and the mosaic WCS is that of a single SkyView image
+ * with n times the pixels. A tile whose CRVAL is not the mosaic centre, e.g. from a server that
+ * ignores RefCoords, fails the mosaic rather than being placed in a different projection.
+ * </p>
+ * <p>
+ * Mosaics are off by default, so that a field of any size is a single DSS_PIXELS image. Enable
+ * with system property astroimagej.dss.mosaic=true or setEnabled, refer DssWriter.
+ * </p>
+ * <p>
+ * Tiles are downloaded concurrently, each request waiting on the SkyView rate limit, to files
+ * beside the target. Completed tiles and .part files are kept until the mosaic is written, so a
+ * failed mosaic resumes on the next request. The mosaic is then written one row at a time
+ * from positional reads of the tile files, so memory use is one mosaic row whatever the
+ * field size.
+ * </p>
+ */
+public class DssMosaic {
+
+	// widest field (arcmin) downloaded as a single image, about 1.8 arcsec pixels
+	public static final double TILE_AMIN = 30.0;
+
+	// limits a 1199 arcmin field to 36 tile requests
+	public static final int MAX_TILES_PER_SIDE = 6;
+
+	// system property enabling tiled downloads of fields wider than TILE_AMIN
+	public static final String MOSAIC_PROPERTY = "astroimagej.dss.mosaic";
+
+	// tile CRVAL offset from mosaic centre allowed for url rounding (pixels)
+	private static final double MAX_CRVAL_OFFSET_PIXELS = 0.1;
+
+	private static volatile boolean enabled = Boolean.getBoolean(MOSAIC_PROPERTY);
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "dss-tile");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final String baseUrl;
+	private final int tilePixels;
+
+	public DssMosaic() {
+		this(CatalogUrls.DSS_URL, CatalogUrls.DSS_PIXELS);
+	}
+
+	/**
+	 * @param baseUrl SkyView images endpoint
+	 * @param tilePixels tile width (pixels)
+	 */
+	public DssMosaic(String baseUrl, int tilePixels) {
+		this.baseUrl = baseUrl;
+		this.tilePixels = tilePixels;
+	}
+
+	// one tile: request, download file and placement in mosaic
+	private static class Tile {
+		private double[] centre;
+		private String url;
+		private Path path;
+		private FitsFootprint footprint;
+		private FileChannel channel;
+		private int x0;
+		private int y0;
+	}
+
+	/**
+	 * @return true if DssWriter downloads fields wider than TILE_AMIN as a mosaic
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param isEnabled true to download fields wider than TILE_AMIN as a mosaic, false (default)
+	 * 			for a single image of any field size
+	 */
+	public static void setEnabled(boolean isEnabled) {
+		enabled = isEnabled;
+	}
+
+	/**
+	 * @param fovAmin field of view (arcmin)
+	 *
+	 * @return number of tiles along each side of the field, 1 for a single image
+	 */
+	public static int getTilesPerSide(double fovAmin) {
+		int n = (int) Math.ceil(fovAmin / TILE_AMIN - 1e-9);
+		return Math.max(1, Math.min(MAX_TILES_PER_SIDE, n));
+	}
+
+	/**
+	 * @param fovAmin field of view (arcmin)
+	 *
+	 * @return mosaic width (pixels)
+	 */
+	public int getPixels(double fovAmin) {
+		return getTilesPerSide(fovAmin) * tilePixels;
+	}
+
+	/**
+	 * Downloads the tiles of a square field and writes the mosaic fits file
+	 *
+	 * @param raDeg field centre ra (deg)
+	 *
+	 * @param decDeg field centre dec (deg)
+	 *
+	 * @param sizeDeg field width (deg)
+	 *
+	 * @param target mosaic fits file, replaced if it exists
+	 *
+	 * @param listener progress listener reporting bytes downloaded over all tiles, or null
+	 *
+	 * @return size of mosaic file (bytes)
+	 *
+	 * @throws IOException if a tile could not be downloaded or the mosaic written
+	 */
+	public long download(double raDeg, double decDeg, double sizeDeg, Path target,
+			FitsDownloader.ProgressListener listener) throws IOException {
+		int n = getTilesPerSide(sizeDeg * 60.0);
+		int pixels = n * tilePixels;
+		FitsFootprint mosaic = FitsFootprint.tan(raDeg, decDeg, sizeDeg / pixels, pixels);
+
+		// tile j, i covers mosaic rows j * tilePixels.., columns i * tilePixels..
+		List<Tile> tiles = new ArrayList<>();
+		for (int j = 0; j < n; j++) {
+			for (int i = 0; i < n; i++) {
+				Tile tile = new Tile();
+				tile.centre = mosaic.pixelToWorld(i * tilePixels + (tilePixels + 1) / 2.0,
+						j * tilePixels + (tilePixels + 1) / 2.0);
+				tile.url = CatalogUrls.getDssTileUrl(baseUrl, tile.centre[0], tile.centre[1], raDeg, decDeg,
+						sizeDeg / n, tilePixels);
+				tile.path = target.resolveSibling(String.format("%s.tile_%d_%d", target.getFileName(), j, i));
+				tiles.add(tile);
+			}
+		}
+
+		downloadTiles(tiles, listener);
+		writeMosaic(tiles, mosaic, target, n);
+		for (Tile tile : tiles) {
+			Files.deleteIfExists(tile.path);
+		}
+		return Files.size(target);
+	}
+
+	// concurrent downloads, skips tiles completed by an earlier request
+	private void downloadTiles(List<Tile> tiles, FitsDownloader.ProgressListener listener) throws IOException {
+		long[] tileBytes = new long[tiles.size()];
+		double[] tileRates = new double[tiles.size()];
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int k = 0; k < tiles.size(); k++) {
+			Tile tile = tiles.get(k);
+			int index = k;
+			FitsDownloader.ProgressListener tileListener = (listener == null) ? null : (bytes, total, rate) -> {
+				synchronized (tileBytes) {
+					tileBytes[index] = bytes;
+					tileRates[index] = rate;
+					listener.progress(Arrays.stream(tileBytes).sum(), -1, Arrays.stream(tileRates).sum());
+				}
+			};
+			futures.add(CompletableFuture.runAsync(() -> {
+				if (!FitsDownloader.isValid(tile.path)) {
+					try {
+						new FitsDownloader().download(tile.url, tile.path, tileListener);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			}, EXECUTOR));
+		}
+
+		IOException error = null;
+		for (CompletableFuture<Void> future : futures) {
+			try {
+				future.join();
+			} catch (CompletionException e) {
+				if (error == null) {
+					error = (e.getCause() instanceof UncheckedIOException) ? ((UncheckedIOException) e.getCause()).getCause()
+							: new IOException(e.getCause());
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/*
+	 * Checks each tile is projected about the mosaic centre and places it by its centre pixel in
+	 * tile and mosaic WCS, then writes mosaic rows from positional reads of the tiles. Pixels not
+	 * covered by a tile, if any, are zero.
+	 */
+	private void writeMosaic(List<Tile> tiles, FitsFootprint mosaic, Path target, int n) throws IOException {
+		int pixels = mosaic.getNaxis1();
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try {
+			int bitpix = 0;
+			for (Tile tile : tiles) {
+				tile.footprint = FitsFootprint.read(tile.path);
+				if (tile.footprint == null) {
+					throw new IOException("DSS tile is not a gnomonic fits image: " + tile.url);
+				}
+				if (bitpix != 0 && tile.footprint.getBitpix() != bitpix) {
+					throw new IOException("DSS tiles have different BITPIX: " + tile.url);
+				}
+				bitpix = tile.footprint.getBitpix();
+				if (getCrvalOffsetDeg(tile.footprint, mosaic) > MAX_CRVAL_OFFSET_PIXELS * tile.footprint.getScaleDeg()) {
+					throw new IOException(String.format("DSS tile not projected about mosaic centre, CRVAL %.6f, %.6f: %s",
+							tile.footprint.getCrval1(), tile.footprint.getCrval2(), tile.url));
+				}
+				double[] inMosaic = mosaic.worldToPixel(tile.centre[0], tile.centre[1]);
+				double[] inTile = tile.footprint.worldToPixel(tile.centre[0], tile.centre[1]);
+				tile.x0 = (int) Math.round(inMosaic[0] - inTile[0]);
+				tile.y0 = (int) Math.round(inMosaic[1] - inTile[1]);
+				tile.channel = FileChannel.open(tile.path, StandardOpenOption.READ);
+			}
+			int bytesPerPixel = tiles.get(0).footprint.getBytesPerPixel();
+
+			// first tile header with mosaic size and reference point
+			double[] centre = mosaic.pixelToWorld((pixels + 1) / 2.0, (pixels + 1) / 2.0);
+			Map<String, String> edits = new HashMap<>();
+			edits.put("NAXIS1", FitsFootprint.intCard("NAXIS1", pixels));
+			edits.put("NAXIS2", FitsFootprint.intCard("NAXIS2", pixels));
+			edits.put("CRVAL1", FitsFootprint.doubleCard("CRVAL1", centre[0]));
+			edits.put("CRVAL2", FitsFootprint.doubleCard("CRVAL2", centre[1]));
+			edits.put("CRPIX1", FitsFootprint.doubleCard("CRPIX1", (pixels + 1) / 2.0));
+			edits.put("CRPIX2", FitsFootprint.doubleCard("CRPIX2", (pixels + 1) / 2.0));
+			List<String> header = FitsFootprint.editHeader(FitsFootprint.readHeader(tiles.get(0).path), edits,
+					String.format("Mosaic of %d x %d SkyView tiles", n, n));
+
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				FitsFootprint.writeFully(out, FitsFootprint.headerBlocks(header));
+				byte[] row = new byte[pixels * bytesPerPixel];
+				for (int y = 0; y < pixels; y++) {
+					Arrays.fill(row, (byte) 0);
+					for (Tile tile : tiles) {
+						int ty = y - tile.y0;
+						if (ty >= 0 && ty < tile.footprint.getNaxis2()) {
+							readRow(tile, ty, pixels, row);
+						}
+					}
+					FitsFootprint.writeFully(out, ByteBuffer.wrap(row));
+				}
+				long dataBytes = (long) pixels * pixels * bytesPerPixel;
+				FitsFootprint.writeFully(out, ByteBuffer.allocate((int) (FitsFootprint.blocks(dataBytes) - dataBytes)));
+			}
+		} finally {
+			for (Tile tile : tiles) {
+				if (tile.channel != null) {
+					tile.channel.close();
+					tile.channel = null;
+				}
+			}
+		}
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// angular offset of tile reference point from mosaic reference point (deg)
+	private static double getCrvalOffsetDeg(FitsFootprint tile, FitsFootprint mosaic) {
+		double dRa = (tile.getCrval1() - mosaic.getCrval1() + 540.0) % 360.0 - 180.0;
+		double dDec = tile.getCrval2() - mosaic.getCrval2();
+		return Math.hypot(dRa * Math.cos(Math.toRadians(mosaic.getCrval2())), dDec);
+	}
+
+	// copies the part of tile row ty inside the mosaic into the mosaic row
+	private static void readRow(Tile tile, int ty, int pixels, byte[] row) throws IOException {
+		int xs = Math.max(0, tile.x0);
+		int xe = Math.min(pixels, tile.x0 + tile.footprint.getNaxis1());
+		if (xe <= xs) {
+			return;
+		}
+		int bytesPerPixel = tile.footprint.getBytesPerPixel();
+		ByteBuffer buffer = ByteBuffer.wrap(row, xs * bytesPerPixel, (xe - xs) * bytesPerPixel);
+		long offset = tile.footprint.dataOffset(xs - tile.x0, ty);
+		while (buffer.hasRemaining()) {
+			if (tile.channel.read(buffer, offset + buffer.position() - xs * bytesPerPixel) < 0) {
+				throw new IOException("Truncated fits data: " + tile.path);
+			}
+		}
+	}
+}
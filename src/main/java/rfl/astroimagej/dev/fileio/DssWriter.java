@@ -2,10 +2,7 @@ package rfl.astroimagej.dev.fileio;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 
 import rfl.astroimagej.dev.catalogs.CatalogQuery;
 import rfl.astroimagej.dev.enums.CatalogType;
@@ -28,16 +25,46 @@ import rfl.astroimagej.dev.utils.CatalogUrls;
  */
 public class DssWriter {
 
+	// shared DSS image cache
+	private static FitsCache fitsCache = null;
+
 	/**
 	 * Compile fits filename based on catalog query data. If this is a new file in destination
-	 * folder then runs a SkyView server query on DSS catalog to download 1000x1000 fits 
-	 * image for the specified sky region. 
+	 * folder then runs a SkyView server query on DSS catalog to download a DSS_PIXELS square fits
+	 * image for the specified sky region, or a mosaic of such images for a wide field if enabled,
+	 * refer DssMosaic.setEnabled. 
 	 * 
 	 * @param query sky coordinate and field-of-view data
 	 * 
 	 * @return message whether successful in writing DSS fits file
 	 */
 	public static String downloadDssFits(CatalogQuery query) {
+		return downloadDssFits(query, null);
+	}
+
+	/**
+	 * Downloads the DSS fits file for the query unless a complete fits file already exists.
+	 * <p>
+	 * Images are first looked up in the fits cache by survey, position, size and pixels, so a
+	 * renamed target copies the cached image without a download. Next, a cutout is
+	 * taken from any cached image that covers the field. Otherwise the image is downloaded to
+	 * the cache folder, stored in the cache and copied to the fits file. If mosaics are enabled,
+	 * fields wider than DssMosaic.TILE_AMIN are downloaded as a mosaic of tiles, refer DssMosaic;
+	 * by default every field is a single image.
+	 * </p>
+	 * <p>
+	 * The download resumes after a dropped connection and the fits file is only published when
+	 * complete, refer FitsDownloader. An existing file that is not a complete fits file, e.g.
+	 * truncated by an earlier version, is downloaded again.
+	 * </p>
+	 * 
+	 * @param query sky coordinate and field-of-view data
+	 * 
+	 * @param listener download progress listener, or null
+	 * 
+	 * @return message whether successful in writing DSS fits file
+	 */
+	public static String downloadDssFits(CatalogQuery query, FitsDownloader.ProgressListener listener) {
 		// compile DSS url for query parameters
 		String skyUrl = CatalogUrls.getUrl(query, CatalogType.DSS);
 		
@@ -45,18 +72,78 @@ public class DssWriter {
 		File file = RaDecFileWriter.getFile(query, "fits");
 		String filePath = file.toString();
 		
-		// if fits file does not already exist
-		// attempts to download & save a new dss fits file
+		// if complete fits file does not already exist
+		// copies cached image or attempts to download & save a new dss fits file
 		String message = String.format("Fit file: %s already exists", filePath);
-		if (!file.exists()) {
-			try {
-				InputStream in = new URL(skyUrl).openStream();
-				Files.copy(in, Paths.get(filePath));
-				message = String.format("Saved fits file: %s", filePath);
-			} catch (IOException e) {
-				message = String.format("Error in writing file: %s", filePath);
+		if (!FitsDownloader.isValid(file.toPath())) {
+			FitsCache cache = getFitsCache();
+			String key = getCacheKey(query);
+			if (cache.get(key, file.toPath())) {
+				message = String.format("Saved fits file: %s (from cache)", filePath);
+			} else if (cache.getCovering(query.getRaHr() * 15.0, query.getDecDeg(), query.getFovAmin() / 60.0,
+					getDssPixels(query), file.toPath())) {
+				message = String.format("Saved fits file: %s (cutout of cached image, %d downloads saved)", filePath,
+						cache.getSavedDownloadCount());
+			} else if (getTilesPerSide(query) > 1) {
+				// wide field, tiled download
+				int n = getTilesPerSide(query);
+				try {
+					Path download = cache.getDownloadPath(key);
+					long bytes = new DssMosaic().download(query.getRaHr() * 15.0, query.getDecDeg(),
+							query.getFovAmin() / 60.0, download, listener);
+					cache.put(key, download, file.toPath());
+					message = String.format("Saved fits file: %s (%d bytes, %d x %d tile mosaic)", filePath, bytes, n, n);
+				} catch (IOException e) {
+					message = String.format("Error in writing file: %s (%s)", filePath, e.getMessage());
+				}
+			} else {
+				try {
+					Path download = cache.getDownloadPath(key);
+					long bytes = new FitsDownloader().download(skyUrl, download, listener);
+					cache.put(key, download, file.toPath());
+					message = String.format("Saved fits file: %s (%d bytes)", filePath, bytes);
+				} catch (IOException e) {
+					message = String.format("Error in writing file: %s (%s)", filePath, e.getMessage());
+				}
 			}
 		} 
 		return message;
 	}
+
+	/**
+	 * Compiles the fits cache key for the DSS image of a query, position and size at the
+	 * precision of the DSS url
+	 * 
+	 * @param query sky coordinate and field-of-view data
+	 * 
+	 * @return cache request key
+	 */
+	public static String getCacheKey(CatalogQuery query) {
+		return FitsCache.requestKey(CatalogUrls.DSS_SURVEY, query.getRaHr() * 15.0, query.getDecDeg(),
+				query.getFovAmin() / 60.0, getDssPixels(query));
+	}
+
+	/**
+	 * @param query sky coordinate and field-of-view data
+	 * 
+	 * @return DSS image width (pixels), DSS_PIXELS for each mosaic tile of a wide field
+	 */
+	public static int getDssPixels(CatalogQuery query) {
+		return getTilesPerSide(query) * CatalogUrls.DSS_PIXELS;
+	}
+
+	// mosaic tiles per side, 1 for a single image unless mosaics are enabled
+	private static int getTilesPerSide(CatalogQuery query) {
+		return DssMosaic.isEnabled() ? DssMosaic.getTilesPerSide(query.getFovAmin()) : 1;
+	}
+
+	/**
+	 * @return shared fits cache, opened on first use
+	 */
+	public static synchronized FitsCache getFitsCache() {
+		if (fitsCache == null) {
+			fitsCache = new FitsCache();
+		}
+		return fitsCache;
+	}
 }
@@ -0,0 +1,488 @@
+package rfl.astroimagej.dev.fileio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Size-bounded cache of downloaded fits images, stored once per image content.
+ * <p>
+ * Images are stored in blobs/[sha-256 of content].fits under the cache folder, by default
+ * user.home/.astroimagej/fits_cache. A request key (survey, position, size and pixels) maps
+ * to a blob, so renaming a target, or two keys returning the same image, do not download or
+ * store the image again. Blobs are read only; the per-target fits file in the radec folder is
+ * a writable copy, so editing or saving it in place never changes the cached image.
+ * </p>
+ * <p>
+ * Blobs are held in an access-ordered (LRU) map. When the total size of all blobs exceeds
+ * maxBytes the least recently used blobs, and keys that map to them, are removed. The index is
+ * saved to fits_cache.properties in the cache folder so that the cache survives plugin restarts.
+ * Index files are written to a temporary file and moved into place, and only when an image is
+ * stored; cache hits update the LRU order and counters in memory, saved with the next image.
+ * </p>
+ * <p>
+ * The sky footprint of each image, from its WCS header, is saved in the sidecar index
+ * fits_footprints.properties. A request with no exact key match can be served by a cutout of
+ * any cached image that covers the requested field at a pixel scale no coarser than
+ * MAX_SCALE_RATIO times the requested scale; the number of downloads saved is counted. The
+ * cutout is written without holding the cache lock, so other requests do not wait on its I/O.
+ * </p>
+ */
+public class FitsCache {
+
+	// default 500 MB, about 125 DSS 1000x1000 images
+	public static final long DEFAULT_MAX_BYTES = 500L * 1024 * 1024;
+
+	// cached image may have up to twice the requested pixel size
+	public static final double MAX_SCALE_RATIO = 2.0;
+
+	private static final String INDEX_FILE = "fits_cache.properties";
+	private static final String FOOTPRINT_FILE = "fits_footprints.properties";
+	private static final String SAVED_KEY = "count.saved";
+	private static final String KEY_PREFIX = "key.";
+	private static final String BLOB_PREFIX = "blob.";
+	private static final String DELIM = "\t";
+
+	private final Path cacheDir;
+	private final long maxBytes;
+
+	// request key => blob hash, guarded by this
+	private final Map<String, String> keys = new HashMap<>();
+
+	// LRU blob hash => size (bytes), guarded by this
+	private final LinkedHashMap<String, Long> blobs = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes = 0;
+
+	// blob hash => sky footprint, blobs without gnomonic WCS are not included
+	private final Map<String, FitsFootprint> footprints = new HashMap<>();
+
+	// cache counters, downloads saved by cutouts persisted
+	private long nHits = 0;
+	private long nMisses = 0;
+	private long nSaved = 0;
+
+	/**
+	 * Opens the default cache folder with the default size limit
+	 */
+	public FitsCache() {
+		this(getCacheDir(), DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Opens a cache folder, loading any saved index
+	 *
+	 * @param cacheDir cache folder
+	 *
+	 * @param maxBytes maximum total size of cached images (bytes)
+	 */
+	public FitsCache(Path cacheDir, long maxBytes) {
+		this.cacheDir = cacheDir;
+		this.maxBytes = maxBytes;
+		loadIndex();
+	}
+
+	/**
+	 * Compiles a request key for an image
+	 *
+	 * @param survey survey name, e.g. digitized sky survey
+	 * @param raDeg image centre ra (deg)
+	 * @param decDeg image centre dec (deg)
+	 * @param sizeDeg image size (deg)
+	 * @param pixels image width (pixels)
+	 *
+	 * @return request key
+	 */
+	public static String requestKey(String survey, double raDeg, double decDeg, double sizeDeg, int pixels) {
+		return String.format("%s|%.5f|%+.5f|%.5f|%d", survey.toLowerCase(), raDeg, decDeg, sizeDeg, pixels);
+	}
+
+	/**
+	 * Copies the cached image for a request key to target
+	 *
+	 * @param key request key
+	 *
+	 * @param target per-target fits file, replaced if it exists
+	 *
+	 * @return true if the image was cached, false on a miss
+	 */
+	public synchronized boolean get(String key, Path target) {
+		String hash = keys.get(key);
+		Path blob = (hash == null) ? null : getBlobPath(hash);
+		if (blob == null || !Files.exists(blob)) {
+			if (hash != null) {
+				removeBlob(hash);
+			}
+			nMisses++;
+			return false;
+		}
+		try {
+			copyBlob(blob, target);
+		} catch (IOException e) {
+			nMisses++;
+			return false;
+		}
+		nHits++;
+		// mark recently used
+		blobs.get(hash);
+		return true;
+	}
+
+	/**
+	 * Moves a downloaded image into the store, evicting least recently used images above the
+	 * size limit
+	 *
+	 * @param key request key
+	 *
+	 * @param file downloaded fits file, moved into the store or deleted if already stored
+	 *
+	 * @param target per-target fits file copied from the stored image, or null
+	 *
+	 * @return hash of the stored image
+	 *
+	 * @throws IOException if the image could not be stored or copied to target
+	 */
+	public synchronized String put(String key, Path file, Path target) throws IOException {
+		String hash = sha256(file);
+		Path blob = getBlobPath(hash);
+		long size = Files.size(file);
+		if (Files.exists(blob)) {
+			Files.delete(file);
+		} else {
+			Files.createDirectories(blob.getParent());
+			try {
+				Files.move(file, blob, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(file, blob);
+			}
+			blob.toFile().setReadOnly();
+		}
+		keys.put(key, hash);
+		if (blobs.put(hash, size) == null) {
+			totalBytes += size;
+		}
+		addFootprint(hash);
+		evict(hash);
+		saveIndex();
+		if (target != null) {
+			copyBlob(blob, target);
+		}
+		return hash;
+	}
+
+	/**
+	 * Writes a cutout of the cached image that best covers a square field, finest pixel scale
+	 * first, in place of a download
+	 *
+	 * @param raDeg field centre ra (deg)
+	 * @param decDeg field centre dec (deg)
+	 * @param sizeDeg field width (deg)
+	 * @param pixels requested image width (pixels)
+	 * @param target per-target fits file, replaced if it exists
+	 *
+	 * @return true if a covering image was found and the cutout written
+	 */
+	public boolean getCovering(double raDeg, double decDeg, double sizeDeg, int pixels, Path target) {
+		// choose image and cutout bounds under the lock, write the cutout without it
+		double maxScale = MAX_SCALE_RATIO * sizeDeg / pixels;
+		String bestHash = null;
+		FitsFootprint bestFootprint = null;
+		int[] bestBounds = null;
+		synchronized (this) {
+			for (Map.Entry<String, FitsFootprint> e : footprints.entrySet()) {
+				FitsFootprint fp = e.getValue();
+				if (fp.getScaleDeg() > maxScale
+						|| (bestFootprint != null && fp.getScaleDeg() >= bestFootprint.getScaleDeg())) {
+					continue;
+				}
+				int[] bounds = fp.cutoutBounds(raDeg, decDeg, sizeDeg);
+				if (bounds != null) {
+					bestHash = e.getKey();
+					bestFootprint = fp;
+					bestBounds = bounds;
+				}
+			}
+		}
+		if (bestHash == null) {
+			return false;
+		}
+		try {
+			// fails if the image is evicted meanwhile
+			bestFootprint.writeCutout(getBlobPath(bestHash), target, bestBounds);
+		} catch (IOException e) {
+			return false;
+		}
+		synchronized (this) {
+			nSaved++;
+			// mark recently used
+			blobs.get(bestHash);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a staging path for downloading an image, in the cache folder so that the image
+	 * can be moved into the store and an interrupted .part download can be resumed
+	 *
+	 * @param key request key
+	 *
+	 * @return download path
+	 */
+	public Path getDownloadPath(String key) throws IOException {
+		Path dir = cacheDir.resolve("downloads");
+		Files.createDirectories(dir);
+		return dir.resolve(sha256(key.getBytes(StandardCharsets.UTF_8)) + ".fits");
+	}
+
+	/**
+	 * Deletes all images and the index file
+	 */
+	public synchronized void clear() {
+		for (String hash : new ArrayList<>(blobs.keySet())) {
+			removeBlob(hash);
+		}
+		new File(cacheDir.toFile(), INDEX_FILE).delete();
+		new File(cacheDir.toFile(), FOOTPRINT_FILE).delete();
+	}
+
+	// removes least recently used blobs, except the newest, while over size limit
+	private void evict(String newest) {
+		for (String hash : new ArrayList<>(blobs.keySet())) {
+			if (totalBytes <= maxBytes) {
+				break;
+			}
+			if (!hash.equals(newest)) {
+				removeBlob(hash);
+			}
+		}
+	}
+
+	// deletes blob and keys that map to it
+	private void removeBlob(String hash) {
+		Long size = blobs.remove(hash);
+		if (size != null) {
+			totalBytes -= size;
+		}
+		keys.values().removeIf(hash::equals);
+		footprints.remove(hash);
+		Path blob = getBlobPath(hash);
+		blob.toFile().setWritable(true);
+		try {
+			Files.deleteIfExists(blob);
+		} catch (IOException e) {
+			// removed from index, orphan file is harmless
+		}
+	}
+
+	// reads footprint from blob header, images without gnomonic WCS have no footprint
+	private void addFootprint(String hash) {
+		try {
+			FitsFootprint fp = FitsFootprint.read(getBlobPath(hash));
+			if (fp != null) {
+				footprints.put(hash, fp);
+			}
+		} catch (IOException e) {
+			// not a readable fits image, exact key lookups only
+		}
+	}
+
+	// writable copy, a hard link would share the read only blob with the radec folder
+	private static void copyBlob(Path blob, Path target) throws IOException {
+		Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+		target.toFile().setWritable(true);
+	}
+
+	private Path getBlobPath(String hash) {
+		return cacheDir.resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash + ".fits");
+	}
+
+	/*
+	 * Imports saved index, blobs in least to most recently used order, then footprints
+	 * Key format: key.[request key] = hash, blob.[hash] = size, access order
+	 * Footprint format: [hash] = FitsFootprint.encode
+	 */
+	private void loadIndex() {
+		Properties prop = loadProperties(INDEX_FILE);
+		List<String[]> loaded = new ArrayList<>();
+		for (String name : prop.stringPropertyNames()) {
+			if (name.startsWith(BLOB_PREFIX)) {
+				String hash = name.substring(BLOB_PREFIX.length());
+				String[] el = prop.getProperty(name).split(DELIM);
+				if (el.length == 2 && Files.exists(getBlobPath(hash))) {
+					loaded.add(new String[] { hash, el[0], el[1] });
+				}
+			}
+		}
+		loaded.sort((e1, e2) -> Long.compare(Long.parseLong(e1[2]), Long.parseLong(e2[2])));
+		for (String[] el : loaded) {
+			long size = Long.parseLong(el[1]);
+			blobs.put(el[0], size);
+			totalBytes += size;
+		}
+		for (String name : prop.stringPropertyNames()) {
+			String hash = prop.getProperty(name);
+			if (name.startsWith(KEY_PREFIX) && blobs.containsKey(hash)) {
+				keys.put(name.substring(KEY_PREFIX.length()), hash);
+			}
+		}
+		nSaved = Long.parseLong(prop.getProperty(SAVED_KEY, "0"));
+
+		// footprints of blobs missing from sidecar index are read from blob headers
+		Properties fpProp = loadProperties(FOOTPRINT_FILE);
+		for (String hash : blobs.keySet()) {
+			try {
+				footprints.put(hash, FitsFootprint.decode(fpProp.getProperty(hash)));
+			} catch (RuntimeException re) {
+				addFootprint(hash);
+			}
+		}
+	}
+
+	// saves index and footprint properties files, failure leaves index in memory only
+	private void saveIndex() {
+		Properties prop = new Properties();
+		for (Map.Entry<String, String> e : keys.entrySet()) {
+			prop.setProperty(KEY_PREFIX + e.getKey(), e.getValue());
+		}
+		// access order saved as sequence numbers, oldest first
+		long order = 0;
+		for (Map.Entry<String, Long> e : blobs.entrySet()) {
+			prop.setProperty(BLOB_PREFIX + e.getKey(), e.getValue() + DELIM + order++);
+		}
+		prop.setProperty(SAVED_KEY, String.valueOf(nSaved));
+		storeProperties(INDEX_FILE, prop, "FITS image cache");
+
+		Properties fpProp = new Properties();
+		for (Map.Entry<String, FitsFootprint> e : footprints.entrySet()) {
+			fpProp.setProperty(e.getKey(), e.getValue().encode());
+		}
+		storeProperties(FOOTPRINT_FILE, fpProp, "FITS image footprints: naxis1, naxis2, bitpix, crval, crpix, cd, header bytes");
+	}
+
+	// empty if file does not exist or could not be read
+	private Properties loadProperties(String fileName) {
+		Properties prop = new Properties();
+		File file = new File(cacheDir.toFile(), fileName);
+		if (file.exists()) {
+			try (InputStream input = new FileInputStream(file)) {
+				prop.load(input);
+			} catch (IOException ex) {
+				// start with empty index
+				prop.clear();
+			}
+		}
+		return prop;
+	}
+
+	// writes a temporary file and moves it into place, a failed save leaves the previous file
+	private void storeProperties(String fileName, Properties prop, String comment) {
+		Path file = cacheDir.resolve(fileName);
+		Path temp = null;
+		try {
+			Files.createDirectories(cacheDir);
+			temp = Files.createTempFile(cacheDir, fileName, ".tmp");
+			try (OutputStream output = Files.newOutputStream(temp)) {
+				prop.store(output, comment);
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException io) {
+			// not persisted
+			if (temp != null) {
+				temp.toFile().delete();
+			}
+		}
+	}
+
+	private static String sha256(Path file) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(file)) {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, n);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static String sha256(byte[] bytes) {
+		return toHex(newDigest().digest(bytes));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// required in every Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns path to cache folder user.home/.astroimagej/fits_cache
+	 *
+	 * @return full path to cache folder
+	 */
+	public static Path getCacheDir() {
+		String homePath = Paths.get(System.getProperty("user.home")).toAbsolutePath().toString();
+		return Paths.get(homePath, ".astroimagej", "fits_cache");
+	}
+
+	public synchronized int size() {
+		return blobs.size();
+	}
+
+	public synchronized int getKeyCount() {
+		return keys.size();
+	}
+
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public synchronized long getHitCount() {
+		return nHits;
+	}
+
+	public synchronized long getMissCount() {
+		return nMisses;
+	}
+
+	/**
+	 * @return number of downloads replaced by cutouts of cached images, since cache was created
+	 */
+	public synchronized long getSavedDownloadCount() {
+		return nSaved;
+	}
+
+	public synchronized int getFootprintCount() {
+		return footprints.size();
+	}
+}
@@ -0,0 +1,277 @@
+package rfl.astroimagej.dev.fileio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import rfl.astroimagej.dev.utils.HttpTransport;
+
+/**
+ * Downloads a fits file to a local path so that a dropped connection never leaves a truncated
+ * file in place.
+ * <p>
+ * Data are requested through the shared HttpTransport and streamed through NIO channels into
+ * [target].part. If the transfer fails, the next attempt requests the remaining bytes with an
+ * HTTP Range header and appends them; a server that ignores the range restarts the file.
+ * Attempts after the first wait an exponential backoff, doubling from the initial delay up to
+ * MAX_BACKOFF_MS.
+ * </p>
+ * <p>
+ * A completed .part file is checked against the response length and the FITS header, then
+ * published with an atomic move, so the target file either does not exist or is complete.
+ * </p>
+ */
+public class FitsDownloader {
+
+	// FITS files are a whole number of 2880 byte blocks
+	public static final int FITS_BLOCK = 2880;
+
+	public static final int DEFAULT_ATTEMPTS = 3;
+
+	// delay before second attempt, doubled for each further attempt
+	public static final long DEFAULT_BACKOFF_MS = 500;
+	public static final long MAX_BACKOFF_MS = 8000;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long PROGRESS_INTERVAL_MS = 250;
+
+	/**
+	 * Receives download progress, at most every PROGRESS_INTERVAL_MS and on completion
+	 */
+	public interface ProgressListener {
+		/**
+		 * @param bytes bytes in .part file
+		 * @param totalBytes file size, -1 if unknown
+		 * @param bytesPerSec transfer rate of current attempt
+		 */
+		public void progress(long bytes, long totalBytes, double bytesPerSec);
+	}
+
+	private final int maxAttempts;
+	private final long backoffMs;
+	private final HttpTransport transport;
+
+	// requests made in last download
+	private int nRequests = 0;
+
+	public FitsDownloader() {
+		this(DEFAULT_ATTEMPTS, DEFAULT_BACKOFF_MS);
+	}
+
+	/**
+	 * @param maxAttempts maximum requests per download, including resumed requests
+	 * @param backoffMs delay before the second request (ms), doubled for each further request
+	 */
+	public FitsDownloader(int maxAttempts, long backoffMs) {
+		this.maxAttempts = maxAttempts;
+		this.backoffMs = backoffMs;
+		this.transport = HttpTransport.getDefault();
+	}
+
+	/**
+	 * Downloads url to target, resuming an earlier .part file if one exists
+	 *
+	 * @param url fits file url
+	 *
+	 * @param target fits file path, replaced if it exists
+	 *
+	 * @param listener progress listener, or null
+	 *
+	 * @return size of downloaded file (bytes)
+	 *
+	 * @throws IOException if the file could not be downloaded in maxAttempts requests, or the
+	 * 			response is not a fits file
+	 */
+	public long download(String url, Path target, ProgressListener listener) throws IOException {
+		Path part = target.resolveSibling(target.getFileName() + ".part");
+		long totalBytes = -1;
+		IOException lastError = null;
+		nRequests = 0;
+
+		while (nRequests < maxAttempts) {
+			if (nRequests > 0) {
+				backoff(nRequests);
+			}
+			nRequests++;
+			try {
+				totalBytes = transfer(url, part, listener);
+				if (totalBytes < 0 || Files.size(part) == totalBytes) {
+					lastError = null;
+					break;
+				}
+				lastError = new IOException(String.format("Incomplete transfer %d of %d bytes", Files.size(part), totalBytes));
+			} catch (IOException e) {
+				lastError = e;
+			}
+		}
+		if (lastError != null) {
+			throw lastError;
+		}
+
+		try {
+			validate(part, totalBytes);
+		} catch (IOException e) {
+			Files.deleteIfExists(part);
+			throw e;
+		}
+		try {
+			Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return Files.size(target);
+	}
+
+	/*
+	 * Waits before a retry, backoffMs * 2^(nFailed - 1) capped at MAX_BACKOFF_MS
+	 */
+	private void backoff(int nFailed) throws IOException {
+		long delayMs = Math.min(MAX_BACKOFF_MS, backoffMs << Math.min(nFailed - 1, 30));
+		try {
+			Thread.sleep(delayMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Download interrupted");
+		}
+	}
+
+	/*
+	 * One request, appends to part file from its current size
+	 *
+	 * @return total file size, -1 if unknown
+	 */
+	private long transfer(String url, Path part, ProgressListener listener) throws IOException {
+		long offset = Files.exists(part) ? Files.size(part) : 0;
+		// byte ranges refer to the unencoded file
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Accept-Encoding", "identity");
+		if (offset > 0) {
+			headers.put("Range", "bytes=" + offset + "-");
+		}
+		HttpTransport.Response response = transport.get(url, headers);
+
+		long totalBytes = -1;
+		boolean append = false;
+		int code = response.getStatus();
+		if (code == 416 && offset > 0) {
+			// range starts at end of file, part file is complete
+			response.close();
+			return offset;
+		} else if (code == HttpURLConnection.HTTP_PARTIAL) {
+			totalBytes = parseContentRange(response.getHeader("Content-Range"), offset);
+			append = true;
+		} else if (code == HttpURLConnection.HTTP_OK) {
+			totalBytes = response.getContentLength();
+		} else {
+			response.close();
+			throw new IOException(String.format("HTTP %d from %s", code, url));
+		}
+
+		StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+		try (HttpTransport.Response body = response;
+				ReadableByteChannel in = Channels.newChannel(body.getBody());
+				FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			long bytes = append ? offset : 0;
+			long t0 = System.nanoTime();
+			long startBytes = bytes;
+			long lastReport = 0;
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				if (n == 0) {
+					continue;
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					out.write(buffer);
+				}
+				buffer.clear();
+				bytes += n;
+
+				long elapsedMs = (System.nanoTime() - t0) / 1000000;
+				if (listener != null && elapsedMs - lastReport >= PROGRESS_INTERVAL_MS) {
+					lastReport = elapsedMs;
+					listener.progress(bytes, totalBytes, rate(bytes - startBytes, t0));
+				}
+			}
+			if (listener != null) {
+				listener.progress(bytes, totalBytes, rate(bytes - startBytes, t0));
+			}
+		}
+		return totalBytes;
+	}
+
+	// Content-Range: bytes start-end/total, start must match resume offset
+	private static long parseContentRange(String contentRange, long offset) throws IOException {
+		if (contentRange == null || !contentRange.matches("bytes \\d+-\\d+/(\\d+|\\*)")) {
+			throw new IOException("Invalid Content-Range: " + contentRange);
+		}
+		String[] el = contentRange.substring(6).split("[-/]");
+		if (Long.parseLong(el[0]) != offset) {
+			throw new IOException(String.format("Content-Range %s does not start at %d", contentRange, offset));
+		}
+		return el[2].equals("*") ? -1 : Long.parseLong(el[2]);
+	}
+
+	private static double rate(long bytes, long t0) {
+		double sec = (System.nanoTime() - t0) / 1.0e9;
+		return (sec > 0) ? bytes / sec : 0.0;
+	}
+
+	/**
+	 * Checks a file is a complete fits file: SIMPLE = T header card, size a whole number of
+	 * 2880 byte blocks and equal to the expected size if known
+	 *
+	 * @param path file to check
+	 *
+	 * @param expectedBytes expected file size, -1 if unknown
+	 *
+	 * @throws IOException if the file is not a complete fits file
+	 */
+	public static void validate(Path path, long expectedBytes) throws IOException {
+		long size = Files.size(path);
+		if (expectedBytes >= 0 && size != expectedBytes) {
+			throw new IOException(String.format("File size %d does not match expected %d bytes", size, expectedBytes));
+		}
+		if (size == 0 || size % FITS_BLOCK != 0) {
+			throw new IOException(String.format("File size %d is not a whole number of fits blocks", size));
+		}
+		ByteBuffer card = ByteBuffer.allocate(80);
+		try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+			while (card.hasRemaining() && in.read(card) >= 0) {
+			}
+		}
+		String header = new String(card.array(), StandardCharsets.US_ASCII);
+		if (!header.startsWith("SIMPLE  =") || header.charAt(29) != 'T') {
+			throw new IOException("Missing FITS SIMPLE = T header card");
+		}
+	}
+
+	/**
+	 * @return true if path is a complete fits file, refer validate
+	 */
+	public static boolean isValid(Path path) {
+		try {
+			validate(path, -1);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public int getRequestCount() {
+		return nRequests;
+	}
+}
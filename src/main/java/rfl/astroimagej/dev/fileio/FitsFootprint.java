@@ -0,0 +1,455 @@
+package rfl.astroimagej.dev.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sky footprint of a 2-d fits image, from the WCS keywords of its header, with cutout
+ * extraction.
+ * <p>
+ * Supports gnomonic (RA---TAN, DEC--TAN) images with a CD matrix, or CDELT and optional CROTA2
+ * keywords, as returned by SkyView. A requested square field is covered if its four corners map
+ * to pixels inside the image; gnomonic projection maps great circles to straight lines, so the
+ * whole field is then inside. A cutout copies the pixel rows that bound the field, without
+ * resampling, and shifts CRPIX so that the WCS of the cutout is unchanged.
+ * </p>
+ */
+public class FitsFootprint {
+
+	private static final int CARD = 80;
+	private static final String DELIM = "\t";
+
+	private int naxis1;
+	private int naxis2;
+	private int bitpix;
+	private double crval1;
+	private double crval2;
+	private double crpix1;
+	private double crpix2;
+	private double cd11;
+	private double cd12;
+	private double cd21;
+	private double cd22;
+
+	// header size (bytes), whole 2880 byte blocks
+	private long headerBytes;
+
+	private FitsFootprint() {
+	}
+
+	/**
+	 * Reads the footprint of a fits image
+	 *
+	 * @param path fits file
+	 *
+	 * @return footprint, or null if the image is not a 2-d gnomonic image
+	 *
+	 * @throws IOException if the header could not be read
+	 */
+	public static FitsFootprint read(Path path) throws IOException {
+		List<String> cards = readHeader(path);
+		FitsFootprint fp = new FitsFootprint();
+		try {
+			if (getInt(cards, "NAXIS", 0) != 2 || !getString(cards, "CTYPE1").endsWith("-TAN")
+					|| !getString(cards, "CTYPE2").endsWith("-TAN")) {
+				return null;
+			}
+			fp.naxis1 = getInt(cards, "NAXIS1", 0);
+			fp.naxis2 = getInt(cards, "NAXIS2", 0);
+			fp.bitpix = getInt(cards, "BITPIX", 0);
+			fp.crval1 = getDouble(cards, "CRVAL1", Double.NaN);
+			fp.crval2 = getDouble(cards, "CRVAL2", Double.NaN);
+			fp.crpix1 = getDouble(cards, "CRPIX1", Double.NaN);
+			fp.crpix2 = getDouble(cards, "CRPIX2", Double.NaN);
+			if (findCard(cards, "CD1_1") != null) {
+				fp.cd11 = getDouble(cards, "CD1_1", 0.0);
+				fp.cd12 = getDouble(cards, "CD1_2", 0.0);
+				fp.cd21 = getDouble(cards, "CD2_1", 0.0);
+				fp.cd22 = getDouble(cards, "CD2_2", 0.0);
+			} else {
+				double cdelt1 = getDouble(cards, "CDELT1", Double.NaN);
+				double cdelt2 = getDouble(cards, "CDELT2", Double.NaN);
+				double rot = Math.toRadians(getDouble(cards, "CROTA2", 0.0));
+				fp.cd11 = cdelt1 * Math.cos(rot);
+				fp.cd12 = -cdelt2 * Math.sin(rot);
+				fp.cd21 = cdelt1 * Math.sin(rot);
+				fp.cd22 = cdelt2 * Math.cos(rot);
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		fp.headerBytes = blocks(cards.size() * (long) CARD);
+		double det = fp.cd11 * fp.cd22 - fp.cd12 * fp.cd21;
+		boolean valid = fp.naxis1 > 0 && fp.naxis2 > 0 && fp.bitpix != 0 && det != 0.0 && !Double.isNaN(det)
+				&& !Double.isNaN(fp.crval1 + fp.crval2 + fp.crpix1 + fp.crpix2);
+		return valid ? fp : null;
+	}
+
+	/**
+	 * Converts sky coordinates to fits pixel coordinates, first pixel centre is (1, 1)
+	 *
+	 * @param raDeg ra (deg)
+	 * @param decDeg dec (deg)
+	 *
+	 * @return x, y pixel coordinates, null if position is more than 90 deg from image centre
+	 */
+	public double[] worldToPixel(double raDeg, double decDeg) {
+		double[] xi = project(crval1, crval2, raDeg, decDeg);
+		if (xi == null) {
+			return null;
+		}
+		double det = cd11 * cd22 - cd12 * cd21;
+		double dx = (cd22 * xi[0] - cd12 * xi[1]) / det;
+		double dy = (-cd21 * xi[0] + cd11 * xi[1]) / det;
+		return new double[] { crpix1 + dx, crpix2 + dy };
+	}
+
+	/**
+	 * Converts fits pixel coordinates to sky coordinates, refer worldToPixel
+	 *
+	 * @param x pixel x coordinate, first pixel centre is 1
+	 * @param y pixel y coordinate
+	 *
+	 * @return ra, dec (deg)
+	 */
+	public double[] pixelToWorld(double x, double y) {
+		double dx = x - crpix1;
+		double dy = y - crpix2;
+		return deproject(crval1, crval2, cd11 * dx + cd12 * dy, cd21 * dx + cd22 * dy);
+	}
+
+	/**
+	 * Footprint of a square north-up gnomonic image centred on ra, dec, with ra increasing to
+	 * the left as in SkyView images
+	 *
+	 * @param raDeg image centre ra (deg)
+	 * @param decDeg image centre dec (deg)
+	 * @param scaleDeg pixel scale (deg / pixel)
+	 * @param naxis image width and height (pixels)
+	 *
+	 * @return image footprint
+	 */
+	public static FitsFootprint tan(double raDeg, double decDeg, double scaleDeg, int naxis) {
+		FitsFootprint fp = new FitsFootprint();
+		fp.naxis1 = naxis;
+		fp.naxis2 = naxis;
+		fp.crval1 = raDeg;
+		fp.crval2 = decDeg;
+		fp.crpix1 = (naxis + 1) / 2.0;
+		fp.crpix2 = (naxis + 1) / 2.0;
+		fp.cd11 = -scaleDeg;
+		fp.cd22 = scaleDeg;
+		return fp;
+	}
+
+	/**
+	 * Finds the pixels of this image that cover a square field
+	 *
+	 * @param raDeg field centre ra (deg)
+	 * @param decDeg field centre dec (deg)
+	 * @param sizeDeg field width (deg)
+	 *
+	 * @return 0-based x0, y0 (inclusive), x1, y1 (exclusive) pixel bounds, null if the field
+	 * 			is not entirely inside this image
+	 */
+	public int[] cutoutBounds(double raDeg, double decDeg, double sizeDeg) {
+		double half = sizeDeg / 2.0;
+		double xMin = Double.MAX_VALUE;
+		double xMax = -Double.MAX_VALUE;
+		double yMin = Double.MAX_VALUE;
+		double yMax = -Double.MAX_VALUE;
+		for (double[] corner : new double[][] { { -half, -half }, { -half, half }, { half, -half }, { half, half } }) {
+			double[] world = deproject(raDeg, decDeg, corner[0], corner[1]);
+			double[] pixel = worldToPixel(world[0], world[1]);
+			if (pixel == null) {
+				return null;
+			}
+			xMin = Math.min(xMin, pixel[0]);
+			xMax = Math.max(xMax, pixel[0]);
+			yMin = Math.min(yMin, pixel[1]);
+			yMax = Math.max(yMax, pixel[1]);
+		}
+		// image edges at pixel coordinates 0.5 and naxis + 0.5
+		if (xMin < 0.5 || yMin < 0.5 || xMax > naxis1 + 0.5 || yMax > naxis2 + 0.5) {
+			return null;
+		}
+		int x0 = (int) Math.floor(xMin - 0.5);
+		int y0 = (int) Math.floor(yMin - 0.5);
+		int x1 = Math.min(naxis1, (int) Math.floor(xMax - 0.5) + 1);
+		int y1 = Math.min(naxis2, (int) Math.floor(yMax - 0.5) + 1);
+		return new int[] { x0, y0, x1, y1 };
+	}
+
+	/**
+	 * Writes the pixels inside bounds of an image to a new fits file, with NAXIS and CRPIX
+	 * updated for the cutout. The cutout is written to a temporary file and moved into place.
+	 *
+	 * @param source fits image with this footprint
+	 * @param target cutout fits file, replaced if it exists
+	 * @param bounds pixel bounds, refer cutoutBounds
+	 *
+	 * @throws IOException if the source could not be read or the cutout written
+	 */
+	public void writeCutout(Path source, Path target, int[] bounds) throws IOException {
+		int width = bounds[2] - bounds[0];
+		int height = bounds[3] - bounds[1];
+		int bytesPerPixel = getBytesPerPixel();
+
+		Map<String, String> edits = new HashMap<>();
+		edits.put("NAXIS1", intCard("NAXIS1", width));
+		edits.put("NAXIS2", intCard("NAXIS2", height));
+		edits.put("CRPIX1", doubleCard("CRPIX1", crpix1 - bounds[0]));
+		edits.put("CRPIX2", doubleCard("CRPIX2", crpix2 - bounds[1]));
+		String history = String.format("Cutout x %d-%d, y %d-%d of cached image", bounds[0] + 1, bounds[2],
+				bounds[1] + 1, bounds[3]);
+		List<String> header = editHeader(readHeader(source), edits, history);
+
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(out, headerBlocks(header));
+
+			// copy bounded part of each row
+			ByteBuffer row = ByteBuffer.allocate(width * bytesPerPixel);
+			for (int y = bounds[1]; y < bounds[3]; y++) {
+				long offset = dataOffset(bounds[0], y);
+				row.clear();
+				while (row.hasRemaining()) {
+					if (in.read(row, offset + row.position()) < 0) {
+						throw new IOException("Truncated fits data: " + source);
+					}
+				}
+				row.flip();
+				writeFully(out, row);
+			}
+			long dataBytes = (long) width * height * bytesPerPixel;
+			writeFully(out, ByteBuffer.allocate((int) (blocks(dataBytes) - dataBytes)));
+		}
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @return pixel scale (deg / pixel)
+	 */
+	public double getScaleDeg() {
+		return Math.sqrt(Math.abs(cd11 * cd22 - cd12 * cd21));
+	}
+
+	/**
+	 * Encodes footprint as a tab-delimited string, for the footprint index
+	 */
+	public String encode() {
+		return String.join(DELIM, String.valueOf(naxis1), String.valueOf(naxis2), String.valueOf(bitpix),
+				String.valueOf(crval1), String.valueOf(crval2), String.valueOf(crpix1), String.valueOf(crpix2),
+				String.valueOf(cd11), String.valueOf(cd12), String.valueOf(cd21), String.valueOf(cd22),
+				String.valueOf(headerBytes));
+	}
+
+	/**
+	 * Decodes a footprint index entry, refer encode
+	 *
+	 * @throws NumberFormatException if the entry is corrupt
+	 */
+	public static FitsFootprint decode(String value) {
+		String[] el = value.split(DELIM);
+		if (el.length != 12) {
+			throw new NumberFormatException("Invalid footprint: " + value);
+		}
+		FitsFootprint fp = new FitsFootprint();
+		fp.naxis1 = Integer.parseInt(el[0]);
+		fp.naxis2 = Integer.parseInt(el[1]);
+		fp.bitpix = Integer.parseInt(el[2]);
+		fp.crval1 = Double.parseDouble(el[3]);
+		fp.crval2 = Double.parseDouble(el[4]);
+		fp.crpix1 = Double.parseDouble(el[5]);
+		fp.crpix2 = Double.parseDouble(el[6]);
+		fp.cd11 = Double.parseDouble(el[7]);
+		fp.cd12 = Double.parseDouble(el[8]);
+		fp.cd21 = Double.parseDouble(el[9]);
+		fp.cd22 = Double.parseDouble(el[10]);
+		fp.headerBytes = Long.parseLong(el[11]);
+		return fp;
+	}
+
+	// gnomonic projection of ra, dec about tangent point, standard coordinates (deg)
+	private static double[] project(double ra0Deg, double dec0Deg, double raDeg, double decDeg) {
+		double dec0 = Math.toRadians(dec0Deg);
+		double dec = Math.toRadians(decDeg);
+		double dRa = Math.toRadians(raDeg - ra0Deg);
+		double cosC = Math.sin(dec0) * Math.sin(dec) + Math.cos(dec0) * Math.cos(dec) * Math.cos(dRa);
+		if (cosC <= 0.0) {
+			return null;
+		}
+		double xi = Math.cos(dec) * Math.sin(dRa) / cosC;
+		double eta = (Math.cos(dec0) * Math.sin(dec) - Math.sin(dec0) * Math.cos(dec) * Math.cos(dRa)) / cosC;
+		return new double[] { Math.toDegrees(xi), Math.toDegrees(eta) };
+	}
+
+	// inverse gnomonic projection, standard coordinates (deg) to ra, dec (deg)
+	private static double[] deproject(double ra0Deg, double dec0Deg, double xiDeg, double etaDeg) {
+		double dec0 = Math.toRadians(dec0Deg);
+		double xi = Math.toRadians(xiDeg);
+		double eta = Math.toRadians(etaDeg);
+		double rho = Math.sqrt(xi * xi + eta * eta);
+		if (rho == 0.0) {
+			return new double[] { ra0Deg, dec0Deg };
+		}
+		double c = Math.atan(rho);
+		double dec = Math.asin(Math.cos(c) * Math.sin(dec0) + eta * Math.sin(c) * Math.cos(dec0) / rho);
+		double ra = Math.toRadians(ra0Deg)
+				+ Math.atan2(xi * Math.sin(c), rho * Math.cos(dec0) * Math.cos(c) - eta * Math.sin(dec0) * Math.sin(c));
+		return new double[] { (Math.toDegrees(ra) + 360.0) % 360.0, Math.toDegrees(dec) };
+	}
+
+	// file offset (bytes) of 0-based pixel x, y
+	long dataOffset(int x, int y) {
+		return headerBytes + ((long) y * naxis1 + x) * getBytesPerPixel();
+	}
+
+	// header cards up to and including END
+	static List<String> readHeader(Path path) throws IOException {
+		List<String> cards = new ArrayList<>();
+		ByteBuffer block = ByteBuffer.allocate(FitsDownloader.FITS_BLOCK);
+		try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+			while (true) {
+				block.clear();
+				while (block.hasRemaining()) {
+					if (in.read(block) < 0) {
+						throw new IOException("Missing fits END card: " + path);
+					}
+				}
+				String text = new String(block.array(), StandardCharsets.US_ASCII);
+				for (int i = 0; i < FitsDownloader.FITS_BLOCK; i += CARD) {
+					String card = text.substring(i, i + CARD);
+					cards.add(card);
+					if (card.startsWith("END     ")) {
+						return cards;
+					}
+				}
+			}
+		}
+	}
+
+	private static String findCard(List<String> cards, String key) {
+		String prefix = String.format("%-8s=", key);
+		for (String card : cards) {
+			if (card.startsWith(prefix)) {
+				// value field, strip comment
+				String value = card.substring(10).trim();
+				if (value.startsWith("'")) {
+					int end = value.indexOf('\'', 1);
+					return (end > 0) ? value.substring(0, end + 1) : value;
+				}
+				int slash = value.indexOf('/');
+				return (slash >= 0 ? value.substring(0, slash) : value).trim();
+			}
+		}
+		return null;
+	}
+
+	private static String getString(List<String> cards, String key) {
+		String value = findCard(cards, key);
+		return (value == null) ? "" : value.replace("'", "").trim();
+	}
+
+	private static int getInt(List<String> cards, String key, int defaultValue) {
+		String value = findCard(cards, key);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
+	}
+
+	private static double getDouble(List<String> cards, String key, double defaultValue) {
+		String value = findCard(cards, key);
+		return (value == null) ? defaultValue : Double.parseDouble(value.replace('D', 'E'));
+	}
+
+	/*
+	 * Replaces cards by key, drops checksums invalidated by the edit and adds a HISTORY card
+	 * before END
+	 */
+	static List<String> editHeader(List<String> cards, Map<String, String> edits, String history) {
+		List<String> header = new ArrayList<>();
+		for (String card : cards) {
+			String key = card.substring(0, 8).trim();
+			if (edits.containsKey(key)) {
+				card = edits.get(key);
+			} else if (key.equals("CHECKSUM") || key.equals("DATASUM")) {
+				continue;
+			} else if (key.equals("END")) {
+				header.add(String.format("%-80s", "HISTORY " + history));
+			}
+			header.add(card);
+		}
+		return header;
+	}
+
+	// header cards padded with spaces to whole fits blocks
+	static ByteBuffer headerBlocks(List<String> header) {
+		byte[] headerData = String.join("", header).getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer hb = ByteBuffer.allocate((int) blocks(headerData.length));
+		hb.put(headerData);
+		while (hb.hasRemaining()) {
+			hb.put((byte) ' ');
+		}
+		hb.flip();
+		return hb;
+	}
+
+	static String intCard(String key, int value) {
+		return String.format("%-80s", String.format("%-8s= %20d", key, value));
+	}
+
+	static String doubleCard(String key, double value) {
+		return String.format("%-80s", String.format("%-8s= %20s", key, String.valueOf(value).toUpperCase()));
+	}
+
+	// bytes rounded up to whole fits blocks
+	static long blocks(long bytes) {
+		return (bytes + FitsDownloader.FITS_BLOCK - 1) / FitsDownloader.FITS_BLOCK * FitsDownloader.FITS_BLOCK;
+	}
+
+	static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	public int getBitpix() {
+		return bitpix;
+	}
+
+	public double getCrval1() {
+		return crval1;
+	}
+
+	public double getCrval2() {
+		return crval2;
+	}
+
+	public int getBytesPerPixel() {
+		return Math.abs(bitpix) / 8;
+	}
+
+	public int getNaxis1() {
+		return naxis1;
+	}
+
+	public int getNaxis2() {
+		return naxis2;
+	}
+}
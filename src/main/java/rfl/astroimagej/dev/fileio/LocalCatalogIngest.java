@@ -0,0 +1,20 @@
+package rfl.astroimagej.dev.fileio;
+
+import java.nio.file.Paths;
+
+/**
+ * Command line front end for LocalCatalogWriter, converts a catalog dump into a LocalCatalog file.
+ * <p>
+ * Usage: java -cp [plugin jar] rfl.astroimagej.dev.fileio.LocalCatalogIngest input.[json|csv|tsv] output.cat magBand
+ * </p>
+ */
+public class LocalCatalogIngest {
+
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.out.println("Usage: LocalCatalogIngest input.[json|csv|tsv] output.cat magBand");
+			return;
+		}
+		System.out.println(LocalCatalogWriter.ingest(Paths.get(args[0]), Paths.get(args[1]), args[2]));
+	}
+}
@@ -0,0 +1,291 @@
+package rfl.astroimagej.dev.fileio;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.catalogs.ColumnarResult;
+import rfl.astroimagej.dev.catalogs.LocalCatalog;
+import rfl.astroimagej.dev.catalogs.VspJsonParser;
+import rfl.astroimagej.dev.utils.IndexSort;
+
+/**
+ * Converts VSP json or APASS csv / tsv catalog dumps into a LocalCatalog binary file, for
+ * offline queries from sites with poor connectivity.
+ * <p>
+ * Input formats:
+ * <br>.json: VSP chart response, stars with data in the selected mag band
+ * <br>.csv, .tsv: one star per line, columns id, ra (deg), dec (deg), mag, mag error, separated
+ * by comma or tab; comment lines, header lines and stars without a mag are skipped. VizieR
+ * APASS exports (recno first) are named APASS-[recno].
+ * </p>
+ * <p>
+ * Stars are streamed as file records into temporary bucket files, one per dec zone, then each
+ * zone in turn is read back, sorted by ra and appended to the catalog file. Heap use is one
+ * zone plus a small buffer per zone, not the whole dump.
+ * </p>
+ * <p> Command line conversion: refer LocalCatalogIngest </p>
+ */
+public class LocalCatalogWriter {
+
+	/**
+	 * Reads a catalog dump and writes a local catalog file
+	 *
+	 * @param input VSP json or csv / tsv dump
+	 *
+	 * @param output local catalog file
+	 *
+	 * @param magBand mag band of dump data, e.g. V
+	 *
+	 * @return message whether writing the local catalog file was successful
+	 */
+	public static String ingest(Path input, Path output, String magBand) {
+		String message;
+		try (InputStream in = Files.newInputStream(input);
+				ZoneBuckets buckets = new ZoneBuckets(output, LocalCatalog.DEFAULT_ZONE_HEIGHT_DEG)) {
+			if (input.toString().toLowerCase().endsWith(".json")) {
+				buckets.addAll(readVspJson(in, magBand));
+			} else {
+				readDelimited(in, "APASS-", buckets);
+			}
+			buckets.write(magBand);
+			message = String.format("Saved local catalog file: %s (%d stars)", output, buckets.size());
+		} catch (IOException e) {
+			message = String.format("Error in writing file: %s (%s)", output, e.getMessage());
+		}
+		return message;
+	}
+
+	/**
+	 * Reads stars with data in one mag band from a VSP json response
+	 */
+	public static ColumnarResult readVspJson(InputStream in, String magBand) throws IOException {
+		CatalogQuery query = new CatalogQuery();
+		query.setObjectId("local");
+		query.setMagBand(magBand);
+		return new VspJsonParser().parseColumns(in, query);
+	}
+
+	/*
+	 * Streams stars from comma or tab separated lines: id, ra (deg), dec (deg), mag, mag error
+	 * into zone buckets; numeric ids, e.g. APASS record numbers, are given numericIdPrefix
+	 */
+	private static void readDelimited(InputStream in, String numericIdPrefix, ZoneBuckets buckets)
+			throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] el = line.split(line.indexOf('\t') >= 0 ? "\t" : ",", -1);
+			if (el.length < 4) {
+				continue;
+			}
+			try {
+				String id = el[0].trim();
+				double ra = Double.parseDouble(el[1].trim());
+				double dec = Double.parseDouble(el[2].trim());
+				String mag = el[3].trim();
+				if (mag.isEmpty()) {
+					continue;
+				}
+				String magErr = (el.length > 4) ? el[4].trim() : "";
+				if (id.matches("\\d+")) {
+					id = numericIdPrefix + id;
+				}
+				buckets.add(id, ra / 15.0, dec, Double.parseDouble(mag), magErr.isEmpty() ? Double.NaN : Double.parseDouble(magErr));
+			} catch (NumberFormatException e) {
+				// header, units or dashes line
+				continue;
+			}
+		}
+	}
+
+	/**
+	 * Writes stars to a local catalog file, grouped in dec zones and sorted by ra in each zone.
+	 * The file is written to a temporary file and moved into place.
+	 *
+	 * @param stars star columns
+	 *
+	 * @param magBand mag band of star data
+	 *
+	 * @param output local catalog file
+	 *
+	 * @param zoneHeightDeg dec zone height (deg)
+	 *
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(ColumnarResult stars, String magBand, Path output, double zoneHeightDeg) throws IOException {
+		try (ZoneBuckets buckets = new ZoneBuckets(output, zoneHeightDeg)) {
+			buckets.addAll(stars);
+			buckets.write(magBand);
+		}
+	}
+
+	/*
+	 * Catalog file records collected per dec zone in a small buffer, appended to a temporary
+	 * bucket file when full; bucket files are in a temporary directory beside the output file,
+	 * deleted on close
+	 */
+	private static class ZoneBuckets implements Closeable {
+
+		// records buffered per non-empty zone before append to its bucket file
+		private static final int BUFFER_RECORDS = 256;
+
+		private final Path output;
+		private final double zoneHeightDeg;
+		private final int nZones;
+		private final Path dir;
+		private final ByteBuffer[] buffers;
+		private final boolean[] spilled;
+		private final int[] zoneCount;
+		private int size = 0;
+
+		private ZoneBuckets(Path output, double zoneHeightDeg) throws IOException {
+			this.output = output;
+			this.zoneHeightDeg = zoneHeightDeg;
+			this.nZones = (int) Math.ceil(180.0 / zoneHeightDeg);
+			this.dir = Files.createTempDirectory(output.toAbsolutePath().getParent(), output.getFileName() + ".");
+			this.buffers = new ByteBuffer[nZones];
+			this.spilled = new boolean[nZones];
+			this.zoneCount = new int[nZones];
+		}
+
+		private void addAll(ColumnarResult stars) throws IOException {
+			for (int i = 0; i < stars.size(); i++) {
+				add(stars.getId(i), stars.getRaHr(i), stars.getDecDeg(i), stars.getMag(i), stars.getMagErr(i));
+			}
+		}
+
+		private void add(String id, double raHr, double decDeg, double mag, double magErr) throws IOException {
+			int zone = zoneOf(decDeg, zoneHeightDeg, nZones);
+			if (buffers[zone] == null) {
+				buffers[zone] = ByteBuffer.allocate(BUFFER_RECORDS * LocalCatalog.RECORD_BYTES);
+			} else if (!buffers[zone].hasRemaining()) {
+				spill(zone);
+			}
+			ByteBuffer buffer = buffers[zone];
+			buffer.putDouble(normaliseRa(raHr));
+			buffer.putDouble(decDeg);
+			buffer.putFloat((float) mag);
+			buffer.putFloat((float) magErr);
+			byte[] bytes = id.getBytes(StandardCharsets.US_ASCII);
+			int n = Math.min(bytes.length, LocalCatalog.ID_BYTES);
+			buffer.put(bytes, 0, n);
+			for (int i = n; i < LocalCatalog.ID_BYTES; i++) {
+				buffer.put((byte) 0);
+			}
+			zoneCount[zone]++;
+			size++;
+		}
+
+		// appends buffered records to zone bucket file
+		private void spill(int zone) throws IOException {
+			try (OutputStream out = Files.newOutputStream(bucket(zone), StandardOpenOption.CREATE,
+					StandardOpenOption.APPEND)) {
+				out.write(buffers[zone].array(), 0, buffers[zone].position());
+			}
+			buffers[zone].clear();
+			spilled[zone] = true;
+		}
+
+		// header and zone index, then each zone's records in ra order
+		private void write(String magBand) throws IOException {
+			Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+				out.writeInt(LocalCatalog.MAGIC);
+				out.writeInt(LocalCatalog.VERSION);
+				out.writeDouble(zoneHeightDeg);
+				out.writeInt(nZones);
+				out.writeInt(size);
+				writeAscii(out, magBand, LocalCatalog.BAND_BYTES);
+				int start = 0;
+				for (int z = 0; z < nZones; z++) {
+					out.writeInt(start);
+					start += zoneCount[z];
+				}
+				out.writeInt(start);
+
+				for (int z = 0; z < nZones; z++) {
+					if (buffers[z] == null) {
+						continue;
+					}
+					byte[] records;
+					if (spilled[z]) {
+						spill(z);
+						records = Files.readAllBytes(bucket(z));
+						Files.delete(bucket(z));
+					} else {
+						records = buffers[z].array();
+					}
+					buffers[z] = null;
+
+					// ra is the first record field
+					int n = zoneCount[z];
+					ByteBuffer buffer = ByteBuffer.wrap(records);
+					double[] ra = new double[n];
+					for (int k = 0; k < n; k++) {
+						ra[k] = buffer.getDouble(k * LocalCatalog.RECORD_BYTES);
+					}
+					for (int k : IndexSort.sortedIndex(ra, n)) {
+						out.write(records, k * LocalCatalog.RECORD_BYTES, LocalCatalog.RECORD_BYTES);
+					}
+				}
+			}
+			Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		private Path bucket(int zone) {
+			return dir.resolve(zone + ".zone");
+		}
+
+		private int size() {
+			return size;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (int z = 0; z < nZones; z++) {
+				if (spilled[z]) {
+					Files.deleteIfExists(bucket(z));
+				}
+			}
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	private static int zoneOf(double decDeg, double zoneHeightDeg, int nZones) {
+		int z = (int) Math.floor((decDeg + 90.0) / zoneHeightDeg);
+		return Math.max(0, Math.min(nZones - 1, z));
+	}
+
+	// ra in range 0 <= ra < 24 hr
+	private static double normaliseRa(double raHr) {
+		double ra = raHr % 24.0;
+		return (ra < 0.0) ? ra + 24.0 : ra;
+	}
+
+	// null-padded ascii field, truncated to length
+	private static void writeAscii(DataOutputStream out, String value, int length) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+		int n = Math.min(bytes.length, length);
+		out.write(bytes, 0, n);
+		for (int i = n; i < length; i++) {
+			out.write(0);
+		}
+	}
+}
@@ -7,14 +7,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 
 import rfl.astroimagej.dev.catalogs.AstroCatalog;
 import rfl.astroimagej.dev.catalogs.CatalogFactory;
+import rfl.astroimagej.dev.catalogs.CatalogFanOut;
 import rfl.astroimagej.dev.catalogs.CatalogQuery;
-import rfl.astroimagej.dev.catalogs.FieldObject;
+import rfl.astroimagej.dev.catalogs.ColumnarResult;
 import rfl.astroimagej.dev.catalogs.QueryResult;
 import rfl.astroimagej.dev.utils.AstroCoords;
+import rfl.astroimagej.dev.utils.SexagesimalCodec;
 
 /**
  * This class is an observer of FileWriter events, running catalog queries and saving results
@@ -24,25 +31,131 @@ import rfl.astroimagej.dev.utils.AstroCoords;
  */
 public class RaDecFileWriter implements FileWriterListener {
 
+	// daemon threads for DSS downloads, run alongside catalog queries
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "dss-download");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	/**
-	 * Runs catalog and dss queries. Saves results in radec and fits files respectively
-	 * and returns message whether operation was successful
+	 * Runs catalog and dss queries concurrently. Saves results in radec and fits files
+	 * respectively and returns message whether operation was successful
+	 * <p> Catalog type MERGED runs the VSP, APASS and SIMBAD fan-out, refer CatalogFactory </p>
 	 */
 	@Override
 	public String writeFile(CatalogQuery query) {		
-		String message = "";
-		QueryResult result = null;
-		
 		// run online catalog query
-		AstroCatalog catalog = CatalogFactory.createCatalog(query.getCatalogType());		
+		return writeFile(query, CatalogFactory.createCatalog(query.getCatalogType()));
+	}
+
+	/**
+	 * Runs catalog and dss queries with a specified catalog, e.g. a CatalogFanOut that merges
+	 * several catalogs. The DSS download runs alongside the catalog query, so the time taken is
+	 * the longer of the two rather than their sum. The message of a CatalogFanOut query includes
+	 * the outcome for each catalog.
+	 * 
+	 * @param query catalog query object, contains target star data
+	 * 
+	 * @param catalog catalog to query, no files are written if null
+	 * 
+	 * @return message whether writing radec and fits files was successful
+	 */
+	public String writeFile(CatalogQuery query, AstroCatalog catalog) {
+		String message = "";
 		if (catalog != null) {
-			result = catalog.runQuery(query);
-			message = writeRaDecFile(query, result);
-			
-			// run DSS query to download fits file & append dss message
-			message += DssWriter.downloadDssFits(query);			
+			message = runConcurrently(query, () -> {
+				String radecMessage = writeRaDecFile(query, catalog.runColumnarQuery(query));
+				if (catalog instanceof CatalogFanOut) {
+					radecMessage += (radecMessage.endsWith("\n") ? "" : "\n") + ((CatalogFanOut) catalog).getReport() + "\n";
+				}
+				return radecMessage;
+			});
 		}
-		return message;	
+		return message;
+	}
+
+	/**
+	 * Runs one multi-band catalog query and dss query. Saves a radec file for each mag band
+	 * from the single catalog response, and one fits file for the query mag band.
+	 * 
+	 * @param query catalog query object, contains target star data
+	 * 
+	 * @param magBands list of mag bands to write, e.g. B, V, Rc, Ic
+	 * 
+	 * @return message whether writing radec and fits files was successful
+	 */
+	public String writeFiles(CatalogQuery query, List<String> magBands) {
+		String message = "";
+		AstroCatalog catalog = CatalogFactory.createCatalog(query.getCatalogType());
+		if (catalog != null) {
+			message = runConcurrently(query, () -> writeRaDecFiles(query, catalog.runMultiBandQuery(query), magBands));
+		}
+		return message;
+	}
+
+	/*
+	 * Runs the catalog leg on the calling thread while the DSS fits download runs on a
+	 * background thread; both depend only on the query. Returns the catalog then DSS messages,
+	 * followed by the time taken by each leg.
+	 */
+	private String runConcurrently(CatalogQuery query, Supplier<String> catalogLeg) {
+		long t0 = System.nanoTime();
+		long[] dssMs = new long[1];
+		CompletableFuture<String> dssLeg = CompletableFuture.supplyAsync(() -> {
+			String dssMessage = downloadDssFits(query);
+			dssMs[0] = (System.nanoTime() - t0) / 1000000;
+			return dssMessage;
+		}, EXECUTOR);
+
+		String message;
+		try {
+			message = catalogLeg.get();
+		} catch (RuntimeException e) {
+			message = String.format("Error in %s catalog query: %s\n", query.getCatalogType(), e.getMessage());
+		}
+		long catalogMs = (System.nanoTime() - t0) / 1000000;
+
+		try {
+			message += dssLeg.join();
+		} catch (CompletionException e) {
+			message += String.format("Error in DSS download: %s", e.getCause().getMessage());
+		}
+		long totalMs = (System.nanoTime() - t0) / 1000000;
+		return message + String.format("\nCatalog: %d ms, DSS: %d ms, total: %d ms", catalogMs, dssMs[0], totalMs);
+	}
+
+	/**
+	 * Downloads the DSS fits file for the query, refer DssWriter.downloadDssFits
+	 *
+	 * @param query sky coordinate and field-of-view data
+	 *
+	 * @return message whether successful in writing DSS fits file
+	 */
+	protected String downloadDssFits(CatalogQuery query) {
+		return DssWriter.downloadDssFits(query);
+	}
+
+	/**
+	 * Writes one radec file per mag band from a multi-band query result
+	 * 
+	 * @param query catalog query object, contains target star data
+	 * 
+	 * @param result multi-band query result, refer AstroCatalog.runMultiBandQuery
+	 * 
+	 * @param magBands list of mag bands to write
+	 * 
+	 * @return concatenated radec file messages
+	 */
+	public String writeRaDecFiles(CatalogQuery query, QueryResult result, List<String> magBands) {
+		String message = "";
+		for (String magBand : magBands) {
+			CatalogQuery bandQuery = new CatalogQuery(query);
+			bandQuery.setMagBand(magBand);
+			String bandMessage = writeRaDecFile(bandQuery, ColumnarResult.fromMultiBand(result, magBand));
+			message += bandMessage.endsWith("\n") ? bandMessage : bandMessage + "\n";
+		}
+		return message;
 	}
 
 	/**
@@ -65,9 +178,22 @@ public class RaDecFileWriter implements FileWriterListener {
 	 * @return message whether writing radec file was successful
 	 */
 	public String writeRaDecFile(CatalogQuery query, QueryResult result) {
+		return writeRaDecFile(query, ColumnarResult.fromQueryResult(result));
+	}
+
+	/**
+	 * Writes radec file from a columnar query result, refer writeRaDecFile(CatalogQuery, QueryResult)
+	 * 
+	 * @param query  catalog query object, contains target star data
+	 * 
+	 * @param result columnar query result, ref star data for current filter / mag band
+	 *               
+	 * @return message whether writing radec file was successful
+	 */
+	public String writeRaDecFile(CatalogQuery query, ColumnarResult result) {
 		// exit if no query results
 		String message = "";
-		if (result.getFieldObjects().size() == 0) {
+		if (result.size() == 0) {
 			message = String.format("No records found in %s catalog for specified parameters", 
 					query.getCatalogType());
 			return message;
@@ -129,28 +255,31 @@ public class RaDecFileWriter implements FileWriterListener {
 	 * 
 	 * @return string list formatted to write radec file
 	 */
-	private List<String> compileRaDecList(CatalogQuery query, QueryResult result) {
-		// string list for file write, extract FieldObjects from QueryREsult object
+	List<String> compileRaDecList(CatalogQuery query, ColumnarResult result) {
+		// string list for file write, ref star data read from result columns
 		List<String> lines = new ArrayList<>();
-		List<FieldObject> fieldObjects = result.getFieldObjects();
+		StringBuilder sb = new StringBuilder(128);
+		double targetMag = 99.999;
 
-		// target object data
-		FieldObject to = new FieldObject();
-		to.setObjectId(query.getObjectId());
-		to.setRaHr(query.getRaHr());
-		to.setDecDeg(query.getDecDeg());
-		to.setMag(99.999);
+		// large results: sexagesimal columns converted once, in parallel, for data and comment
+		// blocks; otherwise coordinates are formatted in place into the line buffer
+		int n = result.size();
+		boolean isBulk = n >= AstroCoords.PARALLEL_THRESHOLD;
+		String[] raHms = isBulk ? AstroCoords.raHr_To_raHms(result.getRaHrColumn()) : null;
+		String[] decDms = isBulk ? AstroCoords.decDeg_To_decDms(result.getDecDegColumn()) : null;
 
 		// data block format RA (HMS), Dec (DMS), RefStar, Centroid, Mag
 		// header
 		lines.add("#RA, Dec, RefStar, Centroid, Mag\n");
 		
 		// target data
-		lines.add(getFieldLine(to, 0, true));
+		lines.add(getFieldLine(sb, query.getObjectId(), query.getRaHr(), query.getDecDeg(), null, null, targetMag, 0,
+				true));
 		
 		// ref star data
-		for (FieldObject fo : fieldObjects) {
-			lines.add(getFieldLine(fo, 0, false));
+		for (int i = 0; i < n; i++) {
+			lines.add(getFieldLine(sb, result.getId(i), result.getRaHr(i), result.getDecDeg(i),
+					isBulk ? raHms[i] : null, isBulk ? decDms[i] : null, result.getMag(i), 0, false));
 		}
 		// end of data
 		lines.add("#\n");
@@ -158,11 +287,12 @@ public class RaDecFileWriter implements FileWriterListener {
 		// comment block, as data prepend aperture & object id
 		lines.add("#Ap, Auid, RA, Dec, RefStar, Centroid, Mag\n");
 		// target comment
-		lines.add(getFieldLine(to, 1, true));
+		lines.add(getFieldLine(sb, query.getObjectId(), query.getRaHr(), query.getDecDeg(), null, null, targetMag, 1,
+				true));
 		// ref star comments
-		int index = 2;
-		for (FieldObject fo : fieldObjects) {
-			lines.add(getFieldLine(fo, index++, false));
+		for (int i = 0; i < n; i++) {
+			lines.add(getFieldLine(sb, result.getId(i), result.getRaHr(i), result.getDecDeg(i),
+					isBulk ? raHms[i] : null, isBulk ? decDms[i] : null, result.getMag(i), i + 2, false));
 		}
 		
 		// append filter / mag band
@@ -173,7 +303,15 @@ public class RaDecFileWriter implements FileWriterListener {
 	/*
 	 * compile one line of radec data or a comment line
 	 * 
-	 * @param fo current data object *
+	 * @param sb line buffer, reused between lines
+	 * 
+	 * @param objectId object id, written to comment line 
+	 * 
+	 * @param raHr, decDeg object coordinates, formatted in place if no sexagesimal text
+	 * 
+	 * @param raHms, decDms object coordinates in sexagesimal format, or null
+	 * 
+	 * @param mag catalog mag for selected band (99.999 target line)
 	 * 
 	 * @param index index = 0 => write data line, otherwise write comment line *
 	 * 
@@ -182,27 +320,26 @@ public class RaDecFileWriter implements FileWriterListener {
 	 * 
 	 * @return compiled radec write string
 	 */
-	private String getFieldLine(FieldObject fo, int index, boolean isTarget) {
-		// sets RefStar, Centroid flags + catalog mag for selected band (mag = 99.999
-		// target line)
-		String lineEnd = (isTarget) ? ", 0, " : ", 1, ";
-		lineEnd += String.format("1, %s", String.valueOf(fo.getMag()));
-		lineEnd += "\n";
-
-		// Concatenate ra and dec sexagesimal values & append lineEnd string
-		List<String> terms = Arrays.asList(AstroCoords.raHr_To_raHms(fo.getRaHr()),
-				AstroCoords.decDeg_To_decDms(fo.getDecDeg()));
-		String line = String.join(", ", terms) + lineEnd;
-
-		// target or RefStar data line
-		if (index == 0) {
-			return line;
-			// target comment line
-		} else if (index == 1) {
-			return String.format("#T%s, %s, " + line, String.valueOf(index), fo.getObjectId());
-			// RefStar comment line
+	private String getFieldLine(StringBuilder sb, String objectId, double raHr, double decDeg, String raHms,
+			String decDms, double mag, int index, boolean isTarget) {
+		sb.setLength(0);
+
+		// target comment line #T1, RefStar comment line #C<index>, prepend object id
+		if (index > 0) {
+			sb.append((index == 1) ? "#T" : "#C").append(index).append(", ").append(objectId).append(", ");
+		}
+
+		// ra and dec sexagesimal values
+		if (raHms != null) {
+			sb.append(raHms).append(", ").append(decDms);
 		} else {
-			return String.format("#C%s, %s, " + line, String.valueOf(index), fo.getObjectId());
+			SexagesimalCodec.appendRa(sb, raHr).append(", ");
+			SexagesimalCodec.appendDec(sb, decDeg);
 		}
+
+		// sets RefStar, Centroid flags + catalog mag for selected band
+		sb.append((isTarget) ? ", 0, " : ", 1, ");
+		sb.append("1, ").append(mag).append('\n');
+		return sb.toString();
 	}
 }
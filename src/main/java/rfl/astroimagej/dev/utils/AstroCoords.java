@@ -1,11 +1,27 @@
 package rfl.astroimagej.dev.utils;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
 import rfl.astroimagej.dev.enums.TextFieldType;
 
 /**
  * Class methods to convert between sexagesimal and numeric formats
+ * 
+ * <p>Conversions run in SexagesimalCodec, which also formats into caller-supplied buffers</p>
+ * 
+ * <p>Array variants convert a whole column in one call. Arrays of PARALLEL_THRESHOLD or more
+ * elements are split into chunks of SEQUENTIAL_CHUNK elements and converted on the common
+ * fork/join pool.</p>
  */
 public class AstroCoords {
+
+	// smallest array converted in parallel
+	public static final int PARALLEL_THRESHOLD = 4096;
+
+	// elements converted by one fork/join task
+	private static final int SEQUENTIAL_CHUNK = 1024;
 	
 	/**
 	 * Convert numeric ra (hh.hhhh) to sexagesimal format.
@@ -17,18 +33,7 @@ public class AstroCoords {
 	 * @return ra in sexagesimal format HH:MM:SS.SS
 	 */
 	public static String raHr_To_raHms(Double raHr) {
-		// coerce input data into range 0..24 (hr)
-		double data = (raHr >= 0) ? raHr % 24 : (24 + raHr % 24);
-		
-		// extract hh, mm and ss terms
-		int hh = (int) (1.0 * data);
-		int mm = (int) ((data - hh) * 60);
-		Double ss = 3600 * (data - hh) - 60 * mm;
-		
-		// compile, format and return sexagesimal ra
-		return String.format("%02d", hh) + ":" 
-				+ String.format("%02d", mm) + ":"
-				+ String.format("%5.2f", ss).replace(' ', '0');
+		return SexagesimalCodec.formatRa(raHr);
 	}
 	
 	
@@ -42,20 +47,7 @@ public class AstroCoords {
 	 * @return dec in sexagesimal format DD:MM:SS.SS
 	 */
 	public static String decDeg_To_decDms(Double decDeg) {
-		String sign = (decDeg >= 0) ? "+" : "-";
-		
-		// coerce input data into range ±90.0
-		double data = (Math.abs(decDeg) > 90.0) ? 90.0 : Math.abs(decDeg);
-		
-		// extract dd, mm, ss terms
-		int dd = (int) (1.0 * data);
-		int mm = (int) ((data - dd) * 60);
-		Double ss = ((data - dd) * 60 - mm) * 60;
-		
-		// compile, format and return sexagesimal dec
-		return sign + String.format("%02d", dd) + ":" 
-				+ String.format("%02d", mm) + ":"
-				+ String.format("%5.2f", ss).replace(' ', '0');
+		return SexagesimalCodec.formatDec(decDeg);
 	}
 	
 	
@@ -69,16 +61,7 @@ public class AstroCoords {
 	 * @return numeric ra in units hr (hh.hhhh)
 	 */
 	public static Double raHms_To_raHr(String raHms) {
-
-		boolean isNegative = raHms.charAt(0) == '-';
-		
-		// split input at ':' delim and coerce elements into appropriate range
-		String[] el = raHms.split(":");
-		double hh = Math.abs(Double.valueOf(el[0]));
-		double mm = Double.valueOf(el[1]) % 60;
-		double ss = Double.valueOf(el[2]) % 60;
-		double raHr = (hh + mm / 60 + ss / 3600) % 24;
-		return isNegative ? (24.0 - raHr) : raHr;
+		return SexagesimalCodec.parseRa(raHms);
 	}
 	
 	/**
@@ -89,21 +72,128 @@ public class AstroCoords {
 	 * @return numeric dec in units deg (±dd.dddd)
 	 */
 	public static Double decDms_To_decDeg(String decDms) {
-		int sign = (decDms.charAt(0) == '-') ? -1 : 1;
-		
-		// split input at ':' delim and coerce elements into appropriate range
-		String[] el = decDms.split(":");
-		double dd = Math.abs(Double.valueOf(el[0]));
-		
-		// clip |dec| > 90 to 90.0
-		if (dd > 90) {
-			return sign * 90.0;
+		return SexagesimalCodec.parseDec(decDms);
+	}
+	
+	/**
+	 * Convert an array of numeric ra (hh.hhhh) to sexagesimal format, refer raHr_To_raHms(Double)
+	 * 
+	 * @param raHr ra values in units hr
+	 * 
+	 * @return ra values in sexagesimal format HH:MM:SS.SS, same order
+	 */
+	public static String[] raHr_To_raHms(double[] raHr) {
+		String[] raHms = new String[raHr.length];
+		convert(raHr.length, i -> raHms[i] = SexagesimalCodec.formatRa(raHr[i]));
+		return raHms;
+	}
+
+	/**
+	 * Convert an array of numeric dec (dd.dddd) to sexagesimal format, refer decDeg_To_decDms(Double)
+	 * 
+	 * @param decDeg dec values in units deg
+	 * 
+	 * @return dec values in sexagesimal format DD:MM:SS.SS, same order
+	 */
+	public static String[] decDeg_To_decDms(double[] decDeg) {
+		String[] decDms = new String[decDeg.length];
+		convert(decDeg.length, i -> decDms[i] = SexagesimalCodec.formatDec(decDeg[i]));
+		return decDms;
+	}
+
+	/**
+	 * Convert an array of sexagesimal ra to numeric values (hours), refer raHms_To_raHr(String)
+	 * 
+	 * @param raHms ra values in sexagesimal format HH:MM:SS.SS
+	 * 
+	 * @return numeric ra values in units hr, same order
+	 */
+	public static double[] raHms_To_raHr(String[] raHms) {
+		double[] raHr = new double[raHms.length];
+		convert(raHms.length, i -> raHr[i] = SexagesimalCodec.parseRa(raHms[i]));
+		return raHr;
+	}
+
+	/**
+	 * Convert an array of sexagesimal dec to numeric values (dd.dddd), refer decDms_To_decDeg(String)
+	 * 
+	 * @param decDms dec values in sexagesimal format DD:MM:SS.SS
+	 * 
+	 * @return numeric dec values in units deg, same order
+	 */
+	public static double[] decDms_To_decDeg(String[] decDms) {
+		double[] decDeg = new double[decDms.length];
+		convert(decDms.length, i -> decDeg[i] = SexagesimalCodec.parseDec(decDms[i]));
+		return decDeg;
+	}
+
+	/*
+	 * Runs conversion for indices 0 .. n-1, on the calling thread below PARALLEL_THRESHOLD
+	 * otherwise on the common fork/join pool. A conversion exception, e.g. NumberFormatException
+	 * for malformed text, is rethrown to the caller.
+	 */
+	private static void convert(int n, IntConsumer conversion) {
+		if (n < PARALLEL_THRESHOLD) {
+			for (int i = 0; i < n; i++) {
+				conversion.accept(i);
+			}
+		} else {
+			ForkJoinPool.commonPool().invoke(new ConvertTask(conversion, 0, n));
+		}
+	}
+
+	// converts indices start .. end-1, splitting ranges wider than SEQUENTIAL_CHUNK
+	private static class ConvertTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final IntConsumer conversion;
+		private final int start;
+		private final int end;
+
+		private ConvertTask(IntConsumer conversion, int start, int end) {
+			this.conversion = conversion;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= SEQUENTIAL_CHUNK) {
+				for (int i = start; i < end; i++) {
+					conversion.accept(i);
+				}
+			} else {
+				int mid = (start + end) >>> 1;
+				invokeAll(new ConvertTask(conversion, start, mid), new ConvertTask(conversion, mid, end));
+			}
 		}
-		double mm = Double.valueOf(el[1]) % 60;
-		double ss = Double.valueOf(el[2]) % 60;
-		return sign * (dd + mm / 60 + ss / 3600);
 	}
 	
+	/**
+	 * Gnomonic projection of an object onto the tangent plane at a field centre
+	 *
+	 * @param raHr0 field centre ra (hr)
+	 * @param decDeg0 field centre dec (deg)
+	 * @param raHr object ra (hr)
+	 * @param decDeg object dec (deg)
+	 *
+	 * @return {xi, eta} offsets east and north of centre (arcmin), null if object is in the
+	 *         opposite hemisphere
+	 */
+	public static double[] tangentOffset(double raHr0, double decDeg0, double raHr, double decDeg) {
+		double dRa = Math.toRadians((raHr - raHr0) * 15.0);
+		double dec0 = Math.toRadians(decDeg0);
+		double dec = Math.toRadians(decDeg);
+
+		double cosC = Math.sin(dec0) * Math.sin(dec) + Math.cos(dec0) * Math.cos(dec) * Math.cos(dRa);
+		if (cosC <= 0) {
+			return null;
+		}
+		double xi = Math.cos(dec) * Math.sin(dRa) / cosC;
+		double eta = (Math.cos(dec0) * Math.sin(dec) - Math.sin(dec0) * Math.cos(dec) * Math.cos(dRa)) / cosC;
+		return new double[] { Math.toDegrees(xi) * 60.0, Math.toDegrees(eta) * 60.0 };
+	}
+
 	/**
 	 * If data entry is RA or DEC field then formats input to sexagesimal format
 	 * 
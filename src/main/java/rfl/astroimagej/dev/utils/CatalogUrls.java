@@ -1,5 +1,8 @@
 package rfl.astroimagej.dev.utils;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
 import rfl.astroimagej.dev.catalogs.CatalogQuery;
 import rfl.astroimagej.dev.enums.CatalogType;
 import rfl.astroimagej.dev.enums.SimbadUrlType;
@@ -12,8 +15,27 @@ import rfl.astroimagej.dev.enums.SimbadUrlType;
  * <p> SkyView : DSS Ref: https://skyview.gsfc.nasa.gov/current/docs/batchpage.html</>p
  * 
  * <p> Vsp: Not documented (2021-05),  see https://www.aavso.org/apis-aavso-resources </>p
+ * 
+ * <p> APASS: VizieR II/336, see https://vizier.cds.unistra.fr/doc/asu-summary.htx </p>
+ * 
+ * <p> All urls can be pointed at one server, e.g. a local ReplayServer, refer setServerOverride </p>
  */
 public class CatalogUrls {
+	
+	// VizieR tab-separated output, APASS DR9 catalog II/336
+	public static final String APASS_URL = "https://vizier.cds.unistra.fr/viz-bin/asu-tsv";
+	public static final int APASS_PAGE_SIZE = 5000;
+
+	// system property naming a server that replaces all catalog and image hosts
+	public static final String SERVER_PROPERTY = "astroimagej.catalog.server";
+
+	// scheme, host and port replacing those of compiled urls, null for live servers
+	private static volatile String serverOverride = System.getProperty(SERVER_PROPERTY);
+
+	// SkyView DSS image survey and width (pixels)
+	public static final String DSS_URL = "https://skyview.gsfc.nasa.gov/cgi-bin/images";
+	public static final String DSS_SURVEY = "digitized sky survey";
+	public static final int DSS_PIXELS = 1000;
 
 	/**
 	 * Compiles a url for a Simbad database query, signature ([CatalogQuery], [SimbadUrlType]).
@@ -29,11 +51,71 @@ public class CatalogUrls {
 		String url = "http://simbad.u-strasbg.fr/simbad/sim-id?output.format=votable";
 
 		// embed user object id
-		url += String.format("&Ident=%s&output.params=main_id,", query.getObjectId());
+		url += String.format("&Ident=%s&output.params=main_id,", encode(query.getObjectId()));
 
 		// append url fragment for selected parameter
 		url += paramType.getUrlFragment();
-		return url;
+		return remap(url);
+	}
+	
+	/**
+	 * Compiles a url for a single Simbad database query returning all SimbadUrlType parameters.
+	 * <p>
+	 * VOTable response is one row with columns in SimbadUrlType order: main_id, ra, dec, B, V, R, I
+	 * </p>
+	 * 
+	 * @param query catalog query data
+	 * 
+	 * @return compiled Simbad url for all parameters
+	 */
+	public static String getSimbadUrl(CatalogQuery query) {
+		// SIMBAD header and user object id
+		String url = "http://simbad.u-strasbg.fr/simbad/sim-id?output.format=votable";
+		url += String.format("&Ident=%s&output.params=main_id", encode(query.getObjectId()));
+
+		// append url fragment for each data parameter
+		for (SimbadUrlType paramType : SimbadUrlType.values()) {
+			if (paramType != SimbadUrlType.USER_TARGET_NAME) {
+				url += "," + paramType.getUrlFragment();
+			}
+		}
+		return remap(url);
+	}
+	
+	/**
+	 * Compiles a url for a SIMBAD coordinate (cone) query returning all objects within radius of
+	 * the query coordinates.
+	 * <p>
+	 * VOTable response has one row per object with columns main_id, ra, dec, B, V, R, I
+	 * </p>
+	 * 
+	 * @param query catalog query data, search centre
+	 * 
+	 * @param radiusAmin search radius (arcmin)
+	 * 
+	 * @return compiled SIMBAD sim-coo url
+	 */
+	public static String getSimbadConeUrl(CatalogQuery query, double radiusAmin) {
+		String url = "http://simbad.u-strasbg.fr/simbad/sim-coo?output.format=votable";
+		url += "&Coord=" + encode(String.format("%.5f %+.5f", query.getRaHr() * 15.0, query.getDecDeg()));
+		url += String.format("&Radius=%.2f&Radius.unit=arcmin&output.max=10000", radiusAmin);
+		url += "&output.params=main_id";
+		for (SimbadUrlType paramType : SimbadUrlType.values()) {
+			if (paramType != SimbadUrlType.USER_TARGET_NAME) {
+				url += "," + paramType.getUrlFragment();
+			}
+		}
+		return remap(url);
+	}
+	
+	/**
+	 * Returns the SIMBAD TAP synchronous query endpoint, queries are posted as ADQL.
+	 * <p> Ref: http://simbad.u-strasbg.fr/simbad/sim-tap </p>
+	 * 
+	 * @return SIMBAD TAP sync url
+	 */
+	public static String getSimbadTapUrl() {
+		return remap("http://simbad.u-strasbg.fr/simbad/sim-tap/sync");
 	}
 	
 	/**
@@ -49,7 +131,7 @@ public class CatalogUrls {
 		String url = "";
 		if (catalogType == CatalogType.DSS) {
 			// SkyView header
-			url += "https://skyview.gsfc.nasa.gov/cgi-bin/images?Survey=digitized+sky+survey";
+			url += DSS_URL + "?Survey=" + encode(DSS_SURVEY);
 
 			// chart centre coords = ra (deg) & dec (deg)
 			url += String.format("&position=%.5f,%.5f", query.getRaHr() * 15.0, query.getDecDeg());
@@ -58,8 +140,7 @@ public class CatalogUrls {
 			url += String.format("&Size=%s", query.getFovAmin() / 60.0);
 
 			// 1000x1000 pixels & append FITS file type
-			int nPix = 1000;
-			url += String.format("&Pixels=%s&Return=FITS", nPix);
+			url += String.format("&Pixels=%s&Return=FITS", DSS_PIXELS);
 			
 		} else if (catalogType == CatalogType.VSP) {
 			// VSP header
@@ -76,7 +157,139 @@ public class CatalogUrls {
 			
 			// dec nn.nnnnn (0 to ± 90 deg)
 			url += String.format("&dec=%.5f", query.getDecDeg());			
+		} else if (catalogType == CatalogType.APASS) {
+			// first page of APASS DR9 records
+			url += getApassUrl(APASS_URL, query, 0, APASS_PAGE_SIZE);
+		}
+		return remap(url);
+	}
+	
+	/**
+	 * Compiles a url for one tile of a DSS mosaic. Tiles are gnomonic images projected about
+	 * the mosaic centre (RefCoords), so that all tiles share one WCS and adjacent tiles join
+	 * on whole pixels.
+	 * 
+	 * @param baseUrl SkyView images endpoint
+	 * 
+	 * @param raDeg tile centre ra (deg)
+	 * 
+	 * @param decDeg tile centre dec (deg)
+	 * 
+	 * @param refRaDeg mosaic centre ra (deg)
+	 * 
+	 * @param refDecDeg mosaic centre dec (deg)
+	 * 
+	 * @param sizeDeg tile width (deg)
+	 * 
+	 * @param pixels tile width (pixels)
+	 * 
+	 * @return compiled DSS tile url
+	 */
+	public static String getDssTileUrl(String baseUrl, double raDeg, double decDeg, double refRaDeg,
+			double refDecDeg, double sizeDeg, int pixels) {
+		String url = baseUrl + "?Survey=" + encode(DSS_SURVEY);
+		url += String.format("&position=%.5f,%.5f", raDeg, decDeg);
+		url += String.format("&RefCoords=%.5f,%.5f&Projection=Tan", refRaDeg, refDecDeg);
+		url += String.format("&Size=%s&Pixels=%d&Return=FITS", sizeDeg, pixels);
+		return remap(url);
+	}
+	
+	/**
+	 * Compiles a url for one page of APASS records in a square field, ordered by VizieR record number.
+	 * <p>
+	 * Output columns: recno, RAJ2000, DEJ2000 (deg), then mag and mag error for the query mag band 
+	 * (B, V, SR => r'mag, SG => g'mag), limited to query magLimit.
+	 * </p>
+	 * 
+	 * @param baseUrl VizieR asu-tsv endpoint
+	 * 
+	 * @param query catalog query data
+	 * 
+	 * @param afterRecno return records with recno greater than this value, 0 for first page
+	 * 
+	 * @param pageSize maximum number of records in page
+	 * 
+	 * @return compiled APASS page url
+	 */
+	public static String getApassUrl(String baseUrl, CatalogQuery query, long afterRecno, int pageSize) {
+		String magCol = getApassMagColumn(query.getMagBand());
+		String url = baseUrl + "?-source=II/336/apass9&-oc.form=d";
+		
+		// square field centre (deg) and size (arcmin)
+		url += "&-c=" + encode(String.format("%.5f %+.5f", query.getRaHr() * 15.0, query.getDecDeg()));
+		url += String.format("&-c.bm=%.1f", query.getFovAmin());
+		
+		// selected columns, record paging and mag limit
+		url += "&-out=" + encode(String.join(",", "recno", "RAJ2000", "DEJ2000", magCol, "e_" + magCol));
+		url += String.format("&-sort=recno&-out.max=%d", pageSize);
+		url += "&recno=" + encode(String.format(">%d", afterRecno));
+		url += "&" + encode(magCol) + "=" + encode(String.format("<=%.1f", query.getMagLimit()));
+		return remap(url);
+	}
+	
+	/**
+	 * Maps an APASS mag band to the VizieR II/336 magnitude column
+	 * 
+	 * @param magBand APASS mag band B, V, SR or SG
+	 * 
+	 * @return magnitude column name
+	 */
+	public static String getApassMagColumn(String magBand) {
+		switch (magBand.toUpperCase()) {
+		case "B":
+			return "Bmag";
+		case "SR":
+			return "r'mag";
+		case "SG":
+			return "g'mag";
+		default:
+			return "Vmag";
+		}
+	}
+	
+	/**
+	 * Points all compiled urls at one server, e.g. a local ReplayServer, keeping path and query
+	 * 
+	 * @param baseUrl scheme, host and port, e.g. http://localhost:8080, null for live servers
+	 */
+	public static void setServerOverride(String baseUrl) {
+		serverOverride = (baseUrl == null || baseUrl.isEmpty()) ? null : baseUrl.replaceAll("/+$", "");
+	}
+	
+	public static String getServerOverride() {
+		return serverOverride;
+	}
+	
+	/**
+	 * Replaces scheme, host and port of a url with the server override, if set
+	 * 
+	 * @param url compiled url
+	 * 
+	 * @return url on override server, or unchanged url
+	 */
+	public static String remap(String url) {
+		String server = serverOverride;
+		int scheme = url.indexOf("://");
+		if (server == null || scheme < 0) {
+			return url;
+		}
+		int path = url.indexOf('/', scheme + 3);
+		return server + ((path < 0) ? "/" : url.substring(path));
+	}
+	
+	/**
+	 * Url-encodes a query parameter value, e.g. object id "wasp 12" => "wasp+12"
+	 * 
+	 * @param value query parameter value
+	 * 
+	 * @return UTF-8 url-encoded value
+	 */
+	public static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			return value;
 		}
-		return url;
 	}
 }
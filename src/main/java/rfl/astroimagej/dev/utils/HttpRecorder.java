@@ -0,0 +1,194 @@
+package rfl.astroimagej.dev.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Store of recorded HTTP responses, written by HttpTransport in record mode and served by
+ * ReplayServer.
+ * <p>
+ * A response is stored by request key: method, path and query, plus a hash of any request
+ * body. The key omits scheme, host and port, so recordings of the live servers replay on a
+ * local server that CatalogUrls is pointed at. Each body is a file [hash].body in the store
+ * folder; the index file recordings.properties holds the request key and content type:
+ * [hash].key = [request key], [hash].type = [content type].
+ * </p>
+ * <p>
+ * Bodies are stored decoded, i.e. after gzip decompression. Only complete 200 responses are
+ * recorded.
+ * </p>
+ */
+public class HttpRecorder {
+
+	private static final String INDEX_FILE = "recordings.properties";
+	private static final String BODY_EXT = ".body";
+	private static final String KEY_EXT = ".key";
+	private static final String TYPE_EXT = ".type";
+
+	private final Path dir;
+	private final Properties index = new Properties();
+
+	/**
+	 * Opens or creates a recording store
+	 *
+	 * @param dir store folder
+	 */
+	public HttpRecorder(Path dir) {
+		this.dir = dir;
+		loadIndex();
+	}
+
+	/**
+	 * Compiles the request key of a request
+	 *
+	 * @param method request method, GET or POST
+	 *
+	 * @param pathAndQuery url path and query, as sent
+	 *
+	 * @param content request body, null or empty for none
+	 *
+	 * @return request key
+	 */
+	public static String requestKey(String method, String pathAndQuery, byte[] content) {
+		String key = method.toUpperCase() + " " + pathAndQuery;
+		if (content != null && content.length > 0) {
+			key += " " + sha256(content);
+		}
+		return key;
+	}
+
+	/**
+	 * @param url request url
+	 *
+	 * @return path and query of url, as sent in the request line
+	 */
+	public static String pathAndQuery(String url) {
+		try {
+			String file = new URL(url).getFile();
+			return file.isEmpty() ? "/" : file;
+		} catch (MalformedURLException e) {
+			return url;
+		}
+	}
+
+	/**
+	 * Stores a response body, replacing any earlier recording of the request
+	 *
+	 * @param key request key
+	 *
+	 * @param contentType response content type, or null
+	 *
+	 * @param body file holding the decoded body, moved into the store
+	 *
+	 * @throws IOException if the body could not be stored
+	 */
+	public synchronized void put(String key, String contentType, Path body) throws IOException {
+		String hash = sha256(key.getBytes(StandardCharsets.UTF_8));
+		Files.createDirectories(dir);
+		Files.move(body, dir.resolve(hash + BODY_EXT), StandardCopyOption.REPLACE_EXISTING);
+		index.setProperty(hash + KEY_EXT, key);
+		index.setProperty(hash + TYPE_EXT, (contentType == null) ? "" : contentType);
+		saveIndex();
+	}
+
+	/**
+	 * Stores a response body, refer put(String, String, Path)
+	 */
+	public void put(String key, String contentType, byte[] body) throws IOException {
+		Path temp = createTempFile();
+		Files.write(temp, body);
+		put(key, contentType, temp);
+	}
+
+	/**
+	 * @return new temporary file in the store folder, for a body being recorded
+	 */
+	public Path createTempFile() throws IOException {
+		Files.createDirectories(dir);
+		return Files.createTempFile(dir, "recording", ".tmp");
+	}
+
+	/**
+	 * @param key request key
+	 *
+	 * @return recorded body file, null if the request was not recorded
+	 */
+	public synchronized Path getBody(String key) {
+		String hash = sha256(key.getBytes(StandardCharsets.UTF_8));
+		Path body = dir.resolve(hash + BODY_EXT);
+		return (index.getProperty(hash + KEY_EXT) != null && Files.exists(body)) ? body : null;
+	}
+
+	/**
+	 * @param key request key
+	 *
+	 * @return recorded content type, null if none
+	 */
+	public synchronized String getContentType(String key) {
+		String type = index.getProperty(sha256(key.getBytes(StandardCharsets.UTF_8)) + TYPE_EXT);
+		return (type == null || type.isEmpty()) ? null : type;
+	}
+
+	/**
+	 * @return number of recorded requests
+	 */
+	public synchronized int size() {
+		int n = 0;
+		for (String name : index.stringPropertyNames()) {
+			if (name.endsWith(KEY_EXT)) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	public Path getDir() {
+		return dir;
+	}
+
+	private void loadIndex() {
+		File file = new File(dir.toFile(), INDEX_FILE);
+		if (file.exists()) {
+			try (InputStream input = new FileInputStream(file)) {
+				index.load(input);
+			} catch (IOException ex) {
+				// start with empty store
+				index.clear();
+			}
+		}
+	}
+
+	private void saveIndex() {
+		try (OutputStream output = new FileOutputStream(new File(dir.toFile(), INDEX_FILE))) {
+			index.store(output, "Recorded HTTP responses");
+		} catch (IOException io) {
+			// not persisted
+		}
+	}
+
+	private static String sha256(byte[] data) {
+		try {
+			StringBuilder sb = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,622 @@
+package rfl.astroimagej.dev.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Shared HTTP transport for all catalog and image requests.
+ * <p>
+ * Requests use HttpURLConnection with connect and read timeouts, ask for gzip responses and
+ * stream the (decompressed) body to the caller. Each request first takes a token from the
+ * host RateLimiter. Closing a response reads any unread body to the end so that the JDK
+ * keep-alive cache returns the connection to its pool for the next request to the same host;
+ * connections are never disconnected after a successful response.
+ * </p>
+ * <p>
+ * Each response records DNS lookup, connect, time to first byte (TTFB) and body transfer
+ * times. DNS and connect times are near zero when the JDK DNS cache and a pooled connection
+ * are used. Recent timings are kept for getReport. Local file and jar urls, e.g. test
+ * fixtures, are opened without HTTP settings or rate limiting.
+ * </p>
+ * <p>
+ * In record mode, response bodies are also written to an HttpRecorder store as the caller
+ * reads them, for offline replay by ReplayServer.
+ * </p>
+ * <p>
+ * A blocking HttpURLConnection read does not respond to thread interrupts. Requests sent while
+ * a thread has a RequestGroup set can be aborted from another thread, which disconnects their
+ * connections so that a blocked read fails at once instead of at the read timeout.
+ * </p>
+ */
+public class HttpTransport {
+
+	public static final int CONNECT_TIMEOUT_MS = 15000;
+	public static final int READ_TIMEOUT_MS = 60000;
+
+	// system property naming a recording folder, selects record mode for the default transport
+	public static final String RECORD_PROPERTY = "astroimagej.http.record";
+
+	// idle connections kept per host by the JDK keep-alive cache, default is 5
+	private static final String MAX_CONNECTIONS = "10";
+
+	// timings kept for report
+	private static final int MAX_TIMINGS = 200;
+
+	// unread body drained on close for connection reuse, larger remainders disconnect
+	private static final int MAX_DRAIN_BYTES = 1 << 16;
+
+	private static HttpTransport defaultTransport = null;
+
+	// request group of the calling thread, null if none
+	private static final ThreadLocal<RequestGroup> REQUEST_GROUP = new ThreadLocal<>();
+
+	static {
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", MAX_CONNECTIONS);
+		}
+	}
+
+	private final int connectTimeoutMs;
+	private final int readTimeoutMs;
+
+	// most recent timings, oldest first, guarded by this
+	private final Deque<Timing> timings = new ArrayDeque<>();
+
+	// record mode store, null if not recording
+	private volatile HttpRecorder recorder = null;
+
+	public HttpTransport() {
+		this(CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS);
+	}
+
+	/**
+	 * @param connectTimeoutMs connect timeout (ms)
+	 * @param readTimeoutMs read timeout between bytes of the response (ms)
+	 */
+	public HttpTransport(int connectTimeoutMs, int readTimeoutMs) {
+		this.connectTimeoutMs = connectTimeoutMs;
+		this.readTimeoutMs = readTimeoutMs;
+	}
+
+	/**
+	 * @return transport shared by all catalogs and downloads
+	 */
+	public static synchronized HttpTransport getDefault() {
+		if (defaultTransport == null) {
+			defaultTransport = new HttpTransport();
+			String recordDir = System.getProperty(RECORD_PROPERTY);
+			if (recordDir != null && !recordDir.isEmpty()) {
+				defaultTransport.setRecorder(new HttpRecorder(Paths.get(recordDir)));
+			}
+		}
+		return defaultTransport;
+	}
+
+	/**
+	 * Selects record mode: complete 200 responses are copied to the recording store as they
+	 * are read, refer HttpRecorder
+	 *
+	 * @param recorder recording store, null to stop recording
+	 */
+	public void setRecorder(HttpRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	public HttpRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * Open requests of one task, e.g. a catalog query, that can be aborted together from
+	 * another thread
+	 */
+	public static class RequestGroup {
+		// open connections, guarded by this
+		private final Set<HttpURLConnection> open = new HashSet<>();
+		private boolean aborted = false;
+
+		private synchronized void add(HttpURLConnection conn) throws IOException {
+			if (aborted) {
+				throw new IOException("Request aborted: " + conn.getURL());
+			}
+			open.add(conn);
+		}
+
+		private synchronized void remove(HttpURLConnection conn) {
+			open.remove(conn);
+		}
+
+		/**
+		 * Disconnects open requests, blocked reads fail with an IOException. Later requests in
+		 * the group fail without connecting.
+		 */
+		public void abort() {
+			List<HttpURLConnection> conns;
+			synchronized (this) {
+				aborted = true;
+				conns = new ArrayList<>(open);
+				open.clear();
+			}
+			for (HttpURLConnection conn : conns) {
+				conn.disconnect();
+			}
+		}
+
+		public synchronized boolean isAborted() {
+			return aborted;
+		}
+	}
+
+	/**
+	 * Selects the request group for requests sent by the calling thread
+	 *
+	 * @param group request group, null to clear
+	 */
+	public static void setRequestGroup(RequestGroup group) {
+		if (group == null) {
+			REQUEST_GROUP.remove();
+		} else {
+			REQUEST_GROUP.set(group);
+		}
+	}
+
+	/**
+	 * Per-request timings (ms), transfer time is complete when the response is closed
+	 */
+	public static class Timing {
+		private final String url;
+		private int status;
+		private double dnsMs;
+		private double connectMs;
+		private double ttfbMs;
+		private double transferMs;
+		private long bytes;
+		private boolean gzip;
+
+		private Timing(String url) {
+			this.url = url;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public double getDnsMs() {
+			return dnsMs;
+		}
+
+		public double getConnectMs() {
+			return connectMs;
+		}
+
+		public double getTtfbMs() {
+			return ttfbMs;
+		}
+
+		public double getTransferMs() {
+			return transferMs;
+		}
+
+		public double getTotalMs() {
+			return dnsMs + connectMs + ttfbMs + transferMs;
+		}
+
+		/**
+		 * @return body bytes received, before decompression
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		public boolean isGzip() {
+			return gzip;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d %s: dns %.1f, connect %.1f, ttfb %.1f, transfer %.1f ms, %d bytes%s", status, url,
+					dnsMs, connectMs, ttfbMs, transferMs, bytes, gzip ? " gzip" : "");
+		}
+	}
+
+	/**
+	 * Response status, headers and streaming body. Close to complete the transfer timing and
+	 * return the connection to the pool.
+	 */
+	public class Response implements Closeable {
+		private final URLConnection conn;
+		private final Timing timing;
+		private final InputStream raw;
+		private final InputStream body;
+		private final long t0;
+		private final RequestGroup group;
+		private boolean closed = false;
+
+		// record mode: store, request key and copy of body, null if not recording
+		private HttpRecorder recorder = null;
+		private String recordKey = null;
+		private Path recordFile = null;
+		private OutputStream recordOut = null;
+
+		private Response(URLConnection conn, Timing timing, InputStream raw, boolean gzip, HttpRecorder recorder,
+				String recordKey, RequestGroup group) throws IOException {
+			this.conn = conn;
+			this.timing = timing;
+			this.group = group;
+			this.t0 = System.nanoTime();
+			this.raw = raw;
+			InputStream counted = new FilterInputStream(raw) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b >= 0) {
+						timing.bytes++;
+					}
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int off, int len) throws IOException {
+					int n = super.read(buffer, off, len);
+					if (n > 0) {
+						timing.bytes += n;
+					}
+					return n;
+				}
+			};
+			InputStream decoded = gzip ? new GZIPInputStream(counted) : counted;
+			if (recorder != null && recordKey != null) {
+				this.recorder = recorder;
+				this.recordKey = recordKey;
+				this.recordFile = recorder.createTempFile();
+				this.recordOut = new BufferedOutputStream(Files.newOutputStream(recordFile));
+				decoded = new FilterInputStream(decoded) {
+					@Override
+					public int read() throws IOException {
+						int b = super.read();
+						if (b >= 0) {
+							recordOut.write(b);
+						}
+						return b;
+					}
+
+					@Override
+					public int read(byte[] buffer, int off, int len) throws IOException {
+						int n = super.read(buffer, off, len);
+						if (n > 0) {
+							recordOut.write(buffer, off, n);
+						}
+						return n;
+					}
+				};
+			}
+			this.body = new FilterInputStream(decoded) {
+				@Override
+				public int read() throws IOException {
+					return checkAborted(super.read());
+				}
+
+				@Override
+				public int read(byte[] buffer, int off, int len) throws IOException {
+					return checkAborted(super.read(buffer, off, len));
+				}
+
+				@Override
+				public void close() throws IOException {
+					Response.this.close();
+				}
+			};
+		}
+
+		// a disconnected stream can read as end of body, report as an error
+		private int checkAborted(int n) throws IOException {
+			if (n < 0 && group != null && group.isAborted()) {
+				throw new IOException("Request aborted: " + timing.url);
+			}
+			return n;
+		}
+
+		public int getStatus() {
+			return timing.status;
+		}
+
+		/**
+		 * @return true for 2xx status
+		 */
+		public boolean isSuccess() {
+			return timing.status >= 200 && timing.status < 300;
+		}
+
+		public String getHeader(String name) {
+			return conn.getHeaderField(name);
+		}
+
+		/**
+		 * @return Content-Length header, -1 if unknown
+		 */
+		public long getContentLength() {
+			return conn.getContentLengthLong();
+		}
+
+		/**
+		 * @return response body, decompressed if gzip; closing the body closes the response
+		 */
+		public InputStream getBody() {
+			return body;
+		}
+
+		public Timing getTiming() {
+			return timing;
+		}
+
+		/**
+		 * Drains and closes the body, keeping the connection alive for reuse
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (recordOut != null) {
+				record();
+			}
+			boolean drained = false;
+			try {
+				byte[] buffer = new byte[8192];
+				long n = 0;
+				int count;
+				while ((count = raw.read(buffer)) >= 0 && n < MAX_DRAIN_BYTES) {
+					n += count;
+				}
+				drained = count < 0;
+			} catch (IOException e) {
+				// connection is not reused
+			} finally {
+				timing.transferMs = (System.nanoTime() - t0) / 1.0e6;
+				raw.close();
+				if (!drained && conn instanceof HttpURLConnection) {
+					((HttpURLConnection) conn).disconnect();
+				}
+				if (group != null) {
+					group.remove((HttpURLConnection) conn);
+				}
+				addTiming(timing);
+			}
+		}
+
+		// reads body to the end through the recording copy, stores complete body
+		private void record() {
+			try {
+				byte[] buffer = new byte[8192];
+				while (body.read(buffer) >= 0) {
+				}
+				recordOut.close();
+				recorder.put(recordKey, conn.getContentType(), recordFile);
+			} catch (IOException e) {
+				// incomplete response is not recorded
+				try {
+					recordOut.close();
+					Files.deleteIfExists(recordFile);
+				} catch (IOException de) {
+					// orphan temp file is harmless
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends a GET request
+	 *
+	 * @param url request url
+	 *
+	 * @param headers request headers, or null; an Accept-Encoding header replaces gzip
+	 *
+	 * @return response with any status, caller checks status and closes the response
+	 *
+	 * @throws IOException if the connection fails or times out
+	 */
+	public Response get(String url, Map<String, String> headers) throws IOException {
+		return send(url, headers, null, null);
+	}
+
+	/**
+	 * Sends a POST request
+	 *
+	 * @param url request url
+	 *
+	 * @param contentType request body type, e.g. application/x-www-form-urlencoded
+	 *
+	 * @param content request body
+	 *
+	 * @return response with any status, caller checks status and closes the response
+	 *
+	 * @throws IOException if the connection fails or times out
+	 */
+	public Response post(String url, String contentType, byte[] content) throws IOException {
+		return send(url, null, contentType, content);
+	}
+
+	/**
+	 * Opens the body of a GET request
+	 *
+	 * @param url request url
+	 *
+	 * @return response body, close to release the connection
+	 *
+	 * @throws IOException if the request fails or returns a non-2xx status
+	 */
+	public InputStream openStream(String url) throws IOException {
+		return checkStatus(get(url, null)).getBody();
+	}
+
+	/**
+	 * Closes a failed response
+	 *
+	 * @param response http response
+	 *
+	 * @return response, if status is 2xx
+	 *
+	 * @throws IOException if the response status is not 2xx
+	 */
+	public static Response checkStatus(Response response) throws IOException {
+		if (!response.isSuccess()) {
+			response.close();
+			throw new IOException(String.format("HTTP %d from %s", response.getStatus(), response.getTiming().getUrl()));
+		}
+		return response;
+	}
+
+	private Response send(String url, Map<String, String> headers, String contentType, byte[] content)
+			throws IOException {
+		Timing timing = new Timing(url);
+		URL u = new URL(url);
+		boolean isHttp = u.getProtocol().startsWith("http");
+		if (!isHttp) {
+			// local file or jar resource
+			URLConnection conn = u.openConnection();
+			long t0 = System.nanoTime();
+			InputStream in = conn.getInputStream();
+			timing.ttfbMs = (System.nanoTime() - t0) / 1.0e6;
+			timing.status = 200;
+			return new Response(conn, timing, in, false, null, null, null);
+		}
+
+		RateLimiter.acquire(url);
+
+		// JDK caches successful lookups, so the connection reuses this address
+		long t0 = System.nanoTime();
+		InetAddress.getByName(u.getHost());
+		long t1 = System.nanoTime();
+		timing.dnsMs = (t1 - t0) / 1.0e6;
+
+		HttpURLConnection conn = (HttpURLConnection) u.openConnection();
+		RequestGroup group = REQUEST_GROUP.get();
+		if (group != null) {
+			group.add(conn);
+		}
+		try {
+			return send(conn, timing, url, headers, contentType, content, group);
+		} catch (IOException | RuntimeException e) {
+			if (group != null) {
+				group.remove(conn);
+			}
+			throw e;
+		}
+	}
+
+	// sends request on an open connection, refer send(url, ..)
+	private Response send(HttpURLConnection conn, Timing timing, String url, Map<String, String> headers,
+			String contentType, byte[] content, RequestGroup group) throws IOException {
+		long t1 = System.nanoTime();
+		conn.setConnectTimeout(connectTimeoutMs);
+		conn.setReadTimeout(readTimeoutMs);
+		conn.setRequestProperty("Accept-Encoding", "gzip");
+		if (headers != null) {
+			for (Map.Entry<String, String> e : headers.entrySet()) {
+				conn.setRequestProperty(e.getKey(), e.getValue());
+			}
+		}
+		if (content != null) {
+			conn.setRequestMethod("POST");
+			conn.setDoOutput(true);
+			conn.setRequestProperty("Content-Type", contentType);
+			conn.setFixedLengthStreamingMode(content.length);
+		}
+
+		// connect reuses an idle pooled connection if available
+		conn.connect();
+		long t2 = System.nanoTime();
+		timing.connectMs = (t2 - t1) / 1.0e6;
+		if (content != null) {
+			try (OutputStream out = conn.getOutputStream()) {
+				out.write(content);
+			}
+		}
+		timing.status = conn.getResponseCode();
+		timing.ttfbMs = (System.nanoTime() - t2) / 1.0e6;
+
+		InputStream in = (timing.status >= 400) ? conn.getErrorStream() : conn.getInputStream();
+		if (in == null) {
+			in = new ByteArrayInputStream(new byte[0]);
+		}
+		timing.gzip = "gzip".equalsIgnoreCase(conn.getContentEncoding());
+		HttpRecorder rec = recorder;
+		String recordKey = null;
+		if (rec != null && timing.status == HttpURLConnection.HTTP_OK) {
+			recordKey = HttpRecorder.requestKey(conn.getRequestMethod(), HttpRecorder.pathAndQuery(url), content);
+		}
+		return new Response(conn, timing, in, timing.gzip, rec, recordKey, group);
+	}
+
+	private synchronized void addTiming(Timing timing) {
+		timings.addLast(timing);
+		if (timings.size() > MAX_TIMINGS) {
+			timings.removeFirst();
+		}
+	}
+
+	/**
+	 * @return most recent request timings, oldest first
+	 */
+	public synchronized List<Timing> getTimings() {
+		return Collections.unmodifiableList(new ArrayList<>(timings));
+	}
+
+	/**
+	 * Summary of recent request timings by host
+	 *
+	 * @return one line per host, format host: requests, mean dns, connect, ttfb and transfer (ms)
+	 */
+	public synchronized String getReport() {
+		Map<String, double[]> totals = new TreeMap<>();
+		for (Timing timing : timings) {
+			String host;
+			try {
+				host = new URL(timing.url).getHost();
+			} catch (IOException e) {
+				host = "";
+			}
+			double[] t = totals.computeIfAbsent(host, k -> new double[6]);
+			t[0]++;
+			t[1] += timing.dnsMs;
+			t[2] += timing.connectMs;
+			t[3] += timing.ttfbMs;
+			t[4] += timing.transferMs;
+			t[5] += timing.bytes;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, double[]> e : totals.entrySet()) {
+			double[] t = e.getValue();
+			sb.append(String.format("%s: %d requests, mean dns %.1f, connect %.1f, ttfb %.1f, transfer %.1f ms, %d bytes%n",
+					e.getKey(), (long) t[0], t[1] / t[0], t[2] / t[0], t[3] / t[0], t[4] / t[0], (long) t[5]));
+		}
+		return sb.toString();
+	}
+}
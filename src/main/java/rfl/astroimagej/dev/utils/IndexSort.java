@@ -0,0 +1,96 @@
+package rfl.astroimagej.dev.utils;
+
+/**
+ * Sorts an index array by primitive double keys, without boxing.
+ * <p>
+ * Keys are compared with Double.compare, so NaN (no data) sorts after all numeric values.
+ * Equal keys keep their original index order.
+ * </p>
+ */
+public class IndexSort {
+
+	// partitions below this size are insertion sorted
+	private static final int INSERTION_THRESHOLD = 16;
+
+	/**
+	 * Returns indices 0 .. n-1 ordered by ascending key value
+	 *
+	 * @param keys sort keys, e.g. magnitude column
+	 *
+	 * @param n number of keys to sort
+	 *
+	 * @return index array, keys[index[0]] is the smallest key
+	 */
+	public static int[] sortedIndex(double[] keys, int n) {
+		int[] index = new int[n];
+		for (int i = 0; i < n; i++) {
+			index[i] = i;
+		}
+		sort(index, keys, 0, n - 1);
+		return index;
+	}
+
+	// quicksort, median of three pivot, insertion sort for small partitions
+	private static void sort(int[] index, double[] keys, int lo, int hi) {
+		while (hi - lo >= INSERTION_THRESHOLD) {
+			int mid = (lo + hi) >>> 1;
+			if (less(index[mid], index[lo], keys)) {
+				swap(index, lo, mid);
+			}
+			if (less(index[hi], index[lo], keys)) {
+				swap(index, lo, hi);
+			}
+			if (less(index[hi], index[mid], keys)) {
+				swap(index, mid, hi);
+			}
+			int pivot = index[mid];
+
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (less(index[i], pivot, keys)) {
+					i++;
+				}
+				while (less(pivot, index[j], keys)) {
+					j--;
+				}
+				if (i <= j) {
+					swap(index, i++, j--);
+				}
+			}
+			// recurse into smaller partition, loop on larger
+			if (j - lo < hi - i) {
+				sort(index, keys, lo, j);
+				lo = i;
+			} else {
+				sort(index, keys, i, hi);
+				hi = j;
+			}
+		}
+		insertionSort(index, keys, lo, hi);
+	}
+
+	private static void insertionSort(int[] index, double[] keys, int lo, int hi) {
+		for (int i = lo + 1; i <= hi; i++) {
+			int value = index[i];
+			int j = i - 1;
+			while (j >= lo && less(value, index[j], keys)) {
+				index[j + 1] = index[j];
+				j--;
+			}
+			index[j + 1] = value;
+		}
+	}
+
+	// key order, ties broken by index => deterministic order for equal keys
+	private static boolean less(int a, int b, double[] keys) {
+		int c = Double.compare(keys[a], keys[b]);
+		return c < 0 || (c == 0 && a < b);
+	}
+
+	private static void swap(int[] index, int i, int j) {
+		int tmp = index[i];
+		index[i] = index[j];
+		index[j] = tmp;
+	}
+}
@@ -0,0 +1,213 @@
+package rfl.astroimagej.dev.utils;
+
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host token bucket rate limiter shared by all outbound catalog and image requests.
+ * <p>
+ * Each host has a bucket holding up to 'burst' tokens, refilled at 'rate' tokens per second.
+ * A request takes one token and runs immediately if a token is available, otherwise the
+ * caller waits only until the next token is due. Requests therefore run back-to-back up to
+ * the allowed rate, in place of a fixed delay after every request. An interrupted caller, e.g. a
+ * cancelled task, is refused with InterruptedIOException and its reserved token returned, so
+ * the request never reaches the network.
+ * </p>
+ * <p>
+ * Default limits: SIMBAD 5/s, VSP 2/s, SkyView 1/s (burst 2), other hosts 10/s.
+ * Local file urls, e.g. test fixtures, are not limited.
+ * </p>
+ */
+public class RateLimiter {
+
+	// host => bucket, created on first request from configured or default limits
+	private static final Map<String, RateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+	// built-in host limits, rate and burst, restored by reset
+	private static final Map<String, double[]> BUILT_IN = new HashMap<>();
+
+	// default for hosts not configured
+	private static final double DEFAULT_RATE = 10.0;
+	private static final int DEFAULT_BURST = 10;
+
+	static {
+		BUILT_IN.put("simbad.u-strasbg.fr", new double[] { 5.0, 5 });
+		BUILT_IN.put("app.aavso.org", new double[] { 2.0, 2 });
+		BUILT_IN.put("skyview.gsfc.nasa.gov", new double[] { 1.0, 2 });
+		for (String host : BUILT_IN.keySet()) {
+			reset(host);
+		}
+	}
+
+	// bucket parameters
+	private final String host;
+	private final double ratePerSec;
+	private final int burst;
+
+	// bucket state, guarded by this
+	private double tokens;
+	private long lastRefillNanos;
+
+	// wait counters
+	private final AtomicLong nRequests = new AtomicLong();
+	private final AtomicLong nWaits = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+
+	private RateLimiter(String host, double ratePerSec, int burst) {
+		this.host = host;
+		this.ratePerSec = ratePerSec;
+		this.burst = burst;
+		this.tokens = burst;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	/**
+	 * Sets request rate and burst size for an endpoint host, replaces any existing bucket
+	 *
+	 * @param host server host name, e.g. "simbad.u-strasbg.fr"
+	 *
+	 * @param ratePerSec sustained requests per second
+	 *
+	 * @param burst maximum number of requests allowed back-to-back
+	 */
+	public static void configure(String host, double ratePerSec, int burst) {
+		LIMITERS.put(host.toLowerCase(), new RateLimiter(host.toLowerCase(), ratePerSec, burst));
+	}
+
+	/**
+	 * Restores the built-in limits of a host, or default limits for other hosts, e.g. after a
+	 * test configures a local stand-in server
+	 *
+	 * @param host server host name
+	 */
+	public static void reset(String host) {
+		double[] limits = BUILT_IN.get(host.toLowerCase());
+		if (limits != null) {
+			configure(host, limits[0], (int) limits[1]);
+		} else {
+			LIMITERS.remove(host.toLowerCase());
+		}
+	}
+
+	/**
+	 * Blocks until the url host allows another request
+	 *
+	 * @param url request url
+	 *
+	 * @throws InterruptedIOException if the calling thread is interrupted before or while waiting
+	 */
+	public static void acquire(String url) throws InterruptedIOException {
+		String host = getHost(url);
+		if (host.length() > 0) {
+			forHost(host).acquire();
+		}
+	}
+
+	/**
+	 * Returns the limiter for a host, created with default limits if not configured
+	 *
+	 * @param host server host name
+	 *
+	 * @return host rate limiter
+	 */
+	public static RateLimiter forHost(String host) {
+		return LIMITERS.computeIfAbsent(host.toLowerCase(),
+				h -> new RateLimiter(h, DEFAULT_RATE, DEFAULT_BURST));
+	}
+
+	/**
+	 * Takes one token, waiting until the next token is due if the bucket is empty
+	 *
+	 * @throws InterruptedIOException if the calling thread is interrupted before or while waiting,
+	 * 			no token is taken
+	 */
+	public void acquire() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedIOException("Request to " + host + " cancelled");
+		}
+		long waitNs = reserve();
+		if (waitNs > 0) {
+			nWaits.incrementAndGet();
+			waitNanos.addAndGet(waitNs);
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNs);
+			} catch (InterruptedException e) {
+				release();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Request to " + host + " cancelled");
+			}
+		}
+		nRequests.incrementAndGet();
+	}
+
+	// returns a reserved token not used by a cancelled caller
+	private synchronized void release() {
+		tokens = Math.min(burst, tokens + 1.0);
+	}
+
+	/*
+	 * Refills bucket and reserves one token. A negative token count queues callers
+	 * in arrival order.
+	 *
+	 * @return time to wait before the reserved token is due, ns
+	 */
+	private synchronized long reserve() {
+		long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + (now - lastRefillNanos) * ratePerSec / 1.0e9);
+		lastRefillNanos = now;
+		tokens -= 1.0;
+		return (tokens >= 0) ? 0 : (long) (-tokens / ratePerSec * 1.0e9);
+	}
+
+	// host name of url, empty for local files or invalid urls
+	private static String getHost(String url) {
+		try {
+			String host = new URL(url).getHost();
+			return (host == null) ? "" : host;
+		} catch (MalformedURLException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Summary of request and wait counters for all hosts
+	 *
+	 * @return one line per host, format host: requests, waits, total wait (ms)
+	 */
+	public static String getReport() {
+		StringBuilder sb = new StringBuilder();
+		for (RateLimiter limiter : new TreeMap<>(LIMITERS).values()) {
+			sb.append(limiter.toString()).append("\n");
+		}
+		return sb.toString();
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public long getRequestCount() {
+		return nRequests.get();
+	}
+
+	public long getWaitCount() {
+		return nWaits.get();
+	}
+
+	public double getWaitMillis() {
+		return waitNanos.get() / 1.0e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: requests=%d, waits=%d, waitMs=%.1f (rate=%.1f/s, burst=%d)",
+				host, getRequestCount(), getWaitCount(), getWaitMillis(), ratePerSec, burst);
+	}
+}
@@ -0,0 +1,205 @@
+package rfl.astroimagej.dev.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server that replays responses recorded by HttpTransport, for offline tests and
+ * load tests of the catalog and DSS pipeline.
+ * <p>
+ * Requests are matched to recordings by request key, refer HttpRecorder. Each response waits
+ * a fixed latency before the status line, then streams the body at a limited bandwidth, so
+ * that local runs show realistic TTFB and transfer times. Unrecorded requests return 404.
+ * Requests are served concurrently.
+ * </p>
+ * <p>
+ * Point the pipeline at a running server with CatalogUrls.setServerOverride(getBaseUrl()), or
+ * the astroimagej.catalog.server system property. Standalone use:
+ * ReplayServer [recording folder] [port] [latency ms] [bytes per sec]
+ * </p>
+ */
+public class ReplayServer implements Closeable {
+
+	// bandwidth limited writes in slices of this duration
+	private static final long SLICE_MS = 20;
+
+	private final HttpRecorder recordings;
+	private final long latencyMs;
+	private final long bytesPerSec;
+
+	private HttpServer server = null;
+	private ExecutorService executor = null;
+
+	private final AtomicLong nRequests = new AtomicLong();
+	private final AtomicLong nMisses = new AtomicLong();
+
+	/**
+	 * @param recordings recorded responses
+	 *
+	 * @param latencyMs delay before each response (ms)
+	 *
+	 * @param bytesPerSec response body bandwidth per request, 0 for no limit
+	 */
+	public ReplayServer(HttpRecorder recordings, long latencyMs, long bytesPerSec) {
+		this.recordings = recordings;
+		this.latencyMs = latencyMs;
+		this.bytesPerSec = bytesPerSec;
+	}
+
+	/**
+	 * Starts the server on localhost
+	 *
+	 * @param port server port, 0 for any free port
+	 *
+	 * @return server base url, e.g. http://localhost:8080
+	 *
+	 * @throws IOException if the port could not be opened
+	 */
+	public String start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "replay-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::replay);
+		server.start();
+		return getBaseUrl();
+	}
+
+	/**
+	 * Stops the server, closing open connections
+	 */
+	@Override
+	public void close() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	private void replay(HttpExchange exchange) throws IOException {
+		nRequests.incrementAndGet();
+		try {
+			byte[] content = readAll(exchange.getRequestBody());
+			URI uri = exchange.getRequestURI();
+			String pathAndQuery = uri.getRawPath() + ((uri.getRawQuery() == null) ? "" : "?" + uri.getRawQuery());
+			String key = HttpRecorder.requestKey(exchange.getRequestMethod(), pathAndQuery, content);
+
+			Thread.sleep(latencyMs);
+			Path body = recordings.getBody(key);
+			if (body == null) {
+				nMisses.incrementAndGet();
+				byte[] message = ("No recording for: " + key).getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(404, message.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(message);
+				}
+				return;
+			}
+			String contentType = recordings.getContentType(key);
+			if (contentType != null) {
+				exchange.getResponseHeaders().add("Content-Type", contentType);
+			}
+			exchange.sendResponseHeaders(200, Files.size(body));
+			try (InputStream in = Files.newInputStream(body); OutputStream out = exchange.getResponseBody()) {
+				send(in, out);
+			}
+		} catch (InterruptedException e) {
+			// server stopped
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	// copies body, paced to bytesPerSec
+	private void send(InputStream in, OutputStream out) throws IOException, InterruptedException {
+		int sliceBytes = (bytesPerSec > 0) ? (int) Math.max(1, bytesPerSec * SLICE_MS / 1000) : 1 << 16;
+		byte[] buffer = new byte[sliceBytes];
+		long t0 = System.nanoTime();
+		long sent = 0;
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, n);
+			out.flush();
+			sent += n;
+			if (bytesPerSec > 0) {
+				long dueNanos = sent * 1000000000L / bytesPerSec;
+				long waitMs = (dueNanos - (System.nanoTime() - t0)) / 1000000;
+				if (waitMs > 0) {
+					Thread.sleep(waitMs);
+				}
+			}
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return server base url, null if not started
+	 */
+	public String getBaseUrl() {
+		return (server == null) ? null : "http://localhost:" + server.getAddress().getPort();
+	}
+
+	public long getRequestCount() {
+		return nRequests.get();
+	}
+
+	/**
+	 * @return number of requests without a recording
+	 */
+	public long getMissCount() {
+		return nMisses.get();
+	}
+
+	/**
+	 * Runs a replay server until the process is stopped
+	 *
+	 * @param args recording folder, optional port (default 8080), latency ms (default 0),
+	 * 			bytes per sec (default 0, no limit)
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: ReplayServer [recording folder] [port] [latency ms] [bytes per sec]");
+			return;
+		}
+		HttpRecorder recordings = new HttpRecorder(Paths.get(args[0]));
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+		long latencyMs = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+		long bytesPerSec = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+
+		ReplayServer replay = new ReplayServer(recordings, latencyMs, bytesPerSec);
+		String url = replay.start(port);
+		System.out.println(String.format("Replaying %d recordings at %s, latency %d ms, %d bytes/s", recordings.size(),
+				url, latencyMs, bytesPerSec));
+		System.out.println(String.format("Run with -D%s=%s", CatalogUrls.SERVER_PROPERTY, url));
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,320 @@
+package rfl.astroimagej.dev.utils;
+
+import java.util.Locale;
+
+/**
+ * Sexagesimal ra and dec formatting and parsing without String.format, String.split or boxing.
+ * <p>
+ * Formatting appends HH:MM:SS.SS or ±DD:MM:SS.SS to a caller-supplied StringBuilder or char
+ * buffer; parsing reads the three fields of a CharSequence in place. Results are identical to
+ * the String.format and String.split conversions they replace: the same arithmetic derives hh,
+ * mm and ss from the input, then only the text conversion differs.
+ * </p>
+ * <p>
+ * Seconds are rounded to 2 decimal places with a direct integer computation, except where the
+ * value lies within TIE_MARGIN of a rounding tie, or is negative or not finite, when
+ * String.format is used. The decimal point is always '.', whatever the default
+ * locale. Parsing falls back to the reference method for any field
+ * that is not plain [sign]digits[.digits], e.g. embedded spaces or exponents, so that error
+ * behaviour is also unchanged.
+ * </p>
+ */
+public class SexagesimalCodec {
+
+	// formatted lengths: HH:MM:SS.SS and ±DD:MM:SS.SS
+	public static final int RA_LENGTH = 11;
+	public static final int DEC_LENGTH = 12;
+
+	// distance (in units of 0.01 s) from a rounding tie handled by String.format
+	private static final double TIE_MARGIN = 1e-6;
+
+	// largest seconds value (in units of 0.01 s) converted directly
+	private static final double MAX_CENTS = 1e15;
+
+	// exact powers of ten, m / 10^k is correctly rounded for m < 2^53
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	private static final long MAX_MANTISSA = 1L << 53;
+
+	// per thread scratch buffer for the String and StringBuilder conversions
+	private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[32]);
+
+	/**
+	 * Formats ra into a char buffer, refer AstroCoords.raHr_To_raHms
+	 *
+	 * @param raHr ra in units hr, any sign or magnitude
+	 *
+	 * @param buffer destination, RA_LENGTH chars from offset
+	 *
+	 * @param offset index of first char
+	 *
+	 * @return index after last char written
+	 */
+	public static int formatRa(double raHr, char[] buffer, int offset) {
+		// coerce input data into range 0..24 (hr)
+		double data = (raHr >= 0) ? raHr % 24 : (24 + raHr % 24);
+
+		// extract hh, mm and ss terms
+		int hh = (int) (1.0 * data);
+		int mm = (int) ((data - hh) * 60);
+		double ss = 3600 * (data - hh) - 60 * mm;
+
+		int i = writeDigits(buffer, offset, hh, 2);
+		buffer[i++] = ':';
+		i = writeDigits(buffer, i, mm, 2);
+		buffer[i++] = ':';
+		return writeSeconds(buffer, i, ss);
+	}
+
+	/**
+	 * Formats dec into a char buffer, refer AstroCoords.decDeg_To_decDms
+	 *
+	 * @param decDeg dec in units deg, magnitude exceeding 90 is clipped to ±90
+	 *
+	 * @param buffer destination, DEC_LENGTH chars from offset
+	 *
+	 * @param offset index of first char
+	 *
+	 * @return index after last char written
+	 */
+	public static int formatDec(double decDeg, char[] buffer, int offset) {
+		buffer[offset] = (decDeg >= 0) ? '+' : '-';
+
+		// coerce input data into range ±90.0
+		double data = (Math.abs(decDeg) > 90.0) ? 90.0 : Math.abs(decDeg);
+
+		// extract dd, mm, ss terms
+		int dd = (int) (1.0 * data);
+		int mm = (int) ((data - dd) * 60);
+		double ss = ((data - dd) * 60 - mm) * 60;
+
+		int i = writeDigits(buffer, offset + 1, dd, 2);
+		buffer[i++] = ':';
+		i = writeDigits(buffer, i, mm, 2);
+		buffer[i++] = ':';
+		return writeSeconds(buffer, i, ss);
+	}
+
+	/**
+	 * Appends ra in sexagesimal format HH:MM:SS.SS, refer formatRa
+	 *
+	 * @param sb string builder to append to
+	 *
+	 * @param raHr ra in units hr
+	 *
+	 * @return sb
+	 */
+	public static StringBuilder appendRa(StringBuilder sb, double raHr) {
+		char[] buffer = BUFFER.get();
+		return sb.append(buffer, 0, formatRa(raHr, buffer, 0));
+	}
+
+	/**
+	 * Appends dec in sexagesimal format ±DD:MM:SS.SS, refer formatDec
+	 *
+	 * @param sb string builder to append to
+	 *
+	 * @param decDeg dec in units deg
+	 *
+	 * @return sb
+	 */
+	public static StringBuilder appendDec(StringBuilder sb, double decDeg) {
+		char[] buffer = BUFFER.get();
+		return sb.append(buffer, 0, formatDec(decDeg, buffer, 0));
+	}
+
+	/**
+	 * @param raHr ra in units hr
+	 *
+	 * @return ra in sexagesimal format HH:MM:SS.SS
+	 */
+	public static String formatRa(double raHr) {
+		char[] buffer = BUFFER.get();
+		return new String(buffer, 0, formatRa(raHr, buffer, 0));
+	}
+
+	/**
+	 * @param decDeg dec in units deg
+	 *
+	 * @return dec in sexagesimal format ±DD:MM:SS.SS
+	 */
+	public static String formatDec(double decDeg) {
+		char[] buffer = BUFFER.get();
+		return new String(buffer, 0, formatDec(decDeg, buffer, 0));
+	}
+
+	/**
+	 * Parses ra in sexagesimal format, refer AstroCoords.raHms_To_raHr
+	 *
+	 * @param raHms ra text HH:MM:SS.SS
+	 *
+	 * @return ra in units hr, negative ra is converted to 24 - |ra|
+	 */
+	public static double parseRa(CharSequence raHms) {
+		int c1 = indexOf(raHms, ':', 0);
+		int c2 = (c1 < 0) ? -1 : indexOf(raHms, ':', c1 + 1);
+		if (c2 < 0 || indexOf(raHms, ':', c2 + 1) >= 0) {
+			return referenceParseRa(raHms.toString());
+		}
+		double f0 = parseField(raHms, 0, c1);
+		double f1 = parseField(raHms, c1 + 1, c2);
+		double f2 = parseField(raHms, c2 + 1, raHms.length());
+		if (Double.isNaN(f0) || Double.isNaN(f1) || Double.isNaN(f2)) {
+			return referenceParseRa(raHms.toString());
+		}
+
+		boolean isNegative = raHms.charAt(0) == '-';
+		double hh = Math.abs(f0);
+		double mm = f1 % 60;
+		double ss = f2 % 60;
+		double raHr = (hh + mm / 60 + ss / 3600) % 24;
+		return isNegative ? (24.0 - raHr) : raHr;
+	}
+
+	/**
+	 * Parses dec in sexagesimal format, refer AstroCoords.decDms_To_decDeg
+	 *
+	 * @param decDms dec text ±DD:MM:SS.SS
+	 *
+	 * @return dec in units deg, |dec| > 90 is clipped to 90
+	 */
+	public static double parseDec(CharSequence decDms) {
+		int c1 = indexOf(decDms, ':', 0);
+		int c2 = (c1 < 0) ? -1 : indexOf(decDms, ':', c1 + 1);
+		if (c2 < 0 || indexOf(decDms, ':', c2 + 1) >= 0) {
+			return referenceParseDec(decDms.toString());
+		}
+		double f0 = parseField(decDms, 0, c1);
+		double f1 = parseField(decDms, c1 + 1, c2);
+		double f2 = parseField(decDms, c2 + 1, decDms.length());
+		if (Double.isNaN(f0) || Double.isNaN(f1) || Double.isNaN(f2)) {
+			return referenceParseDec(decDms.toString());
+		}
+
+		int sign = (decDms.charAt(0) == '-') ? -1 : 1;
+		double dd = Math.abs(f0);
+
+		// clip |dec| > 90 to 90.0
+		if (dd > 90) {
+			return sign * 90.0;
+		}
+		double mm = f1 % 60;
+		double ss = f2 % 60;
+		return sign * (dd + mm / 60 + ss / 3600);
+	}
+
+	// writes n >= 0 zero padded to minDigits, returns index after last digit
+	private static int writeDigits(char[] buffer, int offset, long n, int minDigits) {
+		int nDigits = 1;
+		for (long m = n / 10; m > 0; m /= 10) {
+			nDigits++;
+		}
+		nDigits = Math.max(nDigits, minDigits);
+		for (int i = offset + nDigits - 1; i >= offset; i--) {
+			buffer[i] = (char) ('0' + n % 10);
+			n /= 10;
+		}
+		return offset + nDigits;
+	}
+
+	/*
+	 * Writes seconds as String.format("%5.2f", ss).replace(' ', '0'). Values near a rounding
+	 * tie, negative or not finite use String.format.
+	 */
+	private static int writeSeconds(char[] buffer, int offset, double ss) {
+		double cents = ss * 100;
+		double floor = Math.floor(cents);
+		double fraction = cents - floor;
+		if (Double.doubleToRawLongBits(ss) < 0 || !(cents < MAX_CENTS)
+				|| Math.abs(fraction - 0.5) < TIE_MARGIN) {
+			String text = formatSeconds(ss);
+			text.getChars(0, text.length(), buffer, offset);
+			return offset + text.length();
+		}
+
+		// width 5 => at least 2 integer digits, zero padded
+		long rounded = (long) floor + ((fraction > 0.5) ? 1 : 0);
+		int i = writeDigits(buffer, offset, rounded / 100, 2);
+		buffer[i++] = '.';
+		return writeDigits(buffer, i, rounded % 100, 2);
+	}
+
+	private static int indexOf(CharSequence text, char ch, int from) {
+		for (int i = from; i < text.length(); i++) {
+			if (text.charAt(i) == ch) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Parses [sign]digits[.digits] between start and end, as Double.valueOf. Returns NaN for
+	 * any other text, or where the digits exceed an exactly representable mantissa, for the
+	 * caller to fall back to Double.valueOf.
+	 */
+	private static double parseField(CharSequence text, int start, int end) {
+		int i = start;
+		boolean isNegative = false;
+		if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+			isNegative = text.charAt(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int nDigits = 0;
+		int nDecimals = 0;
+		boolean isFraction = false;
+		for (; i < end; i++) {
+			char ch = text.charAt(i);
+			if (ch >= '0' && ch <= '9') {
+				mantissa = 10 * mantissa + (ch - '0');
+				if (mantissa >= MAX_MANTISSA) {
+					return Double.NaN;
+				}
+				nDigits++;
+				nDecimals += isFraction ? 1 : 0;
+			} else if (ch == '.' && !isFraction && nDigits > 0) {
+				isFraction = true;
+			} else {
+				return Double.NaN;
+			}
+		}
+		if (nDigits == 0 || nDecimals >= POW10.length) {
+			return Double.NaN;
+		}
+		double value = (nDecimals == 0) ? mantissa : mantissa / POW10[nDecimals];
+		return isNegative ? -value : value;
+	}
+
+	// reference seconds format, '.' decimal point as the direct conversion
+	static String formatSeconds(double ss) {
+		return String.format(Locale.ROOT, "%5.2f", ss).replace(' ', '0');
+	}
+
+	/*
+	 * Reference parse using String.split and Double.valueOf, for input outside the direct
+	 * conversion
+	 */
+	static double referenceParseRa(String raHms) {
+		boolean isNegative = raHms.charAt(0) == '-';
+		String[] el = raHms.split(":");
+		double hh = Math.abs(Double.valueOf(el[0]));
+		double mm = Double.valueOf(el[1]) % 60;
+		double ss = Double.valueOf(el[2]) % 60;
+		double raHr = (hh + mm / 60 + ss / 3600) % 24;
+		return isNegative ? (24.0 - raHr) : raHr;
+	}
+
+	static double referenceParseDec(String decDms) {
+		int sign = (decDms.charAt(0) == '-') ? -1 : 1;
+		String[] el = decDms.split(":");
+		double dd = Math.abs(Double.valueOf(el[0]));
+		if (dd > 90) {
+			return sign * 90.0;
+		}
+		double mm = Double.valueOf(el[1]) % 60;
+		double ss = Double.valueOf(el[2]) % 60;
+		return sign * (dd + mm / 60 + ss / 3600);
+	}
+}
@@ -0,0 +1,225 @@
+package rfl.astroimagej.dev.utils;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming (StAX) reader for VOTable TABLEDATA responses, e.g. SIMBAD sim-id, cone search and TAP queries.
+ * <p>
+ * FIELD elements define the table columns. Each TR row is decoded as its TD elements arrive,
+ * numeric cells parsed to double and char cells kept as text, without building a DOM tree.
+ * </p>
+ * <p>
+ * Row values are passed to a RowHandler and are only valid for the duration of the callback,
+ * row buffers are re-used for the next row.
+ * </p>
+ * <p>
+ * VOTable reference: https://www.ivoa.net/documents/VOTable/
+ * </p>
+ */
+public class VoTableReader {
+
+	/**
+	 * Callback for each decoded table row
+	 */
+	@FunctionalInterface
+	public interface RowHandler {
+		/**
+		 * @param row reader positioned on the current row, use getDouble / getString to access cell values
+		 */
+		public void row(VoTableReader row);
+	}
+
+	// factory is thread-safe once configured
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+	static {
+		FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	// FIELD metadata
+	private List<String> fieldNames = new ArrayList<>();
+	private boolean[] numeric = new boolean[0];
+
+	// current row data
+	private double[] numbers = new double[0];
+	private String[] texts = new String[0];
+	private boolean[] empty = new boolean[0];
+	private int rowCount = 0;
+
+	// QUERY_STATUS INFO element, e.g. "OK" or "ERROR"
+	private String queryStatus = null;
+
+	// accumulates TD text split across character events
+	private final StringBuilder cellText = new StringBuilder();
+
+	/**
+	 * Reads a VOTable stream and calls the handler for every TR row
+	 *
+	 * @param in VOTable xml input stream, not closed by this method
+	 *
+	 * @param handler called once for each table row
+	 *
+	 * @return number of table rows decoded
+	 *
+	 * @throws XMLStreamException if input is not well-formed xml
+	 */
+	public int read(InputStream in, RowHandler handler) throws XMLStreamException {
+		fieldNames.clear();
+		rowCount = 0;
+		queryStatus = null;
+
+		XMLStreamReader xr = FACTORY.createXMLStreamReader(in);
+		try {
+			int col = -1;
+			boolean inCell = false;
+			while (xr.hasNext()) {
+				int event = xr.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = xr.getLocalName();
+					if ("TD".equals(name)) {
+						col++;
+						inCell = true;
+						cellText.setLength(0);
+					} else if ("TR".equals(name)) {
+						col = -1;
+						Arrays.fill(empty, true);
+					} else if ("FIELD".equals(name)) {
+						addField(xr.getAttributeValue(null, "name"), xr.getAttributeValue(null, "datatype"));
+					} else if ("INFO".equals(name) && "QUERY_STATUS".equals(xr.getAttributeValue(null, "name"))) {
+						queryStatus = xr.getAttributeValue(null, "value");
+					} else if ("DATA".equals(name)) {
+						allocateRow();
+					}
+
+				} else if (inCell && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+					cellText.append(xr.getTextCharacters(), xr.getTextStart(), xr.getTextLength());
+
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = xr.getLocalName();
+					if ("TD".equals(name)) {
+						inCell = false;
+						setCell(col);
+					} else if ("TR".equals(name)) {
+						rowCount++;
+						handler.row(this);
+					}
+				}
+			}
+		} finally {
+			xr.close();
+		}
+		return rowCount;
+	}
+
+	// records FIELD name and whether values are numeric
+	private void addField(String name, String dataType) {
+		fieldNames.add(name);
+		int n = fieldNames.size();
+		numeric = Arrays.copyOf(numeric, n);
+		numeric[n - 1] = isNumeric(dataType);
+	}
+
+	// row buffers sized from FIELD list
+	private void allocateRow() {
+		int n = fieldNames.size();
+		numbers = new double[n];
+		texts = new String[n];
+		empty = new boolean[n];
+		Arrays.fill(empty, true);
+	}
+
+	// converts current cell text to typed value, extra cells beyond FIELD list are ignored
+	private void setCell(int col) {
+		if (col < 0 || col >= empty.length) {
+			return;
+		}
+		String text = cellText.toString().trim();
+		empty[col] = text.isEmpty();
+		texts[col] = text;
+		numbers[col] = Double.NaN;
+		if (numeric[col] && !empty[col]) {
+			try {
+				numbers[col] = Double.parseDouble(text);
+			} catch (NumberFormatException nfe) {
+				empty[col] = true;
+			}
+		}
+	}
+
+	private static boolean isNumeric(String dataType) {
+		return dataType != null && (dataType.equals("double") || dataType.equals("float")
+				|| dataType.equals("int") || dataType.equals("short") || dataType.equals("long")
+				|| dataType.equals("unsignedByte"));
+	}
+
+	/**
+	 * @param col zero-based column index
+	 * @return numeric cell value, NaN if the cell is empty or column is not numeric
+	 */
+	public double getDouble(int col) {
+		return empty[col] ? Double.NaN : numbers[col];
+	}
+
+	/**
+	 * @param col zero-based column index
+	 * @return numeric cell value, null if the cell is empty
+	 */
+	public Double getDoubleOrNull(int col) {
+		return (empty[col] || !numeric[col]) ? null : numbers[col];
+	}
+
+	/**
+	 * @param col zero-based column index
+	 * @return trimmed cell text, empty string if cell has no data
+	 */
+	public String getString(int col) {
+		return (empty[col] || texts[col] == null) ? "" : texts[col];
+	}
+
+	/**
+	 * @param col zero-based column index
+	 * @return true if the current row has no data for this column
+	 */
+	public boolean isEmpty(int col) {
+		return empty[col];
+	}
+
+	/**
+	 * @param name FIELD name attribute, case-insensitive
+	 * @return column index, or -1 if no matching FIELD
+	 */
+	public int getFieldIndex(String name) {
+		for (int i = 0; i < fieldNames.size(); i++) {
+			if (fieldNames.get(i) != null && fieldNames.get(i).equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int getFieldCount() {
+		return fieldNames.size();
+	}
+
+	public String getFieldName(int col) {
+		return fieldNames.get(col);
+	}
+
+	// number of rows read so far, the current row index is getRowCount() - 1
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public String getQueryStatus() {
+		return queryStatus;
+	}
+}
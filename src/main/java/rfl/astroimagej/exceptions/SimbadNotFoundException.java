@@ -6,8 +6,23 @@ package rfl.astroimagej.exceptions;
  */
 public class SimbadNotFoundException extends Exception {
 	private static final long serialVersionUID = 1L;
+	
+	// true if the query failed to run, e.g. no network connection
+	private final boolean isQueryError;
 
 	public SimbadNotFoundException(String message) {
+		this(message, false);
+	}
+	
+	public SimbadNotFoundException(String message, boolean isQueryError) {
 		super(message);
+		this.isQueryError = isQueryError;
+	}
+	
+	/**
+	 * @return true if the SIMBAD query failed to run, false if SIMBAD returned no match
+	 */
+	public boolean isQueryError() {
+		return isQueryError;
 	}
 }
@@ -0,0 +1,101 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+class SimbadBatchResolverTest {
+
+	/*
+	 * Stand-in SIMBAD catalog: the first nThreads queries wait on a latch until all are running
+	 * at once. Ids starting "wisp" are not found, ids starting "wasp x" are query errors.
+	 */
+	private static class BlockingSimbadCatalog extends SimbadCatalog {
+		private final CountDownLatch allStarted;
+		private final AtomicInteger nActive = new AtomicInteger();
+		private final AtomicInteger maxActive = new AtomicInteger();
+		private final AtomicBoolean isLatchTimeout = new AtomicBoolean();
+
+		private BlockingSimbadCatalog(int nThreads) {
+			this.allStarted = new CountDownLatch(nThreads);
+		}
+
+		@Override
+		public SimbadResult runQuery(CatalogQuery query) throws SimbadNotFoundException {
+			maxActive.accumulateAndGet(nActive.incrementAndGet(), Math::max);
+			try {
+				allStarted.countDown();
+				if (!allStarted.await(10, TimeUnit.SECONDS)) {
+					isLatchTimeout.set(true);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				nActive.decrementAndGet();
+			}
+			String objectId = query.getObjectId();
+			if (objectId.startsWith("wisp")) {
+				throw new SimbadNotFoundException("Identifier not found in the SIMBAD database: " + objectId);
+			} else if (objectId.startsWith("wasp x")) {
+				throw new SimbadNotFoundException("Error running SIMBAD query: " + objectId, true);
+			}
+			return new SimbadResult(objectId);
+		}
+	}
+
+	@DisplayName("Batch resolves all targets concurrently and reports each outcome")
+	@Test
+	void resolveAll_BoundedConcurrency_ReportsOutcomes() {
+		BlockingSimbadCatalog simbad = new BlockingSimbadCatalog(4);
+		SimbadBatchResolver resolver = new SimbadBatchResolver(simbad, 4);
+		List<String> ids = Arrays.asList("wasp 1", "wasp 2", "wisp 3", "wasp 4", "wasp x5", "wasp 6", "wisp 7", "wasp 8");
+
+		List<String> resolved = new ArrayList<>();
+		List<String> notFound = new ArrayList<>();
+		List<String> errors = new ArrayList<>();
+		String message = resolver.resolveAll(ids, new SimbadBatchResolver.BatchListener() {
+			@Override
+			public void resolved(String objectId, SimbadResult result) {
+				resolved.add(objectId);
+			}
+
+			@Override
+			public void notFound(String objectId, String msg) {
+				notFound.add(objectId);
+			}
+
+			@Override
+			public void queryError(String objectId, String msg) {
+				errors.add(objectId);
+			}
+		});
+		System.out.println(message);
+
+		// 4 queries ran at once, never more than the pool size
+		assertFalse(simbad.isLatchTimeout.get());
+		assertEquals(4, simbad.maxActive.get());
+
+		assertEquals(5, resolved.size());
+		Collections.sort(notFound);
+		assertEquals(Arrays.asList("wisp 3", "wisp 7"), notFound);
+		assertEquals(Arrays.asList("wasp x5"), errors);
+		assertEquals(2, resolver.getNotFoundCount());
+		assertEquals(1, resolver.getQueryErrorCount());
+		assertTrue(message.contains("1 query errors"));
+	}
+}
@@ -0,0 +1,138 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+class SimbadCacheTest {
+
+	private File cacheFile;
+	private SimbadResult vega;
+
+	private final long ttl = SimbadCache.DEFAULT_TTL_MS;
+	private final double epsilon = 1.0e-5;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		cacheFile = File.createTempFile("simbad_cache", ".properties");
+		cacheFile.delete();
+
+		vega = new SimbadResult("Vega");
+		vega.setSimbadId("* alf Lyr");
+		vega.setSimbadRaHr(18.61565);
+		vega.setSimbadDecDeg(38.78369);
+		vega.setMagB(0.03);
+		vega.setMagV(0.03);
+		vega.setMagR(0.07);
+		vega.setMagI(null);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		cacheFile.delete();
+	}
+
+	private SimbadCache newCache(long ttlMs, long notFoundTtlMs, int maxEntries) {
+		return new SimbadCache(cacheFile.toString(), ttlMs, notFoundTtlMs, maxEntries);
+	}
+
+	@DisplayName("Cached result is returned for normalised object id")
+	@Test
+	void put_Get_NormalisedObjectId_IsCorrect() throws SimbadNotFoundException {
+		SimbadCache cache = newCache(ttl, ttl, 10);
+		cache.put(vega);
+
+		SimbadResult result = cache.get("  VEGA ");
+		assertEquals("  VEGA ", result.getObjectId());
+		assertEquals("* alf Lyr", result.getSimbadId());
+		assertEquals(18.61565, result.getSimbadRaHr(), epsilon);
+		assertEquals(0.07, result.getMagR(), epsilon);
+		assertNull(result.getMagI());
+		assertEquals("wasp 12", SimbadCache.normalise("WASP__12"));
+	}
+
+	@DisplayName("Cache survives restart, entries reloaded from cache file")
+	@Test
+	void put_Reload_EntriesPersist() throws SimbadNotFoundException {
+		newCache(ttl, ttl, 10).put(vega);
+		newCache(ttl, ttl, 10).putNotFound("WISP-12", "Identifier not found in the SIMBAD database: WISP-12 ");
+
+		SimbadCache cache = newCache(ttl, ttl, 10);
+		assertEquals(2, cache.size());
+		assertEquals(38.78369, cache.get("vega").getSimbadDecDeg(), epsilon);
+		assertThrows(SimbadNotFoundException.class, () -> cache.get("wisp-12"));
+	}
+
+	@DisplayName("Batch saves the cache file once at the end, replaced without temporary files left")
+	@Test
+	void batch_SavesOnceAtEnd(@TempDir Path tempDir) throws IOException, SimbadNotFoundException {
+		Path file = tempDir.resolve("simbad_cache.properties");
+		SimbadCache cache = new SimbadCache(file.toString(), ttl, ttl, 1000);
+		cache.beginBatch();
+		for (int i = 0; i < 400; i++) {
+			SimbadResult result = new SimbadResult("target " + i);
+			result.setSimbadId("target " + i);
+			result.setSimbadRaHr(i / 20.0);
+			result.setSimbadDecDeg(0.0);
+			cache.put(result);
+		}
+		assertTrue(Files.notExists(file));
+		cache.endBatch();
+
+		assertEquals(400, newCache(file, 1000).size());
+		assertEquals(0.05, newCache(file, 1000).get("TARGET 1").getSimbadRaHr(), epsilon);
+		try (Stream<Path> files = Files.list(tempDir)) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	private SimbadCache newCache(Path file, int maxEntries) {
+		return new SimbadCache(file.toString(), ttl, ttl, maxEntries);
+	}
+
+	@DisplayName("Expired entries are misses")
+	@Test
+	void expiredEntry_IsMiss() throws Exception {
+		SimbadCache cache = newCache(50, 50, 10);
+		cache.put(vega);
+		cache.putNotFound("WISP-12", "not found");
+		Thread.sleep(100);
+
+		assertNull(cache.get("vega"));
+		assertNull(cache.get("WISP-12"));
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@DisplayName("Least recently used entry is evicted when cache is full")
+	@Test
+	void fullCache_EvictsLeastRecentlyUsed() throws SimbadNotFoundException {
+		SimbadCache cache = newCache(ttl, ttl, 2);
+		cache.put(vega);
+		cache.put(new SimbadResult("wasp 12"));
+
+		// vega most recently used => wasp 12 evicted
+		assertNotNull(cache.get("vega"));
+		cache.put(new SimbadResult("wasp 33"));
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("wasp 12"));
+		assertNotNull(cache.get("vega"));
+		assertNotNull(cache.get("wasp 33"));
+	}
+}
@@ -0,0 +1,147 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.enums.SimbadUrlType;
+import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.RateLimiter;
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+// decodes recorded SIMBAD VOTable responses and a local SIMBAD stand-in, no network access
+class SimbadSingleQueryTest {
+
+	private SimbadCatalog simbad;
+	private CatalogQuery query;
+
+	private final double epsilon = 1.0e-5;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		simbad = new SimbadCatalog();
+		query = new CatalogQuery();
+	}
+
+	private String fixtureUrl(String filename) {
+		return getClass().getResource("/" + filename).toString();
+	}
+
+	@DisplayName("Single request url includes all SIMBAD output parameters")
+	@Test
+	void simbadUrl_AllParams_IsCorrect() {
+		String url = CatalogUrls.getSimbadUrl(query);
+		assertTrue(url.endsWith("output.params=main_id,ra(d;ICRS;2000.0;2000.0),dec(d;ICRS;2000.0;2000.0),"
+				+ "flux(B),flux(V),flux(R),flux(I)"));
+	}
+
+	@DisplayName("Recorded vega VOTable row decodes all fields in one pass")
+	@Test
+	void vegaVoTable_SingleQuery_IsCorrect() throws SimbadNotFoundException {
+		query.setObjectId("vega");
+		SimbadResult result = simbad.runSingleQuery(query, fixtureUrl("simbad_vega_votable.xml"));
+
+		assertEquals("* alf Lyr", result.getSimbadId());
+		assertEquals(18.61565, result.getSimbadRaHr(), epsilon);
+		assertEquals(38.78369, result.getSimbadDecDeg(), epsilon);
+		assertEquals(0.03, result.getMagB(), epsilon);
+		assertEquals(0.03, result.getMagV(), epsilon);
+		assertEquals(0.07, result.getMagR(), epsilon);
+		assertEquals(0.10, result.getMagI(), epsilon);
+	}
+
+	@DisplayName("Recorded wasp-12 VOTable row decodes empty R and I cells as no data")
+	@Test
+	void waspVoTable_SingleQuery_MissingMags_AreNull() throws SimbadNotFoundException {
+		SimbadResult result = simbad.runSingleQuery(query, fixtureUrl("simbad_wasp12_votable.xml"));
+
+		assertEquals("WASP-12", result.getSimbadId());
+		assertEquals(6.50911, result.getSimbadRaHr(), epsilon);
+		assertEquals(29.67230, result.getSimbadDecDeg(), epsilon);
+		assertEquals(12.14, result.getMagB(), epsilon);
+		assertEquals(11.57, result.getMagV(), epsilon);
+		assertNull(result.getMagR());
+		assertNull(result.getMagI());
+	}
+
+	@DisplayName("Recorded VOTable with no data row throws SimbadNotFoundException")
+	@Test
+	void notFoundVoTable_SingleQuery_Throws() {
+		query.setObjectId("WISP-12");
+		assertThrows(SimbadNotFoundException.class,
+				() -> simbad.runSingleQuery(query, fixtureUrl("simbad_notfound_votable.xml")));
+	}
+
+	@DisplayName("Single request decodes the same result as the seven per-parameter requests on a local SIMBAD stand-in")
+	@Test
+	void singleQuery_OneRequest() throws Exception {
+		// vega row cells in SimbadUrlType order
+		String[] vega = { "* alf Lyr", "279.23473479", "+38.78368896", "0.03", "0.03", "0.07", "0.10" };
+		AtomicInteger nRequests = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/simbad/sim-id", exchange -> {
+			nRequests.incrementAndGet();
+			String query = exchange.getRequestURI().getRawQuery();
+			String params = query.substring(query.indexOf("output.params=") + "output.params=".length());
+			byte[] body = voTable(vega, params.split(",")).getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		RateLimiter.configure("localhost", 1000.0, 100);
+		CatalogUrls.setServerOverride("http://localhost:" + server.getAddress().getPort());
+		try {
+			query.setObjectId("vega");
+			SimbadResult single = simbad.runQuery(query);
+			assertEquals(1, nRequests.getAndSet(0));
+
+			simbad.setSingleRequest(false);
+			SimbadResult perParam = simbad.runQuery(query);
+			assertEquals(SimbadUrlType.values().length, nRequests.get());
+
+			// same decoded result, per-parameter mode makes one request per parameter
+			assertEquals(single.getSimbadId(), perParam.getSimbadId());
+			assertEquals(single.getSimbadRaHr(), perParam.getSimbadRaHr(), epsilon);
+			assertEquals(single.getSimbadDecDeg(), perParam.getSimbadDecDeg(), epsilon);
+			assertEquals(single.getMagI(), perParam.getMagI(), epsilon);
+		} finally {
+			CatalogUrls.setServerOverride(null);
+			RateLimiter.reset("localhost");
+			server.stop(0);
+		}
+	}
+
+	// VOTable with main_id and the requested parameter columns from a row in SimbadUrlType order
+	private static String voTable(String[] row, String[] params) {
+		StringBuilder fields = new StringBuilder();
+		StringBuilder cells = new StringBuilder();
+		for (String param : params) {
+			for (SimbadUrlType paramType : SimbadUrlType.values()) {
+				String fragment = (paramType == SimbadUrlType.USER_TARGET_NAME) ? "main_id" : paramType.getUrlFragment();
+				if (fragment.equals(param)) {
+					String dataType = (paramType == SimbadUrlType.USER_TARGET_NAME) ? "char" : "double";
+					fields.append(String.format("<FIELD name=\"%s\" datatype=\"%s\"/>%n", paramType, dataType));
+					cells.append("<TD>").append(row[paramType.ordinal()]).append("</TD>");
+				}
+			}
+		}
+		return "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<VOTABLE version=\"1.2\"><RESOURCE>"
+				+ "<INFO name=\"QUERY_STATUS\" value=\"OK\"/><TABLE>\n" + fields
+				+ "<DATA><TABLEDATA><TR>" + cells + "</TR></TABLEDATA></DATA></TABLE></RESOURCE></VOTABLE>\n";
+	}
+}
@@ -0,0 +1,159 @@
+package rfl.astroimagej.dev.catalog_ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+// local stand-in TAP server returns recorded VOTable, no network access
+class SimbadTapCatalogTest {
+
+	private HttpServer server;
+	private SimbadTapCatalog tap;
+	private final List<String> postedQueries = new ArrayList<>();
+
+	private final Map<String, SimbadResult> resolved = new HashMap<>();
+	private final Map<String, String> notFound = new HashMap<>();
+	private final Map<String, String> errors = new HashMap<>();
+
+	// stand-in server response
+	private byte[] votable;
+
+	private final SimbadBatchResolver.BatchListener listener = new SimbadBatchResolver.BatchListener() {
+		@Override
+		public void resolved(String objectId, SimbadResult result) {
+			resolved.put(objectId, result);
+		}
+
+		@Override
+		public void notFound(String objectId, String message) {
+			notFound.put(objectId, message);
+		}
+
+		@Override
+		public void queryError(String objectId, String message) {
+			errors.put(objectId, message);
+		}
+	};
+
+	private final double epsilon = 1.0e-5;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		votable = Files.readAllBytes(Paths.get(getClass().getResource("/simbad_tap_votable.xml").toURI()));
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/sim-tap/sync", exchange -> {
+			try (InputStream in = exchange.getRequestBody()) {
+				byte[] body = new byte[1 << 16];
+				int n = 0, len;
+				while ((len = in.read(body, n, body.length - n)) > 0) {
+					n += len;
+				}
+				postedQueries.add(URLDecoder.decode(new String(body, 0, n, "UTF-8"), "UTF-8"));
+			}
+			exchange.sendResponseHeaders(200, votable.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(votable);
+			}
+		});
+		server.start();
+		tap = new SimbadTapCatalog("http://localhost:" + server.getAddress().getPort() + "/sim-tap/sync");
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		server.stop(0);
+	}
+
+	@DisplayName("ADQL query joins ident, basic and flux tables with escaped identifiers")
+	@Test
+	void compileAdql_IsCorrect() {
+		String adql = SimbadTapCatalog.compileAdql(Arrays.asList(" Vega", "Barnard's star"));
+		assertTrue(adql.startsWith("SELECT i.id, b.main_id, b.ra, b.dec, f.B, f.V, f.R, f.I FROM ident AS i"));
+		assertTrue(adql.endsWith("WHERE i.id IN ('Vega', 'NAME Vega', 'Barnard''s star', 'NAME Barnard''s star')"));
+	}
+
+	@DisplayName("One TAP request resolves all targets, unmatched ids are not found")
+	@Test
+	void resolveAll_SingleRequest_IsCorrect() {
+		String message = tap.resolveAll(Arrays.asList(" Vega", "wasp-12", "WISP-12"), listener);
+		System.out.println(message);
+
+		assertEquals(1, tap.getRequestCount());
+		assertTrue(postedQueries.get(0).startsWith("REQUEST=doQuery&LANG=ADQL&FORMAT=votable&QUERY=SELECT"));
+
+		// " Vega" matches ident.id "NAME Vega"
+		SimbadResult vega = resolved.get(" Vega");
+		assertEquals(" Vega", vega.getObjectId());
+		assertEquals("* alf Lyr", vega.getSimbadId());
+		assertEquals(18.61565, vega.getSimbadRaHr(), epsilon);
+		assertEquals(38.78369, vega.getSimbadDecDeg(), epsilon);
+		assertEquals(0.10, vega.getMagI(), epsilon);
+
+		SimbadResult wasp = resolved.get("wasp-12");
+		assertEquals(11.57, wasp.getMagV(), epsilon);
+		assertNull(wasp.getMagR());
+
+		assertEquals(1, notFound.size());
+		assertTrue(notFound.get("WISP-12").contains("WISP-12"));
+		assertTrue(errors.isEmpty());
+	}
+
+	@DisplayName("QUERY_STATUS ERROR is reported as a query error for every id")
+	@Test
+	void resolveAll_QueryStatusError_IsQueryError() {
+		votable = new String(votable, StandardCharsets.UTF_8)
+				.replace("name=\"QUERY_STATUS\" value=\"OK\"", "name=\"QUERY_STATUS\" value=\"ERROR\"")
+				.getBytes(StandardCharsets.UTF_8);
+		tap.resolveAll(Arrays.asList("Vega", "WASP-12"), listener);
+
+		assertTrue(resolved.isEmpty());
+		assertTrue(notFound.isEmpty());
+		assertEquals(2, errors.size());
+		assertTrue(errors.get("Vega").contains("ERROR"));
+	}
+
+	@DisplayName("Missing required column is reported as a query error")
+	@Test
+	void resolveAll_MissingColumn_IsQueryError() {
+		votable = new String(votable, StandardCharsets.UTF_8).replace("name=\"ra\"", "name=\"ra_deg\"")
+				.getBytes(StandardCharsets.UTF_8);
+		tap.resolveAll(Arrays.asList("Vega", "WASP-12"), listener);
+
+		assertTrue(resolved.isEmpty());
+		assertEquals(2, errors.size());
+		assertTrue(errors.get("WASP-12").contains("ra"));
+	}
+
+	@DisplayName("Long target lists are split into blocks of MAX_IDS identifiers")
+	@Test
+	void resolveAll_LongList_SplitIntoBlocks() {
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < SimbadTapCatalog.MAX_IDS + 10; i++) {
+			ids.add("star " + i);
+		}
+		tap.resolveAll(ids, listener);
+
+		assertEquals(2, tap.getRequestCount());
+		assertEquals(ids.size(), notFound.size());
+	}
+}
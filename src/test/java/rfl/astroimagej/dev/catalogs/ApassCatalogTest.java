@@ -0,0 +1,157 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import rfl.astroimagej.dev.enums.CatalogType;
+import rfl.astroimagej.dev.utils.CatalogUrls;
+
+// local stand-in VizieR server pages recorded APASS rows, no network access
+class ApassCatalogTest {
+
+	private HttpServer server;
+	private String baseUrl;
+	private CatalogQuery query;
+
+	// fixture header and data rows
+	private List<String> header = new ArrayList<>();
+	private List<String> rows = new ArrayList<>();
+	private final List<String> requests = new ArrayList<>();
+
+	private final double epsilon = 1.0e-5;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		List<String> lines = Files.readAllLines(Paths.get(getClass().getResource("/apass_wasp12_30amin_V.tsv").toURI()));
+		for (String line : lines) {
+			if (!rows.isEmpty() || (header.size() > 0 && header.get(header.size() - 1).startsWith("-"))) {
+				if (!line.isEmpty()) {
+					rows.add(line);
+				}
+			} else {
+				header.add(line);
+			}
+		}
+
+		// serves rows with recno > constraint, up to -out.max rows
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/viz-bin/asu-tsv", exchange -> {
+			long afterRecno = 0;
+			int max = Integer.MAX_VALUE;
+			for (String param : exchange.getRequestURI().getRawQuery().split("&")) {
+				String[] kv = param.split("=", 2);
+				String value = URLDecoder.decode(kv[1], "UTF-8");
+				if (kv[0].equals("recno")) {
+					afterRecno = Long.parseLong(value.substring(1));
+				} else if (kv[0].equals("-out.max")) {
+					max = Integer.parseInt(value);
+				}
+			}
+			requests.add(exchange.getRequestURI().toString());
+
+			List<String> page = new ArrayList<>(header);
+			for (String row : rows) {
+				if (Long.parseLong(row.split("\t")[0].trim()) > afterRecno && page.size() - header.size() < max) {
+					page.add(row);
+				}
+			}
+			byte[] body = (String.join("\n", page) + "\n\n").getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		baseUrl = "http://localhost:" + server.getAddress().getPort() + "/viz-bin/asu-tsv";
+
+		query = new CatalogQuery();
+		query.setFovAmin(30.0);
+		query.setMagLimit(14.5);
+		query.setCatalogType(CatalogType.APASS);
+		query.setMagBand("V");
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		server.stop(0);
+	}
+
+	// expected rows: V mag present and <= limit
+	private int countExpected(double magLimit) {
+		int count = 0;
+		for (String row : rows) {
+			String mag = row.split("\t", -1)[3].trim();
+			if (!mag.isEmpty() && Double.parseDouble(mag) <= magLimit) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@DisplayName("Page url selects APASS band columns, record paging and mag limit")
+	@Test
+	void apassUrl_IsCorrect() throws Exception {
+		query.setMagBand("SR");
+		String url = URLDecoder.decode(CatalogUrls.getApassUrl(CatalogUrls.APASS_URL, query, 1234, 500), "UTF-8");
+		assertTrue(url.startsWith("https://vizier.cds.unistra.fr/viz-bin/asu-tsv?-source=II/336/apass9"));
+		assertTrue(url.contains("-c=97.63665 +29.67230&-c.bm=30.0"));
+		assertTrue(url.contains("-out=recno,RAJ2000,DEJ2000,r'mag,e_r'mag"));
+		assertTrue(url.contains("-out.max=500&recno=>1234&r'mag=<=14.5"));
+	}
+
+	@DisplayName("Single page query keeps stars at or brighter than magLimit")
+	@Test
+	void singlePage_MagLimit_IsCorrect() {
+		ApassCatalog apass = new ApassCatalog(baseUrl, 1000);
+		QueryResult result = apass.runQuery(query);
+
+		assertEquals(1, apass.getPageCount());
+		assertEquals(countExpected(14.5), result.getFieldObjects().size());
+		for (FieldObject fo : result.getFieldObjects()) {
+			assertTrue(fo.getMag() <= 14.5);
+			assertTrue(fo.getObjectId().startsWith("APASS-"));
+			assertTrue(Math.abs(fo.getDecDeg() - 29.6723) < 0.25);
+		}
+	}
+
+	@DisplayName("Paged query returns the same stars as a single page")
+	@Test
+	void pagedQuery_MatchesSinglePage() {
+		query.setMagLimit(20.0);
+		ColumnarResult single = new ApassCatalog(baseUrl, 1000).runColumnarQuery(query);
+		ApassCatalog paged = new ApassCatalog(baseUrl, 4);
+		ColumnarResult result = paged.runColumnarQuery(query);
+
+		// 25 rows in pages of 4 => 7 pages
+		assertEquals((rows.size() + 3) / 4, paged.getPageCount());
+		assertEquals(countExpected(20.0), result.size());
+		assertEquals(single.size(), result.size());
+		for (int i = 0; i < result.size(); i++) {
+			assertEquals(single.getId(i), result.getId(i));
+			assertEquals(single.getRaHr(i), result.getRaHr(i), epsilon);
+			assertEquals(single.getMagErr(i), result.getMagErr(i), epsilon);
+		}
+	}
+
+	@DisplayName("Catalog factory creates APASS catalog")
+	@Test
+	void catalogFactory_Apass() {
+		assertTrue(CatalogFactory.createCatalog(CatalogType.APASS) instanceof ApassCatalog);
+	}
+}
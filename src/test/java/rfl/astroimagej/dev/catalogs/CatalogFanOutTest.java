@@ -0,0 +1,212 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import rfl.astroimagej.dev.enums.CatalogType;
+import rfl.astroimagej.dev.utils.HttpTransport;
+import rfl.astroimagej.dev.utils.RateLimiter;
+import rfl.astroimagej.exceptions.SimbadNotFoundException;
+
+// stub catalogs with fixed responses and delays, no network access
+class CatalogFanOutTest {
+
+	private CatalogQuery query;
+
+	@BeforeEach
+	void setUp() {
+		query = new CatalogQuery();
+		query.setObjectId("wasp12");
+		query.setRaHr(6.50911);
+		query.setDecDeg(29.67230);
+		query.setFovAmin(30.0);
+		query.setMagLimit(14.5);
+		query.setMagBand("V");
+	}
+
+	private static FieldObject star(String id, double raHr, double decDeg, double mag) {
+		FieldObject fo = new FieldObject();
+		fo.setObjectId(id);
+		fo.setRaHr(raHr);
+		fo.setDecDeg(decDeg);
+		fo.setMag(mag);
+		fo.setMagErr(null);
+		return fo;
+	}
+
+	// returns a fresh copy of stars after delayMs
+	private static AstroCatalog stub(long delayMs, FieldObject... stars) {
+		return q -> {
+			try {
+				Thread.sleep(delayMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			QueryResult result = new QueryResult(q.getObjectId());
+			for (FieldObject fo : stars) {
+				result.setFieldObject(star(fo.getObjectId(), fo.getRaHr(), fo.getDecDeg(), fo.getMag()));
+			}
+			return result;
+		};
+	}
+
+	@DisplayName("Stars within match radius merge with provenance of each catalog")
+	@Test
+	void mergedResult_Provenance() {
+		CatalogFanOut fanOut = new CatalogFanOut();
+		// 1 arcsec dec offset => match, 10 arcsec => separate star
+		fanOut.addCatalog("VSP", stub(50, star("000-BJX-001", 6.50911, 29.67230, 11.57),
+				star("000-BJX-002", 6.51000, 29.70000, 12.10)), CatalogType.VSP.getMagBands(), 2000);
+		fanOut.addCatalog("APASS", stub(10, star("APASS-1", 6.50911, 29.67230 + 1.0 / 3600, 11.60),
+				star("APASS-2", 6.51000, 29.70000 + 10.0 / 3600, 13.20)), CatalogType.APASS.getMagBands(), 2000);
+
+		QueryResult result = fanOut.runQuery(query);
+		Map<String, String> sources = new HashMap<>();
+		result.getFieldObjects().forEach(fo -> sources.put(fo.getObjectId(), fo.getSource()));
+
+		assertEquals(3, result.getFieldObjects().size());
+		assertEquals("VSP+APASS", sources.get("000-BJX-001"));
+		assertEquals("VSP", sources.get("000-BJX-002"));
+		assertEquals("APASS", sources.get("APASS-2"));
+		assertFalse(sources.containsKey("APASS-1"));
+	}
+
+	@DisplayName("Catalog slower than its deadline is dropped, other catalogs are not delayed")
+	@Test
+	void slowCatalog_DroppedAtDeadline() {
+		CatalogFanOut fanOut = new CatalogFanOut();
+		fanOut.addCatalog("VSP", stub(20, star("000-BJX-001", 6.50911, 29.67230, 11.57)),
+				CatalogType.VSP.getMagBands(), 1000);
+		fanOut.addCatalog("SIMBAD", stub(5000, star("WASP-12", 6.50911, 29.67230, 11.57)),
+				CatalogType.SIMBAD.getMagBands(), 200);
+
+		long t0 = System.currentTimeMillis();
+		QueryResult result = fanOut.runQuery(query);
+		long elapsed = System.currentTimeMillis() - t0;
+
+		assertEquals(1, result.getFieldObjects().size());
+		assertEquals("VSP", result.getFieldObjects().get(0).getSource());
+		assertTrue(elapsed < 1000, "elapsed " + elapsed);
+		assertTrue(fanOut.getReport().contains("SIMBAD: no response in 200 ms"), fanOut.getReport());
+	}
+
+	@DisplayName("Catalog blocked reading a stalled response is aborted at its deadline")
+	@Test
+	void stalledResponse_AbortedAtDeadline() throws Exception {
+		// stand-in server sends headers and part of the body, then stalls
+		CountDownLatch release = new CountDownLatch(1);
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/stall", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write("{\"photometry\":[".getBytes("UTF-8"));
+				out.flush();
+				release.await(30, TimeUnit.SECONDS);
+			} catch (InterruptedException | IOException e) {
+				// client disconnected
+			}
+		});
+		server.start();
+		RateLimiter.configure("localhost", 1000.0, 100);
+		String url = "http://localhost:" + server.getAddress().getPort() + "/stall";
+
+		CountDownLatch finished = new CountDownLatch(1);
+		String[] error = { null };
+		AstroCatalog stalled = q -> {
+			try (InputStream in = HttpTransport.getDefault().openStream(url)) {
+				while (in.read() >= 0) {
+				}
+			} catch (IOException e) {
+				error[0] = e.toString();
+			} finally {
+				finished.countDown();
+			}
+			return new QueryResult(q.getObjectId());
+		};
+		try {
+			CatalogFanOut fanOut = new CatalogFanOut();
+			fanOut.addCatalog("SIMBAD", stalled, CatalogType.SIMBAD.getMagBands(), 200);
+			assertTrue(fanOut.runQuery(query).getFieldObjects().isEmpty());
+
+			// read fails well before the 60 s read timeout
+			assertTrue(finished.await(5, TimeUnit.SECONDS));
+			assertTrue(error[0] != null && error[0].contains("aborted"), "blocked read not aborted");
+		} finally {
+			release.countDown();
+			RateLimiter.reset("localhost");
+			server.stop(0);
+		}
+	}
+
+	@DisplayName("Catalog without query band is skipped, Rc matches R")
+	@Test
+	void catalogBands_Supported() {
+		List<String> apass = CatalogType.APASS.getMagBands();
+		List<String> simbad = CatalogType.SIMBAD.getMagBands();
+		assertTrue(CatalogFanOut.supportsBand(simbad, "Rc"));
+		assertTrue(CatalogFanOut.supportsBand(Arrays.asList("B", "V", "Rc"), "rc"));
+		assertFalse(CatalogFanOut.supportsBand(apass, "Ic"));
+
+		CatalogFanOut fanOut = new CatalogFanOut();
+		fanOut.addCatalog("APASS", stub(0, star("APASS-1", 6.5, 29.7, 11.0)), apass, 1000);
+		query.setMagBand("Ic");
+		assertTrue(fanOut.runQuery(query).getFieldObjects().isEmpty());
+		assertTrue(fanOut.getReport().contains("APASS: no Ic band"));
+	}
+
+	@DisplayName("SIMBAD cone response keeps stars in fov with query band flux at or brighter than magLimit")
+	@Test
+	void simbadCone_DecodeVoTable() throws Exception {
+		QueryResult result = new QueryResult(query.getObjectId());
+		try (InputStream in = getClass().getResourceAsStream("/simbad_cone_wasp12_votable.xml")) {
+			new SimbadConeCatalog().decodeVoTable(in, query, result);
+		}
+		// drops star outside square fov, star without V flux and star fainter than magLimit
+		assertEquals(3, result.getFieldObjects().size());
+		FieldObject fo = result.getFieldObjects().get(0);
+		assertEquals("WASP-12", fo.getObjectId());
+		assertEquals(97.63664583 / 15.0, fo.getRaHr(), 1.0e-8);
+		assertEquals(11.57, fo.getMag(), 1.0e-6);
+		assertEquals("R", SimbadConeCatalog.getSimbadBand("Rc"));
+	}
+
+	@DisplayName("SIMBAD cone response without a coordinate column is a query error")
+	@Test
+	void simbadCone_MissingColumn_QueryError() {
+		String votable = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+				+ "<VOTABLE version=\"1.2\"><RESOURCE><TABLE>\n"
+				+ "<FIELD name=\"MAIN_ID\" datatype=\"char\" arraysize=\"*\"/>\n"
+				+ "<FIELD name=\"RA_d_ICRS_2000_2000\" datatype=\"double\"/>\n"
+				+ "<FIELD name=\"FLUX_V\" datatype=\"double\"/>\n"
+				+ "<DATA><TABLEDATA>\n"
+				+ "<TR><TD>WASP-12</TD><TD>97.63664583</TD><TD>11.57</TD></TR>\n"
+				+ "</TABLEDATA></DATA></TABLE></RESOURCE></VOTABLE>\n";
+		QueryResult result = new QueryResult(query.getObjectId());
+		SimbadNotFoundException e = assertThrows(SimbadNotFoundException.class, () -> new SimbadConeCatalog()
+				.decodeVoTable(new ByteArrayInputStream(votable.getBytes(StandardCharsets.UTF_8)), query, result));
+		assertTrue(e.isQueryError());
+		assertTrue(e.getMessage().contains("DEC_d_ICRS_2000_2000"), e.getMessage());
+		assertTrue(result.getFieldObjects().isEmpty());
+	}
+}
@@ -0,0 +1,153 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import rfl.astroimagej.dev.utils.IndexSort;
+
+class ColumnarResultTest {
+
+	private final double epsilon = 1.0e-5;
+
+	private CatalogQuery vegaQuery(String magBand) {
+		CatalogQuery query = new CatalogQuery();
+		query.setObjectId("vega");
+		query.setMagBand(magBand);
+		return query;
+	}
+
+	@DisplayName("Columnar decode matches FieldObject decode of recorded vega response")
+	@Test
+	void parseColumns_MatchesFieldObjects() throws Exception {
+		VspJsonParser parser = new VspJsonParser();
+		ColumnarResult columns;
+		QueryResult result;
+		try (InputStream in = getClass().getResourceAsStream("/vsp_vega_60amin_16.0mag.json")) {
+			columns = parser.parseColumns(in, vegaQuery("Ic"));
+		}
+		try (InputStream in = getClass().getResourceAsStream("/vsp_vega_60amin_16.0mag.json")) {
+			result = parser.parse(in, vegaQuery("Ic"));
+		}
+
+		List<FieldObject> fos = result.getFieldObjects();
+		assertEquals(fos.size(), columns.size());
+		for (int i = 0; i < fos.size(); i++) {
+			assertEquals(fos.get(i).getObjectId(), columns.getId(i));
+			assertEquals(fos.get(i).getRaHr(), columns.getRaHr(i), epsilon);
+			assertEquals(fos.get(i).getDecDeg(), columns.getDecDeg(i), epsilon);
+			assertEquals(fos.get(i).getMag(), columns.getMag(i), epsilon);
+			assertEquals(fos.get(i).getMagErr(), columns.getMagErr(i), epsilon);
+		}
+		assertEquals("000-BCC-763", columns.getId(0));
+	}
+
+	@DisplayName("Adapter round trip keeps column order, no data is NaN in columns and null in FieldObjects")
+	@Test
+	void queryResultAdapter_RoundTrip_IsCorrect() {
+		ColumnarResult columns = new ColumnarResult("test", 2);
+		columns.add("c", 3.0, 30.0, 12.5, 0.3);
+		columns.add("none", 4.0, 40.0, Double.NaN, Double.NaN);
+		columns.add("a", 1.0, 10.0, 10.5, 0.1);
+
+		QueryResult result = columns.toQueryResult();
+		assertNull(result.getFieldObjects().get(1).getMag());
+		ColumnarResult copy = ColumnarResult.fromQueryResult(result);
+		assertEquals(3, copy.size());
+		assertEquals("a", copy.getId(2));
+		assertEquals(30.0, copy.getDecDeg(0), epsilon);
+		assertTrue(Double.isNaN(copy.getMag(1)));
+	}
+
+	@DisplayName("Multi-band selection matches QueryResult.forBand of recorded vega response")
+	@Test
+	void fromMultiBand_MatchesForBand() throws Exception {
+		QueryResult multiBand = new QueryResult("vega");
+		try (InputStream in = getClass().getResourceAsStream("/vsp_vega_60amin_16.0mag.json")) {
+			new VspJsonParser().parse(in, null, multiBand::setFieldObject);
+		}
+		for (String magBand : Arrays.asList("B", "V", "Rc", "Ic")) {
+			List<FieldObject> fos = multiBand.forBand(magBand).getFieldObjects();
+			ColumnarResult columns = ColumnarResult.fromMultiBand(multiBand, magBand);
+			assertEquals(fos.size(), columns.size());
+			for (int i = 0; i < fos.size(); i++) {
+				assertEquals(fos.get(i).getObjectId(), columns.getId(i));
+				assertEquals(fos.get(i).getMag(), columns.getMag(i), epsilon);
+				assertEquals(fos.get(i).getMagErr(), columns.getMagErr(i), epsilon);
+			}
+		}
+	}
+
+	@DisplayName("Index sort matches Arrays.sort on random keys")
+	@Test
+	void indexSort_RandomKeys_IsSorted() {
+		Random random = new Random(42);
+		double[] keys = new double[100000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = (i % 97 == 0) ? Double.NaN : Math.round(random.nextDouble() * 1000) / 100.0;
+		}
+		int[] index = IndexSort.sortedIndex(keys, keys.length);
+		double[] expected = keys.clone();
+		Arrays.sort(expected);
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(expected[i], keys[index[i]]);
+			if (i > 0 && Double.compare(keys[index[i]], keys[index[i - 1]]) == 0) {
+				assertTrue(index[i] > index[i - 1]);
+			}
+		}
+	}
+
+	@DisplayName("Compare retained heap, FieldObject list vs primitive columns")
+	@Test
+	void heapFootprint_Comparison() {
+		int n = 200000;
+		String[] ids = new String[n];
+		for (int i = 0; i < n; i++) {
+			ids[i] = String.format("000-%03d-%03d", i / 1000, i % 1000);
+		}
+
+		long used0 = usedHeap();
+		QueryResult result = new QueryResult("field");
+		for (int i = 0; i < n; i++) {
+			FieldObject fo = new FieldObject();
+			fo.setObjectId(ids[i]);
+			fo.setRaHr(6.5 + i * 1.0e-7);
+			fo.setDecDeg(29.6 + i * 1.0e-7);
+			fo.setMag(10.0 + (i % 500) / 100.0);
+			fo.setMagErr(0.01 + (i % 50) / 1000.0);
+			result.setFieldObject(fo);
+		}
+		long listBytes = usedHeap() - used0;
+
+		used0 = usedHeap();
+		ColumnarResult columns = new ColumnarResult("field");
+		for (int i = 0; i < n; i++) {
+			columns.add(ids[i], 6.5 + i * 1.0e-7, 29.6 + i * 1.0e-7, 10.0 + (i % 500) / 100.0,
+					0.01 + (i % 50) / 1000.0);
+		}
+		columns.trimToSize();
+		long columnBytes = usedHeap() - used0;
+
+		// ids shared by both results, difference is per-star structure overhead
+		System.out.println(String.format("%d stars: FieldObject list %.1f B/star, columns %.1f B/star",
+				n, (double) listBytes / n, (double) columnBytes / n));
+		assertEquals(result.getFieldObjects().size(), columns.size());
+		assertTrue(columnBytes < listBytes / 2);
+	}
+
+	private long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
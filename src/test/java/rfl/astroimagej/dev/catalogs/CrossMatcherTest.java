@@ -0,0 +1,249 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CrossMatcherTest {
+
+	// uniform random field, fovDeg square centred on ra, dec
+	private double[][] randomField(int n, double raHr, double decDeg, double fovDeg, long seed) {
+		Random random = new Random(seed);
+		double[] ra = new double[n];
+		double[] dec = new double[n];
+		double cosDec = Math.cos(Math.toRadians(decDeg));
+		for (int i = 0; i < n; i++) {
+			dec[i] = decDeg + (random.nextDouble() - 0.5) * fovDeg;
+			ra[i] = raHr + (random.nextDouble() - 0.5) * fovDeg / cosDec / 15.0;
+			ra[i] = (ra[i] + 24.0) % 24.0;
+		}
+		return new double[][] { ra, dec };
+	}
+
+	// copy of field with random offsets up to maxArcsec per axis
+	private double[][] jitter(double[][] field, double maxArcsec, long seed) {
+		Random random = new Random(seed);
+		int n = field[0].length;
+		double[] ra = new double[n];
+		double[] dec = new double[n];
+		for (int i = 0; i < n; i++) {
+			dec[i] = field[1][i] + (random.nextDouble() - 0.5) * 2.0 * maxArcsec / 3600.0;
+			double cosDec = Math.cos(Math.toRadians(dec[i]));
+			ra[i] = field[0][i] + (random.nextDouble() - 0.5) * 2.0 * maxArcsec / 3600.0 / cosDec / 15.0;
+			ra[i] = (ra[i] + 24.0) % 24.0;
+		}
+		return new double[][] { ra, dec };
+	}
+
+	// all pairs within radius, accepted greedily by separation
+	private int[] bruteForce(double[][] a, double[][] b, double radiusArcsec) {
+		List<double[]> pairs = new ArrayList<>();
+		for (int j = 0; j < b[0].length; j++) {
+			for (int i = 0; i < a[0].length; i++) {
+				double sep = SkyIndex.separationArcsec(a[0][i], a[1][i], b[0][j], b[1][j]);
+				if (sep <= radiusArcsec) {
+					pairs.add(new double[] { sep, i, j });
+				}
+			}
+		}
+		pairs.sort((p, q) -> Double.compare(p[0], q[0]));
+		int[] matched = new int[b[0].length];
+		Arrays.fill(matched, -1);
+		boolean[] usedA = new boolean[a[0].length];
+		for (double[] p : pairs) {
+			int i = (int) p[1];
+			int j = (int) p[2];
+			if (!usedA[i] && matched[j] < 0) {
+				usedA[i] = true;
+				matched[j] = i;
+			}
+		}
+		return matched;
+	}
+
+	private static FieldObject star(String id, double raHr, double decDeg, String band, double mag) {
+		FieldObject fo = new FieldObject();
+		fo.setObjectId(id);
+		fo.setRaHr(raHr);
+		fo.setDecDeg(decDeg);
+		fo.setMag(mag);
+		fo.setMagErr(null);
+		fo.setBandMag(band, mag, null);
+		return fo;
+	}
+
+	@DisplayName("Sweep matches equal brute force best separation matches")
+	@Test
+	void match_EqualsBruteForce() {
+		double[][] a = randomField(2000, 6.50911, 29.6723, 0.2, 1);
+		double[][] b = randomField(2000, 6.50911, 29.6723, 0.2, 2);
+		CrossMatcher matcher = new CrossMatcher(10.0);
+		int[] matched = matcher.match(a[0], a[1], 2000, b[0], b[1], 2000);
+
+		assertTrue(matcher.getCandidateCount() > 0);
+		assertArrayEquals(bruteForce(a, b, 10.0), matched);
+	}
+
+	@DisplayName("Ambiguous match pairs each object with its nearest unpaired neighbour")
+	@Test
+	void ambiguousMatch_BestSeparation() {
+		// a0 and a1 both within radius of b0; b0 nearer a1, b1 only near a0
+		double d = 1.0 / 3600.0;
+		double[] raA = { 10.0, 10.0 };
+		double[] decA = { 0.0, 1.5 * d };
+		double[] raB = { 10.0, 10.0 };
+		double[] decB = { 1.2 * d, -0.8 * d };
+		int[] matched = new CrossMatcher(2.0).match(raA, decA, 2, raB, decB, 2);
+		assertArrayEquals(new int[] { 1, 0 }, matched);
+
+		// single candidate, nearest b wins, other b unmatched
+		matched = new CrossMatcher(2.0).match(new double[] { 10.0 }, new double[] { 0.0 }, 1, raB, decB, 2);
+		assertArrayEquals(new int[] { -1, 0 }, matched);
+	}
+
+	@DisplayName("Match across ra = 0 and near the pole")
+	@Test
+	void match_RaWrapAndPole() {
+		double d = 1.0 / 3600.0;
+		double[] raA = { 23.99999, 3.0 };
+		double[] decA = { 10.0, 89.9999 };
+		double[] raB = { 15.0, 0.00001 };
+		double[] decB = { 89.9999 + 0.5 * d, 10.0 + 0.5 * d };
+		int[] matched = new CrossMatcher(2.0).match(raA, decA, 2, raB, decB, 2);
+		assertArrayEquals(new int[] { 1, 0 }, matched);
+	}
+
+	@DisplayName("Merged result keeps first catalog star, appends provenance and missing bands")
+	@Test
+	void merge_Provenance() {
+		double d = 1.0 / 3600.0;
+		QueryResult vsp = new QueryResult("wasp12");
+		vsp.setFieldObject(star("000-BJX-001", 6.50911, 29.6723, "V", 11.57));
+		vsp.setFieldObject(star("000-BJX-002", 6.51000, 29.7000, "V", 12.10));
+		QueryResult apass = new QueryResult("wasp12");
+		apass.setFieldObject(star("APASS-7", 6.50911, 29.6723 + 0.8 * d, "SR", 11.20));
+		apass.setFieldObject(star("APASS-9", 6.51000, 29.7000 + 6.0 * d, "SR", 13.30));
+
+		QueryResult merged = new CrossMatcher().merge("wasp12", Arrays.asList(vsp, apass), Arrays.asList("VSP", "APASS"));
+		List<FieldObject> fos = merged.getFieldObjects();
+
+		assertEquals(3, fos.size());
+		assertEquals("000-BJX-001", fos.get(0).getObjectId());
+		assertEquals("VSP+APASS", fos.get(0).getSource());
+		assertEquals(11.57, fos.get(0).getBandMag("V"), 1.0e-6);
+		assertEquals(11.20, fos.get(0).getBandMag("SR"), 1.0e-6);
+		assertEquals("VSP", fos.get(1).getSource());
+		assertEquals("APASS-9", fos.get(2).getObjectId());
+		assertEquals("APASS", fos.get(2).getSource());
+	}
+
+	@DisplayName("Multi-band merge builds new objects, input results unchanged")
+	@Test
+	void merge_MultiBandInputsUnchanged() {
+		double d = 1.0 / 3600.0;
+		FieldObject v1 = star("000-BJX-001", 6.50911, 29.6723, "V", 11.57);
+		v1.setBandMag("B", 12.20, 0.02);
+		QueryResult vsp = new QueryResult("wasp12");
+		vsp.setFieldObject(v1);
+		FieldObject a1 = star("APASS-7", 6.50911, 29.6723 + 0.8 * d, "SR", 11.20);
+		a1.setBandMag("V", 11.60, 0.05);
+		a1.setSource("APASS");
+		QueryResult apass = new QueryResult("wasp12");
+		apass.setFieldObject(a1);
+		// third catalog, single band, null source and merged star without mag
+		FieldObject l1 = new FieldObject();
+		l1.setObjectId("LOCAL-1");
+		l1.setRaHr(6.50911);
+		l1.setDecDeg(29.6723 - 0.5 * d);
+		l1.setMag(10.90);
+		l1.setMagErr(0.01);
+		QueryResult local = new QueryResult("wasp12");
+		local.setFieldObject(l1);
+		v1.setMag(null);
+		a1.setMag(null);
+
+		CrossMatcher.Merger merger = new CrossMatcher().newMerger("wasp12");
+		assertEquals(1, merger.add(vsp, "VSP"));
+		assertEquals(0, merger.add(apass, "APASS"));
+		assertEquals(0, merger.add(local, "LOCAL"));
+		List<FieldObject> fos = merger.getResult().getFieldObjects();
+
+		assertEquals(1, fos.size());
+		FieldObject mo = fos.get(0);
+		assertTrue(mo != v1);
+		assertEquals("VSP+APASS+LOCAL", mo.getSource());
+		assertEquals(new HashSet<>(Arrays.asList("V", "B", "SR")), mo.getBands());
+		assertEquals(11.57, mo.getBandMag("V"), 1.0e-6);
+		assertEquals(11.20, mo.getBandMag("SR"), 1.0e-6);
+		assertEquals(10.90, mo.getMag(), 1.0e-6);
+
+		// inputs as queried
+		assertNull(v1.getSource());
+		assertNull(v1.getMag());
+		assertEquals(new HashSet<>(Arrays.asList("V", "B")), v1.getBands());
+		assertEquals("APASS", a1.getSource());
+		assertNull(a1.getMag());
+		assertEquals(new HashSet<>(Arrays.asList("SR", "V")), a1.getBands());
+		assertNull(l1.getSource());
+		assertTrue(l1.getBands().isEmpty());
+	}
+
+	@DisplayName("Merger keeps merged dec order across results")
+	@Test
+	void merger_EqualsMatchAgainstAllMerged() {
+		double[][] a = randomField(500, 6.50911, 29.6723, 0.1, 3);
+		double[][] b = jitter(a, 1.0, 4);
+		double[][] c = randomField(500, 6.50911, 29.6723, 0.1, 5);
+		CrossMatcher matcher = new CrossMatcher(2.0);
+		CrossMatcher.Merger merger = matcher.newMerger("field");
+		int nA = merger.add(toResult(a, 0, 250), "A");
+		int nB = merger.add(toResult(b, 0, 500), "B");
+		int nC = merger.add(toResult(c, 0, 500), "C");
+		int nM = merger.getResult().getFieldObjects().size();
+		assertEquals(nA + nB + nC, nM);
+
+		// merged set added again: every star found in the merged dec order, none appended
+		double[][] m = new double[2][nM];
+		for (int i = 0; i < nM; i++) {
+			m[0][i] = merger.getResult().getFieldObjects().get(i).getRaHr();
+			m[1][i] = merger.getResult().getFieldObjects().get(i).getDecDeg();
+		}
+		assertEquals(0, merger.add(toResult(m, 0, nM), "D"));
+		assertTrue(merger.getResult().getFieldObjects().stream().allMatch(fo -> fo.getSource().endsWith("+D")));
+	}
+
+	private static QueryResult toResult(double[][] field, int from, int to) {
+		QueryResult result = new QueryResult("field");
+		for (int i = from; i < to; i++) {
+			result.setFieldObject(star("S" + i, field[0][i], field[1][i], "V", 12.0));
+		}
+		return result;
+	}
+
+	@DisplayName("10^5 x 10^5 jittered field pairs nearly every star with its source, refer CrossMatcherBenchmark for timing")
+	@Test
+	void match_1e5_JitteredField() {
+		int n = 100000;
+		double[][] a = randomField(n, 6.50911, 29.6723, 2.0, 3);
+		double[][] b = jitter(a, 0.5, 4);
+		CrossMatcher matcher = new CrossMatcher(2.0);
+		int[] matched = matcher.match(a[0], a[1], n, b[0], b[1], n);
+
+		int nSame = 0;
+		for (int j = 0; j < n; j++) {
+			nSame += (matched[j] == j) ? 1 : 0;
+		}
+		// jitter well inside mean separation, nearly all stars pair with their source
+		assertTrue(nSame > 0.99 * n);
+	}
+}
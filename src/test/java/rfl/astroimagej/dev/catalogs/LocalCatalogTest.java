@@ -0,0 +1,147 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rfl.astroimagej.dev.fileio.LocalCatalogWriter;
+import rfl.astroimagej.dev.utils.AstroCoords;
+
+class LocalCatalogTest {
+
+	@TempDir
+	Path tempDir;
+
+	private CatalogQuery query(double raHr, double decDeg, double fovAmin, double magLimit, String magBand) {
+		CatalogQuery query = new CatalogQuery();
+		query.setObjectId("local");
+		query.setRaHr(raHr);
+		query.setDecDeg(decDeg);
+		query.setFovAmin(fovAmin);
+		query.setMagLimit(magLimit);
+		query.setMagBand(magBand);
+		return query;
+	}
+
+	// linear scan, stars in square fov at or brighter than magLimit
+	private Set<String> scan(ColumnarResult stars, CatalogQuery query) {
+		Set<String> ids = new TreeSet<>();
+		double halfFov = query.getFovAmin() / 2.0;
+		for (int i = 0; i < stars.size(); i++) {
+			double[] offset = AstroCoords.tangentOffset(query.getRaHr(), query.getDecDeg(), stars.getRaHr(i), stars.getDecDeg(i));
+			if (offset != null && Math.abs(offset[0]) <= halfFov && Math.abs(offset[1]) <= halfFov
+					&& stars.getMag(i) <= query.getMagLimit()) {
+				ids.add(stars.getId(i));
+			}
+		}
+		return ids;
+	}
+
+	private Set<String> ids(ColumnarResult result) {
+		Set<String> ids = new TreeSet<>();
+		for (int i = 0; i < result.size(); i++) {
+			ids.add(result.getId(i));
+		}
+		return ids;
+	}
+
+	@DisplayName("VSP json dump ingested and queried offline matches the VSP response")
+	@Test
+	void vspJson_IngestAndQuery() throws Exception {
+		Path json = Paths.get(getClass().getResource("/vsp_wasp12_30amin_14.5mag.json").toURI());
+		Path file = tempDir.resolve("vsp_v.cat");
+		assertTrue(LocalCatalogWriter.ingest(json, file, "V").startsWith("Saved local catalog file"));
+
+		ColumnarResult stars;
+		try (InputStream in = Files.newInputStream(json)) {
+			stars = LocalCatalogWriter.readVspJson(in, "V");
+		}
+		CatalogQuery query = query(6.50911, 29.6723, 30.0, 14.5, "V");
+		try (LocalCatalog catalog = new LocalCatalog(file)) {
+			assertEquals(stars.size(), catalog.size());
+			ColumnarResult result = catalog.runColumnarQuery(query);
+			assertEquals(scan(stars, query), ids(result));
+			assertTrue(result.size() > 0);
+
+			// mags restored to catalog precision
+			int i = 0;
+			while (!stars.getId(i).equals(result.getId(0))) {
+				i++;
+			}
+			assertEquals(stars.getMag(i), result.getMag(0), 0.0);
+			assertEquals(stars.getMagErr(i), result.getMagErr(0), 0.0);
+
+			// other band => no data
+			assertEquals(0, catalog.runQuery(query(6.50911, 29.6723, 30.0, 14.5, "B")).getFieldObjects().size());
+		}
+	}
+
+	@DisplayName("APASS tsv dump ingested and queried offline matches the APASS page parser")
+	@Test
+	void apassTsv_IngestAndQuery() throws Exception {
+		Path tsv = Paths.get(getClass().getResource("/apass_wasp12_30amin_V.tsv").toURI());
+		Path file = tempDir.resolve("apass_v.cat");
+		LocalCatalogWriter.ingest(tsv, file, "V");
+
+		ColumnarResult stars = new ColumnarResult("apass");
+		try (InputStream in = Files.newInputStream(tsv)) {
+			ApassCatalog.parsePage(in, 99.0, stars);
+		}
+		CatalogQuery query = query(6.50911, 29.6723, 20.0, 16.0, "V");
+		try (LocalCatalog catalog = new LocalCatalog(file)) {
+			assertEquals(stars.size(), catalog.size());
+			assertEquals(scan(stars, query), ids(catalog.runColumnarQuery(query)));
+			assertTrue(catalog.runQuery(query).getFieldObjects().get(0).getObjectId().startsWith("APASS-"));
+		}
+	}
+
+	@DisplayName("Random field queries match linear scan, across ra = 0 and near the pole")
+	@Test
+	void randomField_QueriesMatchScan() throws Exception {
+		int n = 500000;
+		Random random = new Random(11);
+		ColumnarResult stars = new ColumnarResult("random", n);
+		for (int i = 0; i < n; i++) {
+			// uniform on sphere above dec -30
+			double dec = Math.toDegrees(Math.asin(-0.5 + 1.5 * random.nextDouble()));
+			stars.add("R" + i, random.nextDouble() * 24.0, dec, 8.0 + 10.0 * random.nextDouble(), 0.01);
+		}
+		Path file = tempDir.resolve("random.cat");
+		LocalCatalogWriter.write(stars, "V", file, LocalCatalog.DEFAULT_ZONE_HEIGHT_DEG);
+		// zone bucket files removed
+		try (Stream<Path> files = Files.list(tempDir)) {
+			assertEquals(1, files.count());
+		}
+
+		double[][] centres = { { 6.5, 29.7 }, { 0.01, 10.0 }, { 23.99, -20.0 }, { 3.0, 89.8 }, { 12.0, 60.0 } };
+		try (LocalCatalog catalog = new LocalCatalog(file)) {
+			for (double[] c : centres) {
+				CatalogQuery query = query(c[0], c[1], 120.0, 16.0, "V");
+				ColumnarResult result = catalog.runColumnarQuery(query);
+				assertEquals(scan(stars, query), ids(result), "centre " + c[0] + ", " + c[1]);
+			}
+		}
+	}
+
+	@DisplayName("File that is not a local catalog is rejected")
+	@Test
+	void invalidFile_Throws() throws Exception {
+		Path file = tempDir.resolve("bad.cat");
+		Files.write(file, "not a catalog file, not a catalog file".getBytes());
+		assertThrows(IOException.class, () -> new LocalCatalog(file));
+	}
+}
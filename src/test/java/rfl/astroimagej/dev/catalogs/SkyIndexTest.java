@@ -0,0 +1,99 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SkyIndexTest {
+
+	private final double epsilon = 1.0e-6;
+
+	// uniform random field, fovDeg square centred on ra, dec
+	private double[][] randomField(int n, double raHr, double decDeg, double fovDeg, long seed) {
+		Random random = new Random(seed);
+		double[] ra = new double[n];
+		double[] dec = new double[n];
+		double cosDec = Math.cos(Math.toRadians(decDeg));
+		for (int i = 0; i < n; i++) {
+			dec[i] = decDeg + (random.nextDouble() - 0.5) * fovDeg;
+			ra[i] = raHr + (random.nextDouble() - 0.5) * fovDeg / cosDec / 15.0;
+			ra[i] = (ra[i] + 24.0) % 24.0;
+		}
+		return new double[][] { ra, dec };
+	}
+
+	// linear scan cone search, ascending index order
+	private int[] scanCone(double[][] field, double raHr, double decDeg, double radiusArcsec) {
+		return java.util.stream.IntStream.range(0, field[0].length)
+				.filter(i -> SkyIndex.separationArcsec(raHr, decDeg, field[0][i], field[1][i]) <= radiusArcsec)
+				.toArray();
+	}
+
+	@DisplayName("Separation of Vega and reference star matches haversine value")
+	@Test
+	void separation_IsCorrect() {
+		assertEquals(3600.0, SkyIndex.separationArcsec(0.0, 10.0, 0.0, 11.0), epsilon);
+		assertEquals(3600.0, SkyIndex.separationArcsec(23.9666667, 0.0, 0.0333333, 0.0), 1.0e-2);
+		assertEquals(0.0, SkyIndex.separationArcsec(5.0, 90.0, 17.0, 90.0), epsilon);
+	}
+
+	@DisplayName("Cone, nearest and rectangle queries match linear scan across ra = 0")
+	@Test
+	void queries_MatchLinearScan() {
+		double[][] field = randomField(100000, 0.0, 60.0, 2.0, 1L);
+		SkyIndex index = new SkyIndex(field[0], field[1], field[0].length);
+		Random random = new Random(2L);
+
+		for (int q = 0; q < 50; q++) {
+			double ra = (24.0 + (random.nextDouble() - 0.5) * 0.1) % 24.0;
+			double dec = 60.0 + (random.nextDouble() - 0.5) * 1.5;
+			double radius = 10.0 + random.nextDouble() * 300.0;
+
+			int[] cone = index.coneSearch(ra, dec, radius);
+			int[] sorted = cone.clone();
+			Arrays.sort(sorted);
+			assertArrayEquals(scanCone(field, ra, dec, radius), sorted);
+			for (int i = 1; i < cone.length; i++) {
+				assertTrue(SkyIndex.separationArcsec(ra, dec, field[0][cone[i]], field[1][cone[i]]) + 1.0e-3
+						>= SkyIndex.separationArcsec(ra, dec, field[0][cone[i - 1]], field[1][cone[i - 1]]));
+			}
+
+			// k nearest: kth neighbour separation bounds all others
+			int[] nearest = index.nearest(ra, dec, 10);
+			assertEquals(10, nearest.length);
+			double kthSep = SkyIndex.separationArcsec(ra, dec, field[0][nearest[9]], field[1][nearest[9]]);
+			assertEquals(10, scanCone(field, ra, dec, kthSep + 1.0e-3).length);
+		}
+
+		// rectangle wrapping through ra = 0
+		int[] rect = index.rectangle(23.99, 0.01, 59.9, 60.1);
+		long expected = java.util.stream.IntStream.range(0, field[0].length)
+				.filter(i -> (field[0][i] >= 23.99 || field[0][i] <= 0.01) && field[1][i] >= 59.9 && field[1][i] <= 60.1)
+				.count();
+		assertEquals(expected, rect.length);
+	}
+
+	@DisplayName("Cone search of recorded vega field finds Vega and no neighbours within 1 arcmin")
+	@Test
+	void vegaField_ConeSearch_IsCorrect() throws Exception {
+		CatalogQuery query = new CatalogQuery();
+		query.setMagBand("V");
+		ColumnarResult result;
+		try (InputStream in = getClass().getResourceAsStream("/vsp_vega_60amin_16.0mag.json")) {
+			result = new VspJsonParser().parseColumns(in, query);
+		}
+		SkyIndex index = SkyIndex.build(result);
+
+		int[] found = index.coneSearch(18.61565, 38.78369, 60.0);
+		assertEquals(1, found.length);
+		assertEquals("000-BCC-827", result.getId(found[0]));
+		assertEquals(13, index.nearest(18.61565, 38.78369, 20).length);
+	}
+}
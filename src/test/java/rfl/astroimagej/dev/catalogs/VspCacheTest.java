@@ -0,0 +1,156 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+// recorded vega VSP response, no network access
+class VspCacheTest {
+
+	private VspCache cache;
+	private CountingVspCatalog vsp;
+	private CatalogQuery vegaQuery;
+
+	private final double epsilon = 1.0e-5;
+
+	/*
+	 * Returns recorded vega response for every url and counts requests
+	 */
+	private static class CountingVspCatalog extends VspCatalog {
+		private int nRequests = 0;
+
+		private CountingVspCatalog(VspCache cache) {
+			super(cache);
+		}
+
+		@Override
+		protected InputStream openStream(String url) throws IOException {
+			nRequests++;
+			return getClass().getResourceAsStream("/vsp_vega_60amin_16.0mag.json");
+		}
+	}
+
+	@BeforeEach
+	void setUp() throws Exception {
+		cache = new VspCache();
+		vsp = new CountingVspCatalog(cache);
+
+		vegaQuery = new CatalogQuery();
+		vegaQuery.setObjectId("vega");
+		vegaQuery.setRaHr(18.61565);
+		vegaQuery.setDecDeg(38.78369);
+		vegaQuery.setFovAmin(60.0);
+		vegaQuery.setMagLimit(16.0);
+		vegaQuery.setMagBand("B");
+	}
+
+	private CatalogQuery copyQuery(double fovAmin, double magLimit) {
+		CatalogQuery query = new CatalogQuery(vegaQuery);
+		query.setFovAmin(fovAmin);
+		query.setMagLimit(magLimit);
+		return query;
+	}
+
+	@DisplayName("Containment requires inner fov within outer fov and brighter or equal magLimit")
+	@Test
+	void contains_IsCorrect() {
+		assertTrue(VspCache.contains(vegaQuery, copyQuery(60.0, 16.0)));
+		assertTrue(VspCache.contains(vegaQuery, copyQuery(20.0, 12.0)));
+		assertFalse(VspCache.contains(vegaQuery, copyQuery(61.0, 16.0)));
+		assertFalse(VspCache.contains(vegaQuery, copyQuery(30.0, 16.5)));
+
+		// 30 amin field offset 10 amin north lies inside, offset 20 amin crosses edge
+		CatalogQuery north = copyQuery(30.0, 16.0);
+		north.setDecDeg(vegaQuery.getDecDeg() + 10.0 / 60.0);
+		assertTrue(VspCache.contains(vegaQuery, north));
+		north.setDecDeg(vegaQuery.getDecDeg() + 20.0 / 60.0);
+		assertFalse(VspCache.contains(vegaQuery, north));
+	}
+
+	@DisplayName("Repeat query is a cache hit, narrower query is filtered from cached superset")
+	@Test
+	void narrowerQuery_PartialHit_NoRequest() {
+		QueryResult full = vsp.runMultiBandQuery(vegaQuery);
+		QueryResult repeat = vsp.runQuery(copyQuery(60.0, 16.0));
+		CatalogQuery narrowQuery = copyQuery(30.0, 14.0);
+		QueryResult narrow = vsp.runQuery(narrowQuery);
+
+		assertEquals(1, vsp.nRequests);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getPartialHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(13, full.getFieldObjects().size());
+		assertEquals(13, repeat.getFieldObjects().size());
+
+		// flat sky approximation of square fov and V mag limit
+		int nExpected = 0;
+		double cosDec = Math.cos(Math.toRadians(vegaQuery.getDecDeg()));
+		for (FieldObject fo : full.getFieldObjects()) {
+			double dx = (fo.getRaHr() - vegaQuery.getRaHr()) * 15.0 * 60.0 * cosDec;
+			double dy = (fo.getDecDeg() - vegaQuery.getDecDeg()) * 60.0;
+			if (Math.abs(dx) <= 15.0 && Math.abs(dy) <= 15.0 && fo.getBandMag("V") <= 14.0) {
+				nExpected++;
+			}
+		}
+		assertTrue(nExpected > 0 && nExpected < 13);
+		assertEquals(nExpected, narrow.getFieldObjects().size());
+		for (FieldObject fo : narrow.getFieldObjects()) {
+			assertNotNull(fo.getMag());
+		}
+	}
+
+	@DisplayName("Cached field objects are copied, changes to query results do not reach the cache")
+	@Test
+	void cachedResult_IsCopy() {
+		FieldObject online = vsp.runMultiBandQuery(vegaQuery).getFieldObjects().get(0);
+		double vMag = online.getBandMag("V");
+		online.setBandMag("V", 99.0, 0.0);
+		online.setSource("changed");
+
+		FieldObject hit = vsp.runMultiBandQuery(vegaQuery).getFieldObjects().get(0);
+		assertEquals(vMag, hit.getBandMag("V"), epsilon);
+		assertNull(hit.getSource());
+		hit.setBandMag("V", 99.0, 0.0);
+
+		FieldObject partial = vsp.runMultiBandQuery(copyQuery(59.0, 16.0)).getFieldObjects().get(0);
+		assertEquals(vMag, partial.getBandMag("V"), epsilon);
+		assertEquals(1, vsp.nRequests);
+	}
+
+	@DisplayName("Wider or fainter query is a miss and runs on-line")
+	@Test
+	void widerQuery_Miss_RunsOnline() {
+		vsp.runQuery(vegaQuery);
+		vsp.runQuery(copyQuery(90.0, 16.0));
+		vsp.runQuery(copyQuery(60.0, 17.0));
+
+		assertEquals(3, vsp.nRequests);
+		assertEquals(3, cache.getMissCount());
+		assertEquals(3, cache.size());
+	}
+
+	@DisplayName("Least recently used entry is evicted when cache is full")
+	@Test
+	void fullCache_EvictsLeastRecentlyUsed() {
+		VspCache small = new VspCache(2);
+		QueryResult result = new QueryResult("vega");
+		small.put(copyQuery(10.0, 16.0), result);
+		small.put(copyQuery(20.0, 16.0), result);
+		small.get(copyQuery(10.0, 16.0));
+		small.put(copyQuery(40.0, 10.0), result);
+
+		assertEquals(2, small.size());
+		assertNotNull(small.get(copyQuery(10.0, 16.0)));
+		// 20 amin entry evicted, 40 amin entry is too bright
+		assertNull(small.get(copyQuery(20.0, 16.0)));
+	}
+}
@@ -0,0 +1,142 @@
+package rfl.astroimagej.dev.catalogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import rfl.astroimagej.dev.utils.AstroCoords;
+
+// decodes recorded VSP json responses, no network access
+class VspJsonParserTest {
+
+	private VspJsonParser parser;
+	private CatalogQuery vegaQuery;
+
+	private final double epsilon = 1.0e-5;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		parser = new VspJsonParser();
+		vegaQuery = new CatalogQuery();
+		vegaQuery.setObjectId("vega");
+	}
+
+	private byte[] fixture(String filename) throws Exception {
+		return Files.readAllBytes(Paths.get(getClass().getResource("/" + filename).toURI()));
+	}
+
+	@DisplayName("Vega B-mag field objects decode from recorded response")
+	@Test
+	void vegaBMag_Parse_IsCorrect() throws Exception {
+		vegaQuery.setMagBand("B");
+		QueryResult result = parser.parse(new ByteArrayInputStream(fixture("vsp_vega_60amin_16.0mag.json")), vegaQuery);
+
+		assertEquals("vega", result.getObjectId());
+		assertEquals(13, result.getFieldObjects().size());
+		FieldObject fo = result.getFieldObjects().get(1);
+		assertEquals("000-BCC-763", fo.getObjectId());
+		assertEquals(278.855621 / 15.0, fo.getRaHr(), epsilon);
+		assertEquals(38.392639, fo.getDecDeg(), epsilon);
+		assertEquals(12.098, fo.getMag(), epsilon);
+		assertEquals(0.014, fo.getMagErr(), epsilon);
+	}
+
+	@DisplayName("Field objects without selected band data are skipped")
+	@Test
+	void waspIcMag_Parse_SkipsMissingBand() throws Exception {
+		List<FieldObject> fos = new ArrayList<>();
+		int count = parser.parse(new ByteArrayInputStream(fixture("vsp_wasp12_30amin_14.5mag.json")), "ic", fos::add);
+
+		assertEquals(5, count);
+		FieldObject fo = fos.get(fos.size() - 1);
+		assertEquals("000-BKG-168", fo.getObjectId());
+		assertEquals(11.664, fo.getMag(), epsilon);
+		assertEquals(0.156, fo.getMagErr(), epsilon);
+
+		// single band decode keeps no per-band data
+		assertTrue(fo.getBands().isEmpty());
+	}
+
+	@DisplayName("Unknown nested fields are skipped, field order is not significant")
+	@Test
+	void unknownNestedFields_AreSkipped() throws Exception {
+		String json = "{\"special\":{\"photometry\":[1,2]},\"photometry\":[{\"bands\":[{\"mag\":9.5,\"band\":\"V\","
+				+ "\"error\":0.04,\"refs\":[1,{\"x\":2}]}],\"extra\":{\"auid\":\"wrong\"},\"dec\":\"-16:42:58.0\","
+				+ "\"ra\":\"06:45:09.00\",\"auid\":\"000-AAA-001\"}],\"auid\":null}";
+		List<FieldObject> fos = new ArrayList<>();
+		parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "V", fos::add);
+
+		assertEquals(1, fos.size());
+		assertEquals("000-AAA-001", fos.get(0).getObjectId());
+		assertEquals(6.7525, fos.get(0).getRaHr(), epsilon);
+		assertEquals(9.5, fos.get(0).getMag(), epsilon);
+	}
+
+	@DisplayName("Response that is not a json object throws IOException")
+	@Test
+	void invalidResponse_Throws() {
+		byte[] html = "<html>Server error</html>".getBytes(StandardCharsets.UTF_8);
+		assertThrows(IOException.class, () -> parser.parse(new ByteArrayInputStream(html), "V", fo -> { }));
+	}
+
+	@DisplayName("Streaming parser decodes the same field objects as readTree + findPath, refer VspJsonParserBenchmark for timing")
+	@Test
+	void streamingParser_EqualsTreeWalk() throws Exception {
+		String[] fixtures = { "vsp_wasp12_30amin_14.5mag.json", "vsp_vega_60amin_16.0mag.json" };
+		ObjectMapper mapper = new ObjectMapper();
+		for (String filename : fixtures) {
+			byte[] response = fixture(filename);
+			List<FieldObject> tree = treeWalk(mapper, response, "V");
+			List<FieldObject> stream = new ArrayList<>();
+			parser.parse(new ByteArrayInputStream(response), "V", stream::add);
+
+			assertEquals(tree.size(), stream.size());
+			assertTrue(stream.size() > 0);
+			for (int i = 0; i < tree.size(); i++) {
+				assertEquals(tree.get(i).getObjectId(), stream.get(i).getObjectId());
+				assertEquals(tree.get(i).getRaHr(), stream.get(i).getRaHr(), 0.0);
+				assertEquals(tree.get(i).getDecDeg(), stream.get(i).getDecDeg(), 0.0);
+				assertEquals(tree.get(i).getMag(), stream.get(i).getMag(), 0.0);
+				assertEquals(tree.get(i).getMagErr(), stream.get(i).getMagErr(), 0.0);
+			}
+		}
+	}
+
+	/*
+	 * readTree and findPath decode, as previously used in VspCatalog
+	 */
+	private List<FieldObject> treeWalk(ObjectMapper mapper, byte[] response, String magBand) throws IOException {
+		List<FieldObject> fos = new ArrayList<>();
+		JsonNode root = mapper.readTree(new ByteArrayInputStream(response));
+		for (JsonNode foNode : root.findPath("photometry")) {
+			FieldObject fo = new FieldObject();
+			fo.setObjectId(foNode.findPath("auid").asText());
+			fo.setRaHr(AstroCoords.raHms_To_raHr(foNode.path("ra").asText()));
+			fo.setDecDeg(AstroCoords.decDms_To_decDeg(foNode.path("dec").asText()));
+			for (JsonNode bandNode : foNode.findPath("bands")) {
+				if (bandNode.path("band").asText().equalsIgnoreCase(magBand)) {
+					fo.setMag(bandNode.path("mag").asDouble());
+					fo.setMagErr(bandNode.path("error").asDouble());
+					fos.add(fo);
+					break;
+				}
+			}
+		}
+		return fos;
+	}
+}
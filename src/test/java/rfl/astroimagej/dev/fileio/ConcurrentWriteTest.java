@@ -0,0 +1,106 @@
+package rfl.astroimagej.dev.fileio;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import rfl.astroimagej.dev.catalogs.AstroCatalog;
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.catalogs.FieldObject;
+import rfl.astroimagej.dev.catalogs.QueryResult;
+import rfl.astroimagej.dev.enums.CatalogType;
+
+// stub catalog and DSS legs with fixed delays, no network access
+class ConcurrentWriteTest {
+
+	private static final long LEG_MS = 400;
+
+	private CatalogQuery query;
+	private File file;
+
+	@BeforeEach
+	void setUp() {
+		query = new CatalogQuery();
+		query.setObjectId("wasp 12 concurrent");
+		query.setRaHr(6.50911);
+		query.setDecDeg(29.6723);
+		query.setFovAmin(30.0);
+		query.setMagLimit(14.5);
+		query.setMagBand("V");
+		query.setCatalogType(CatalogType.VSP);
+		file = RaDecFileWriter.getFile(query, "radec.txt");
+		file.delete();
+	}
+
+	@AfterEach
+	void tearDown() {
+		file.delete();
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// one field star after LEG_MS
+	private AstroCatalog slowCatalog() {
+		return q -> {
+			sleep(LEG_MS);
+			FieldObject fo = new FieldObject();
+			fo.setObjectId("000-BJX-001");
+			fo.setRaHr(6.51);
+			fo.setDecDeg(29.70);
+			fo.setMag(12.1);
+			fo.setMagErr(0.02);
+			QueryResult result = new QueryResult(q.getObjectId());
+			result.setFieldObject(fo);
+			return result;
+		};
+	}
+
+	@DisplayName("Catalog query and DSS download overlap, message has both results and leg timing")
+	@Test
+	void writeFile_LegsOverlap() {
+		RaDecFileWriter writer = new RaDecFileWriter() {
+			@Override
+			protected String downloadDssFits(CatalogQuery q) {
+				sleep(LEG_MS);
+				return "Saved fits file: stub";
+			}
+		};
+		long t0 = System.currentTimeMillis();
+		String message = writer.writeFile(query, slowCatalog());
+		long elapsed = System.currentTimeMillis() - t0;
+
+		assertTrue(message.startsWith("Saved radec file"), message);
+		assertTrue(message.contains("Saved fits file: stub"), message);
+		assertTrue(message.matches("(?s).*Catalog: \\d+ ms, DSS: \\d+ ms, total: \\d+ ms"), message);
+		assertTrue(file.exists());
+		// max of the legs, not their sum
+		assertTrue(elapsed < 2 * LEG_MS - 100, "elapsed " + elapsed);
+	}
+
+	@DisplayName("Failed DSS download does not lose the radec file")
+	@Test
+	void dssFailure_RadecSaved() {
+		RaDecFileWriter writer = new RaDecFileWriter() {
+			@Override
+			protected String downloadDssFits(CatalogQuery q) {
+				throw new IllegalStateException("SkyView unavailable");
+			}
+		};
+		String message = writer.writeFile(query, slowCatalog());
+
+		assertTrue(message.startsWith("Saved radec file"), message);
+		assertTrue(message.contains("Error in DSS download: SkyView unavailable"), message);
+		assertTrue(file.exists());
+	}
+}
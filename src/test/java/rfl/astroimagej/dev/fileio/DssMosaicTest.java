@@ -0,0 +1,245 @@
+package rfl.astroimagej.dev.fileio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.RateLimiter;
+
+// local stand-in SkyView server, renders tiles of one gnomonic sky image, no network access
+class DssMosaicTest {
+
+	private static final int TILE_PIXELS = 20;
+	private static final double RA_DEG = 97.63665;
+	private static final double DEC_DEG = 29.6723;
+
+	@TempDir
+	Path tempDir;
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String url;
+
+	private final AtomicInteger nRequests = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	// fail requests for the south-east tile with HTTP 500
+	private volatile boolean failSouthEast = false;
+
+	// project tiles about their own centre, as a server without RefCoords support
+	private volatile boolean ignoreRefCoords = false;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		// burst of 10/s default may be used by earlier localhost tests
+		RateLimiter.configure("localhost", 100.0, 20);
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		serverExecutor = Executors.newFixedThreadPool(16);
+		server.setExecutor(serverExecutor);
+		server.createContext("/images", exchange -> {
+			nRequests.incrementAndGet();
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+				Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+				String[] position = params.get("position").split(",");
+				if (failSouthEast && Double.parseDouble(position[0]) > RA_DEG && Double.parseDouble(position[1]) < DEC_DEG) {
+					exchange.sendResponseHeaders(500, -1);
+					exchange.close();
+					return;
+				}
+				if (ignoreRefCoords) {
+					params.put("RefCoords", params.get("position"));
+				}
+				byte[] body = renderTile(params);
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			} catch (InterruptedException e) {
+				exchange.close();
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		});
+		server.start();
+		url = "http://localhost:" + server.getAddress().getPort() + "/images";
+	}
+
+	@AfterEach
+	void tearDown() {
+		RateLimiter.reset("localhost");
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+		for (String param : query.split("&")) {
+			String[] el = param.split("=", 2);
+			params.put(el[0], el.length > 1 ? el[1] : "");
+		}
+		return params;
+	}
+
+	/*
+	 * Tile projected about RefCoords and centred on position, 32 bit pixel value encodes pixel
+	 * offset from the reference point: (gy + 1000) * 10000 + gx + 1000
+	 */
+	private static byte[] renderTile(Map<String, String> params) {
+		String[] position = params.get("position").split(",");
+		String[] ref = params.get("RefCoords").split(",");
+		int pixels = Integer.parseInt(params.get("Pixels"));
+		double scale = Double.parseDouble(params.get("Size")) / pixels;
+		double refRa = Double.parseDouble(ref[0]);
+		double refDec = Double.parseDouble(ref[1]);
+
+		double[] p = FitsFootprint.tan(refRa, refDec, scale, pixels)
+				.worldToPixel(Double.parseDouble(position[0]), Double.parseDouble(position[1]));
+		double crpix1 = (pixels + 1) - p[0];
+		double crpix2 = (pixels + 1) - p[1];
+
+		StringBuilder sb = new StringBuilder();
+		for (String card : new String[] { "SIMPLE  =                    T", "BITPIX  =                   32",
+				"NAXIS   =                    2", String.format("NAXIS1  = %20d", pixels),
+				String.format("NAXIS2  = %20d", pixels), "CTYPE1  = 'RA---TAN'", "CTYPE2  = 'DEC--TAN'",
+				String.format("CRVAL1  = %20s", refRa), String.format("CRVAL2  = %20s", refDec),
+				String.format("CRPIX1  = %20s", crpix1), String.format("CRPIX2  = %20s", crpix2),
+				String.format("CDELT1  = %20s", -scale), String.format("CDELT2  = %20s", scale), "END" }) {
+			sb.append(String.format("%-80s", card));
+		}
+		int dataBytes = pixels * pixels * 4;
+		ByteBuffer image = ByteBuffer.allocate((int) FitsFootprint.blocks(FitsDownloader.FITS_BLOCK + dataBytes));
+		image.put(sb.toString().getBytes(StandardCharsets.US_ASCII));
+		image.position(FitsDownloader.FITS_BLOCK);
+		for (int y = 0; y < pixels; y++) {
+			for (int x = 0; x < pixels; x++) {
+				int gx = (int) Math.floor(x + 1 - crpix1);
+				int gy = (int) Math.floor(y + 1 - crpix2);
+				image.putInt((gy + 1000) * 10000 + gx + 1000);
+			}
+		}
+		return image.array();
+	}
+
+	@DisplayName("Tiles per side grow with field of view up to the limit")
+	@Test
+	void tilesPerSide() {
+		assertEquals(1, DssMosaic.getTilesPerSide(10.0));
+		assertEquals(1, DssMosaic.getTilesPerSide(30.0));
+		assertEquals(2, DssMosaic.getTilesPerSide(30.1));
+		assertEquals(6, DssMosaic.getTilesPerSide(1199.0));
+	}
+
+	@DisplayName("Single image by default, mosaic pixels for a wide field only if enabled")
+	@Test
+	void dssPixels_MosaicOptIn() {
+		CatalogQuery query = new CatalogQuery();
+		query.setFovAmin(60.0);
+		assertFalse(DssMosaic.isEnabled());
+		assertEquals(CatalogUrls.DSS_PIXELS, DssWriter.getDssPixels(query));
+		try {
+			DssMosaic.setEnabled(true);
+			assertEquals(2 * CatalogUrls.DSS_PIXELS, DssWriter.getDssPixels(query));
+			query.setFovAmin(30.0);
+			assertEquals(CatalogUrls.DSS_PIXELS, DssWriter.getDssPixels(query));
+		} finally {
+			DssMosaic.setEnabled(false);
+		}
+	}
+
+	@DisplayName("Tile not projected about the mosaic centre fails the mosaic")
+	@Test
+	void tileIgnoringRefCoords_Fails() throws Exception {
+		ignoreRefCoords = true;
+		Path target = tempDir.resolve("wide.fits");
+		DssMosaic mosaic = new DssMosaic(url, TILE_PIXELS);
+		IOException e = assertThrows(IOException.class, () -> mosaic.download(RA_DEG, DEC_DEG, 1.0, target, null));
+		assertTrue(e.getMessage().startsWith("DSS tile not projected about mosaic centre"), e.getMessage());
+		assertFalse(Files.exists(target));
+	}
+
+	@DisplayName("3 x 3 tiles are downloaded concurrently and stitched into one continuous image")
+	@Test
+	void mosaic_Continuous() throws Exception {
+		// 80 arcmin field, 3 x 3 tiles of 20 pixels
+		Path target = tempDir.resolve("wide.fits");
+		DssMosaic mosaic = new DssMosaic(url, TILE_PIXELS);
+		assertEquals(60, mosaic.getPixels(80.0));
+		long bytes = mosaic.download(RA_DEG, DEC_DEG, 80.0 / 60.0, target, null);
+
+		assertEquals(9, nRequests.get());
+		assertTrue(maxInFlight.get() > 1, "max in flight " + maxInFlight.get());
+		assertEquals(Files.size(target), bytes);
+		assertTrue(FitsDownloader.isValid(target));
+
+		FitsFootprint fp = FitsFootprint.read(target);
+		assertNotNull(fp);
+		assertEquals(60, fp.getNaxis1());
+		assertEquals(60, fp.getNaxis2());
+		assertEquals(80.0 / 60.0 / 60, fp.getScaleDeg(), 1e-9);
+		double[] centre = fp.worldToPixel(RA_DEG, DEC_DEG);
+		assertEquals(30.5, centre[0], 1e-6);
+		assertEquals(30.5, centre[1], 1e-6);
+
+		// every mosaic pixel holds its offset from the common reference point
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(target));
+		data.position(FitsDownloader.FITS_BLOCK);
+		for (int y = 0; y < 60; y++) {
+			for (int x = 0; x < 60; x++) {
+				assertEquals((y - 30 + 1000) * 10000 + x - 30 + 1000, data.getInt(), "pixel " + x + ", " + y);
+			}
+		}
+		String header = new String(data.array(), 0, FitsDownloader.FITS_BLOCK, StandardCharsets.US_ASCII);
+		assertTrue(header.contains("HISTORY Mosaic of 3 x 3 SkyView tiles"));
+
+		// tile files removed
+		try (Stream<Path> files = Files.list(tempDir)) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@DisplayName("Failed tile fails the mosaic, next request downloads only the missing tile")
+	@Test
+	void failedTile_Resumes() throws Exception {
+		// 60 arcmin field, 2 x 2 tiles
+		failSouthEast = true;
+		Path target = tempDir.resolve("wide.fits");
+		DssMosaic mosaic = new DssMosaic(url, TILE_PIXELS);
+		assertThrows(IOException.class, () -> mosaic.download(RA_DEG, DEC_DEG, 1.0, target, null));
+		assertFalse(Files.exists(target));
+		assertEquals(3 + FitsDownloader.DEFAULT_ATTEMPTS, nRequests.get());
+
+		failSouthEast = false;
+		mosaic.download(RA_DEG, DEC_DEG, 1.0, target, null);
+		assertTrue(FitsDownloader.isValid(target));
+		assertEquals(3 + FitsDownloader.DEFAULT_ATTEMPTS + 1, nRequests.get());
+	}
+}
@@ -0,0 +1,157 @@
+package rfl.astroimagej.dev.fileio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+
+class FitsCacheTest {
+
+	private static final int IMAGE_BYTES = 4 * FitsDownloader.FITS_BLOCK;
+
+	@TempDir
+	Path tempDir;
+
+	private Path cacheDir;
+	private Path radecDir;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		cacheDir = tempDir.resolve("fits_cache");
+		radecDir = Files.createDirectories(tempDir.resolve("radec"));
+	}
+
+	// image content distinguished by fill byte
+	private static byte[] image(int fill) {
+		byte[] data = new byte[IMAGE_BYTES];
+		Arrays.fill(data, (byte) fill);
+		return data;
+	}
+
+	// writes image to the cache download path and stores it
+	private void download(FitsCache cache, String key, byte[] image, Path target) throws Exception {
+		Path download = cache.getDownloadPath(key);
+		Files.write(download, image);
+		cache.put(key, download, target);
+		assertFalse(Files.exists(download));
+	}
+
+	private static String key(double raDeg) {
+		return FitsCache.requestKey("digitized sky survey", raDeg, 29.6723, 0.5, 1000);
+	}
+
+	@DisplayName("Renamed target is copied from the cache without a download")
+	@Test
+	void renamedTarget_Hit() throws Exception {
+		FitsCache cache = new FitsCache(cacheDir, 10 * IMAGE_BYTES);
+		Path wasp = radecDir.resolve("wasp_12.V.030.fits");
+		download(cache, key(97.63665), image(1), wasp);
+		assertArrayEquals(image(1), Files.readAllBytes(wasp));
+
+		Path renamed = radecDir.resolve("wasp12b.V.030.fits");
+		assertTrue(cache.get(key(97.63665), renamed));
+		assertArrayEquals(image(1), Files.readAllBytes(renamed));
+		assertEquals(1, cache.getHitCount());
+
+		assertFalse(cache.get(key(97.7), radecDir.resolve("other.V.030.fits")));
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@DisplayName("Target is a writable copy, saving it in place leaves the cached image unchanged")
+	@Test
+	void target_WritableCopy() throws Exception {
+		FitsCache cache = new FitsCache(cacheDir, 10 * IMAGE_BYTES);
+		Path wasp = radecDir.resolve("wasp_12.V.030.fits");
+		download(cache, key(97.63665), image(1), wasp);
+		assertTrue(Files.isWritable(wasp));
+
+		Files.write(wasp, image(7));
+		Path renamed = radecDir.resolve("wasp12b.V.030.fits");
+		assertTrue(cache.get(key(97.63665), renamed));
+		assertTrue(Files.isWritable(renamed));
+		assertArrayEquals(image(1), Files.readAllBytes(renamed));
+	}
+
+	@DisplayName("Identical images under different keys are stored once")
+	@Test
+	void identicalContent_StoredOnce() throws Exception {
+		FitsCache cache = new FitsCache(cacheDir, 10 * IMAGE_BYTES);
+		download(cache, key(97.63665), image(1), null);
+		download(cache, key(97.63666), image(1), null);
+
+		assertEquals(2, cache.getKeyCount());
+		assertEquals(1, cache.size());
+		assertEquals(IMAGE_BYTES, cache.getTotalBytes());
+	}
+
+	@DisplayName("Least recently used images are evicted above the byte budget")
+	@Test
+	void byteBudget_EvictsLru() throws Exception {
+		FitsCache cache = new FitsCache(cacheDir, 3 * IMAGE_BYTES);
+		download(cache, key(1.0), image(1), null);
+		download(cache, key(2.0), image(2), null);
+		download(cache, key(3.0), image(3), null);
+
+		// use image 1, image 2 is now least recently used
+		assertTrue(cache.get(key(1.0), radecDir.resolve("one.fits")));
+		download(cache, key(4.0), image(4), null);
+
+		assertEquals(3, cache.size());
+		assertEquals(3 * IMAGE_BYTES, cache.getTotalBytes());
+		assertFalse(cache.get(key(2.0), radecDir.resolve("two.fits")));
+		assertTrue(cache.get(key(1.0), radecDir.resolve("one.fits")));
+		assertTrue(cache.get(key(4.0), radecDir.resolve("four.fits")));
+
+		// copied target survives eviction of its image
+		assertArrayEquals(image(1), Files.readAllBytes(radecDir.resolve("one.fits")));
+	}
+
+	@DisplayName("Index and LRU order are restored from the properties file, hits are not saved")
+	@Test
+	void index_Persisted() throws Exception {
+		FitsCache cache = new FitsCache(cacheDir, 3 * IMAGE_BYTES);
+		download(cache, key(1.0), image(1), null);
+		download(cache, key(2.0), image(2), null);
+		Path index = cacheDir.resolve("fits_cache.properties");
+		byte[] saved = Files.readAllBytes(index);
+		cache.get(key(1.0), radecDir.resolve("one.fits"));
+		assertArrayEquals(saved, Files.readAllBytes(index));
+
+		// LRU order of hit saved with the next image
+		download(cache, key(3.0), image(3), null);
+		FitsCache reopened = new FitsCache(cacheDir, 3 * IMAGE_BYTES);
+		assertEquals(3, reopened.size());
+		assertEquals(3 * IMAGE_BYTES, reopened.getTotalBytes());
+
+		// image 2 least recently used before restart
+		download(reopened, key(4.0), image(4), null);
+		assertFalse(reopened.get(key(2.0), radecDir.resolve("two.fits")));
+		assertTrue(reopened.get(key(1.0), radecDir.resolve("one.fits")));
+	}
+
+	@DisplayName("DSS cache key depends on position, size and pixels, not object id")
+	@Test
+	void dssKey_IgnoresObjectId() {
+		CatalogQuery query = new CatalogQuery();
+		query.setObjectId("wasp 12");
+		query.setRaHr(6.50911);
+		query.setDecDeg(29.6723);
+		query.setFovAmin(30.0);
+		String key = DssWriter.getCacheKey(query);
+		query.setObjectId("wasp 12b");
+
+		assertEquals(key, DssWriter.getCacheKey(query));
+		assertEquals("digitized sky survey|97.63665|+29.67230|0.50000|1000", key);
+	}
+}
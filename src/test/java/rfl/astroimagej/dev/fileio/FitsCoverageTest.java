@@ -0,0 +1,175 @@
+package rfl.astroimagej.dev.fileio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FitsCoverageTest {
+
+	// 1 deg image, 200 x 200 pixels of 18 arcsec, centred on wasp 12
+	private static final double RA_DEG = 97.63665;
+	private static final double DEC_DEG = 29.6723;
+	private static final int NAXIS = 200;
+	private static final double SCALE_DEG = 0.005;
+
+	@TempDir
+	Path tempDir;
+
+	private Path cacheDir;
+	private Path radecDir;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		cacheDir = tempDir.resolve("fits_cache");
+		radecDir = Files.createDirectories(tempDir.resolve("radec"));
+	}
+
+	// synthetic SkyView-style image, 16 bit pixel value = 100 * y + x (0-based)
+	private static byte[] fitsImage() {
+		StringBuilder sb = new StringBuilder();
+		for (String card : new String[] { "SIMPLE  =                    T", "BITPIX  =                   16",
+				"NAXIS   =                    2", "NAXIS1  =                  200", "NAXIS2  =                  200",
+				"CTYPE1  = 'RA---TAN'", "CTYPE2  = 'DEC--TAN'",
+				String.format("CRVAL1  = %20s", RA_DEG), String.format("CRVAL2  = %20s", DEC_DEG),
+				"CRPIX1  =                100.5", "CRPIX2  =                100.5",
+				"CDELT1  =               -0.005 / deg per pixel", "CDELT2  =                0.005",
+				"CHECKSUM= 'ZZZZZZZZZZZZZZZZ'", "END" }) {
+			sb.append(String.format("%-80s", card));
+		}
+		int dataBytes = NAXIS * NAXIS * 2;
+		ByteBuffer image = ByteBuffer.allocate(blocks(FitsDownloader.FITS_BLOCK + dataBytes));
+		byte[] header = sb.toString().getBytes(StandardCharsets.US_ASCII);
+		image.put(header);
+		while (image.position() < FitsDownloader.FITS_BLOCK) {
+			image.put((byte) ' ');
+		}
+		for (int y = 0; y < NAXIS; y++) {
+			for (int x = 0; x < NAXIS; x++) {
+				image.putShort((short) (y * 100 + x));
+			}
+		}
+		return image.array();
+	}
+
+	private static int blocks(int bytes) {
+		return (bytes + FitsDownloader.FITS_BLOCK - 1) / FitsDownloader.FITS_BLOCK * FitsDownloader.FITS_BLOCK;
+	}
+
+	private static String key(double raDeg, double decDeg, double sizeDeg) {
+		return FitsCache.requestKey("digitized sky survey", raDeg, decDeg, sizeDeg, 200);
+	}
+
+	private FitsCache cacheWithImage() throws Exception {
+		FitsCache cache = new FitsCache(cacheDir, FitsCache.DEFAULT_MAX_BYTES);
+		String key = key(RA_DEG, DEC_DEG, 1.0);
+		Path download = cache.getDownloadPath(key);
+		Files.write(download, fitsImage());
+		cache.put(key, download, null);
+		return cache;
+	}
+
+	@DisplayName("WCS footprint maps reference pixel and corners of synthetic image")
+	@Test
+	void footprint_FromHeader() throws Exception {
+		Path file = tempDir.resolve("image.fits");
+		Files.write(file, fitsImage());
+		FitsFootprint fp = FitsFootprint.read(file);
+		assertNotNull(fp);
+		assertEquals(SCALE_DEG, fp.getScaleDeg(), 1e-12);
+
+		double[] centre = fp.worldToPixel(RA_DEG, DEC_DEG);
+		assertEquals(100.5, centre[0], 1e-9);
+		assertEquals(100.5, centre[1], 1e-9);
+
+		// ra increases to the left, one pixel east of centre
+		double[] east = fp.worldToPixel(RA_DEG + SCALE_DEG / Math.cos(Math.toRadians(DEC_DEG)), DEC_DEG);
+		assertEquals(99.5, east[0], 1e-3);
+
+		assertNull(fp.cutoutBounds(RA_DEG, DEC_DEG, 1.1));
+		assertEquals(fp.encode(), FitsFootprint.decode(fp.encode()).encode());
+	}
+
+	@DisplayName("Smaller field inside a cached image is written as a cutout with shifted CRPIX")
+	@Test
+	void coveredField_Cutout() throws Exception {
+		FitsCache cache = cacheWithImage();
+		assertEquals(1, cache.getFootprintCount());
+
+		// 0.25 deg field of 50 pixels, 2 arcmin north of image centre
+		Path target = radecDir.resolve("wasp_12.V.015.fits");
+		double decDeg = DEC_DEG + 2.0 / 60.0;
+		assertTrue(cache.getCovering(RA_DEG, decDeg, 0.25, 50, target));
+		assertEquals(1, cache.getSavedDownloadCount());
+		assertTrue(FitsDownloader.isValid(target));
+
+		FitsFootprint cutout = FitsFootprint.read(target);
+		assertNotNull(cutout);
+		// 0.25 deg at 0.005 deg/pixel, at least 50 pixels, a few more for corner curvature
+		assertTrue(cutout.getNaxis1() >= 50 && cutout.getNaxis1() <= 54, "naxis1 " + cutout.getNaxis1());
+		assertTrue(cutout.getNaxis2() >= 50 && cutout.getNaxis2() <= 54, "naxis2 " + cutout.getNaxis2());
+
+		// WCS unchanged, requested centre near cutout centre
+		double[] centre = cutout.worldToPixel(RA_DEG, decDeg);
+		assertEquals((cutout.getNaxis1() + 1) / 2.0, centre[0], 1.5);
+		assertEquals((cutout.getNaxis2() + 1) / 2.0, centre[1], 1.5);
+
+		// first cutout pixel holds source pixel at bounds x0, y0
+		Path sourceFile = tempDir.resolve("source.fits");
+		Files.write(sourceFile, fitsImage());
+		FitsFootprint source = FitsFootprint.read(sourceFile);
+		int[] bounds = source.cutoutBounds(RA_DEG, decDeg, 0.25);
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(target));
+		String header = new String(data.array(), 0, FitsDownloader.FITS_BLOCK, StandardCharsets.US_ASCII);
+		assertFalse(header.contains("CHECKSUM"));
+		assertTrue(header.contains("HISTORY Cutout"));
+		assertEquals(bounds[1] * 100 + bounds[0], data.getShort(FitsDownloader.FITS_BLOCK));
+		int last = FitsDownloader.FITS_BLOCK + (cutout.getNaxis1() * cutout.getNaxis2() - 1) * 2;
+		assertEquals((bounds[3] - 1) * 100 + bounds[2] - 1, data.getShort(last));
+	}
+
+	@DisplayName("Fields outside the image or needing finer pixels are not served from the cache")
+	@Test
+	void uncoveredField_NoCutout() throws Exception {
+		FitsCache cache = cacheWithImage();
+		Path target = radecDir.resolve("other.V.030.fits");
+
+		// field extends past image edge
+		assertFalse(cache.getCovering(RA_DEG, DEC_DEG + 0.4, 0.5, 200, target));
+		// 0.1 deg over 200 pixels needs 1.8 arcsec pixels, cached image is 18 arcsec
+		assertFalse(cache.getCovering(RA_DEG, DEC_DEG, 0.1, 200, target));
+		assertFalse(Files.exists(target));
+		assertEquals(0, cache.getSavedDownloadCount());
+	}
+
+	@DisplayName("Footprints and saved download count are restored from the sidecar index")
+	@Test
+	void footprints_Persisted() throws Exception {
+		FitsCache cache = cacheWithImage();
+		assertTrue(cache.getCovering(RA_DEG, DEC_DEG, 0.5, 100, radecDir.resolve("one.fits")));
+		assertTrue(Files.exists(cacheDir.resolve("fits_footprints.properties")));
+
+		// saved count persisted with the next stored image
+		String key = key(RA_DEG + 1.0, DEC_DEG, 1.0);
+		Path download = cache.getDownloadPath(key);
+		Files.write(download, new byte[FitsDownloader.FITS_BLOCK]);
+		cache.put(key, download, null);
+
+		FitsCache reopened = new FitsCache(cacheDir, FitsCache.DEFAULT_MAX_BYTES);
+		assertEquals(1, reopened.getFootprintCount());
+		assertEquals(1, reopened.getSavedDownloadCount());
+		assertTrue(reopened.getCovering(RA_DEG, DEC_DEG, 0.5, 100, radecDir.resolve("two.fits")));
+		assertEquals(2, reopened.getSavedDownloadCount());
+	}
+}
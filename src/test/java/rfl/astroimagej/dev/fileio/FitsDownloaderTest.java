@@ -0,0 +1,173 @@
+package rfl.astroimagej.dev.fileio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+// local stand-in SkyView server, drops or ignores ranges on request, no network access
+class FitsDownloaderTest {
+
+	@TempDir
+	Path tempDir;
+
+	private HttpServer server;
+	private String url;
+	private byte[] fits;
+
+	// server behaviour: bytes sent before dropping first response, honour Range header
+	private int dropAfter = -1;
+	private boolean honourRange = true;
+	private byte[] body;
+	private final List<String> ranges = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		fits = fitsFile(4);
+		body = fits;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/dss.fits", exchange -> {
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			ranges.add(range);
+			int start = 0;
+			if (range != null && honourRange) {
+				start = Integer.parseInt(range.replaceAll("bytes=(\\d+)-", "$1"));
+				exchange.getResponseHeaders().add("Content-Range",
+						String.format("bytes %d-%d/%d", start, body.length - 1, body.length));
+				exchange.sendResponseHeaders(206, body.length - start);
+			} else {
+				exchange.sendResponseHeaders(200, body.length);
+			}
+			int end = body.length;
+			if (dropAfter >= 0) {
+				end = start + dropAfter;
+				dropAfter = -1;
+			}
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body, start, end - start);
+				out.flush();
+				if (end < body.length) {
+					// abandon response mid-body
+					throw new IOException("dropped");
+				}
+			}
+		});
+		server.start();
+		url = "http://localhost:" + server.getAddress().getPort() + "/dss.fits";
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+	}
+
+	// minimal fits file, header block + data blocks
+	private static byte[] fitsFile(int nBlocks) {
+		byte[] data = new byte[nBlocks * FitsDownloader.FITS_BLOCK];
+		Arrays.fill(data, (byte) ' ');
+		String header = String.format("%-80s%-80s", "SIMPLE  =                    T", "END");
+		System.arraycopy(header.getBytes(StandardCharsets.US_ASCII), 0, data, 0, 160);
+		for (int i = FitsDownloader.FITS_BLOCK; i < data.length; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		return data;
+	}
+
+	@DisplayName("Complete download is published in one request with progress reports")
+	@Test
+	void download_Complete() throws Exception {
+		Path target = tempDir.resolve("wasp12.V.030.fits");
+		List<double[]> progress = new ArrayList<>();
+		FitsDownloader downloader = new FitsDownloader();
+		long bytes = downloader.download(url, target, (b, total, rate) -> progress.add(new double[] { b, total, rate }));
+
+		assertEquals(fits.length, bytes);
+		assertArrayEquals(fits, Files.readAllBytes(target));
+		assertFalse(Files.exists(tempDir.resolve("wasp12.V.030.fits.part")));
+		assertEquals(1, downloader.getRequestCount());
+		double[] last = progress.get(progress.size() - 1);
+		assertEquals(fits.length, last[0], 0.0);
+		assertEquals(fits.length, last[1], 0.0);
+		assertTrue(last[2] > 0.0);
+	}
+
+	@DisplayName("Dropped transfer resumes from .part file with a Range request")
+	@Test
+	void droppedTransfer_Resumes() throws Exception {
+		dropAfter = 5000;
+		Path target = tempDir.resolve("wasp12.V.030.fits");
+		FitsDownloader downloader = new FitsDownloader();
+		downloader.download(url, target, null);
+
+		assertArrayEquals(fits, Files.readAllBytes(target));
+		assertEquals(2, downloader.getRequestCount());
+		assertNull(ranges.get(0));
+		assertTrue(ranges.get(1).matches("bytes=\\d+-"), ranges.get(1));
+	}
+
+	@DisplayName("Server that ignores Range restarts the file")
+	@Test
+	void rangeIgnored_Restarts() throws Exception {
+		dropAfter = 5000;
+		honourRange = false;
+		Path target = tempDir.resolve("wasp12.V.030.fits");
+		new FitsDownloader().download(url, target, null);
+		assertArrayEquals(fits, Files.readAllBytes(target));
+	}
+
+	@DisplayName("Failed requests are retried after an exponential backoff")
+	@Test
+	void failedRequests_BackOff() throws Exception {
+		server.stop(0);
+		Path target = tempDir.resolve("wasp12.V.030.fits");
+		FitsDownloader downloader = new FitsDownloader(3, 100);
+		long t0 = System.nanoTime();
+		assertThrows(IOException.class, () -> downloader.download(url, target, null));
+		long elapsedMs = (System.nanoTime() - t0) / 1000000;
+
+		// 100 ms + 200 ms between three requests
+		assertEquals(3, downloader.getRequestCount());
+		assertTrue(elapsedMs >= 300, Long.toString(elapsedMs));
+		assertFalse(Files.exists(target));
+	}
+
+	@DisplayName("Response that is not a fits file is rejected, no file is published")
+	@Test
+	void invalidResponse_Rejected() throws Exception {
+		body = "<html>SkyView error</html>".getBytes(StandardCharsets.US_ASCII);
+		Path target = tempDir.resolve("wasp12.V.030.fits");
+		assertThrows(IOException.class, () -> new FitsDownloader().download(url, target, null));
+		assertFalse(Files.exists(target));
+		assertFalse(Files.exists(tempDir.resolve("wasp12.V.030.fits.part")));
+	}
+
+	@DisplayName("Truncated fits file fails validation")
+	@Test
+	void truncatedFile_Invalid() throws Exception {
+		Path file = tempDir.resolve("truncated.fits");
+		Files.write(file, Arrays.copyOf(fits, 5000));
+		assertFalse(FitsDownloader.isValid(file));
+		Files.write(file, fits);
+		assertTrue(FitsDownloader.isValid(file));
+	}
+}
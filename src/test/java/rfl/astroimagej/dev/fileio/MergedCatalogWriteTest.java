@@ -0,0 +1,124 @@
+package rfl.astroimagej.dev.fileio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import rfl.astroimagej.dev.catalogs.CatalogFactory;
+import rfl.astroimagej.dev.catalogs.CatalogFanOut;
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.enums.CatalogType;
+import rfl.astroimagej.dev.utils.CatalogUrls;
+import rfl.astroimagej.dev.utils.RateLimiter;
+
+// VSP, APASS and SIMBAD served from recorded responses by a local stand-in server, stub DSS leg
+class MergedCatalogWriteTest {
+
+	private HttpServer server;
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+	private CatalogQuery query;
+	private File file;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		serve("/vsp/api/chart/", "/vsp_wasp12_30amin_14.5mag.json");
+		serve("/viz-bin/asu-tsv", "/apass_wasp12_30amin_V.tsv");
+		serve("/simbad/sim-coo", "/simbad_cone_wasp12_votable.xml");
+		server.start();
+		RateLimiter.configure("localhost", 1000.0, 100);
+		CatalogUrls.setServerOverride("http://localhost:" + server.getAddress().getPort());
+
+		query = new CatalogQuery();
+		query.setObjectId("wasp 12 merged");
+		query.setRaHr(6.50911);
+		query.setDecDeg(29.6723);
+		query.setFovAmin(30.0);
+		query.setMagLimit(14.5);
+		query.setMagBand("V");
+		query.setCatalogType(CatalogType.MERGED);
+		file = RaDecFileWriter.getFile(query, "radec.txt");
+		file.delete();
+	}
+
+	@AfterEach
+	void tearDown() {
+		CatalogUrls.setServerOverride(null);
+		RateLimiter.reset("localhost");
+		server.stop(0);
+		file.delete();
+	}
+
+	// replies to every request on path with a test resource
+	private void serve(String path, String resource) {
+		requests.put(path, new AtomicInteger());
+		server.createContext(path, exchange -> {
+			requests.get(path).incrementAndGet();
+			byte[] body;
+			try (InputStream in = getClass().getResourceAsStream(resource)) {
+				body = readAll(in);
+			}
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	@DisplayName("MERGED catalog form selection writes one radec file from VSP, APASS and SIMBAD")
+	@Test
+	void writeFile_MergedCatalog() throws IOException {
+		assertTrue(CatalogFactory.createCatalog(CatalogType.MERGED) instanceof CatalogFanOut);
+
+		RaDecFileWriter writer = new RaDecFileWriter() {
+			@Override
+			protected String downloadDssFits(CatalogQuery q) {
+				return "Saved fits file: stub";
+			}
+		};
+		String message = writer.writeFile(query);
+
+		// one request per catalog, outcome of each catalog in message
+		assertTrue(message.startsWith("Saved radec file"), message);
+		requests.forEach((path, n) -> assertEquals(1, n.get(), path));
+		assertTrue(message.contains("VSP: 7 stars"), message);
+		assertTrue(message.contains("APASS: 17 stars"), message);
+		assertTrue(message.contains("SIMBAD: 3 stars"), message);
+		assertTrue(message.contains("Saved fits file: stub"), message);
+
+		// data block: header, target and 27 ref stars from the three catalogs
+		assertTrue(file.exists());
+		List<String> lines = Files.readAllLines(file.toPath());
+		assertEquals(1 + 1 + 27, lines.indexOf("#"));
+		assertTrue(lines.stream().anyMatch(line -> line.contains("WASP-12")));
+	}
+}
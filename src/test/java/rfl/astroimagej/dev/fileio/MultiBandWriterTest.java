@@ -0,0 +1,146 @@
+package rfl.astroimagej.dev.fileio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import rfl.astroimagej.dev.catalogs.AstroCatalog;
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.catalogs.ColumnarResult;
+import rfl.astroimagej.dev.catalogs.FieldObject;
+import rfl.astroimagej.dev.catalogs.QueryResult;
+import rfl.astroimagej.dev.catalogs.VspJsonParser;
+import rfl.astroimagej.dev.utils.AstroCoords;
+
+// multi-band result from recorded wasp-12 VSP response, no network access
+class MultiBandWriterTest {
+
+	private static final List<String> BANDS = Arrays.asList("B", "V", "Rc", "Ic");
+
+	private CatalogQuery query;
+	private QueryResult result;
+	private List<File> files;
+
+	private final double epsilon = 1.0e-5;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		query = new CatalogQuery();
+		query.setObjectId("wasp 12 multiband");
+		query.setFovAmin(30.0);
+		query.setMagLimit(14.5);
+
+		result = new QueryResult(query.getObjectId());
+		try (InputStream in = getClass().getResourceAsStream("/vsp_wasp12_30amin_14.5mag.json")) {
+			new VspJsonParser().parse(in, null, result::setFieldObject);
+		}
+
+		files = new ArrayList<>();
+		for (String band : BANDS) {
+			CatalogQuery bandQuery = new CatalogQuery(query);
+			bandQuery.setMagBand(band);
+			File file = RaDecFileWriter.getFile(bandQuery, "radec.txt");
+			file.delete();
+			files.add(file);
+		}
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		files.forEach(File::delete);
+	}
+
+	@DisplayName("One response holds per-band photometry for every field object")
+	@Test
+	void multiBandResult_AllBands_IsCorrect() {
+		assertEquals(7, result.getFieldObjects().size());
+		FieldObject fo = result.getFieldObjects().get(6);
+		assertEquals("000-BKG-168", fo.getObjectId());
+		assertEquals(13.833, fo.getBandMag("B"), epsilon);
+		assertEquals(0.084, fo.getBandMagErr("v"), epsilon);
+		assertEquals(12.187, fo.getBandMag("Rc"), epsilon);
+		assertEquals(0.156, fo.getBandMagErr("IC"), epsilon);
+		assertNull(fo.getMag());
+
+		assertEquals(7, result.forBand("V").getFieldObjects().size());
+		assertEquals(5, result.forBand("Ic").getFieldObjects().size());
+		assertEquals(11.664, result.forBand("Ic").getFieldObjects().get(4).getMag(), epsilon);
+	}
+
+	@DisplayName("Radec file for each band is written from a single result")
+	@Test
+	void writeRaDecFiles_AllBands_Succeeds() throws Exception {
+		String message = new RaDecFileWriter().writeRaDecFiles(query, result, BANDS);
+		System.out.println(message);
+
+		int[] nRefStars = { 7, 7, 5, 5 };
+		for (int i = 0; i < BANDS.size(); i++) {
+			List<String> lines = Files.readAllLines(files.get(i).toPath());
+			long count = lines.stream().filter(line -> line.startsWith("#C")).count();
+			assertEquals(nRefStars[i], count);
+			assertEquals("#" + BANDS.get(i), lines.get(lines.size() - 1));
+		}
+		assertTrue(Files.readAllLines(files.get(2).toPath()).contains("06:31:08.10, +29:41:52.80, 1, 1, 12.187"));
+	}
+
+	@DisplayName("Default multi-band query merges one single band query per catalog band")
+	@Test
+	void defaultMultiBandQuery_MergesBandQueries() {
+		List<String> queried = new ArrayList<>();
+		AstroCatalog catalog = bandQuery -> {
+			queried.add(bandQuery.getMagBand());
+			return result.forBand(bandQuery.getMagBand());
+		};
+
+		QueryResult merged = catalog.runMultiBandQuery(query);
+		assertEquals(BANDS, queried);
+		assertEquals(7, merged.getFieldObjects().size());
+		assertEquals(12.187, merged.getFieldObjects().get(6).getBandMag("Rc"), epsilon);
+		assertNull(merged.getFieldObjects().get(0).getBandMag("Ic"));
+	}
+
+	@DisplayName("Radec lines formatted in place equal bulk converted lines above the threshold")
+	@Test
+	void compileRaDecList_InPlaceEqualsBulk() {
+		CatalogQuery bandQuery = new CatalogQuery(query);
+		bandQuery.setMagBand("V");
+		int n = AstroCoords.PARALLEL_THRESHOLD;
+		Random random = new Random(25);
+		ColumnarResult large = new ColumnarResult(query.getObjectId(), n);
+		ColumnarResult small = new ColumnarResult(query.getObjectId());
+		for (int i = 0; i < n; i++) {
+			double ra = 48.0 * random.nextDouble() - 24.0;
+			double dec = 200.0 * random.nextDouble() - 100.0;
+			large.add("S" + i, ra, dec, 12.0, 0.01);
+			if (i < 100) {
+				small.add("S" + i, ra, dec, 12.0, 0.01);
+			}
+		}
+		RaDecFileWriter writer = new RaDecFileWriter();
+		List<String> bulk = writer.compileRaDecList(bandQuery, large);
+		List<String> inPlace = writer.compileRaDecList(bandQuery, small);
+
+		// header, target and first 100 data lines
+		assertEquals(bulk.subList(0, 102), inPlace.subList(0, 102));
+		for (int i = 0; i < 100; i++) {
+			assertEquals(AstroCoords.raHr_To_raHms(large.getRaHr(i)) + ", "
+					+ AstroCoords.decDeg_To_decDms(large.getDecDeg(i)) + ", 1, 1, 12.0\n", inPlace.get(i + 2));
+		}
+		// comment block
+		assertEquals(bulk.get(n + 4), inPlace.get(100 + 4));
+		assertEquals(bulk.get(n + 4 + 99), inPlace.get(100 + 4 + 99));
+	}
+}
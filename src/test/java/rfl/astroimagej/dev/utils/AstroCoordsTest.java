@@ -1,10 +1,17 @@
 package rfl.astroimagej.dev.utils;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import rfl.astroimagej.dev.enums.TextFieldType;
 
@@ -87,8 +94,46 @@ class AstroCoordsTest {
 	void testUserFormat_ToSexagemsimal_DecDms_IsCorrect(String formattedRaHms, String input) {
 		assertEquals(formattedRaHms, AstroCoords.sexagesimalFormatter(input, TextFieldType.DEC_DMS));
 	}
-	
-	
 
-}
+	@DisplayName("Verify array conversions equal single value conversions, sequential and fork/join sizes")
+	@ParameterizedTest
+	@ValueSource(ints = { 0, 1, 100, AstroCoords.PARALLEL_THRESHOLD, 50000 })
+	void testArrayConversions_EqualSingleValue(int n) {
+		Random random = new Random(n);
+		double[] raHr = new double[n];
+		double[] decDeg = new double[n];
+		for (int i = 0; i < n; i++) {
+			raHr[i] = 24.0 * random.nextDouble();
+			decDeg[i] = 180.0 * random.nextDouble() - 90.0;
+		}
 
+		String[] raHms = AstroCoords.raHr_To_raHms(raHr);
+		String[] decDms = AstroCoords.decDeg_To_decDms(decDeg);
+		double[] raParsed = AstroCoords.raHms_To_raHr(raHms);
+		double[] decParsed = AstroCoords.decDms_To_decDeg(decDms);
+		for (int i = 0; i < n; i++) {
+			assertEquals(AstroCoords.raHr_To_raHms(raHr[i]), raHms[i]);
+			assertEquals(AstroCoords.decDeg_To_decDms(decDeg[i]), decDms[i]);
+			assertEquals(AstroCoords.raHms_To_raHr(raHms[i]), raParsed[i]);
+			assertEquals(AstroCoords.decDms_To_decDeg(decDms[i]), decParsed[i]);
+		}
+	}
+
+	@DisplayName("Verify malformed text in a fork/join array conversion throws NumberFormatException")
+	@Test
+	void testArrayConversion_MalformedText_Throws() {
+		String[] raHms = AstroCoords.raHr_To_raHms(new double[2 * AstroCoords.PARALLEL_THRESHOLD]);
+		raHms[AstroCoords.PARALLEL_THRESHOLD + 7] = "12:xx:00.00";
+		assertThrows(NumberFormatException.class, () -> AstroCoords.raHms_To_raHr(raHms));
+		assertArrayEquals(new double[0], AstroCoords.raHms_To_raHr(new String[0]));
+	}
+
+	@DisplayName("Verify tangent plane offsets are symmetric across ra = 0")
+	@Test
+	void testTangentOffset_RaWrap_IsCorrect() {
+		double[] east = AstroCoords.tangentOffset(23.99, 0.0, 0.01, 0.0);
+		assertEquals(2 * 0.01 * 15.0 * 60.0, east[0], 1.0e-3);
+		assertEquals(0.0, east[1], epsilon);
+		assertNull(AstroCoords.tangentOffset(0.0, 0.0, 12.0, 0.0));
+	}
+}
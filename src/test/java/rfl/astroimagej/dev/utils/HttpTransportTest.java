@@ -0,0 +1,180 @@
+package rfl.astroimagej.dev.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// local http server, no network access
+class HttpTransportTest {
+
+	private HttpServer server;
+	private String url;
+	private byte[] text;
+
+	// client ports seen by server, one per connection
+	private final Set<Integer> clientPorts = new HashSet<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			sb.append(String.format("%d\twasp 12\t97.63665\t+29.67230%n", i));
+		}
+		text = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/text", exchange -> {
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			byte[] body = text;
+			if (encoding != null && encoding.contains("gzip")) {
+				body = gzip(text);
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+			}
+			send(exchange, 200, body);
+		});
+		server.createContext("/echo", exchange -> {
+			ByteArrayOutputStream request = new ByteArrayOutputStream();
+			try (InputStream in = exchange.getRequestBody()) {
+				copy(in, request);
+			}
+			send(exchange, 200, request.toByteArray());
+		});
+		server.createContext("/missing", exchange -> send(exchange, 404, "not found".getBytes(StandardCharsets.UTF_8)));
+		server.start();
+		url = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+	}
+
+	private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(code, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(data);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, n);
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		copy(in, out);
+		return out.toByteArray();
+	}
+
+	@DisplayName("Gzip response is decompressed and timings count compressed bytes")
+	@Test
+	void gzipResponse_Decoded() throws Exception {
+		HttpTransport transport = new HttpTransport();
+		try (InputStream in = transport.openStream(url + "/text")) {
+			assertEquals(new String(text, StandardCharsets.UTF_8), new String(readAll(in), StandardCharsets.UTF_8));
+		}
+		List<HttpTransport.Timing> timings = transport.getTimings();
+		assertEquals(1, timings.size());
+		HttpTransport.Timing timing = timings.get(0);
+		assertEquals(200, timing.getStatus());
+		assertTrue(timing.isGzip());
+		assertTrue(timing.getBytes() > 0 && timing.getBytes() < text.length / 2, "bytes " + timing.getBytes());
+		assertTrue(timing.getTtfbMs() >= 0.0 && timing.getTransferMs() >= 0.0);
+		assertTrue(transport.getReport().startsWith("localhost: 1 requests"), transport.getReport());
+	}
+
+	@DisplayName("Sequential requests reuse one pooled connection, also after a partly read body")
+	@Test
+	void sequentialRequests_ReuseConnection() throws Exception {
+		HttpTransport transport = new HttpTransport();
+		for (int i = 0; i < 5; i++) {
+			try (InputStream in = transport.openStream(url + "/text")) {
+				// read only the first line
+				in.read(new byte[64]);
+			}
+		}
+		assertEquals(1, clientPorts.size());
+		assertEquals(5, transport.getTimings().size());
+	}
+
+	@DisplayName("Identity encoding header disables gzip")
+	@Test
+	void identityEncoding_NotCompressed() throws Exception {
+		HttpTransport transport = new HttpTransport();
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Accept-Encoding", "identity");
+		try (HttpTransport.Response response = transport.get(url + "/text", headers)) {
+			assertEquals(text.length, response.getContentLength());
+			assertEquals(text.length, readAll(response.getBody()).length);
+			assertFalse(response.getTiming().isGzip());
+		}
+	}
+
+	@DisplayName("POST body is sent and the response streamed")
+	@Test
+	void post_Echo() throws Exception {
+		byte[] body = "REQUEST=doQuery&LANG=ADQL".getBytes(StandardCharsets.UTF_8);
+		try (HttpTransport.Response response = new HttpTransport().post(url + "/echo",
+				"application/x-www-form-urlencoded", body)) {
+			assertTrue(response.isSuccess());
+			assertEquals("REQUEST=doQuery&LANG=ADQL", new String(readAll(response.getBody()), StandardCharsets.UTF_8));
+		}
+	}
+
+	@DisplayName("Error status fails openStream with the status code")
+	@Test
+	void errorStatus_Throws() {
+		IOException e = assertThrows(IOException.class, () -> new HttpTransport().openStream(url + "/missing"));
+		assertTrue(e.getMessage().startsWith("HTTP 404"), e.getMessage());
+	}
+
+	@DisplayName("Interrupted caller never reaches the server")
+	@Test
+	void interruptedCaller_NoRequest() {
+		HttpTransport transport = new HttpTransport();
+		Thread.currentThread().interrupt();
+		try {
+			assertThrows(InterruptedIOException.class, () -> transport.openStream(url + "/text"));
+		} finally {
+			Thread.interrupted();
+		}
+		assertTrue(clientPorts.isEmpty());
+		assertTrue(transport.getTimings().isEmpty());
+	}
+}
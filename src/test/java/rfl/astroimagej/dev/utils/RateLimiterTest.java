@@ -0,0 +1,107 @@
+package rfl.astroimagej.dev.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+	@DisplayName("Burst requests run back-to-back without waiting")
+	@Test
+	void burstRequests_NoWait() throws Exception {
+		RateLimiter.configure("burst.test", 1.0, 5);
+		RateLimiter limiter = RateLimiter.forHost("burst.test");
+
+		for (int i = 0; i < 5; i++) {
+			RateLimiter.acquire("http://burst.test/query?id=" + i);
+		}
+		assertEquals(5, limiter.getRequestCount());
+		assertEquals(0, limiter.getWaitCount());
+		assertEquals(0.0, limiter.getWaitMillis(), 0.0);
+	}
+
+	@DisplayName("Requests beyond burst are paced at the configured rate and wait time is counted")
+	@Test
+	void requestsBeyondBurst_PacedAtRate() throws Exception {
+		RateLimiter.configure("rate.test", 20.0, 2);
+		RateLimiter limiter = RateLimiter.forHost("rate.test");
+
+		// 2 burst tokens, then 10 more at 20/s => ~500 ms
+		long t0 = System.nanoTime();
+		for (int i = 0; i < 12; i++) {
+			limiter.acquire();
+		}
+		double elapsedMs = (System.nanoTime() - t0) / 1.0e6;
+
+		assertEquals(12, limiter.getRequestCount());
+		assertEquals(10, limiter.getWaitCount());
+		assertTrue(elapsedMs > 450.0);
+		assertTrue(limiter.getWaitMillis() > 400.0);
+	}
+
+	@DisplayName("Local file urls are not rate limited")
+	@Test
+	void fileUrl_NotLimited() throws Exception {
+		String report = RateLimiter.getReport();
+		for (int i = 0; i < 100; i++) {
+			RateLimiter.acquire("file:/tmp/simbad_vega_votable.xml");
+		}
+		// no bucket created, no request counted
+		assertEquals(report, RateLimiter.getReport());
+	}
+
+	@DisplayName("Interrupted caller is refused before and while waiting, its token returned")
+	@Test
+	void interruptedCaller_Refused() throws Exception {
+		RateLimiter.configure("cancel.test", 1.0, 1);
+		RateLimiter limiter = RateLimiter.forHost("cancel.test");
+
+		Thread.currentThread().interrupt();
+		try {
+			assertThrows(InterruptedIOException.class, limiter::acquire);
+		} finally {
+			// clear flag for later tests
+			Thread.interrupted();
+		}
+		assertEquals(0, limiter.getRequestCount());
+
+		// burst token taken, second caller waits ~1 s and is interrupted
+		limiter.acquire();
+		Thread caller = Thread.currentThread();
+		Thread interrupter = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				return;
+			}
+			caller.interrupt();
+		});
+		interrupter.start();
+		try {
+			assertThrows(InterruptedIOException.class, limiter::acquire);
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+			interrupter.join();
+		}
+		assertEquals(1, limiter.getRequestCount());
+		assertEquals(1, limiter.getWaitCount());
+	}
+
+	@DisplayName("Reset restores built-in host limits and default limits for other hosts")
+	@Test
+	void reset_RestoresLimits() {
+		RateLimiter.configure("simbad.u-strasbg.fr", 1000.0, 100);
+		RateLimiter.reset("simbad.u-strasbg.fr");
+		assertTrue(RateLimiter.forHost("simbad.u-strasbg.fr").toString().endsWith("(rate=5.0/s, burst=5)"));
+
+		RateLimiter.configure("reset.test", 1000.0, 100);
+		RateLimiter.reset("reset.test");
+		assertTrue(RateLimiter.forHost("reset.test").toString().endsWith("(rate=10.0/s, burst=10)"));
+	}
+}
@@ -0,0 +1,188 @@
+package rfl.astroimagej.dev.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import rfl.astroimagej.dev.catalogs.CatalogQuery;
+import rfl.astroimagej.dev.catalogs.QueryResult;
+import rfl.astroimagej.dev.catalogs.VspCatalog;
+import rfl.astroimagej.dev.catalogs.VspJsonParser;
+import rfl.astroimagej.dev.enums.CatalogType;
+
+// local origin and replay servers, no network access
+class ReplayServerTest {
+
+	@TempDir
+	Path tempDir;
+
+	private HttpServer origin;
+	private String originUrl;
+	private HttpRecorder recordings;
+	private CatalogQuery vegaQuery;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		recordings = new HttpRecorder(tempDir.resolve("recordings"));
+
+		// stand-in for VSP (gzip response) and SIMBAD TAP (echoes request body)
+		origin = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		origin.createContext("/vsp/api/chart/", exchange -> {
+			byte[] body = gzip(readAll(getClass().getResourceAsStream("/vsp_vega_60amin_16.0mag.json")));
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		origin.createContext("/simbad/sim-tap/sync", exchange -> {
+			byte[] body = ("votable for " + new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8))
+					.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		origin.start();
+		originUrl = "http://localhost:" + origin.getAddress().getPort();
+
+		vegaQuery = new CatalogQuery();
+		vegaQuery.setObjectId("vega");
+		vegaQuery.setRaHr(18.61565);
+		vegaQuery.setDecDeg(38.78369);
+		vegaQuery.setFovAmin(60.0);
+		vegaQuery.setMagLimit(16.0);
+		vegaQuery.setMagBand("B");
+	}
+
+	@AfterEach
+	void tearDown() {
+		origin.stop(0);
+		CatalogUrls.setServerOverride(null);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, n);
+		}
+		in.close();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(data);
+		}
+		return bytes.toByteArray();
+	}
+
+	@DisplayName("Server override keeps path and query of compiled urls")
+	@Test
+	void serverOverride_RemapsHost() {
+		String live = CatalogUrls.getUrl(vegaQuery, CatalogType.VSP);
+		CatalogUrls.setServerOverride("http://localhost:8080/");
+		String remapped = CatalogUrls.getUrl(vegaQuery, CatalogType.VSP);
+
+		assertTrue(live.startsWith("https://app.aavso.org/vsp/api/chart/?"));
+		assertEquals("http://localhost:8080" + live.substring("https://app.aavso.org".length()), remapped);
+		assertEquals("http://localhost:8080/simbad/sim-tap/sync", CatalogUrls.getSimbadTapUrl());
+	}
+
+	@DisplayName("Recorded VSP response replays offline through the catalog pipeline")
+	@Test
+	void recordedVsp_Replays() throws Exception {
+		// record mode against the origin
+		CatalogUrls.setServerOverride(originUrl);
+		HttpTransport recorder = new HttpTransport();
+		recorder.setRecorder(recordings);
+		try (InputStream in = recorder.openStream(CatalogUrls.getUrl(vegaQuery, CatalogType.VSP))) {
+			// read part of the body, the recording reads the rest
+			in.read(new byte[100]);
+		}
+		assertEquals(1, recordings.size());
+		origin.stop(0);
+
+		// replay through the default transport and VSP catalog
+		QueryResult expected = new VspJsonParser()
+				.parse(getClass().getResourceAsStream("/vsp_vega_60amin_16.0mag.json"), vegaQuery);
+		try (ReplayServer replay = new ReplayServer(new HttpRecorder(tempDir.resolve("recordings")), 0, 0)) {
+			CatalogUrls.setServerOverride(replay.start(0));
+			QueryResult result = new VspCatalog().runQuery(vegaQuery);
+
+			assertEquals(1, replay.getRequestCount());
+			assertEquals(0, replay.getMissCount());
+			assertTrue(result.getFieldObjects().size() > 0);
+			assertEquals(expected.getFieldObjects().size(), result.getFieldObjects().size());
+		}
+	}
+
+	@DisplayName("POST requests replay by request body, other bodies are not found")
+	@Test
+	void recordedPost_MatchedByBody() throws Exception {
+		CatalogUrls.setServerOverride(originUrl);
+		HttpTransport recorder = new HttpTransport();
+		recorder.setRecorder(recordings);
+		byte[] query = "REQUEST=doQuery&QUERY=vega".getBytes(StandardCharsets.UTF_8);
+		try (HttpTransport.Response response = recorder.post(CatalogUrls.getSimbadTapUrl(), "text/plain", query)) {
+			readAll(response.getBody());
+		}
+
+		try (ReplayServer replay = new ReplayServer(recordings, 0, 0)) {
+			CatalogUrls.setServerOverride(replay.start(0));
+			HttpTransport transport = new HttpTransport();
+			try (HttpTransport.Response response = HttpTransport
+					.checkStatus(transport.post(CatalogUrls.getSimbadTapUrl(), "text/plain", query))) {
+				assertEquals("votable for REQUEST=doQuery&QUERY=vega",
+						new String(readAll(response.getBody()), StandardCharsets.UTF_8));
+			}
+			byte[] other = "REQUEST=doQuery&QUERY=deneb".getBytes(StandardCharsets.UTF_8);
+			assertThrows(IOException.class,
+					() -> HttpTransport.checkStatus(transport.post(CatalogUrls.getSimbadTapUrl(), "text/plain", other)));
+			assertEquals(1, replay.getMissCount());
+		}
+	}
+
+	@DisplayName("Replay adds the configured latency and limits bandwidth")
+	@Test
+	void latencyAndBandwidth_Applied() throws Exception {
+		byte[] body = new byte[40000];
+		String url = "http://skyview.gsfc.nasa.gov/cgi-bin/images?Survey=dss";
+		recordings.put(HttpRecorder.requestKey("GET", HttpRecorder.pathAndQuery(url), null), "image/fits", body);
+
+		// 150 ms latency, 40000 bytes at 100000 bytes/s => 400 ms transfer
+		try (ReplayServer replay = new ReplayServer(recordings, 150, 100000)) {
+			CatalogUrls.setServerOverride(replay.start(0));
+			HttpTransport transport = new HttpTransport();
+			try (InputStream in = transport.openStream(CatalogUrls.remap(url))) {
+				assertArrayEquals(body, readAll(in));
+			}
+			HttpTransport.Timing timing = transport.getTimings().get(0);
+			assertTrue(timing.getTtfbMs() >= 140.0, timing.toString());
+			assertTrue(timing.getTransferMs() >= 300.0, timing.toString());
+			assertEquals(body.length, timing.getBytes());
+		}
+	}
+}
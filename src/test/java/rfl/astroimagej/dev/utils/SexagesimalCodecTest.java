@@ -0,0 +1,212 @@
+package rfl.astroimagej.dev.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+// property tests: codec conversions equal the String.format / String.split reference
+// conversions for random and edge case inputs, fixed seeds
+class SexagesimalCodecTest {
+
+	private static final int N_SAMPLES = 200000;
+
+	private static Locale defaultLocale;
+
+	// reference conversions use the default locale
+	@BeforeAll
+	static void setUpBeforeClass() {
+		defaultLocale = Locale.getDefault();
+		Locale.setDefault(Locale.ROOT);
+	}
+
+	@AfterAll
+	static void tearDownAfterClass() {
+		Locale.setDefault(defaultLocale);
+	}
+
+	// edge values: zero, signs, range limits, non-finite
+	private static final double[] EDGES = { 0.0, -0.0, 24.0, -24.0, 23.999999999, 48.0, -0.000000001, 90.0, -90.0,
+			90.000000001, 89.999999999, 1e-300, Double.MIN_VALUE, 1e15, -1e15, Double.MAX_VALUE, -Double.MAX_VALUE,
+			Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+	/*
+	 * Random coordinates over the full range: uniform values, values on and beside a rounding
+	 * tie of the seconds field, and values on minute and hour boundaries
+	 */
+	private static double[] samples(Random random, double range) {
+		double[] values = new double[N_SAMPLES];
+		for (int i = 0; i < N_SAMPLES; i++) {
+			double sign = random.nextBoolean() ? 1.0 : -1.0;
+			int whole = random.nextInt((int) range + 1);
+			int mm = random.nextInt(60);
+			switch (i % 4) {
+			case 0:
+				// uniform, including out of range values
+				values[i] = sign * 1.5 * range * random.nextDouble();
+				break;
+			case 1:
+				// seconds ending in 5 thousandths
+				double ss = random.nextInt(6000) / 100.0 + 0.005;
+				values[i] = sign * (whole + mm / 60.0 + ss / 3600.0);
+				break;
+			case 2:
+				// a few ulps from a minute boundary
+				double boundary = whole + mm / 60.0;
+				for (int k = random.nextInt(8) - 4; k != 0; k += (k > 0) ? -1 : 1) {
+					boundary = (k > 0) ? Math.nextUp(boundary) : Math.nextDown(boundary);
+				}
+				values[i] = sign * boundary;
+				break;
+			default:
+				// random bit patterns, any magnitude
+				values[i] = Double.longBitsToDouble(random.nextLong());
+			}
+		}
+		return values;
+	}
+
+	/*
+	 * Reference formats, String.format conversions as replaced by the codec
+	 */
+	private static String referenceFormatRa(double raHr) {
+		double data = (raHr >= 0) ? raHr % 24 : (24 + raHr % 24);
+		int hh = (int) (1.0 * data);
+		int mm = (int) ((data - hh) * 60);
+		Double ss = 3600 * (data - hh) - 60 * mm;
+		return String.format("%02d", hh) + ":"
+				+ String.format("%02d", mm) + ":"
+				+ String.format("%5.2f", ss).replace(' ', '0');
+	}
+
+	private static String referenceFormatDec(double decDeg) {
+		String sign = (decDeg >= 0) ? "+" : "-";
+		double data = (Math.abs(decDeg) > 90.0) ? 90.0 : Math.abs(decDeg);
+		int dd = (int) (1.0 * data);
+		int mm = (int) ((data - dd) * 60);
+		Double ss = ((data - dd) * 60 - mm) * 60;
+		return sign + String.format("%02d", dd) + ":"
+				+ String.format("%02d", mm) + ":"
+				+ String.format("%5.2f", ss).replace(' ', '0');
+	}
+
+	private static void assertFormatEquals(double[] values, DoubleFunction<String> expected,
+			DoubleFunction<String> actual) {
+		for (double value : values) {
+			String text = expected.apply(value);
+			if (!text.equals(actual.apply(value))) {
+				fail(String.format("Input %s (bits %x): expected %s but was %s", Double.toString(value),
+						Double.doubleToRawLongBits(value), text, actual.apply(value)));
+			}
+		}
+	}
+
+	private static void assertParseEquals(String[] texts, Function<String, Double> expected,
+			Function<String, Double> actual) {
+		for (String text : texts) {
+			Object reference;
+			try {
+				reference = expected.apply(text);
+			} catch (RuntimeException e) {
+				reference = e.getClass();
+			}
+			Object result;
+			try {
+				result = actual.apply(text);
+			} catch (RuntimeException e) {
+				result = e.getClass();
+			}
+			assertEquals(reference, result, "Input: " + text);
+		}
+	}
+
+	/*
+	 * Sexagesimal text: formatted values plus hand written forms, e.g. missing leading zeros,
+	 * more or fewer decimals, signed fields, spaces, exponents and malformed fields
+	 */
+	private static String[] texts(Random random) {
+		String[] fields = { "0", "00", "5", "-0", "+7", "12", "59", "60", "61", "89", "90", "91", "123", "3.",
+				"3.5", "03.455", "3.4549999999", "59.999", "0.005", "7.12345678901234567890", "99999999999999999",
+				".5", " 3", "4 ", "1e1", "0x10", "NaN", "Infinity", "5d", "", "-", "+", "1.2.3", "--1", "١" };
+		String[] texts = new String[N_SAMPLES];
+		for (int i = 0; i < N_SAMPLES; i++) {
+			switch (i % 3) {
+			case 0:
+				texts[i] = (i % 2 == 0) ? referenceFormatRa(48.0 * random.nextDouble() - 24.0)
+						: referenceFormatDec(200.0 * random.nextDouble() - 100.0);
+				break;
+			case 1:
+				// random fields from the list, usually three
+				int n = (random.nextInt(8) == 0) ? random.nextInt(5) : 3;
+				StringBuilder sb = new StringBuilder();
+				for (int k = 0; k < n; k++) {
+					sb.append((k > 0) ? ":" : "").append(fields[random.nextInt(fields.length)]);
+				}
+				texts[i] = sb.toString();
+				break;
+			default:
+				// plain fields with random digits and decimals
+				texts[i] = String.format("%s%d:%d:%d.%0" + (1 + random.nextInt(12)) + "d",
+						random.nextBoolean() ? "-" : (random.nextBoolean() ? "+" : ""), random.nextInt(100),
+						random.nextInt(70), random.nextInt(70), (long) (random.nextDouble() * 1e11));
+			}
+		}
+		return texts;
+	}
+
+	@DisplayName("Formatted ra equals String.format reference over the full range")
+	@Test
+	void formatRa_EqualsReference() {
+		assertFormatEquals(samples(new Random(241), 24.0), SexagesimalCodecTest::referenceFormatRa,
+				SexagesimalCodec::formatRa);
+		assertFormatEquals(EDGES, SexagesimalCodecTest::referenceFormatRa, SexagesimalCodec::formatRa);
+	}
+
+	@DisplayName("Formatted dec equals String.format reference over the full range")
+	@Test
+	void formatDec_EqualsReference() {
+		assertFormatEquals(samples(new Random(242), 90.0), SexagesimalCodecTest::referenceFormatDec,
+				SexagesimalCodec::formatDec);
+		assertFormatEquals(EDGES, SexagesimalCodecTest::referenceFormatDec, SexagesimalCodec::formatDec);
+	}
+
+	@DisplayName("Char buffer and StringBuilder forms write the same text at an offset")
+	@Test
+	void bufferForms_EqualString() {
+		Random random = new Random(243);
+		char[] buffer = new char[40];
+		StringBuilder sb = new StringBuilder();
+		for (double value : samples(random, 90.0)) {
+			Arrays.fill(buffer, '#');
+			int end = SexagesimalCodec.formatRa(value, buffer, 3);
+			end = SexagesimalCodec.formatDec(value, buffer, end);
+			sb.setLength(0);
+			sb.append("###");
+			SexagesimalCodec.appendRa(sb, value);
+			SexagesimalCodec.appendDec(sb, value);
+			assertEquals(sb.toString(), new String(buffer, 0, end));
+			assertEquals(SexagesimalCodec.formatRa(value) + SexagesimalCodec.formatDec(value), sb.substring(3));
+		}
+	}
+
+	@DisplayName("Parsed ra equals String.split / Double.valueOf reference, including errors")
+	@Test
+	void parseRa_EqualsReference() {
+		assertParseEquals(texts(new Random(244)), SexagesimalCodec::referenceParseRa, SexagesimalCodec::parseRa);
+	}
+
+	@DisplayName("Parsed dec equals String.split / Double.valueOf reference, including errors")
+	@Test
+	void parseDec_EqualsReference() {
+		assertParseEquals(texts(new Random(245)), SexagesimalCodec::referenceParseDec, SexagesimalCodec::parseDec);
+	}
+}
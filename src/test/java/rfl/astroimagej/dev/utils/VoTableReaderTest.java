@@ -0,0 +1,114 @@
+package rfl.astroimagej.dev.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+class VoTableReaderTest {
+
+	// synthetic cone search response
+	private static final int N_ROWS = 20000;
+	private static byte[] coneTable;
+
+	private final double epsilon = 1.0e-8;
+
+	@BeforeAll
+	static void setUpBeforeClass() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		sb.append("<VOTABLE version=\"1.2\" xmlns=\"http://www.ivoa.net/xml/VOTable/v1.2\"><RESOURCE><TABLE>\n");
+		sb.append("<FIELD name=\"MAIN_ID\" datatype=\"char\" arraysize=\"*\"/>\n");
+		sb.append("<FIELD name=\"RA\" datatype=\"double\"/>\n");
+		sb.append("<FIELD name=\"DEC\" datatype=\"double\"/>\n");
+		sb.append("<FIELD name=\"FLUX_V\" datatype=\"double\"/>\n");
+		sb.append("<DATA><TABLEDATA>\n");
+		for (int i = 0; i < N_ROWS; i++) {
+			String mag = (i % 3 == 0) ? "" : String.format("%.3f", 10.0 + (i % 700) / 100.0);
+			sb.append(String.format("<TR><TD>star %d</TD><TD>%.8f</TD><TD>%+.8f</TD><TD>%s</TD></TR>\n",
+					i, 97.0 + i * 1.0e-5, 29.0 + i * 1.0e-5, mag));
+		}
+		sb.append("</TABLEDATA></DATA></TABLE></RESOURCE></VOTABLE>\n");
+		coneTable = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@DisplayName("Recorded one-row SIMBAD VOTable decodes fields and typed values")
+	@Test
+	void oneRowVoTable_Decode_IsCorrect() throws Exception {
+		VoTableReader reader = new VoTableReader();
+		double[] values = new double[2];
+		String[] ids = new String[1];
+		Double[] magR = new Double[1];
+
+		try (InputStream in = getClass().getResourceAsStream("/simbad_wasp12_votable.xml")) {
+			int nRows = reader.read(in, row -> {
+				ids[0] = row.getString(0);
+				values[0] = row.getDouble(1);
+				values[1] = row.getDouble(2);
+				magR[0] = row.getDoubleOrNull(row.getFieldIndex("FLUX_R"));
+			});
+			assertEquals(1, nRows);
+		}
+		assertEquals(7, reader.getFieldCount());
+		assertEquals("OK", reader.getQueryStatus());
+		assertEquals("WASP-12", ids[0]);
+		assertEquals(97.63664583, values[0], epsilon);
+		assertEquals(29.67229194, values[1], epsilon);
+		assertNull(magR[0]);
+	}
+
+	@DisplayName("Multi-row cone search VOTable streams every row")
+	@Test
+	void multiRowVoTable_Decode_IsCorrect() throws Exception {
+		VoTableReader reader = new VoTableReader();
+		int[] nEmpty = { 0 };
+		double[] lastRa = { 0.0 };
+
+		int nRows = reader.read(new ByteArrayInputStream(coneTable), row -> {
+			if (row.isEmpty(3)) {
+				nEmpty[0]++;
+			}
+			lastRa[0] = row.getDouble(1);
+		});
+		assertEquals(N_ROWS, nRows);
+		assertEquals((N_ROWS + 2) / 3, nEmpty[0]);
+		assertEquals(97.0 + (N_ROWS - 1) * 1.0e-5, lastRa[0], epsilon);
+	}
+
+	@DisplayName("StAX reader values equal DOM + XPath values, refer VoTableReaderBenchmark for timing")
+	@Test
+	void staxReader_EqualsDomXPath() throws Exception {
+		// DOM + XPath, as previously used in SimbadCatalog
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(false);
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		XPathExpression expr = XPathFactory.newInstance().newXPath().compile("//TR/TD[2]/text()");
+		Document doc = builder.parse(new ByteArrayInputStream(coneTable));
+		NodeList nodes = (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
+		double[] dom = new double[nodes.getLength()];
+		for (int j = 0; j < nodes.getLength(); j++) {
+			dom[j] = Double.parseDouble(nodes.item(j).getNodeValue());
+		}
+
+		// StAX reader
+		double[] stax = new double[N_ROWS];
+		int[] n = { 0 };
+		new VoTableReader().read(new ByteArrayInputStream(coneTable), row -> stax[n[0]++] = row.getDouble(1));
+		assertArrayEquals(dom, stax, 0.0);
+	}
+}